@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.agreement.measures;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.uima.cas.CAS;
+
+/**
+ * Provides the CASes over which agreement is calculated one document at a time. This allows the
+ * agreement measures to process large projects without having to keep the CASes of all documents
+ * in memory at the same time.
+ */
+public interface AgreementDocumentSource
+{
+    /**
+     * @return the users (CAS groups) to compare in the order in which they should be compared.
+     */
+    List<String> getUsers();
+
+    int getDocumentCount();
+
+    /**
+     * @param aDocumentIndex
+     *            the index of the document.
+     * @return the ID of the source document or {@code null} if the document is not known to the
+     *         database. Partial results are only cached for documents which have an ID.
+     */
+    default Long getDocumentId(int aDocumentIndex)
+    {
+        return null;
+    }
+
+    /**
+     * Loads the CASes of all users for the given document and passes them to the given consumer.
+     * Users for which the document should be skipped (e.g. because they did not finish it) are
+     * mapped to {@code null}. The CASes must not be used after the consumer has returned.
+     * <p>
+     * This method may be called concurrently for different documents.
+     * 
+     * @param aDocumentIndex
+     *            the index of the document.
+     * @param aConsumer
+     *            the consumer receiving the CASes of the document by user.
+     */
+    void forDocument(int aDocumentIndex, Consumer<Map<String, CAS>> aConsumer);
+
+    /**
+     * @param aCasMap
+     *            the CASes of all documents by user. All lists must have the same size.
+     * @return a document source for CASes that have already been loaded.
+     */
+    static AgreementDocumentSource of(Map<String, List<CAS>> aCasMap)
+    {
+        var users = new ArrayList<>(aCasMap.keySet());
+        var documentCount = aCasMap.values().stream() //
+                .mapToInt(cases -> cases != null ? cases.size() : 0) //
+                .max().orElse(0);
+
+        return new AgreementDocumentSource()
+        {
+            @Override
+            public List<String> getUsers()
+            {
+                return users;
+            }
+
+            @Override
+            public int getDocumentCount()
+            {
+                return documentCount;
+            }
+
+            @Override
+            public void forDocument(int aDocumentIndex, Consumer<Map<String, CAS>> aConsumer)
+            {
+                var casByUser = new LinkedHashMap<String, CAS>();
+                for (var user : users) {
+                    var cases = aCasMap.get(user);
+                    casByUser.put(user, cases != null && aDocumentIndex < cases.size()
+                            ? cases.get(aDocumentIndex) : null);
+                }
+                aConsumer.accept(casByUser);
+            }
+        };
+    }
+}
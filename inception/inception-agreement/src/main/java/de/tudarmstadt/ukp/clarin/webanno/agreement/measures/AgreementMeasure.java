@@ -29,6 +29,35 @@ public interface AgreementMeasure<R extends Serializable>
 {
     R getAgreement(Map<String, List<CAS>> aCasMap);
 
+    /**
+     * Calculates the agreement over documents which are loaded one at a time from the given source.
+     * Only the data needed to calculate the agreement is retained from each document, so the CASes
+     * of all documents never need to be in memory at the same time. Documents may be processed in
+     * parallel.
+     * 
+     * @param aSource
+     *            the source providing the CASes of each document.
+     * @return the agreement result.
+     */
+    default R getAgreement(AgreementDocumentSource aSource)
+    {
+        return getAgreement(aSource, null);
+    }
+
+    /**
+     * Calculates the agreement over documents which are loaded one at a time from the given source.
+     * Partial results of documents known to the source are taken from the given cache if possible
+     * and are added to it otherwise. Only documents without cached partial results are loaded.
+     * 
+     * @param aSource
+     *            the source providing the CASes of each document.
+     * @param aCache
+     *            the cache for partial results of individual documents or {@code null} to not
+     *            use any cache.
+     * @return the agreement result.
+     */
+    R getAgreement(AgreementDocumentSource aSource, AgreementPartialResultCache aCache);
+
     AnnotationFeature getFeature();
 
     DefaultAgreementTraits getTraits();
@@ -17,13 +17,39 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.agreement.measures;
 
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
 
 public abstract class AgreementMeasure_ImplBase<R extends Serializable, T extends DefaultAgreementTraits>
     implements AgreementMeasure<R>
 {
+    // Loading the CASes is blocking I/O, so the documents are not processed on the common
+    // fork/join pool. The pool is shared by all measures which also bounds the number of documents
+    // that are loaded at the same time.
+    private static final ExecutorService DOCUMENT_EXECUTOR = Executors.newFixedThreadPool(
+            max(1, min(4, Runtime.getRuntime().availableProcessors())),
+            new BasicThreadFactory.Builder() //
+                    .namingPattern("agreement-%d") //
+                    .daemon(true) //
+                    .build());
+
     private final AnnotationFeature feature;
     private final T traits;
 
@@ -44,4 +70,83 @@ public abstract class AgreementMeasure_ImplBase<R extends Serializable, T extend
     {
         return traits;
     }
+
+    /**
+     * @return a key describing the configuration of the measure. Cached partial results may only be
+     *         reused by measures having the same key.
+     */
+    protected String getConfigurationKey()
+    {
+        try {
+            return getClass().getName() + ":" + feature.getId() + ":"
+                    + JSONUtil.toJsonString(traits);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the cached partial results of the given document or {@code null} if partial results
+     *         cannot be cached for the document.
+     */
+    protected Map<Object, Object> getPartialResults(AgreementPartialResultCache aCache,
+            AgreementDocumentSource aSource, int aDocumentIndex)
+    {
+        if (aCache == null || feature.getProject() == null
+                || feature.getProject().getId() == null) {
+            return null;
+        }
+
+        Long documentId = aSource.getDocumentId(aDocumentIndex);
+        if (documentId == null) {
+            return null;
+        }
+
+        return aCache.getPartialResults(feature.getProject().getId(), documentId);
+    }
+
+    /**
+     * Processes the documents of the given source in parallel.
+     * 
+     * @param aSource
+     *            the source providing the documents.
+     * @param aProcessor
+     *            the function processing a document given its index.
+     * @return the results of the processor in document order.
+     */
+    protected <D> List<D> processDocuments(AgreementDocumentSource aSource,
+            IntFunction<D> aProcessor)
+    {
+        var futures = new ArrayList<Future<D>>(aSource.getDocumentCount());
+        try {
+            for (int i = 0; i < aSource.getDocumentCount(); i++) {
+                int documentIndex = i;
+                futures.add(DOCUMENT_EXECUTOR.submit(() -> aProcessor.apply(documentIndex)));
+            }
+
+            var results = new ArrayList<D>(futures.size());
+            for (var future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while calculating agreement", e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            // Do not keep loading documents if the calculation has failed
+            futures.forEach(future -> future.cancel(true));
+        }
+    }
 }
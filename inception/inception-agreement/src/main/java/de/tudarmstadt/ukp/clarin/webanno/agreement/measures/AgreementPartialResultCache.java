@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.agreement.measures;
+
+import java.util.Map;
+
+/**
+ * Keeps the partial agreement results of individual documents so that the agreement over a project
+ * can be assembled without loading and diffing the CASes of documents which did not change since
+ * the last calculation.
+ */
+public interface AgreementPartialResultCache
+{
+    /**
+     * Returns the partial results of the given document. The keys and values are defined by the
+     * agreement measures. Measures must obtain the map before loading the CASes from which they
+     * calculate the partial results. When the document changes, the map is dropped from the cache
+     * (it is not cleared), so results calculated from outdated CASes never become visible.
+     * 
+     * @param aProjectId
+     *            the project ID.
+     * @param aDocumentId
+     *            the source document ID.
+     * @return the partial results of the document.
+     */
+    Map<Object, Object> getPartialResults(long aProjectId, long aDocumentId);
+}
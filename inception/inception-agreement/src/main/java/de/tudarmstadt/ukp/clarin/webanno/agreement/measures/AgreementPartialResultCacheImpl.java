@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.agreement.measures;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.documents.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.inception.documents.event.AnnotationStateChangeEvent;
+import de.tudarmstadt.ukp.inception.schema.api.event.LayerConfigurationChangedEvent;
+
+/**
+ * The partial results of a document are dropped whenever one of its CASes is written or the state
+ * of one of its annotation documents changes (which matters when agreement is limited to finished
+ * documents). Changing the layer configuration drops the partial results of the whole project
+ * because it may e.g. change the tagsets.
+ */
+@Component
+public class AgreementPartialResultCacheImpl
+    implements AgreementPartialResultCache
+{
+    private static final Duration EXPIRE_AFTER_ACCESS = Duration.ofMinutes(60);
+    private static final int MAX_DOCUMENTS = 10_000;
+
+    private final Cache<DocumentKey, Map<Object, Object>> partialResults;
+
+    public AgreementPartialResultCacheImpl()
+    {
+        partialResults = Caffeine.newBuilder() //
+                .expireAfterAccess(EXPIRE_AFTER_ACCESS) //
+                .maximumSize(MAX_DOCUMENTS) //
+                .build();
+    }
+
+    @Override
+    public Map<Object, Object> getPartialResults(long aProjectId, long aDocumentId)
+    {
+        return partialResults.get(new DocumentKey(aProjectId, aDocumentId),
+                $ -> new ConcurrentHashMap<>());
+    }
+
+    @EventListener
+    public void onAfterCasWritten(AfterCasWrittenEvent aEvent)
+    {
+        invalidate(aEvent.getDocument().getDocument());
+    }
+
+    @EventListener
+    public void onAnnotationStateChange(AnnotationStateChangeEvent aEvent)
+    {
+        invalidate(aEvent.getDocument());
+    }
+
+    @EventListener
+    public void beforeLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        var projectId = aEvent.getProject().getId();
+        partialResults.asMap().keySet().removeIf(key -> projectId.equals(key.projectId()));
+    }
+
+    private void invalidate(SourceDocument aDocument)
+    {
+        if (aDocument.getId() != null) {
+            partialResults.invalidate(
+                    new DocumentKey(aDocument.getProject().getId(), aDocument.getId()));
+        }
+    }
+
+    private record DocumentKey(long projectId, long documentId) {}
+}
@@ -17,13 +17,15 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.agreement.measures.krippendorffalphaunitizing;
 
+import static java.util.Arrays.asList;
+
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.stream.IntStream;
 
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
@@ -35,7 +37,9 @@ import org.dkpro.statistics.agreement.unitizing.KrippendorffAlphaUnitizingAgreem
 import org.dkpro.statistics.agreement.unitizing.UnitizingAnnotationStudy;
 
 import de.tudarmstadt.ukp.clarin.webanno.agreement.PairwiseAnnotationResult;
+import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementDocumentSource;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementMeasure_ImplBase;
+import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementPartialResultCache;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.results.unitizing.UnitizingAgreementResult;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
@@ -77,68 +81,105 @@ public class KrippendorffAlphaUnitizingAgreementMeasure
         return result;
     }
 
+    @Override
+    public PairwiseAnnotationResult<UnitizingAgreementResult> getAgreement(
+            AgreementDocumentSource aSource, AgreementPartialResultCache aCache)
+    {
+        // The units of a user do not depend on the user they are compared to, so it is sufficient
+        // to extract the units of each document once. The CASes can be released as soon as this
+        // has been done.
+        PartialResultKey key = new PartialResultKey(getConfigurationKey(), aSource.getUsers());
+        List<DocumentUnits> documents = processDocuments(aSource, i -> {
+            Map<Object, Object> partialResults = getPartialResults(aCache, aSource, i);
+            DocumentUnits cached = partialResults != null
+                    ? (DocumentUnits) partialResults.get(key)
+                    : null;
+            if (cached != null) {
+                return cached;
+            }
+
+            List<DocumentUnits> holder = new ArrayList<>(1);
+            aSource.forDocument(i, casByUser -> holder.add(extractUnits(casByUser)));
+            if (partialResults != null) {
+                partialResults.put(key, holder.get(0));
+            }
+            return holder.get(0);
+        });
+
+        PairwiseAnnotationResult<UnitizingAgreementResult> result = new PairwiseAnnotationResult<>(
+                getFeature(), getTraits());
+        List<String> users = aSource.getUsers();
+        for (int m = 0; m < users.size(); m++) {
+            for (int n = 0; n < m; n++) {
+                UnitizingAgreementResult res = calculatePairAgreement(users.get(m), users.get(n),
+                        documents);
+                result.add(users.get(m), users.get(n), res);
+            }
+        }
+        return result;
+    }
+
     public UnitizingAgreementResult calculatePairAgreement(Map<String, List<CAS>> aCasMap)
     {
-        String typeName = getFeature().getLayer().getName();
+        List<String> users = new ArrayList<>(aCasMap.keySet());
+
+        // Documents are aligned by position in the CAS lists of the users
+        int docCount = aCasMap.values().stream().findFirst().get().size();
+        List<DocumentUnits> documents = new ArrayList<>(docCount);
+        for (int i = 0; i < docCount; i++) {
+            Map<String, CAS> casByUser = new LinkedHashMap<>();
+            for (Entry<String, List<CAS>> set : aCasMap.entrySet()) {
+                casByUser.put(set.getKey(), set.getValue().get(i));
+            }
+            documents.add(extractUnits(casByUser));
+        }
+
+        return calculatePairAgreement(users.get(0), users.get(1), documents);
+    }
+
+    private UnitizingAgreementResult calculatePairAgreement(String aUser1, String aUser2,
+            List<DocumentUnits> aDocuments)
+    {
+        List<String> users = asList(aUser1, aUser2);
 
         // Calculate a character offset continuum over all CASses. We assume here that the documents
         // all have the same size - since the users cannot change the document sizes, this should be
-        // an universally true assumption.
-        List<CAS> firstUserCasses = aCasMap.values().stream().findFirst().get();
-        int docCount = firstUserCasses.size();
-        int[] docSizes = new int[docCount];
-        Arrays.fill(docSizes, 0);
-        for (Entry<String, List<CAS>> set : aCasMap.entrySet()) {
-            int i = 0;
-            for (CAS cas : set.getValue()) {
-                if (cas != null) {
-                    assert docSizes[i] == 0 || docSizes[i] == cas.getDocumentText().length();
-
-                    docSizes[i] = cas.getDocumentText().length();
-                }
-                i++;
+        // an universally true assumption. Documents which neither of the users has worked on do not
+        // contribute to the continuum.
+        int[] docSizes = new int[aDocuments.size()];
+        for (int i = 0; i < aDocuments.size(); i++) {
+            DocumentUnits doc = aDocuments.get(i);
+            if (users.stream().anyMatch(doc.unitsByUser()::containsKey)) {
+                docSizes[i] = doc.size();
             }
         }
-        int continuumSize = Arrays.stream(docSizes).sum();
+        int continuumSize = IntStream.of(docSizes).sum();
 
         // Create a unitizing study for that continuum.
         UnitizingAnnotationStudy study = new UnitizingAnnotationStudy(continuumSize);
 
-        // For each annotator, extract the feature values from all the annotator's CASses and add
-        // them to the unitizing study based on character offsets.
-        for (Entry<String, List<CAS>> set : aCasMap.entrySet()) {
-            int raterIdx = study.addRater(set.getKey());
+        // For each annotator, add the units from all the annotator's documents to the unitizing
+        // study based on character offsets.
+        for (String user : users) {
+            int raterIdx = study.addRater(user);
             int docOffset = 0;
-            int i = 0;
-            for (CAS cas : set.getValue()) {
-                // If a user has never worked on a source document, its CAS is null here - we
+            for (int i = 0; i < aDocuments.size(); i++) {
+                // If a user has never worked on a source document, there are no units for it - we
                 // skip it.
-                if (cas != null) {
-                    Type t = cas.getTypeSystem().getType(typeName);
-                    Feature f = t.getFeatureByBaseName(getFeature().getName());
-                    int currentDocOffset = docOffset;
-                    cas.select(t).map(fs -> (AnnotationFS) fs).forEach(fs -> {
-                        Object featureValue = FSUtil.getFeature(fs, f, Object.class);
-                        if (featureValue instanceof Collection) {
-                            for (Object value : (Collection<?>) featureValue) {
-                                study.addUnit(currentDocOffset + fs.getBegin(),
-                                        fs.getEnd() - fs.getBegin(), raterIdx, value);
-                            }
-                        }
-                        else {
-                            study.addUnit(currentDocOffset + fs.getBegin(),
-                                    fs.getEnd() - fs.getBegin(), raterIdx, featureValue);
-                        }
-                    });
+                List<Unit> units = aDocuments.get(i).unitsByUser().get(user);
+                if (units != null) {
+                    for (Unit unit : units) {
+                        study.addUnit(docOffset + unit.begin(), unit.length(), raterIdx,
+                                unit.category());
+                    }
                 }
 
                 docOffset += docSizes[i];
-                i++;
             }
         }
 
-        UnitizingAgreementResult result = new UnitizingAgreementResult(typeName,
-                getFeature().getName(), study, new ArrayList<>(aCasMap.keySet()),
+        UnitizingAgreementResult result = new UnitizingAgreementResult(
+                getFeature().getLayer().getName(), getFeature().getName(), study, users,
                 getTraits().isExcludeIncomplete());
 
         IAgreementMeasure agreement = new KrippendorffAlphaUnitizingAgreement(study);
@@ -152,4 +193,49 @@ public class KrippendorffAlphaUnitizingAgreementMeasure
 
         return result;
     }
+
+    /**
+     * Extracts the feature values from the CASes of a single document. Users with a {@code null}
+     * CAS are not included in the result.
+     */
+    private DocumentUnits extractUnits(Map<String, CAS> aCasByUser)
+    {
+        String typeName = getFeature().getLayer().getName();
+
+        int size = 0;
+        Map<String, List<Unit>> unitsByUser = new LinkedHashMap<>();
+        for (Entry<String, CAS> entry : aCasByUser.entrySet()) {
+            CAS cas = entry.getValue();
+            if (cas == null) {
+                continue;
+            }
+
+            assert size == 0 || size == cas.getDocumentText().length();
+            size = cas.getDocumentText().length();
+
+            List<Unit> units = new ArrayList<>();
+            Type t = cas.getTypeSystem().getType(typeName);
+            Feature f = t.getFeatureByBaseName(getFeature().getName());
+            cas.select(t).map(fs -> (AnnotationFS) fs).forEach(fs -> {
+                Object featureValue = FSUtil.getFeature(fs, f, Object.class);
+                if (featureValue instanceof Collection) {
+                    for (Object value : (Collection<?>) featureValue) {
+                        units.add(new Unit(fs.getBegin(), fs.getEnd() - fs.getBegin(), value));
+                    }
+                }
+                else {
+                    units.add(new Unit(fs.getBegin(), fs.getEnd() - fs.getBegin(), featureValue));
+                }
+            });
+            unitsByUser.put(entry.getKey(), units);
+        }
+
+        return new DocumentUnits(size, unitsByUser);
+    }
+
+    private record PartialResultKey(String configuration, List<String> users) {}
+
+    private record DocumentUnits(int size, Map<String, List<Unit>> unitsByUser) {}
+
+    private record Unit(int begin, int length, Object category) {}
 }
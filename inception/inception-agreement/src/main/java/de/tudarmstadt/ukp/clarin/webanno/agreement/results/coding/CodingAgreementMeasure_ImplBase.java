@@ -17,25 +17,45 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.agreement.results.coding;
 
+import static de.tudarmstadt.ukp.clarin.webanno.agreement.AgreementUtils.makeCodingStudy;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.doDiff;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.getDiffAdapters;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toCollection;
+
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.uima.cas.CAS;
 
 import de.tudarmstadt.ukp.clarin.webanno.agreement.PairwiseAnnotationResult;
+import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementDocumentSource;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementMeasure_ImplBase;
+import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementPartialResultCache;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.DefaultAgreementTraits;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.DiffAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.Tag;
+import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
 
 public abstract class CodingAgreementMeasure_ImplBase<T extends DefaultAgreementTraits>
     extends AgreementMeasure_ImplBase<PairwiseAnnotationResult<CodingAgreementResult>, T>
 {
-    public CodingAgreementMeasure_ImplBase(AnnotationFeature aFeature, T aTraits)
+    private final AnnotationSchemaService annotationService;
+
+    public CodingAgreementMeasure_ImplBase(AnnotationFeature aFeature, T aTraits,
+            AnnotationSchemaService aAnnotationService)
     {
         super(aFeature, aTraits);
+        annotationService = aAnnotationService;
     }
 
     @Override
@@ -60,5 +80,150 @@ public abstract class CodingAgreementMeasure_ImplBase<T extends DefaultAgreement
         return result;
     }
 
-    public abstract CodingAgreementResult calculatePairAgreement(Map<String, List<CAS>> aCasMap);
+    @Override
+    public PairwiseAnnotationResult<CodingAgreementResult> getAgreement(
+            AgreementDocumentSource aSource, AgreementPartialResultCache aCache)
+    {
+        List<Pair<String, String>> pairs = new ArrayList<>();
+        List<String> users = aSource.getUsers();
+        for (int m = 0; m < users.size(); m++) {
+            for (int n = 0; n < m; n++) {
+                pairs.add(Pair.of(users.get(m), users.get(n)));
+            }
+        }
+
+        // Look up the schema information once here instead of once per pair and document - also
+        // we should not access the database from the worker threads.
+        List<DiffAdapter> adapters = listDiffAdapters();
+        Set<String> tagset = listTags();
+        String configurationKey = getConfigurationKey();
+
+        // Each document is loaded only once to calculate the studies for all pairs. The CASes can
+        // be released as soon as the document has been processed.
+        List<List<CodingAgreementResult>> documentResults = processDocuments(aSource,
+                i -> calculateDocument(aSource, i, pairs, adapters, tagset, configurationKey,
+                        getPartialResults(aCache, aSource, i)));
+
+        PairwiseAnnotationResult<CodingAgreementResult> result = new PairwiseAnnotationResult<>(
+                getFeature(), getTraits());
+        for (int i = 0; i < pairs.size(); i++) {
+            int pairIndex = i;
+            List<CodingAgreementResult> pairResults = documentResults.stream() //
+                    .map(results -> results.get(pairIndex)) //
+                    .toList();
+
+            // The studies of the individual documents are merged in document order. Merging also
+            // creates a copy, so we do not modify any cached partial result here.
+            CodingAgreementResult res = pairResults.isEmpty()
+                    ? makePairStudy(adapters, tagset,
+                            makePairCasMap(pairs.get(i), emptyList(), emptyList()))
+                    : CodingAgreementResult.merge(pairResults);
+            calculateAgreement(res);
+            result.add(pairs.get(i).getKey(), pairs.get(i).getValue(), res);
+        }
+        return result;
+    }
+
+    private List<CodingAgreementResult> calculateDocument(AgreementDocumentSource aSource,
+            int aDocumentIndex, List<Pair<String, String>> aPairs, List<DiffAdapter> aAdapters,
+            Set<String> aTagset, String aConfigurationKey, Map<Object, Object> aPartialResults)
+    {
+        List<PartialResultKey> keys = new ArrayList<>(aPairs.size());
+        List<CodingAgreementResult> documentResults = new ArrayList<>(aPairs.size());
+        boolean complete = true;
+        for (Pair<String, String> pair : aPairs) {
+            PartialResultKey key = new PartialResultKey(aConfigurationKey, pair.getKey(),
+                    pair.getValue());
+            CodingAgreementResult cached = aPartialResults != null
+                    ? (CodingAgreementResult) aPartialResults.get(key)
+                    : null;
+            keys.add(key);
+            documentResults.add(cached);
+            complete &= cached != null;
+        }
+
+        // Only load the document if the studies of some pairs are not cached
+        if (complete) {
+            return documentResults;
+        }
+
+        aSource.forDocument(aDocumentIndex, casByUser -> {
+            for (int i = 0; i < aPairs.size(); i++) {
+                if (documentResults.get(i) != null) {
+                    continue;
+                }
+
+                Pair<String, String> pair = aPairs.get(i);
+                CodingAgreementResult res = makePairStudy(aAdapters, aTagset,
+                        makePairCasMap(pair, singletonList(casByUser.get(pair.getKey())),
+                                singletonList(casByUser.get(pair.getValue()))));
+                if (aPartialResults != null) {
+                    // Do not keep the diff in the cache, we only need the study and the sets
+                    res = CodingAgreementResult.merge(singletonList(res));
+                    aPartialResults.put(keys.get(i), res);
+                }
+                documentResults.set(i, res);
+            }
+        });
+
+        return documentResults;
+    }
+
+    public CodingAgreementResult calculatePairAgreement(Map<String, List<CAS>> aCasMap)
+    {
+        CodingAgreementResult result = makePairStudy(listDiffAdapters(), listTags(), aCasMap);
+        calculateAgreement(result);
+        return result;
+    }
+
+    /**
+     * Calculates the agreement on the study of the given result and stores it in the result.
+     * 
+     * @param aResult
+     *            the result holding the study.
+     */
+    protected abstract void calculateAgreement(CodingAgreementResult aResult);
+
+    /**
+     * @return whether positions which have not been annotated by all users are excluded from the
+     *         study.
+     */
+    protected boolean isExcludeIncomplete()
+    {
+        return true;
+    }
+
+    private CodingAgreementResult makePairStudy(List<DiffAdapter> aAdapters, Set<String> aTagset,
+            Map<String, List<CAS>> aCasMap)
+    {
+        AnnotationFeature feature = getFeature();
+
+        var diff = doDiff(aAdapters, getTraits().getLinkCompareBehavior(), aCasMap);
+
+        return makeCodingStudy(diff, feature.getLayer().getName(), feature.getName(), aTagset,
+                isExcludeIncomplete(), aCasMap);
+    }
+
+    private List<DiffAdapter> listDiffAdapters()
+    {
+        return getDiffAdapters(annotationService, asList(getFeature().getLayer()));
+    }
+
+    private Set<String> listTags()
+    {
+        return annotationService.listTags(getFeature().getTagset()).stream() //
+                .map(Tag::getName) //
+                .collect(toCollection(LinkedHashSet::new));
+    }
+
+    private Map<String, List<CAS>> makePairCasMap(Pair<String, String> aPair, List<CAS> aCases1,
+            List<CAS> aCases2)
+    {
+        Map<String, List<CAS>> casMap = new LinkedHashMap<>();
+        casMap.put(aPair.getKey(), aCases1);
+        casMap.put(aPair.getValue(), aCases2);
+        return casMap;
+    }
+
+    private record PartialResultKey(String configuration, String user1, String user2) {}
 }
@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.dkpro.statistics.agreement.IAnnotationUnit;
+import org.dkpro.statistics.agreement.coding.CodingAnnotationStudy;
 import org.dkpro.statistics.agreement.coding.ICodingAnnotationItem;
 import org.dkpro.statistics.agreement.coding.ICodingAnnotationStudy;
 
@@ -38,6 +39,7 @@ public class CodingAgreementResult
     private static final long serialVersionUID = -1262324752699430461L;
 
     protected final DiffResult diff;
+    protected final int totalSetCount;
     protected final List<ConfigurationSet> setsWithDifferences;
     protected final List<ConfigurationSet> completeSets;
     protected final List<ConfigurationSet> irrelevantSets;
@@ -51,10 +53,23 @@ public class CodingAgreementResult
             List<ConfigurationSet> aSetsWithDifferences,
             List<ConfigurationSet> aIncompleteByPosition, List<ConfigurationSet> aIncompleteByLabel,
             List<ConfigurationSet> aPluralitySets, boolean aExcludeIncomplete)
+    {
+        this(aType, aFeature, aDiff, aDiff.getPositions().size(), aStudy, aCasGroupIds, aComplete,
+                aIrrelevantSets, aSetsWithDifferences, aIncompleteByPosition, aIncompleteByLabel,
+                aPluralitySets, aExcludeIncomplete);
+    }
+
+    private CodingAgreementResult(String aType, String aFeature, DiffResult aDiff,
+            int aTotalSetCount, ICodingAnnotationStudy aStudy, List<String> aCasGroupIds,
+            List<ConfigurationSet> aComplete, List<ConfigurationSet> aIrrelevantSets,
+            List<ConfigurationSet> aSetsWithDifferences,
+            List<ConfigurationSet> aIncompleteByPosition, List<ConfigurationSet> aIncompleteByLabel,
+            List<ConfigurationSet> aPluralitySets, boolean aExcludeIncomplete)
     {
         super(aType, aFeature, aStudy, aCasGroupIds, aExcludeIncomplete);
 
         diff = aDiff;
+        totalSetCount = aTotalSetCount;
         setsWithDifferences = aSetsWithDifferences;
         completeSets = unmodifiableList(new ArrayList<>(aComplete));
         irrelevantSets = aIrrelevantSets;
@@ -125,14 +140,18 @@ public class CodingAgreementResult
 
     public int getTotalSetCount()
     {
-        return diff.getPositions().size();
+        return totalSetCount;
     }
 
     public int getRelevantSetCount()
     {
-        return diff.getPositions().size() - irrelevantSets.size();
+        return totalSetCount - irrelevantSets.size();
     }
 
+    /**
+     * @return the diff the result was created from or {@code null} if the result has been
+     *         {@link #merge merged} from the results of several documents.
+     */
     public DiffResult getDiff()
     {
         return diff;
@@ -152,6 +171,58 @@ public class CodingAgreementResult
         return observedCategories;
     }
 
+    /**
+     * Combines the results calculated for the same pair of CAS groups on different documents. The
+     * study of the combined result contains the items of all studies in order. The agreement is
+     * not carried over and needs to be calculated on the combined result. The combined result
+     * shares no mutable state with the given results, so merging a single result creates a copy
+     * of it which does not retain the diff.
+     * 
+     * @param aResults
+     *            the results to combine.
+     * @return the combined result.
+     */
+    public static CodingAgreementResult merge(List<CodingAgreementResult> aResults)
+    {
+        var first = aResults.get(0);
+        var study = new CodingAnnotationStudy(first.study.getRaterCount());
+        var totalSetCount = 0;
+        var completeSets = new ArrayList<ConfigurationSet>();
+        var irrelevantSets = new ArrayList<ConfigurationSet>();
+        var setsWithDifferences = new ArrayList<ConfigurationSet>();
+        var incompleteSetsByPosition = new ArrayList<ConfigurationSet>();
+        var incompleteSetsByLabel = new ArrayList<ConfigurationSet>();
+        var pluralitySets = new ArrayList<ConfigurationSet>();
+        for (var result : aResults) {
+            if (!first.casGroupIds.equals(result.casGroupIds)) {
+                throw new IllegalArgumentException("Cannot merge results for different CAS groups "
+                        + first.casGroupIds + " and " + result.casGroupIds);
+            }
+
+            result.study.getCategories().forEach(study::addCategory);
+            for (ICodingAnnotationItem item : result.study.getItems()) {
+                var values = new Object[study.getRaterCount()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = item.getUnit(i).getCategory();
+                }
+                study.addItemAsArray(values);
+            }
+
+            totalSetCount += result.totalSetCount;
+            completeSets.addAll(result.completeSets);
+            irrelevantSets.addAll(result.irrelevantSets);
+            setsWithDifferences.addAll(result.setsWithDifferences);
+            incompleteSetsByPosition.addAll(result.incompleteSetsByPosition);
+            incompleteSetsByLabel.addAll(result.incompleteSetsByLabel);
+            pluralitySets.addAll(result.pluralitySets);
+        }
+
+        return new CodingAgreementResult(first.type, first.feature, null, totalSetCount, study,
+                first.casGroupIds, completeSets, irrelevantSets, setsWithDifferences,
+                incompleteSetsByPosition, incompleteSetsByLabel, pluralitySets,
+                first.excludeIncomplete);
+    }
+
     @Override
     public String toString()
     {
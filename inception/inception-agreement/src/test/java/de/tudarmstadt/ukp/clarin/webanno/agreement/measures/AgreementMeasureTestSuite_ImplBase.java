@@ -48,6 +48,8 @@ import org.apache.uima.cas.CAS;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
 import org.dkpro.statistics.agreement.IAnnotationStudy;
+import org.dkpro.statistics.agreement.coding.ICodingAnnotationItem;
+import org.dkpro.statistics.agreement.coding.ICodingAnnotationStudy;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
@@ -315,6 +317,14 @@ public class AgreementMeasureTestSuite_ImplBase
 
     public <R extends Serializable, T extends DefaultAgreementTraits, S extends IAnnotationStudy> //
     R twoDocumentsNoOverlap(AgreementMeasureSupport<T, R, S> aSupport, T aTraits) throws Exception
+    {
+        return twoDocumentsNoOverlap(aSupport, aTraits, false);
+    }
+
+    public <R extends Serializable, T extends DefaultAgreementTraits, S extends IAnnotationStudy> //
+    R twoDocumentsNoOverlap(AgreementMeasureSupport<T, R, S> aSupport, T aTraits,
+            boolean aStreaming)
+        throws Exception
     {
         TagSet tagset = new TagSet(project, "tagset");
 
@@ -343,8 +353,76 @@ public class AgreementMeasureTestSuite_ImplBase
                 .withFeature(POS._FeatName_PosValue, "+") //
                 .buildAndAddToIndexes();
 
-        return aSupport.createMeasure(feature, aTraits).getAgreement(Map.of( //
-                "user1", asList(user1a, user1b), //
-                "user2", asList(user2a, user2b)));
+        Map<String, List<CAS>> casByUser = new LinkedHashMap<>();
+        casByUser.put("user1", asList(user1a, user1b));
+        casByUser.put("user2", asList(user2a, user2b));
+
+        AgreementMeasure<R> measure = aSupport.createMeasure(feature, aTraits);
+
+        if (aStreaming) {
+            return measure.getAgreement(AgreementDocumentSource.of(casByUser));
+        }
+
+        return measure.getAgreement(casByUser);
+    }
+
+    public <R extends Serializable, T extends DefaultAgreementTraits, S extends IAnnotationStudy> //
+    R threeDocumentsPartialAgreement(AgreementMeasureSupport<T, R, S> aSupport, T aTraits,
+            boolean aStreaming)
+        throws Exception
+    {
+        AnnotationLayer layer = new AnnotationLayer(POS.class.getName(), POS.class.getSimpleName(),
+                SPAN_TYPE, project, false, SINGLE_TOKEN, NO_OVERLAP);
+        layer.setId(1l);
+        layers.add(layer);
+
+        AnnotationFeature feature = new AnnotationFeature(project, layer, "PosValue", "PosValue",
+                CAS.TYPE_NAME_STRING);
+        feature.setId(1l);
+        features.add(feature);
+
+        // Labels at the positions 0, 2, 4 and 6 of each document - null means no annotation
+        String[][][] labels = { //
+                { { "X", "Y", null, null }, { null, "Y", "X", "Y" }, { "X", null, null, "Y" } },
+                { { "X", "X", null, null }, { null, "Y", "X", "Y" }, { "X", null, null, "X" } },
+                { { "X", "Y", null, null }, { null, "X", "Y", "Y" }, { "Y", null, null, "Y" } } };
+
+        Map<String, List<CAS>> casByUser = new LinkedHashMap<>();
+        for (int user = 0; user < labels.length; user++) {
+            List<CAS> cases = new ArrayList<>();
+            for (String[] documentLabels : labels[user]) {
+                CAS cas = createText("a b c d");
+                for (int i = 0; i < documentLabels.length; i++) {
+                    if (documentLabels[i] != null) {
+                        buildAnnotation(cas, POS.class).at(i * 2, i * 2 + 1) //
+                                .withFeature(POS._FeatName_PosValue, documentLabels[i]) //
+                                .buildAndAddToIndexes();
+                    }
+                }
+                cases.add(cas);
+            }
+            casByUser.put("user" + (user + 1), cases);
+        }
+
+        AgreementMeasure<R> measure = aSupport.createMeasure(feature, aTraits);
+
+        if (aStreaming) {
+            return measure.getAgreement(AgreementDocumentSource.of(casByUser));
+        }
+
+        return measure.getAgreement(casByUser);
+    }
+
+    protected static List<List<Object>> itemCategories(ICodingAnnotationStudy aStudy)
+    {
+        List<List<Object>> categories = new ArrayList<>();
+        for (ICodingAnnotationItem item : aStudy.getItems()) {
+            List<Object> itemCategories = new ArrayList<>();
+            for (int i = 0; i < aStudy.getRaterCount(); i++) {
+                itemCategories.add(item.getUnit(i).getCategory());
+            }
+            categories.add(itemCategories);
+        }
+        return categories;
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.agreement.measures;
+
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IN_PROGRESS;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.documents.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.inception.documents.event.AnnotationStateChangeEvent;
+import de.tudarmstadt.ukp.inception.schema.api.event.LayerConfigurationChangedEvent;
+
+public class AgreementPartialResultCacheImplTest
+{
+    private AgreementPartialResultCacheImpl sut;
+    private Project project;
+    private SourceDocument doc1;
+    private SourceDocument doc2;
+
+    @BeforeEach
+    public void setup()
+    {
+        sut = new AgreementPartialResultCacheImpl();
+
+        project = new Project("project");
+        project.setId(1l);
+
+        doc1 = new SourceDocument("doc1", project, "text");
+        doc1.setId(1l);
+
+        doc2 = new SourceDocument("doc2", project, "text");
+        doc2.setId(2l);
+    }
+
+    @Test
+    public void thatPartialResultsAreRetained()
+    {
+        sut.getPartialResults(1l, 1l).put("key", "value");
+
+        assertThat(sut.getPartialResults(1l, 1l)).containsEntry("key", "value");
+    }
+
+    @Test
+    public void thatWritingCasOnlyInvalidatesAffectedDocument()
+    {
+        sut.getPartialResults(1l, 1l).put("key", "value");
+        sut.getPartialResults(1l, 2l).put("key", "value");
+
+        sut.onAfterCasWritten(
+                new AfterCasWrittenEvent(this, new AnnotationDocument("user", doc1), null));
+
+        assertThat(sut.getPartialResults(1l, 1l)).isEmpty();
+        assertThat(sut.getPartialResults(1l, 2l)).containsEntry("key", "value");
+    }
+
+    @Test
+    public void thatStateChangeInvalidatesAffectedDocument()
+    {
+        var partialResults = sut.getPartialResults(1l, 1l);
+        partialResults.put("key", "value");
+
+        sut.onAnnotationStateChange(new AnnotationStateChangeEvent(this,
+                new AnnotationDocument("user", doc1), IN_PROGRESS));
+
+        assertThat(sut.getPartialResults(1l, 1l)).isEmpty();
+        // The map obtained before is dropped but not cleared
+        assertThat(partialResults).containsEntry("key", "value");
+    }
+
+    @Test
+    public void thatLayerConfigurationChangeInvalidatesProject()
+    {
+        sut.getPartialResults(1l, 1l).put("key", "value");
+        sut.getPartialResults(2l, 3l).put("key", "value");
+
+        sut.beforeLayerConfigurationChanged(new LayerConfigurationChangedEvent(this, project));
+
+        assertThat(sut.getPartialResults(1l, 1l)).isEmpty();
+        assertThat(sut.getPartialResults(2l, 3l)).containsEntry("key", "value");
+    }
+}
@@ -19,10 +19,13 @@ package de.tudarmstadt.ukp.clarin.webanno.agreement.measures;
 
 import static java.lang.Double.NaN;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
+import java.util.List;
+
 import org.dkpro.statistics.agreement.coding.ICodingAnnotationItem;
 import org.dkpro.statistics.agreement.coding.ICodingAnnotationStudy;
 import org.junit.jupiter.api.BeforeEach;
@@ -164,4 +167,27 @@ public class CohenKappaAgreementMeasureTest
 
         assertThat(result.getAgreement()).isNaN();
     }
+
+    @Test
+    public void threeDocumentsStreamingTest() throws Exception
+    {
+        var expected = threeDocumentsPartialAgreement(sut, traits, false);
+        var actual = threeDocumentsPartialAgreement(sut, traits, true);
+
+        for (var pair : List.of(List.of("user1", "user2"), List.of("user1", "user3"),
+                List.of("user2", "user3"))) {
+            CodingAgreementResult expectedResult = expected.getStudy(pair.get(0), pair.get(1));
+            CodingAgreementResult actualResult = actual.getStudy(pair.get(0), pair.get(1));
+
+            assertThat(expectedResult.getAgreement()).isNotNaN();
+            assertThat(actualResult.getAgreement()) //
+                    .isCloseTo(expectedResult.getAgreement(), within(0.000001d));
+            assertThat(itemCategories(actualResult.getStudy())) //
+                    .isEqualTo(itemCategories(expectedResult.getStudy()));
+            assertThat(actualResult.getTotalSetCount()) //
+                    .isEqualTo(expectedResult.getTotalSetCount());
+            assertThat(actualResult.getSetsWithDifferences()) //
+                    .hasSameSizeAs(expectedResult.getSetsWithDifferences());
+        }
+    }
 }
@@ -178,4 +178,22 @@ public class KrippendorffAlphaNominalAgreementMeasureTest
 
         assertThat(result.getAgreement()).isNaN();
     }
+
+    @Test
+    public void twoDocumentsNoOverlapStreamingTest() throws Exception
+    {
+        CodingAgreementResult expected = twoDocumentsNoOverlap(sut, traits, false)
+                .getStudy("user1", "user2");
+
+        CodingAgreementResult result = twoDocumentsNoOverlap(sut, traits, true)
+                .getStudy("user1", "user2");
+
+        assertThat(result.getDiff()).isNull();
+        assertThat(result.getAgreement()).isNaN();
+        assertEquals(expected.getTotalSetCount(), result.getTotalSetCount());
+        assertEquals(expected.getRelevantSetCount(), result.getRelevantSetCount());
+        assertEquals(expected.getStudy().getItemCount(), result.getStudy().getItemCount());
+        assertEquals(expected.getIncompleteSetsByPosition().size(),
+                result.getIncompleteSetsByPosition().size());
+    }
 }
@@ -108,6 +108,16 @@ public class KrippendorffAlphaUnitizingAgreementMeasureTest
         assertEquals(-0.0714, result.getAgreement(), 0.001);
     }
 
+    @Test
+    public void twoDocumentsNoOverlapStreamingTest() throws Exception
+    {
+        var agreement = twoDocumentsNoOverlap(sut, traits, true);
+
+        var result = agreement.getStudy("user1", "user2");
+
+        assertEquals(-0.0714, result.getAgreement(), 0.001);
+    }
+
     @Test
     public void multiValueStringPartialAgreementTest() throws Exception
     {
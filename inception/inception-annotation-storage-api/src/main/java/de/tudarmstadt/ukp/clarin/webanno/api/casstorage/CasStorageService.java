@@ -177,6 +177,21 @@ public interface CasStorageService
      */
     void upgradeCas(SourceDocument aDocument, String aUser) throws IOException, CasSessionException;
 
+    /**
+     * Upgrades the given CAS in the storage unless it is already compatible with the current
+     * project type system. Unlike {@link #upgradeCas}, the CAS is only written back to the storage
+     * if an upgrade was actually performed.
+     * 
+     * @param aDocument
+     *            the document to upgrade the CAS for.
+     * @param aUser
+     *            the user to upgrade the CAS for.
+     * @return whether the CAS was upgraded. If the CAS does not exist, {@code false} is returned.
+     * @throws IOException
+     *             if the CAS could not be loaded, upgraded or saved.
+     */
+    boolean upgradeCasIfRequired(SourceDocument aDocument, String aUser) throws IOException;
+
     void forceActionOnCas(SourceDocument aDocument, String aUser, CasStorageServiceLoader aLoader,
             CasStorageServiceAction aAction, boolean aSave)
         throws IOException;
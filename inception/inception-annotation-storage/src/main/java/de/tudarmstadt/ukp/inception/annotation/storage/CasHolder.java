@@ -22,6 +22,7 @@ import static org.apache.commons.lang3.builder.ToStringStyle.SHORT_PREFIX_STYLE;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.CASImpl;
 
 /**
  * Object representing the attempt to load a CAS, either containing a CAS or an exception if the
@@ -29,6 +30,12 @@ import org.apache.uima.cas.CAS;
  */
 public class CasHolder
 {
+    /**
+     * Rough estimate of the heap memory taken up by a feature structure including its entries in
+     * the indexes.
+     */
+    private static final int FS_SIZE_ESTIMATE = 96;
+
     private final CasKey key;
 
     private CAS cas;
@@ -81,6 +88,27 @@ public class CasHolder
         cas = aCas;
     }
 
+    /**
+     * @return the estimated heap memory taken up by the CAS in bytes. The type system is not
+     *         included because CASes using the same type system share it.
+     */
+    public long getEstimatedSize()
+    {
+        if (cas == null) {
+            return 0;
+        }
+
+        var baseCas = ((CASImpl) cas.getLowLevelCAS()).getBaseCAS();
+        var size = (long) baseCas.getLastUsedFsId() * FS_SIZE_ESTIMATE;
+        for (var i = baseCas.getViewIterator(); i.hasNext();) {
+            var text = i.next().getDocumentText();
+            if (text != null) {
+                size += text.length() * (long) Character.BYTES;
+            }
+        }
+        return size;
+    }
+
     public Exception getException()
     {
         return exception;
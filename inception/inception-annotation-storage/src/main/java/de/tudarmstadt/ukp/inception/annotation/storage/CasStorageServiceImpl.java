@@ -30,6 +30,9 @@ import static de.tudarmstadt.ukp.inception.project.api.ProjectService.withProjec
 import static java.lang.System.currentTimeMillis;
 import static java.util.Collections.newSetFromMap;
 import static java.util.Collections.synchronizedSet;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.toSet;
 import static org.apache.commons.lang3.ArrayUtils.contains;
 
 import java.io.FileNotFoundException;
@@ -37,14 +40,21 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.pool2.PooledObject;
 import org.apache.commons.pool2.impl.DefaultEvictionPolicy;
 import org.apache.commons.pool2.impl.EvictionConfig;
@@ -53,11 +63,18 @@ import org.apache.commons.pool2.impl.GenericKeyedObjectPoolConfig;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.AbstractCas;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.impl.CASImpl;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.DataRetrievalFailureException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.session.SessionDestroyedEvent;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.util.ConcurrentReferenceHashMap;
@@ -93,7 +110,7 @@ import de.tudarmstadt.ukp.inception.schema.api.event.LayerConfigurationChangedEv
  * </p>
  */
 public class CasStorageServiceImpl
-    implements CasStorageService
+    implements CasStorageService, DisposableBean
 {
     private final static Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
@@ -113,6 +130,14 @@ public class CasStorageServiceImpl
 
     private final CasStorageDriver driver;
 
+    private static final int WRITE_BEHIND_THREADS = 2;
+    private static final int MAX_SUPERSEDED_TIMESTAMPS = 16;
+
+    private final ScheduledThreadPoolExecutor writeBehindExecutor;
+    private final Map<CasKey, PendingCasWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final Map<CasKey, WriteBehindTimestamps> writeBehindTimestamps = //
+            new ConcurrentHashMap<>();
+
     public static enum RepairAndUpgradeFlags
     {
         /**
@@ -175,7 +200,8 @@ public class CasStorageServiceImpl
         sharedAccessCache = Caffeine.newBuilder() //
                 .scheduler(Scheduler.systemScheduler()) //
                 .expireAfterAccess(casStorageProperties.getIdleCasEvictionDelay()) //
-                .maximumSize(casStorageProperties.getSharedCasCacheSize()) //
+                .maximumWeight(casStorageProperties.getSharedCasCacheMemory().toBytes()) //
+                .weigher(this::weighSharedCas) //
                 .recordStats() //
                 .evictionListener((key, value, cause) -> {
                     LOG.debug("Marked CAS for eviction from shared-access pool: {} [{}]", value,
@@ -187,8 +213,66 @@ public class CasStorageServiceImpl
             LOG.info("CAS doctor not available - unable to check/repair CASes");
         }
 
-        BaseLoggers.BOOT_LOG.info("CAS cache size: {} instances",
-                casStorageProperties.getSharedCasCacheSize());
+        BaseLoggers.BOOT_LOG.info("CAS cache size: {} instances / {} MB",
+                casStorageProperties.getSharedCasCacheSize(),
+                casStorageProperties.getSharedCasCacheMemory().toMegabytes());
+
+        if (casStorageProperties.isWriteBehind()) {
+            writeBehindExecutor = new ScheduledThreadPoolExecutor(WRITE_BEHIND_THREADS,
+                    new BasicThreadFactory.Builder() //
+                            .daemon(true) //
+                            .namingPattern("cas-write-behind-%d") //
+                            .build());
+            // Pending writes that are not due yet are flushed explicitly when shutting down
+            writeBehindExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            writeBehindExecutor.setRemoveOnCancelPolicy(true);
+
+            BaseLoggers.BOOT_LOG.info("CAS write-behind enabled (delay: {} / max delay: {})",
+                    casStorageProperties.getWriteBehindDelay(),
+                    casStorageProperties.getWriteBehindMaxDelay());
+        }
+        else {
+            writeBehindExecutor = null;
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (writeBehindExecutor == null) {
+            return;
+        }
+
+        // Wait for any flush that is currently in progress and then flush the remaining pending
+        // writes ourselves
+        writeBehindExecutor.shutdown();
+        try {
+            writeBehindExecutor.awaitTermination(1, MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (var key : new ArrayList<>(pendingWrites.keySet())) {
+            flushInBackground(key);
+        }
+
+        if (!pendingWrites.isEmpty()) {
+            LOG.error("Unable to flush {} pending CAS writes during shutdown",
+                    pendingWrites.size());
+        }
+    }
+
+    /**
+     * Weighs a CAS in the shared-access cache by its estimated memory footprint. Each CAS weighs at
+     * least its share of the memory limit given the maximum number of CASes, so the cache never
+     * holds more CASes than configured even if they are all small.
+     */
+    private int weighSharedCas(CasKey aKey, CasHolder aHolder)
+    {
+        var maxWeight = casStorageProperties.getSharedCasCacheMemory().toBytes();
+        var minWeight = maxWeight / Math.max(1, casStorageProperties.getSharedCasCacheSize());
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(minWeight, aHolder.getEstimatedSize()));
     }
 
     public long getSharedAccessCacheSize()
@@ -196,6 +280,32 @@ public class CasStorageServiceImpl
         return sharedAccessCache.estimatedSize();
     }
 
+    /**
+     * @return the weight of the CASes in the shared-access cache, i.e. their estimated memory
+     *         footprint in bytes.
+     */
+    public long getSharedAccessCacheWeight()
+    {
+        return sharedAccessCache.policy().eviction() //
+                .map(eviction -> eviction.weightedSize().orElse(0)) //
+                .orElse(0l);
+    }
+
+    /**
+     * @return the number of distinct type system instances used by the CASes in the shared-access
+     *         cache.
+     */
+    public long getSharedAccessCacheTypeSystemCount()
+    {
+        var typeSystems = newSetFromMap(new IdentityHashMap<TypeSystem, Boolean>());
+        for (var holder : sharedAccessCache.asMap().values()) {
+            if (holder.isCasSet()) {
+                typeSystems.add(holder.getCas().getTypeSystem());
+            }
+        }
+        return typeSystems.size();
+    }
+
     public CacheStats getSharedAccessCacheStats()
     {
         return sharedAccessCache.stats();
@@ -239,10 +349,18 @@ public class CasStorageServiceImpl
                             + "] on document [" + mCas.get().getSourceDocumentId() + "]");
                 }
 
-                realWriteCas(aDocument, aUserName, aCas);
+                if (writeBehindExecutor != null
+                        && session.hasExclusiveAccess(aDocument, aUserName)) {
+                    queueWrite(aDocument, aUserName, aCas);
+                }
+                else {
+                    realWriteCas(aDocument, aUserName, aCas);
+                }
             }
             else {
                 try (var access = new WithExclusiveAccess(aDocument, aUserName)) {
+                    // A pending write would otherwise overwrite the CAS we are writing now
+                    discardPendingWrite(access.getKey());
                     realWriteCas(aDocument, aUserName, aCas);
 
                     // If the CAS which was written does not match the CAS in the session for the
@@ -420,10 +538,11 @@ public class CasStorageServiceImpl
                             (key) -> CasHolder.of(key,
                                     () -> getRealCas(readOrCreateUnmanagedCas(aDocument, aUsername,
                                             aSupplier, aUpgradeMode))));
-                    var size = getSharedAccessCacheSize();
-                    var max = casStorageProperties.getSharedCasCacheSize();
-                    if (size > (max * 0.9)) {
-                        LOG.warn("Shared access CAS cache is >= 90% full: {} / {}", size, max);
+                    var weight = getSharedAccessCacheWeight();
+                    var max = casStorageProperties.getSharedCasCacheMemory().toBytes();
+                    if (weight > (max * 0.9)) {
+                        LOG.warn("Shared access CAS cache is >= 90% full: {} / {} bytes "
+                                + "({} instances)", weight, max, getSharedAccessCacheSize());
                     }
                 }
             }
@@ -442,8 +561,10 @@ public class CasStorageServiceImpl
                 // Ensure that the CAS is not being re-written and temporarily unavailable while we
                 // check for its existence
                 try (var access = new WithExclusiveAccess(aDocument, aUsername)) {
-                    casHolder = CasHolder.of(new CasKey(aDocument, aUsername),
-                            () -> driver.readCas(aDocument, aUsername));
+                    casHolder = CasHolder.of(access.getKey(), () -> {
+                        flushPendingWrite(access.getKey());
+                        return driver.readCas(aDocument, aUsername);
+                    });
                 }
             }
             else {
@@ -583,6 +704,9 @@ public class CasStorageServiceImpl
             }
         }
 
+        // If the CAS is still waiting to be written, it must hit the disk before we read it
+        flushPendingWrite(new CasKey(aDocument, aUsername));
+
         // If the CAS exists on disk already, load it from there
         if (driver.existsCas(aDocument, aUsername)) {
             cas = driver.readCas(aDocument, aUsername);
@@ -635,12 +759,14 @@ public class CasStorageServiceImpl
     {
         try (var logCtx = withProjectLogger(aDocument.getProject());
                 var access = new WithExclusiveAccess(aDocument, aUsername)) {
+            var key = access.getKey();
+            discardPendingWrite(key);
+
             var fileWasDeleted = driver.deleteCas(aDocument, aUsername);
 
             // Drop the CAS from the shared CAS it doesn't ghost around. Also set the deleted flag
             // in the holder in case anybody might still be holding on to the holder and needs to
             // know that CAS was deleted.
-            var key = new CasKey(aDocument, aUsername);
             var sharedCasHolder = sharedAccessCache.getIfPresent(key);
             if (sharedCasHolder != null) {
                 sharedCasHolder.setDeleted(true);
@@ -775,6 +901,7 @@ public class CasStorageServiceImpl
             try (var access = new WithExclusiveAccess(aDocument, aUser)) {
                 session.add(aDocument.getId(), aUser, EXCLUSIVE_WRITE_ACCESS, access.getHolder());
 
+                flushPendingWrite(access.getKey());
                 driver.exportCas(aDocument, aUser, aStream);
             }
             finally {
@@ -799,6 +926,7 @@ public class CasStorageServiceImpl
             try (var access = new WithExclusiveAccess(aDocument, aUser)) {
                 session.add(aDocument.getId(), aUser, EXCLUSIVE_WRITE_ACCESS, access.getHolder());
 
+                discardPendingWrite(access.getKey());
                 driver.importCas(aDocument, aUser, aStream);
             }
             finally {
@@ -825,6 +953,55 @@ public class CasStorageServiceImpl
                 true);
     }
 
+    @Override
+    public boolean upgradeCasIfRequired(SourceDocument aDocument, String aUser) throws IOException
+    {
+        Validate.notNull(aDocument, "Source document must be specified");
+        Validate.notBlank(aUser, "User must be specified");
+
+        if (schemaService == null) {
+            return false;
+        }
+
+        try (var session = CasStorageSession.openNested(true)) {
+            try (var access = new WithExclusiveAccess(aDocument, aUser)) {
+                session.add(aDocument.getId(), aUser, EXCLUSIVE_WRITE_ACCESS, access.getHolder());
+
+                flushPendingWrite(access.getKey());
+                if (!driver.existsCas(aDocument, aUser)) {
+                    return false;
+                }
+
+                // The CAS must be known to the session before the schema service checks that it
+                // may write to it
+                var cas = driver.readCas(aDocument, aUser);
+                access.setCas(cas);
+                if (!schemaService.upgradeCasIfRequired(cas, aDocument)) {
+                    return false;
+                }
+
+                realWriteCas(aDocument, aUser, cas);
+                sharedAccessCache.invalidate(access.getKey());
+
+                try (var logCtx = withProjectLogger(aDocument.getProject())) {
+                    LOG.info("Upgraded CAS of user [{}] for document {} in project {}", aUser,
+                            aDocument, aDocument.getProject());
+                }
+
+                return true;
+            }
+            finally {
+                session.remove(aDocument.getId(), aUser);
+            }
+        }
+        catch (IOException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
     @Override
     public void forceActionOnCas(SourceDocument aDocument, String aUser,
             CasStorageServiceLoader aLoader, CasStorageServiceAction aAction, boolean aSave)
@@ -836,6 +1013,7 @@ public class CasStorageServiceImpl
             try (var access = new WithExclusiveAccess(aDocument, aUser)) {
                 session.add(aDocument.getId(), aUser, EXCLUSIVE_WRITE_ACCESS, access.getHolder());
 
+                flushPendingWrite(access.getKey());
                 var cas = aLoader.load(aDocument, aUser);
                 access.setCas(cas);
 
@@ -866,7 +1044,8 @@ public class CasStorageServiceImpl
         // Ensure that the CAS is not being re-written and temporarily unavailable while we check
         // for its existence
         try (var access = new WithExclusiveAccess(aDocument, aUser)) {
-            return driver.existsCas(aDocument, aUser);
+            return pendingWrites.containsKey(access.getKey())
+                    || driver.existsCas(aDocument, aUser);
         }
         catch (IOException e) {
             throw e;
@@ -1033,7 +1212,24 @@ public class CasStorageServiceImpl
         // Ensure that the CAS is not being re-written and temporarily unavailable while we check
         // for its timestamp
         try (var access = new WithExclusiveAccess(aDocument, aUser)) {
-            return driver.verifyCasTimestamp(aDocument, aUser, aExpectedTimeStamp, aContextAction);
+            try {
+                return driver.verifyCasTimestamp(aDocument, aUser, aExpectedTimeStamp,
+                        aContextAction);
+            }
+            catch (ConcurentCasModificationException e) {
+                // The caller may have obtained its timestamp while its own changes were still
+                // pending. If these changes have been flushed since and nobody else has written
+                // the CAS, then the caller is still up-to-date.
+                var timestamps = writeBehindTimestamps.get(access.getKey());
+                var actualTimestamp = driver.getCasMetadata(aDocument, aUser)
+                        .map(CasStorageMetadata::getTimestamp);
+                if (timestamps != null && actualTimestamp.isPresent()
+                        && timestamps.isSuperseded(aExpectedTimeStamp, actualTimestamp.get())) {
+                    return actualTimestamp;
+                }
+
+                throw e;
+            }
         }
         catch (IOException e) {
             throw e;
@@ -1103,6 +1299,180 @@ public class CasStorageServiceImpl
         }
 
         driver.writeCas(aDocument, aUserName, aCas);
+
+        writeBehindTimestamps.remove(new CasKey(aDocument, aUserName));
+    }
+
+    /**
+     * Defers writing the given CAS. The caller must have exclusive access to the CAS. Writes of
+     * the same CAS instance are coalesced until the write is flushed after the configured delay.
+     * Writes of another CAS instance to the same document/user flush the pending write first.
+     */
+    private void queueWrite(SourceDocument aDocument, String aUserName, CAS aCas)
+        throws IOException
+    {
+        var key = new CasKey(aDocument, aUserName);
+
+        var pending = pendingWrites.get(key);
+        if (pending != null && pending.getCas() != aCas) {
+            flushPendingWrite(key);
+            pending = null;
+        }
+
+        if (pending == null) {
+            if (pendingWrites.size() >= casStorageProperties.getWriteBehindMaxPending()) {
+                LOG.debug("Too many pending CAS writes - writing [{}]@{} immediately", aUserName,
+                        aDocument);
+                realWriteCas(aDocument, aUserName, aCas);
+                return;
+            }
+
+            pending = new PendingCasWrite(aDocument, aUserName, aCas, getCurrentPrincipal());
+            pendingWrites.put(key, pending);
+        }
+        else {
+            pending.coalesce();
+        }
+
+        // Postpone the flush as long as writes keep coming in, but not beyond the max delay
+        var delay = casStorageProperties.getWriteBehindDelay().toMillis();
+        var deadline = pending.getQueuedTime()
+                + casStorageProperties.getWriteBehindMaxDelay().toMillis();
+        delay = Math.max(0, Math.min(delay, deadline - currentTimeMillis()));
+        pending.schedule(writeBehindExecutor.schedule(() -> flushInBackground(key), delay,
+                MILLISECONDS));
+
+        LOG.debug("Deferred writing annotations for [{}]@{} by {}ms ({} writes coalesced)",
+                aUserName, aDocument, delay, pending.getCoalescedWrites());
+    }
+
+    /**
+     * Writes the pending write for the given key (if any) to storage. The caller must have
+     * exclusive access to the CAS.
+     */
+    private void flushPendingWrite(CasKey aKey) throws IOException
+    {
+        var pending = pendingWrites.remove(aKey);
+        if (pending == null) {
+            return;
+        }
+
+        pending.cancel();
+
+        var document = pending.getDocument();
+        var user = pending.getUser();
+        var timestamps = writeBehindTimestamps.get(aKey);
+        var previousTimestamp = driver.getCasMetadata(document, user)
+                .map(CasStorageMetadata::getTimestamp);
+
+        try {
+            realWriteCas(document, user, pending.getCas());
+        }
+        catch (IOException | RuntimeException e) {
+            // Keep the write around unless it has been superseded in the meantime
+            pendingWrites.putIfAbsent(aKey, pending);
+            throw e;
+        }
+
+        // Remember the timestamp the annotation session may have seen while the write was pending
+        // so that verifyCasTimestamp does not mistake our own write for a concurrent modification
+        var currentTimestamp = driver.getCasMetadata(document, user)
+                .map(CasStorageMetadata::getTimestamp);
+        if (previousTimestamp.isPresent() && currentTimestamp.isPresent()) {
+            var updated = timestamps != null ? timestamps : new WriteBehindTimestamps();
+            updated.supersede(previousTimestamp.get(), currentTimestamp.get());
+            writeBehindTimestamps.put(aKey, updated);
+        }
+
+        LOG.debug("Flushed deferred write of annotations for [{}]@{} ({} writes coalesced)", user,
+                document, pending.getCoalescedWrites());
+    }
+
+    private void flushInBackground(CasKey aKey)
+    {
+        var pending = pendingWrites.get(aKey);
+        if (pending == null) {
+            return;
+        }
+
+        try (var session = CasStorageSession.open()) {
+            try (var access = new WithExclusiveAccess(pending.getDocument(), pending.getUser())) {
+                flushPendingWrite(aKey);
+            }
+        }
+        catch (Exception e) {
+            LOG.error("Unable to flush deferred write of annotations for [{}]@{}",
+                    pending.getUser(), pending.getDocument(), e);
+
+            // Try again later unless the write has been dropped or superseded
+            if (pendingWrites.get(aKey) == pending && !writeBehindExecutor.isShutdown()) {
+                pending.schedule(writeBehindExecutor.schedule(() -> flushInBackground(aKey),
+                        casStorageProperties.getWriteBehindMaxDelay().toMillis(), MILLISECONDS));
+            }
+        }
+    }
+
+    private void discardPendingWrite(CasKey aKey)
+    {
+        var pending = pendingWrites.remove(aKey);
+        if (pending != null) {
+            pending.cancel();
+            LOG.debug("Discarded deferred write of annotations for [{}]@{}", pending.getUser(),
+                    pending.getDocument());
+        }
+    }
+
+    private static String getCurrentPrincipal()
+    {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : null;
+    }
+
+    /**
+     * Flushes the pending writes of the users whose session ended, so their work does not depend
+     * on the server staying up until the write-behind delay has expired.
+     */
+    @EventListener
+    public void onSessionDestroyed(SessionDestroyedEvent aEvent)
+    {
+        if (writeBehindExecutor == null || pendingWrites.isEmpty()) {
+            return;
+        }
+
+        var principals = aEvent.getSecurityContexts().stream() //
+                .map(SecurityContext::getAuthentication) //
+                .filter(Objects::nonNull) //
+                .map(Authentication::getName) //
+                .collect(toSet());
+
+        pendingWrites.forEach((key, pending) -> {
+            if (principals.contains(pending.getOwner())) {
+                writeBehindExecutor.execute(() -> flushInBackground(key));
+            }
+        });
+    }
+
+    /**
+     * Timestamps of a CAS which have been superseded by write-behind flushes.
+     */
+    private static class WriteBehindTimestamps
+    {
+        private final Set<Long> superseded = new LinkedHashSet<>();
+        private long current;
+
+        public synchronized void supersede(long aPrevious, long aCurrent)
+        {
+            superseded.add(aPrevious);
+            if (superseded.size() > MAX_SUPERSEDED_TIMESTAMPS) {
+                superseded.remove(superseded.iterator().next());
+            }
+            current = aCurrent;
+        }
+
+        public synchronized boolean isSuperseded(long aExpected, long aActual)
+        {
+            return aActual == current && superseded.contains(aExpected);
+        }
     }
 
     public static class LoggingDefaultEvictionPolicy
@@ -124,6 +124,36 @@ public class CasStorageServiceSharedAccessCacheAdapter
             return 0;
         }
 
-        return getActiveCount() / max;
+        return (double) getActiveCount() / max;
+    }
+
+    @ManagedAttribute
+    public long getActiveWeight()
+    {
+        return casStorageService.getSharedAccessCacheWeight();
+    }
+
+    @ManagedAttribute
+    public long getMaxWeight()
+    {
+        return casStorageProperties.getSharedCasCacheMemory().toBytes();
+    }
+
+    @ManagedAttribute
+    public double getWeightUtilizationRate()
+    {
+        long max = getMaxWeight();
+
+        if (max == 0) {
+            return 0;
+        }
+
+        return (double) getActiveWeight() / max;
+    }
+
+    @ManagedAttribute
+    public long getTypeSystemCount()
+    {
+        return casStorageService.getSharedAccessCacheTypeSystemCount();
     }
 }
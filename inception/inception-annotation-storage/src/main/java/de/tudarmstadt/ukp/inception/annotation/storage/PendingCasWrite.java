@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage;
+
+import static java.lang.System.currentTimeMillis;
+
+import java.util.concurrent.ScheduledFuture;
+
+import org.apache.uima.cas.CAS;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+/**
+ * A CAS write which has been deferred by the write-behind mode of the
+ * {@link CasStorageServiceImpl}. Subsequent writes of the same CAS are coalesced into the pending
+ * write until it is flushed.
+ */
+class PendingCasWrite
+{
+    private final SourceDocument document;
+    private final String user;
+    private final CAS cas;
+    private final String owner;
+    private final long queuedTime;
+
+    private int coalescedWrites;
+    private ScheduledFuture<?> flush;
+
+    public PendingCasWrite(SourceDocument aDocument, String aUser, CAS aCas, String aOwner)
+    {
+        document = aDocument;
+        user = aUser;
+        cas = aCas;
+        owner = aOwner;
+        queuedTime = currentTimeMillis();
+    }
+
+    public SourceDocument getDocument()
+    {
+        return document;
+    }
+
+    public String getUser()
+    {
+        return user;
+    }
+
+    public CAS getCas()
+    {
+        return cas;
+    }
+
+    /**
+     * @return the name of the principal which queued the write or {@code null} if the write was
+     *         not queued in the context of a user session.
+     */
+    public String getOwner()
+    {
+        return owner;
+    }
+
+    /**
+     * @return the time at which the first of the coalesced writes was queued.
+     */
+    public long getQueuedTime()
+    {
+        return queuedTime;
+    }
+
+    public void coalesce()
+    {
+        coalescedWrites++;
+    }
+
+    public int getCoalescedWrites()
+    {
+        return coalescedWrites;
+    }
+
+    public synchronized void schedule(ScheduledFuture<?> aFlush)
+    {
+        cancel();
+        flush = aFlush;
+    }
+
+    public synchronized void cancel()
+    {
+        if (flush != null) {
+            flush.cancel(false);
+            flush = null;
+        }
+    }
+}
@@ -19,6 +19,8 @@ package de.tudarmstadt.ukp.inception.annotation.storage.config;
 
 import java.time.Duration;
 
+import org.springframework.util.unit.DataSize;
+
 public interface CasStorageCacheProperties
 {
     /**
@@ -44,4 +46,33 @@ public interface CasStorageCacheProperties
      * @return number of CAS instances that should be kept in memory for shared-read-only access.
      */
     long getSharedCasCacheSize();
+
+    /**
+     * @return estimated amount of memory that the CAS instances kept in memory for
+     *         shared-read-only access may take up.
+     */
+    DataSize getSharedCasCacheMemory();
+
+    /**
+     * @return whether writes of CASes which are held in exclusive access by an annotation session
+     *         are deferred and coalesced instead of being written to storage immediately.
+     */
+    boolean isWriteBehind();
+
+    /**
+     * @return time a deferred write waits for further writes of the same CAS before it is flushed
+     *         to storage.
+     */
+    Duration getWriteBehindDelay();
+
+    /**
+     * @return maximum time a deferred write may be postponed by further writes of the same CAS.
+     */
+    Duration getWriteBehindMaxDelay();
+
+    /**
+     * @return maximum number of deferred writes. If this number is reached, further writes are
+     *         performed immediately.
+     */
+    int getWriteBehindMaxPending();
 }
@@ -20,6 +20,7 @@ package de.tudarmstadt.ukp.inception.annotation.storage.config;
 import java.time.Duration;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
 
 /**
  * <p>
@@ -34,6 +35,11 @@ public class CasStorageCachePropertiesImpl
     private Duration minIdleCasTime = Duration.ofMinutes(5);
     private Duration casBorrowWaitTimeout = Duration.ofMinutes(3);
     private long sharedCasCacheSize = getDefaultCasCacheSize();
+    private DataSize sharedCasCacheMemory = getDefaultCasCacheMemory();
+    private boolean writeBehind = false;
+    private Duration writeBehindDelay = Duration.ofSeconds(2);
+    private Duration writeBehindMaxDelay = Duration.ofSeconds(10);
+    private int writeBehindMaxPending = 1000;
 
     @Override
     public Duration getIdleCasEvictionDelay()
@@ -68,6 +74,17 @@ public class CasStorageCachePropertiesImpl
         sharedCasCacheSize = aSharedCasCacheSize;
     }
 
+    @Override
+    public DataSize getSharedCasCacheMemory()
+    {
+        return sharedCasCacheMemory;
+    }
+
+    public void setSharedCasCacheMemory(DataSize aSharedCasCacheMemory)
+    {
+        sharedCasCacheMemory = aSharedCasCacheMemory;
+    }
+
     @Override
     public Duration getMinIdleCasTime()
     {
@@ -79,6 +96,50 @@ public class CasStorageCachePropertiesImpl
         minIdleCasTime = aMinIdleCasTime;
     }
 
+    @Override
+    public boolean isWriteBehind()
+    {
+        return writeBehind;
+    }
+
+    public void setWriteBehind(boolean aWriteBehind)
+    {
+        writeBehind = aWriteBehind;
+    }
+
+    @Override
+    public Duration getWriteBehindDelay()
+    {
+        return writeBehindDelay;
+    }
+
+    public void setWriteBehindDelay(Duration aWriteBehindDelay)
+    {
+        writeBehindDelay = aWriteBehindDelay;
+    }
+
+    @Override
+    public Duration getWriteBehindMaxDelay()
+    {
+        return writeBehindMaxDelay;
+    }
+
+    public void setWriteBehindMaxDelay(Duration aWriteBehindMaxDelay)
+    {
+        writeBehindMaxDelay = aWriteBehindMaxDelay;
+    }
+
+    @Override
+    public int getWriteBehindMaxPending()
+    {
+        return writeBehindMaxPending;
+    }
+
+    public void setWriteBehindMaxPending(int aWriteBehindMaxPending)
+    {
+        writeBehindMaxPending = aWriteBehindMaxPending;
+    }
+
     private static final long MB = 1024 * 1024;
 
     public static long getDefaultCasCacheSize()
@@ -107,4 +168,10 @@ public class CasStorageCachePropertiesImpl
 
         return 5000;
     }
+
+    public static DataSize getDefaultCasCacheMemory()
+    {
+        // Leave the bulk of the heap to the exclusive-access pool and the rest of the application
+        return DataSize.ofBytes(Runtime.getRuntime().maxMemory() / 4);
+    }
 }
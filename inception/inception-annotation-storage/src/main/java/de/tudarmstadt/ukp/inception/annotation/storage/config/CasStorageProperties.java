@@ -28,4 +28,10 @@ public interface CasStorageProperties
     boolean isCompressedCasSerialization();
 
     Duration getFileSystemTimestampAccuracy();
+
+    boolean isDeltaCasSerialization();
+
+    double getDeltaCheckpointRatio();
+
+    Duration getDeltaCheckpointInterval();
 }
@@ -37,6 +37,9 @@ public class CasStoragePropertiesImpl
     private boolean paranoidCasSerialization = false;
     private boolean traceAccess = false;
     private Duration fileSystemTimestampAccuracy = Duration.ofMillis(0);
+    private boolean deltaCasSerialization = false;
+    private double deltaCheckpointRatio = 0.5;
+    private Duration deltaCheckpointInterval = Duration.ofHours(1);
 
     @ManagedAttribute
     public void setTraceAccess(boolean aTraceAccess)
@@ -87,4 +90,43 @@ public class CasStoragePropertiesImpl
     {
         return fileSystemTimestampAccuracy;
     }
+
+    @ManagedAttribute
+    public void setDeltaCasSerialization(boolean aDeltaCasSerialization)
+    {
+        deltaCasSerialization = aDeltaCasSerialization;
+    }
+
+    @Override
+    @ManagedAttribute
+    public boolean isDeltaCasSerialization()
+    {
+        return deltaCasSerialization;
+    }
+
+    @ManagedAttribute
+    public void setDeltaCheckpointRatio(double aDeltaCheckpointRatio)
+    {
+        deltaCheckpointRatio = aDeltaCheckpointRatio;
+    }
+
+    @Override
+    @ManagedAttribute
+    public double getDeltaCheckpointRatio()
+    {
+        return deltaCheckpointRatio;
+    }
+
+    @ManagedAttribute
+    public void setDeltaCheckpointInterval(Duration aDeltaCheckpointInterval)
+    {
+        deltaCheckpointInterval = aDeltaCheckpointInterval;
+    }
+
+    @Override
+    @ManagedAttribute
+    public Duration getDeltaCheckpointInterval()
+    {
+        return deltaCheckpointInterval;
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+/**
+ * Settings for the segment-based CAS storage driver ({@code cas-storage.driver=segment}).
+ * <p>
+ * This class is exposed as a Spring Component via {@link CasStorageServiceAutoConfiguration}.
+ * </p>
+ */
+@ConfigurationProperties("cas-storage.segment")
+public class CasStorageSegmentProperties
+{
+    private DataSize maxSegmentSize = DataSize.ofMegabytes(256);
+    private double compactionThreshold = 0.5d;
+    private Duration compactionInterval = Duration.ofMinutes(10);
+
+    public DataSize getMaxSegmentSize()
+    {
+        return maxSegmentSize;
+    }
+
+    public void setMaxSegmentSize(DataSize aMaxSegmentSize)
+    {
+        maxSegmentSize = aMaxSegmentSize;
+    }
+
+    public double getCompactionThreshold()
+    {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(double aCompactionThreshold)
+    {
+        compactionThreshold = aCompactionThreshold;
+    }
+
+    public Duration getCompactionInterval()
+    {
+        return compactionInterval;
+    }
+
+    public void setCompactionInterval(Duration aCompactionInterval)
+    {
+        compactionInterval = aCompactionInterval;
+    }
+}
@@ -18,6 +18,7 @@
 package de.tudarmstadt.ukp.inception.annotation.storage.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -28,12 +29,14 @@ import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageServiceImpl;
 import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageServiceSharedAccessCacheAdapter;
 import de.tudarmstadt.ukp.inception.annotation.storage.driver.CasStorageDriver;
 import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.FileSystemCasStorageDriver;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.segment.SegmentCasStorageDriver;
 import de.tudarmstadt.ukp.inception.documents.api.RepositoryProperties;
 import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
 
 @Configuration
 @EnableConfigurationProperties({ CasStorageCachePropertiesImpl.class,
-        CasStorageBackupProperties.class, CasStoragePropertiesImpl.class })
+        CasStorageBackupProperties.class, CasStoragePropertiesImpl.class,
+        CasStorageSegmentProperties.class })
 public class CasStorageServiceAutoConfiguration
 {
     @Bean(CasStorageService.SERVICE_NAME)
@@ -47,6 +50,7 @@ public class CasStorageServiceAutoConfiguration
     }
 
     @Bean
+    @ConditionalOnProperty(prefix = "cas-storage", name = "driver", havingValue = "filesystem", matchIfMissing = true)
     public CasStorageDriver fileSystemCasStorageDriver(RepositoryProperties aRepositoryProperties,
             CasStorageBackupProperties aBackupProperties,
             CasStorageProperties aCasStorageProperties)
@@ -55,6 +59,16 @@ public class CasStorageServiceAutoConfiguration
                 aCasStorageProperties);
     }
 
+    @Bean
+    @ConditionalOnProperty(prefix = "cas-storage", name = "driver", havingValue = "segment")
+    public CasStorageDriver segmentCasStorageDriver(RepositoryProperties aRepositoryProperties,
+            CasStorageProperties aCasStorageProperties,
+            CasStorageSegmentProperties aSegmentProperties)
+    {
+        return new SegmentCasStorageDriver(aRepositoryProperties, aCasStorageProperties,
+                aSegmentProperties);
+    }
+
     @Bean
     public CasStorageServiceSharedAccessCacheAdapter CasStorageServiceSharedAccessCacheAdapter(
             CasStorageServiceImpl aCasStorageService,
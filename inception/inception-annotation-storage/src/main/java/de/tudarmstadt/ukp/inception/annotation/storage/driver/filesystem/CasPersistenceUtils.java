@@ -30,6 +30,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputFilter;
@@ -40,10 +41,12 @@ import java.lang.invoke.MethodHandles;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Marker;
 import org.apache.uima.cas.impl.CASCompleteSerializer;
 import org.apache.uima.cas.impl.CASImpl;
 import org.apache.uima.cas.impl.CASMgrSerializer;
 import org.apache.uima.cas.impl.CASSerializer;
+import org.apache.uima.cas.impl.Serialization;
 import org.apache.uima.util.CasIOUtils;
 import org.apache.uima.util.TypeSystemUtil;
 import org.slf4j.Logger;
@@ -121,6 +124,53 @@ public final class CasPersistenceUtils
         }
     }
 
+    /**
+     * Writes the CAS to the given stream in the same format as it is stored by the
+     * {@link FileSystemCasStorageDriver}. The stream is not closed.
+     */
+    public static void exportSerializedCas(CAS aCas, OutputStream aStream, boolean aCompressed)
+        throws IOException
+    {
+        var os = new FilterOutputStream(aStream)
+        {
+            @Override
+            public void write(byte[] aBytes, int aOffset, int aLength) throws IOException
+            {
+                out.write(aBytes, aOffset, aLength);
+            }
+
+            @Override
+            public void close() throws IOException
+            {
+                flush();
+            }
+        };
+
+        var realCas = getRealCas(aCas);
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (((CASImpl) realCas).getBaseCAS()) {
+            if (aCompressed) {
+                writeSnappyCompressed(os, realCas);
+            }
+            else {
+                write(os, realCas);
+            }
+        }
+    }
+
+    /**
+     * Reads a CAS from a stream in the format stored by the {@link FileSystemCasStorageDriver},
+     * i.e. compressed or not compressed.
+     */
+    public static void importSerializedCas(CAS aCas, InputStream aStream) throws IOException
+    {
+        var realCas = getRealCas(aCas);
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (((CASImpl) realCas).getBaseCAS()) {
+            readSerializedCas(realCas, maybeUncompress(new BufferedInputStream(aStream)));
+        }
+    }
+
     public static byte[] writeToByteArray(CAS aCas) throws IOException
     {
         try (var bos = new ByteArrayOutputStream()) {
@@ -137,6 +187,46 @@ public final class CasPersistenceUtils
         }
     }
 
+    /**
+     * Serializes the changes made to the CAS since the given marker has been created in the binary
+     * delta format.
+     */
+    static byte[] writeDeltaToByteArray(CAS aCas, Marker aMarker) throws IOException
+    {
+        var realCas = getRealCas(aCas);
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (((CASImpl) realCas).getBaseCAS()) {
+            try (var bos = new ByteArrayOutputStream()) {
+                Serialization.serializeCAS(realCas, bos, aMarker);
+                return bos.toByteArray();
+            }
+            catch (IOException e) {
+                throw e;
+            }
+            catch (Exception e) {
+                throw new IOException("Unable to serialize CAS delta", e);
+            }
+        }
+    }
+
+    /**
+     * Applies changes serialized using {@link #writeDeltaToByteArray} to the CAS. The CAS must be
+     * in the state it was in when the marker of the delta was created.
+     */
+    static void readDelta(CAS aCas, InputStream aStream) throws IOException
+    {
+        var realCas = getRealCas(aCas);
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (((CASImpl) realCas).getBaseCAS()) {
+            try {
+                Serialization.deserializeCAS(realCas, aStream);
+            }
+            catch (Exception e) {
+                throw new IOException("Unable to apply CAS delta", e);
+            }
+        }
+    }
+
     private static void write(OutputStream aOut, CAS aCas) throws IOException, FileNotFoundException
     {
         var serializer = serializeCASComplete((CASImpl) getRealCas(aCas));
@@ -0,0 +1,272 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.uima.cas.CAS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Journal of the changes made to an annotation file when delta CAS serialization is enabled. The
+ * journal is stored next to the annotation file. It starts with a header identifying the version
+ * of the annotation file it applies to (size and timestamp). If the annotation file is replaced,
+ * e.g. because the journal has been folded into it, a left-over journal is no longer considered.
+ * <p>
+ * The journal contains one entry per load session, i.e. the changes made to the CAS since it has
+ * been loaded from the annotation file and the journal. When the CAS is saved again during the
+ * same session, the entry of the session is replaced. The journal file itself is always replaced
+ * atomically, so it never contains partially written entries.
+ */
+public final class DeltaCasJournal
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String DELTA_EXTENSION = ".delta";
+    public static final String TEMP_EXTENSION = ".tmp";
+
+    private static final int HEADER_MAGIC = 0x49434a31; // ICJ1
+    private static final int ENTRY_MAGIC = 0x49434a45; // ICJE
+    private static final int HEADER_SIZE = Integer.BYTES + 2 * Long.BYTES;
+    private static final int ENTRY_HEADER_SIZE = 3 * Integer.BYTES;
+
+    private DeltaCasJournal()
+    {
+        // No instances
+    }
+
+    public static File getJournalFile(File aCasFile)
+    {
+        return new File(aCasFile.getPath() + DELTA_EXTENSION);
+    }
+
+    /**
+     * @param aCasFile
+     *            the annotation file.
+     * @return whether there is a journal which applies to the current version of the annotation
+     *         file.
+     */
+    public static boolean exists(File aCasFile) throws IOException
+    {
+        var journal = getJournalFile(aCasFile);
+        if (!journal.exists()) {
+            return false;
+        }
+
+        try (var channel = FileChannel.open(journal.toPath(), READ)) {
+            var header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // Read until the header is complete or the end of the file is reached
+            }
+
+            if (header.hasRemaining()) {
+                return false;
+            }
+
+            header.flip();
+            return matchesCasFile(header, aCasFile);
+        }
+        catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param aCasFile
+     *            the annotation file.
+     * @return the timestamp of the annotation file including the changes from the journal.
+     */
+    public static long getTimestamp(File aCasFile) throws IOException
+    {
+        var timestamp = aCasFile.lastModified();
+        if (exists(aCasFile)) {
+            timestamp = Math.max(timestamp, getJournalFile(aCasFile).lastModified());
+        }
+        return timestamp;
+    }
+
+    /**
+     * @param aCasFile
+     *            the annotation file.
+     * @return the size of the annotation file including the journal.
+     */
+    public static long getSize(File aCasFile) throws IOException
+    {
+        var size = aCasFile.length();
+        if (exists(aCasFile)) {
+            size += getJournalFile(aCasFile).length();
+        }
+        return size;
+    }
+
+    /**
+     * Applies the changes from the journal to the given CAS. The CAS must just have been loaded
+     * from the annotation file.
+     *
+     * @param aCas
+     *            the CAS loaded from the annotation file.
+     * @param aCasFile
+     *            the annotation file.
+     * @return the length of the journal or {@code 0} if there is no journal for the current version
+     *         of the annotation file.
+     */
+    public static long replay(CAS aCas, File aCasFile) throws IOException
+    {
+        var journal = getJournalFile(aCasFile);
+
+        byte[] data;
+        try {
+            data = Files.readAllBytes(journal.toPath());
+        }
+        catch (NoSuchFileException e) {
+            return 0;
+        }
+
+        var buffer = ByteBuffer.wrap(data);
+        if (data.length < HEADER_SIZE || !matchesCasFile(buffer, aCasFile)) {
+            LOG.warn("Ignoring journal [{}] which does not apply to the current version of the "
+                    + "annotation file", journal);
+            return 0;
+        }
+
+        while (buffer.hasRemaining()) {
+            var offset = buffer.position();
+            if (buffer.remaining() < ENTRY_HEADER_SIZE || buffer.getInt() != ENTRY_MAGIC) {
+                throw new IOException(
+                        "Journal [" + journal + "] is corrupt at offset " + offset);
+            }
+
+            var length = buffer.getInt();
+            var checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()
+                    || checksum(data, buffer.position(), length) != checksum) {
+                throw new IOException(
+                        "Journal [" + journal + "] is corrupt at offset " + offset);
+            }
+
+            CasPersistenceUtils.readDelta(aCas,
+                    new ByteArrayInputStream(data, buffer.position(), length));
+            buffer.position(buffer.position() + length);
+        }
+
+        return data.length;
+    }
+
+    /**
+     * @param aKeep
+     *            the length of the part of the current journal to keep.
+     * @param aDeltaLength
+     *            the length of the delta to add.
+     * @return the length of the journal after calling {@link #write}.
+     */
+    public static long getLengthAfterWrite(long aKeep, int aDeltaLength)
+    {
+        return (aKeep > 0 ? aKeep : HEADER_SIZE) + ENTRY_HEADER_SIZE + aDeltaLength;
+    }
+
+    /**
+     * Replaces the journal with a new version consisting of the first {@code aKeep} bytes of the
+     * current journal (i.e. the entries of previous sessions) followed by the given delta.
+     *
+     * @param aCasFile
+     *            the annotation file.
+     * @param aCasFileLength
+     *            the length of the annotation file the journal applies to.
+     * @param aCasFileTimestamp
+     *            the timestamp of the annotation file the journal applies to.
+     * @param aKeep
+     *            the length of the part of the current journal to keep or {@code 0} to start a new
+     *            journal.
+     * @param aDelta
+     *            the serialized changes of the current session.
+     * @return the length of the new journal.
+     */
+    public static long write(File aCasFile, long aCasFileLength, long aCasFileTimestamp,
+            long aKeep, byte[] aDelta)
+        throws IOException
+    {
+        var journal = getJournalFile(aCasFile);
+        var temp = new File(journal.getPath() + TEMP_EXTENSION);
+
+        try {
+            try (var out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(temp)))) {
+                if (aKeep > 0) {
+                    try (var in = Files.newInputStream(journal.toPath())) {
+                        if (IOUtils.copyLarge(in, out, 0, aKeep) != aKeep) {
+                            throw new IOException("Journal [" + journal + "] is shorter than "
+                                    + aKeep + " bytes");
+                        }
+                    }
+                }
+                else {
+                    out.writeInt(HEADER_MAGIC);
+                    out.writeLong(aCasFileLength);
+                    out.writeLong(aCasFileTimestamp);
+                }
+
+                out.writeInt(ENTRY_MAGIC);
+                out.writeInt(aDelta.length);
+                out.writeInt(checksum(aDelta, 0, aDelta.length));
+                out.write(aDelta);
+            }
+
+            Files.move(temp.toPath(), journal.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+
+        return journal.length();
+    }
+
+    public static boolean delete(File aCasFile) throws IOException
+    {
+        return Files.deleteIfExists(getJournalFile(aCasFile).toPath());
+    }
+
+    private static boolean matchesCasFile(ByteBuffer aHeader, File aCasFile)
+    {
+        return aHeader.getInt() == HEADER_MAGIC && aHeader.getLong() == aCasFile.length()
+                && aHeader.getLong() == aCasFile.lastModified();
+    }
+
+    private static int checksum(byte[] aData, int aOffset, int aLength)
+    {
+        var crc = new CRC32();
+        crc.update(aData, aOffset, aLength);
+        return (int) crc.getValue();
+    }
+}
@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem;
 
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getRealCas;
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.setDocumentId;
 import static de.tudarmstadt.ukp.clarin.webanno.support.logging.BaseLoggers.BOOT_LOG;
 import static de.tudarmstadt.ukp.inception.project.api.ProjectService.ANNOTATION_FOLDER;
@@ -24,6 +25,7 @@ import static de.tudarmstadt.ukp.inception.project.api.ProjectService.DOCUMENT_F
 import static de.tudarmstadt.ukp.inception.project.api.ProjectService.PROJECT_FOLDER;
 import static java.lang.System.currentTimeMillis;
 import static java.nio.file.Files.move;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static java.util.regex.Pattern.compile;
 import static java.util.regex.Pattern.quote;
@@ -37,6 +39,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
 import java.nio.file.Files;
 import java.text.SimpleDateFormat;
 import java.time.Duration;
@@ -49,10 +52,13 @@ import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.Validate;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Marker;
+import org.apache.uima.cas.impl.CASImpl;
 import org.apache.uima.fit.util.FSUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
@@ -76,10 +82,14 @@ public class FileSystemCasStorageDriver
 
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    private static final int LOCK_STRIPES = 64;
+
     private final RepositoryProperties repositoryProperties;
     private final CasStorageProperties casStorageProperties;
     private final CasStorageBackupProperties backupProperties;
     private final LoadingCache<File, InternalMetadata> metadataCache;
+    private final Cache<CAS, DeltaSession> deltaSessions;
+    private final Object[] locks;
 
     public FileSystemCasStorageDriver(RepositoryProperties aRepositoryProperties,
             CasStorageBackupProperties aBackupProperties,
@@ -98,6 +108,18 @@ public class FileSystemCasStorageDriver
             metadataCache = null;
         }
 
+        // CASes are compared by identity and sessions are dropped when their CAS is garbage
+        // collected
+        deltaSessions = Caffeine.newBuilder() //
+                .weakKeys() //
+                .build();
+
+        // Reading and writing an annotation file together with its journal must not interleave
+        locks = new Object[LOCK_STRIPES];
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+
         if (backupProperties.getInterval() > 0) {
             BOOT_LOG.info("CAS backups enabled - interval: {}sec  max-backups: {}  max-age: {}sec",
                     backupProperties.getInterval(), backupProperties.getKeep().getNumber(),
@@ -147,9 +169,27 @@ public class FileSystemCasStorageDriver
         }
 
         try {
-            CasPersistenceUtils.readSerializedCas(cas, casFile);
+            long timestamp;
+            synchronized (getLock(casFile)) {
+                CasPersistenceUtils.readSerializedCas(cas, casFile);
+                var journalLength = DeltaCasJournal.replay(cas, casFile);
+                timestamp = DeltaCasJournal.getTimestamp(casFile);
+
+                // Fold the journal into the annotation file if it has become too large or too old
+                // or if it is a left-over from a time when delta serialization was enabled
+                if (journalLength > 0 && (!casStorageProperties.isDeltaCasSerialization()
+                        || isCheckpointDue(casFile, journalLength))) {
+                    checkpoint(cas, casFile, timestamp, aDocument, aUser);
+                    journalLength = DeltaCasJournal.exists(casFile) ? journalLength : 0;
+                }
+
+                if (casStorageProperties.isDeltaCasSerialization()) {
+                    startDeltaSession(cas, casFile, journalLength);
+                }
+            }
+
             // Add/update the CAS metadata
-            CasMetadataUtils.addOrUpdateCasMetadata(cas, casFile.lastModified(), aDocument, aUser);
+            CasMetadataUtils.addOrUpdateCasMetadata(cas, timestamp, aDocument, aUser);
         }
         catch (Exception e) {
             throw new IOException("Annotation document of user [" + aUser + "] for source document "
@@ -185,89 +225,249 @@ public class FileSystemCasStorageDriver
             failOnConcurrentModification(aCas, currentVersion, aDocument, aUserName, "writing");
         }
 
+        boolean delta;
+        long lastModified;
+        long bytesWritten;
+        synchronized (getLock(currentVersion)) {
+            setDocumentId(aCas, aUserName);
+
+            var journalLength = casStorageProperties.isDeltaCasSerialization()
+                    ? writeDelta(aCas, currentVersion)
+                    : -1;
+
+            delta = journalLength >= 0;
+            if (delta) {
+                lastModified = DeltaCasJournal.getTimestamp(currentVersion);
+                bytesWritten = journalLength;
+            }
+            else {
+                writeCompleteCas(aDocument, aUserName, aCas, currentVersion, oldVersion);
+                lastModified = currentVersion.lastModified();
+                bytesWritten = currentVersion.length();
+            }
+        }
+
+        // Update the timestamp in the CAS in case we attempt to save it a second time. This
+        // happens for example in an annotation replacement operation (change layer of existing
+        // annotation) which is implemented as a delete/create operation with an intermediate
+        // save.
+        CasMetadataUtils.addOrUpdateCasMetadata(aCas, lastModified, aDocument, aUserName);
+        if (metadataCache != null) {
+            metadataCache.get(currentVersion).writeSuccess(lastModified);
+        }
+
+        var duration = currentTimeMillis() - t0;
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Updated annotations for user [{}] on document {} in project {} " //
+                    + "{} bytes in {}ms (file timestamp: {}, compression: {}, delta: {})",
+                    aUserName, aDocument, aDocument.getProject(), bytesWritten, duration,
+                    formatTimestamp(lastModified),
+                    casStorageProperties.isCompressedCasSerialization(), delta);
+        }
+
+        WicketUtil.serverTiming("realWriteCas", duration);
+    }
+
+    private void writeCompleteCas(SourceDocument aDocument, String aUserName, CAS aCas,
+            File aCurrentVersion, File aOldVersion)
+        throws IOException
+    {
         // Save current version
         try {
             // Make a backup of the current version of the file before overwriting
-            if (currentVersion.exists()) {
-                move(currentVersion.toPath(), oldVersion.toPath());
+            if (aCurrentVersion.exists()) {
+                move(aCurrentVersion.toPath(), aOldVersion.toPath());
             }
 
             // Now write the new version to "<username>.ser" or CURATION_USER.ser
-            setDocumentId(aCas, aUserName);
-            if (casStorageProperties.isParanoidCasSerialization()) {
-                CasPersistenceUtils.writeSerializedCasParanoid(aCas, currentVersion);
-            }
-            else if (casStorageProperties.isCompressedCasSerialization()) {
-                CasPersistenceUtils.writeSerializedCasCompressed(aCas, currentVersion);
-            }
-            else {
-                CasPersistenceUtils.writeSerializedCas(aCas, currentVersion);
-            }
+            writeSerializedCas(aCas, aCurrentVersion);
         }
         catch (Exception e) {
-            LOG.error("There was an error while trying to write the CAS to [" + currentVersion
+            LOG.error("There was an error while trying to write the CAS to [" + aCurrentVersion
                     + "] - additional messages follow.");
             // If this is the first version, there is no old version, so do not restore anything
-            if (!oldVersion.exists()) {
+            if (!aOldVersion.exists()) {
                 LOG.warn("There is no old version to restore - leaving the current version which "
-                        + "may be corrupt: [{}]", currentVersion);
+                        + "may be corrupt: [{}]", aCurrentVersion);
                 // Now abort anyway
                 throw e;
             }
 
             LOG.error("Restoring previous annotations for user [{}] on document {} in " //
                     + "project {} due exception when trying to write new " + "annotations: [{}]",
-                    aUserName, aDocument, aDocument.getProject(), oldVersion);
+                    aUserName, aDocument, aDocument.getProject(), aOldVersion);
             try {
-                move(oldVersion.toPath(), currentVersion.toPath(), REPLACE_EXISTING);
+                move(aOldVersion.toPath(), aCurrentVersion.toPath(), REPLACE_EXISTING);
             }
             catch (Exception ex) {
-                LOG.error("Unable to restore previous annotations: [{}]", oldVersion, ex);
+                LOG.error("Unable to restore previous annotations: [{}]", aOldVersion, ex);
             }
 
             // Now abort anyway
             throw e;
         }
 
-        if (oldVersion.exists() && (currentVersion.length() < (oldVersion.length()
+        if (aOldVersion.exists() && (aCurrentVersion.length() < (aOldVersion.length()
                 * (casStorageProperties.isCompressedCasSerialization() ? 0.95d : 1.0d)))) {
             // If compression is enabled, then it is not so uncommon that the file size may also
             // become smaller at times, so we allow a bit of slip
             LOG.debug(
                     "Annotations shrunk for user [{}] on document {} in project "
                             + "{}: {} -> {} bytes ({} bytes removed)",
-                    aUserName, aDocument, aDocument.getProject(), oldVersion.length(),
-                    currentVersion.length(), currentVersion.length() - oldVersion.length());
+                    aUserName, aDocument, aDocument.getProject(), aOldVersion.length(),
+                    aCurrentVersion.length(), aCurrentVersion.length() - aOldVersion.length());
         }
 
         // If the saving was successful, we delete the old version
-        if (oldVersion.exists()) {
-            FileUtils.forceDelete(oldVersion);
+        if (aOldVersion.exists()) {
+            FileUtils.forceDelete(aOldVersion);
         }
 
-        // Update the timestamp in the CAS in case we attempt to save it a second time. This
-        // happens for example in an annotation replacement operation (change layer of existing
-        // annotation) which is implemented as a delete/create operation with an intermediate
-        // save.
-        var lastModified = currentVersion.lastModified();
-        CasMetadataUtils.addOrUpdateCasMetadata(aCas, lastModified, aDocument, aUserName);
-        if (metadataCache != null) {
-            metadataCache.get(currentVersion).writeSuccess(lastModified);
+        // The journal does not apply to the new version anymore
+        DeltaCasJournal.delete(aCurrentVersion);
+
+        if (casStorageProperties.isDeltaCasSerialization()) {
+            startDeltaSession(aCas, aCurrentVersion, 0);
         }
 
-        manageHistory(currentVersion, aDocument, aUserName);
+        manageHistory(aCurrentVersion, aDocument, aUserName);
+    }
 
-        var duration = currentTimeMillis() - t0;
+    private void writeSerializedCas(CAS aCas, File aFile) throws IOException
+    {
+        if (casStorageProperties.isParanoidCasSerialization()) {
+            CasPersistenceUtils.writeSerializedCasParanoid(aCas, aFile);
+        }
+        else if (casStorageProperties.isCompressedCasSerialization()) {
+            CasPersistenceUtils.writeSerializedCasCompressed(aCas, aFile);
+        }
+        else {
+            CasPersistenceUtils.writeSerializedCas(aCas, aFile);
+        }
+    }
 
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Updated annotations for user [{}] on document {} in project {} " //
-                    + "{} bytes in {}ms (file timestamp: {}, compression: {})", aUserName,
-                    aDocument, aDocument.getProject(), currentVersion.length(), duration,
-                    formatTimestamp(lastModified),
-                    casStorageProperties.isCompressedCasSerialization());
+    /**
+     * Writes the changes made to the CAS since it has been loaded to the journal of the annotation
+     * file.
+     * 
+     * @return the length of the journal or {@code -1} if the complete CAS needs to be written
+     *         instead.
+     */
+    private long writeDelta(CAS aCas, File aCasFile) throws IOException
+    {
+        var baseCas = getBaseCas(aCas);
+        var session = deltaSessions.getIfPresent(baseCas);
+        if (session == null) {
+            return -1;
+        }
+
+        // If the CAS has been reset (e.g. by an upgrade), if it is saved to a different file or if
+        // the annotation file or journal have been replaced in the meantime, the changes we track
+        // do not apply to the annotation file anymore
+        var marker = session.marker.get();
+        var journal = DeltaCasJournal.getJournalFile(aCasFile);
+        if (marker == null || !marker.isValid() || !session.casFile.equals(aCasFile)
+                || session.casFileLength != aCasFile.length()
+                || session.casFileTimestamp != aCasFile.lastModified()
+                || session.journalLength != (journal.exists() ? journal.length() : 0)) {
+            deltaSessions.invalidate(baseCas);
+            return -1;
+        }
+
+        byte[] delta;
+        try {
+            delta = CasPersistenceUtils.writeDeltaToByteArray(aCas, marker);
+        }
+        catch (IOException e) {
+            LOG.warn("Unable to serialize changes to [{}] - writing complete CAS instead",
+                    aCasFile, e);
+            deltaSessions.invalidate(baseCas);
+            return -1;
         }
 
-        WicketUtil.serverTiming("realWriteCas", duration);
+        // If the journal becomes too large, we write the complete CAS instead which also takes
+        // care of removing the journal
+        if (DeltaCasJournal.getLengthAfterWrite(session.journalStart,
+                delta.length) > session.casFileLength
+                        * casStorageProperties.getDeltaCheckpointRatio()) {
+            deltaSessions.invalidate(baseCas);
+            return -1;
+        }
+
+        session.journalLength = DeltaCasJournal.write(aCasFile, session.casFileLength,
+                session.casFileTimestamp, session.journalStart, delta);
+        return session.journalLength;
+    }
+
+    /**
+     * Starts tracking the changes made to the CAS so that the next save only needs to write the
+     * changes to the journal of the annotation file. This can only be done once per CAS. If the CAS
+     * is already tracked, then all subsequent saves write the complete CAS until it is loaded
+     * again.
+     */
+    private void startDeltaSession(CAS aCas, File aCasFile, long aJournalLength)
+    {
+        var baseCas = getBaseCas(aCas);
+        deltaSessions.invalidate(baseCas);
+
+        Marker marker;
+        try {
+            marker = baseCas.createMarker();
+        }
+        catch (Exception e) {
+            LOG.trace("Unable to track changes to CAS for [{}]: {}", aCasFile, e.getMessage());
+            return;
+        }
+
+        deltaSessions.put(baseCas, new DeltaSession(marker, aCasFile, aJournalLength));
+    }
+
+    private boolean isCheckpointDue(File aCasFile, long aJournalLength)
+    {
+        return aJournalLength > aCasFile.length() * casStorageProperties.getDeltaCheckpointRatio()
+                || aCasFile.lastModified() + casStorageProperties.getDeltaCheckpointInterval()
+                        .toMillis() < currentTimeMillis();
+    }
+
+    /**
+     * Folds the journal into the annotation file by writing the given CAS which has been loaded
+     * from the annotation file and the journal. The annotation file retains the timestamp of the
+     * journal, so CASes which are still held in memory do not trigger a concurrent modification
+     * error. If the checkpoint fails, the journal remains in place.
+     */
+    private void checkpoint(CAS aCas, File aCasFile, long aTimestamp, SourceDocument aDocument,
+            String aUser)
+    {
+        var temp = new File(aCasFile.getPath() + DeltaCasJournal.TEMP_EXTENSION);
+        try {
+            writeSerializedCas(aCas, temp);
+            if (!temp.setLastModified(aTimestamp)) {
+                throw new IOException("Unable to set timestamp of [" + temp + "]");
+            }
+            move(temp.toPath(), aCasFile.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+            DeltaCasJournal.delete(aCasFile);
+            manageHistory(aCasFile, aDocument, aUser);
+
+            LOG.debug("Folded journal into annotations for user [{}] on document {} in project {}",
+                    aUser, aDocument, aDocument.getProject());
+        }
+        catch (IOException e) {
+            LOG.warn("Unable to fold journal into annotation file [{}]", aCasFile, e);
+        }
+        finally {
+            FileUtils.deleteQuietly(temp);
+        }
+    }
+
+    private Object getLock(File aCasFile)
+    {
+        return locks[Math.floorMod(aCasFile.hashCode(), locks.length)];
+    }
+
+    private static CASImpl getBaseCas(CAS aCas)
+    {
+        return ((CASImpl) getRealCas(aCas)).getBaseCAS();
     }
 
     /**
@@ -401,7 +601,16 @@ public class FileSystemCasStorageDriver
         Validate.notNull(aDocument, "Source document must be specified");
         Validate.notBlank(aUser, "User must be specified");
 
-        try (var is = Files.newInputStream(getCasFile(aDocument, aUser).toPath())) {
+        var casFile = getCasFile(aDocument, aUser);
+
+        // If there is a journal, the annotation file alone is not up-to-date
+        if (DeltaCasJournal.exists(casFile)) {
+            CasPersistenceUtils.exportSerializedCas(readCas(aDocument, aUser), aStream,
+                    casStorageProperties.isCompressedCasSerialization());
+            return;
+        }
+
+        try (var is = Files.newInputStream(casFile.toPath())) {
             IOUtils.copyLarge(is, aStream);
         }
     }
@@ -413,8 +622,12 @@ public class FileSystemCasStorageDriver
         Validate.notNull(aDocument, "Source document must be specified");
         Validate.notBlank(aUser, "User must be specified");
 
-        try (var os = Files.newOutputStream(getCasFile(aDocument, aUser).toPath())) {
-            IOUtils.copyLarge(aStream, os);
+        var casFile = getCasFile(aDocument, aUser);
+        synchronized (getLock(casFile)) {
+            try (var os = Files.newOutputStream(casFile.toPath())) {
+                IOUtils.copyLarge(aStream, os);
+            }
+            DeltaCasJournal.delete(casFile);
         }
     }
 
@@ -432,7 +645,10 @@ public class FileSystemCasStorageDriver
             metadataCache.invalidate(casFile);
         }
 
-        return casFile.delete();
+        synchronized (getLock(casFile)) {
+            DeltaCasJournal.delete(casFile);
+            return casFile.delete();
+        }
     }
 
     @Override
@@ -451,7 +667,8 @@ public class FileSystemCasStorageDriver
             return Optional.empty();
         }
 
-        return Optional.of(new Metadata(casFile));
+        return Optional.of(new Metadata(casFile, DeltaCasJournal.getTimestamp(casFile),
+                DeltaCasJournal.getSize(casFile)));
     }
 
     @Override
@@ -465,7 +682,7 @@ public class FileSystemCasStorageDriver
             return Optional.empty();
         }
 
-        var diskLastModified = casFile.lastModified();
+        var diskLastModified = DeltaCasJournal.getTimestamp(casFile);
         if (Math.abs(diskLastModified - aExpectedTimeStamp) > casStorageProperties
                 .getFileSystemTimestampAccuracy().toMillis()) {
             StringBuilder lastWriteMsg = new StringBuilder();
@@ -565,6 +782,28 @@ public class FileSystemCasStorageDriver
         }
     }
 
+    private static class DeltaSession
+    {
+        private final WeakReference<Marker> marker;
+        private final File casFile;
+        private final long casFileLength;
+        private final long casFileTimestamp;
+        private final long journalStart;
+        private long journalLength;
+
+        private DeltaSession(Marker aMarker, File aCasFile, long aJournalLength)
+        {
+            // The marker is held by the CAS - we must not keep the CAS from being garbage
+            // collected
+            marker = new WeakReference<>(aMarker);
+            casFile = aCasFile;
+            casFileLength = aCasFile.length();
+            casFileTimestamp = aCasFile.lastModified();
+            journalStart = aJournalLength;
+            journalLength = aJournalLength;
+        }
+    }
+
     public static class Metadata
         implements CasStorageMetadata
     {
@@ -574,8 +813,13 @@ public class FileSystemCasStorageDriver
 
         public Metadata(File aFile)
         {
-            timestamp = aFile.lastModified();
-            size = aFile.length();
+            this(aFile, aFile.lastModified(), aFile.length());
+        }
+
+        public Metadata(File aFile, long aTimestamp, long aSize)
+        {
+            timestamp = aTimestamp;
+            size = aSize;
             path = aFile.getAbsolutePath();
         }
 
@@ -0,0 +1,175 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.driver.segment;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A single append-only segment file of a {@link SegmentStore}. Records are only ever appended to
+ * the segment. Space occupied by records which have been superseded is tracked as dead bytes and
+ * reclaimed by compacting the segment.
+ * <p>
+ * Readers map the regions they need directly from the file. A mapping stays valid even after the
+ * segment has been {@link #retire() retired} by the compaction, so the retiring only needs to wait
+ * for readers which are currently establishing a mapping.
+ */
+final class Segment
+    implements Closeable
+{
+    private final long id;
+    private final Path file;
+    private final FileChannel channel;
+    private final AtomicLong deadBytes = new AtomicLong();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile long size;
+    private boolean retired;
+
+    private Segment(long aId, Path aFile, FileChannel aChannel) throws IOException
+    {
+        id = aId;
+        file = aFile;
+        channel = aChannel;
+        size = aChannel.size();
+    }
+
+    public static Segment open(long aId, Path aFile) throws IOException
+    {
+        return new Segment(aId, aFile, FileChannel.open(aFile, CREATE, READ, WRITE));
+    }
+
+    public long getId()
+    {
+        return id;
+    }
+
+    public Path getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return the size of the valid data in the segment. Data beyond this point may be the result
+     *         of an incomplete write and is overwritten by the next append.
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    void setSize(long aSize)
+    {
+        size = aSize;
+    }
+
+    FileChannel getChannel()
+    {
+        return channel;
+    }
+
+    public void addDeadBytes(long aBytes)
+    {
+        deadBytes.addAndGet(aBytes);
+    }
+
+    public long getDeadBytes()
+    {
+        return deadBytes.get();
+    }
+
+    public double getDeadRatio()
+    {
+        var currentSize = size;
+        return currentSize == 0 ? 0.0 : (double) deadBytes.get() / currentSize;
+    }
+
+    /**
+     * Maps the given region of the segment into memory.
+     *
+     * @return the mapped region or {@code null} if the segment has been retired in the meantime.
+     *         In this case, the caller needs to look up the new location of the record.
+     */
+    public ByteBuffer map(long aPosition, int aLength) throws IOException
+    {
+        lock.readLock().lock();
+        try {
+            if (retired) {
+                return null;
+            }
+
+            return channel.map(READ_ONLY, aPosition, aLength);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads the given region of the segment into the given buffer.
+     */
+    void read(ByteBuffer aBuffer, long aPosition) throws IOException
+    {
+        var pos = aPosition;
+        while (aBuffer.hasRemaining()) {
+            var read = channel.read(aBuffer, pos);
+            if (read < 0) {
+                break;
+            }
+            pos += read;
+        }
+    }
+
+    /**
+     * Marks the segment as no longer in use and closes it. Mappings created before remain valid.
+     */
+    public void retire() throws IOException
+    {
+        lock.writeLock().lock();
+        try {
+            retired = true;
+            channel.close();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        channel.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[" + file.getFileName() + "](size: " + size + ", dead: " + deadBytes.get() + ")";
+    }
+}
@@ -0,0 +1,533 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.driver.segment;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getRealCas;
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.setDocumentId;
+import static de.tudarmstadt.ukp.clarin.webanno.support.logging.BaseLoggers.BOOT_LOG;
+import static de.tudarmstadt.ukp.inception.project.api.ProjectService.ANNOTATION_FOLDER;
+import static de.tudarmstadt.ukp.inception.project.api.ProjectService.DOCUMENT_FOLDER;
+import static de.tudarmstadt.ukp.inception.project.api.ProjectService.PROJECT_FOLDER;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Collections.synchronizedMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.commons.lang3.time.DurationFormatUtils.formatDurationHMS;
+import static org.apache.uima.cas.SerialFormat.COMPRESSED_FILTERED;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.uima.UIMAException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.impl.Serialization;
+import org.apache.uima.fit.util.FSUtil;
+import org.apache.uima.util.CasIOUtils;
+import org.apache.uima.util.CasLoadMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.event.EventListener;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.ConcurentCasModificationException;
+import de.tudarmstadt.ukp.clarin.webanno.api.type.CASMetadata;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.support.wicket.WicketUtil;
+import de.tudarmstadt.ukp.inception.annotation.storage.CasMetadataUtils;
+import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageMetadata;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageProperties;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageSegmentProperties;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.CasStorageDriver;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.CasPersistenceUtils;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.DeltaCasJournal;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.FileSystemCasStorageDriver;
+import de.tudarmstadt.ukp.inception.documents.api.RepositoryProperties;
+import de.tudarmstadt.ukp.inception.documents.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.inception.project.api.event.BeforeProjectRemovedEvent;
+
+/**
+ * CAS storage driver which keeps the CASes of each project in an append-only
+ * {@link SegmentStore}. CASes are stored in UIMA binary form 6 while the type systems are stored
+ * only once per store and shared between the CASes. Saving a CAS is a single sequential append
+ * followed by an atomic update of the index. Reading a CAS deserializes directly from the
+ * memory-mapped segment.
+ * <p>
+ * CASes which have been saved by the {@link FileSystemCasStorageDriver} are migrated into the
+ * segment store when they are first read.
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageServiceAutoConfiguration}.
+ */
+public class SegmentCasStorageDriver
+    implements CasStorageDriver, DisposableBean
+{
+    public static final String SEGMENT_FOLDER = "cas-segments";
+
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final RepositoryProperties repositoryProperties;
+    private final CasStorageProperties casStorageProperties;
+    private final CasStorageSegmentProperties segmentProperties;
+
+    private final Map<Long, SegmentStore> stores = new ConcurrentHashMap<>();
+    private final Map<TypeSystem, SerializedTypeSystem> typeSystemCache = synchronizedMap(
+            new WeakHashMap<>());
+    private final ScheduledExecutorService compactionExecutor;
+
+    public SegmentCasStorageDriver(RepositoryProperties aRepositoryProperties,
+            CasStorageProperties aCasStorageProperties,
+            CasStorageSegmentProperties aSegmentProperties)
+    {
+        repositoryProperties = aRepositoryProperties;
+        casStorageProperties = aCasStorageProperties;
+        segmentProperties = aSegmentProperties;
+
+        compactionExecutor = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder() //
+                        .daemon(true) //
+                        .namingPattern("cas-segment-compaction-%d") //
+                        .priority(Thread.MIN_PRIORITY) //
+                        .build());
+
+        var interval = segmentProperties.getCompactionInterval();
+        if (!interval.isZero() && !interval.isNegative()) {
+            compactionExecutor.scheduleWithFixedDelay(this::compact, interval.toMillis(),
+                    interval.toMillis(), MILLISECONDS);
+        }
+
+        BOOT_LOG.info(
+                "CAS segment storage enabled - max-segment-size: {}  compaction-threshold: {}  "
+                        + "compaction-interval: {}",
+                segmentProperties.getMaxSegmentSize(),
+                segmentProperties.getCompactionThreshold(), interval);
+    }
+
+    @Override
+    public CAS readCas(SourceDocument aDocument, String aUser) throws IOException
+    {
+        LOG.trace("Reading CAS [{}]@{}", aUser, aDocument);
+
+        var store = getStore(aDocument.getProject().getId());
+
+        CAS cas;
+        try {
+            cas = WebAnnoCasUtil.createCas();
+        }
+        catch (UIMAException e) {
+            throw new IOException("Unable to create empty CAS", e);
+        }
+
+        var realCas = (CASImpl) getRealCas(cas);
+        long timestamp;
+        try {
+            // UIMA-6162 Workaround: synchronize CAS during de/serialization
+            synchronized (realCas.getBaseCAS()) {
+                var result = store.read(aDocument.getId(), aUser, (entry, data) -> {
+                    store.readTypeSystem(entry.getTypeSystemId(), (tsEntry, tsi) -> {
+                        CasIOUtils.load(data, tsi, realCas, CasLoadMode.REINIT);
+                        return null;
+                    });
+                    return entry.getTimestamp();
+                });
+
+                if (result.isPresent()) {
+                    timestamp = result.get();
+                }
+                else {
+                    timestamp = migrateLegacyCas(store, aDocument, aUser, realCas);
+                }
+            }
+
+            // Add/update the CAS metadata
+            CasMetadataUtils.addOrUpdateCasMetadata(cas, timestamp, aDocument, aUser);
+        }
+        catch (FileNotFoundException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException("Annotation document of user [" + aUser + "] for source document "
+                    + aDocument + " in project [" + aDocument.getProject()
+                    + "] cannot be read from the CAS segment store", e);
+        }
+
+        return cas;
+    }
+
+    /**
+     * Loads the CAS from the file written by the {@link FileSystemCasStorageDriver} and adds it to
+     * the segment store. The timestamp of the file is retained so that CASes which are still held
+     * in memory do not trigger a concurrent modification error.
+     * <p>
+     * The legacy file and its journal are left untouched. Once the CAS is in the segment store,
+     * the store takes precedence. Switching back to the file system driver then continues from
+     * the state at the time of the migration.
+     */
+    private long migrateLegacyCas(SegmentStore aStore, SourceDocument aDocument, String aUser,
+            CASImpl aCas)
+        throws IOException
+    {
+        var legacyFile = getLegacyCasFile(aDocument, aUser);
+        if (!legacyFile.exists()) {
+            throw new FileNotFoundException("Annotation document of user [" + aUser
+                    + "] for source document " + aDocument + " not found in project ["
+                    + aDocument.getProject() + "]");
+        }
+
+        var timestamp = DeltaCasJournal.getTimestamp(legacyFile);
+        CasPersistenceUtils.readSerializedCas(aCas, legacyFile);
+        DeltaCasJournal.replay(aCas, legacyFile);
+
+        var typeSystem = serializeTypeSystem(aCas);
+        var typeSystemId = aStore.putTypeSystem(typeSystem.digest(), typeSystem.data());
+        var entry = aStore.writeIfAbsent(aDocument.getId(), aUser, typeSystemId, timestamp,
+                out -> CasIOUtils.save(aCas, out, COMPRESSED_FILTERED));
+
+        LOG.debug("Migrated annotations for user [{}] on document {} in project {} to CAS "
+                + "segment store", aUser, aDocument, aDocument.getProject());
+
+        return entry.getTimestamp();
+    }
+
+    @Override
+    public void writeCas(SourceDocument aDocument, String aUserName, CAS aCas) throws IOException
+    {
+        var t0 = currentTimeMillis();
+
+        LOG.debug("Preparing to update annotations for user [{}] on document {} " //
+                + "in project {}", aUserName, aDocument, aDocument.getProject());
+
+        var store = getStore(aDocument.getProject().getId());
+
+        // Check if there was a concurrent change to the stored CAS
+        failOnConcurrentModification(aCas, aDocument, aUserName, "writing");
+
+        setDocumentId(aCas, aUserName);
+        var entry = write(store, aDocument, aUserName, aCas);
+
+        // Update the timestamp in the CAS in case we attempt to save it a second time. This
+        // happens for example in an annotation replacement operation (change layer of existing
+        // annotation) which is implemented as a delete/create operation with an intermediate
+        // save.
+        CasMetadataUtils.addOrUpdateCasMetadata(aCas, entry.getTimestamp(), aDocument, aUserName);
+
+        var duration = currentTimeMillis() - t0;
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Updated annotations for user [{}] on document {} in project {} " //
+                    + "{} bytes in {}ms (timestamp: {})", aUserName, aDocument,
+                    aDocument.getProject(), entry.getSize(), duration,
+                    formatTimestamp(entry.getTimestamp()));
+        }
+
+        WicketUtil.serverTiming("realWriteCas", duration);
+    }
+
+    private SegmentStore.Entry write(SegmentStore aStore, SourceDocument aDocument, String aUser,
+            CAS aCas)
+        throws IOException
+    {
+        var realCas = (CASImpl) getRealCas(aCas);
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (realCas.getBaseCAS()) {
+            var typeSystem = serializeTypeSystem(realCas);
+            var typeSystemId = aStore.putTypeSystem(typeSystem.digest(), typeSystem.data());
+            return aStore.write(aDocument.getId(), aUser, typeSystemId, currentTimeMillis(),
+                    out -> CasIOUtils.save(realCas, out, COMPRESSED_FILTERED));
+        }
+    }
+
+    private SerializedTypeSystem serializeTypeSystem(CASImpl aCas) throws IOException
+    {
+        var cached = typeSystemCache.get(aCas.getTypeSystem());
+        if (cached != null) {
+            return cached;
+        }
+
+        try (var bos = new ByteArrayOutputStream()) {
+            try (var oos = new ObjectOutputStream(bos)) {
+                oos.writeObject(Serialization.serializeCASMgr(aCas));
+            }
+            var data = bos.toByteArray();
+            cached = new SerializedTypeSystem(SegmentStore.digest(data), data);
+        }
+
+        typeSystemCache.put(aCas.getTypeSystem(), cached);
+        return cached;
+    }
+
+    @Override
+    public void exportCas(SourceDocument aDocument, String aUser, OutputStream aStream)
+        throws IOException
+    {
+        // Exports use the same format as the file system driver so that exported projects can be
+        // imported independently of the storage driver
+        var cas = readCas(aDocument, aUser);
+        CasPersistenceUtils.exportSerializedCas(cas, aStream,
+                casStorageProperties.isCompressedCasSerialization());
+    }
+
+    @Override
+    public void importCas(SourceDocument aDocument, String aUser, InputStream aStream)
+        throws IOException
+    {
+        CAS cas;
+        try {
+            cas = WebAnnoCasUtil.createCas();
+        }
+        catch (UIMAException e) {
+            throw new IOException("Unable to create empty CAS", e);
+        }
+
+        CasPersistenceUtils.importSerializedCas(cas, aStream);
+        write(getStore(aDocument.getProject().getId()), aDocument, aUser, cas);
+    }
+
+    @Override
+    public boolean deleteCas(SourceDocument aDocument, String aUser) throws IOException
+    {
+        var deleted = getStore(aDocument.getProject().getId()).delete(aDocument.getId(), aUser);
+        var legacyFile = getLegacyCasFile(aDocument, aUser);
+        DeltaCasJournal.delete(legacyFile);
+        deleted |= legacyFile.delete();
+        return deleted;
+    }
+
+    @Override
+    public boolean existsCas(SourceDocument aDocument, String aUser) throws IOException
+    {
+        return getCasMetadata(aDocument, aUser).isPresent();
+    }
+
+    @Override
+    public Optional<CasStorageMetadata> getCasMetadata(SourceDocument aDocument, String aUser)
+        throws IOException
+    {
+        var entry = getStore(aDocument.getProject().getId()).get(aDocument.getId(), aUser);
+        if (entry.isPresent()) {
+            return Optional.of(new Metadata(entry.get().getTimestamp(), entry.get().getSize()));
+        }
+
+        var legacyFile = getLegacyCasFile(aDocument, aUser);
+        if (legacyFile.exists()) {
+            return Optional.of(new Metadata(DeltaCasJournal.getTimestamp(legacyFile),
+                    DeltaCasJournal.getSize(legacyFile)));
+        }
+
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Long> verifyCasTimestamp(SourceDocument aDocument, String aUser,
+            long aExpectedTimeStamp, String aContextAction)
+        throws IOException, ConcurentCasModificationException
+    {
+        var metadata = getCasMetadata(aDocument, aUser);
+
+        if (metadata.isEmpty()) {
+            return Optional.empty();
+        }
+
+        var storedTimestamp = metadata.get().getTimestamp();
+        if (Math.abs(storedTimestamp - aExpectedTimeStamp) > casStorageProperties
+                .getFileSystemTimestampAccuracy().toMillis()) {
+            throw new ConcurentCasModificationException("While [" + aContextAction
+                    + "], the segment CAS storage detected a concurrent modification to the annotation CAS for user ["
+                    + aUser + "] in document " + aDocument + " or project " + aDocument.getProject()
+                    + " (expected: " + formatTimestamp(aExpectedTimeStamp) + " actual on storage: "
+                    + formatTimestamp(storedTimestamp) + ", delta: "
+                    + formatDurationHMS(Math.abs(storedTimestamp - aExpectedTimeStamp)) + ")");
+        }
+
+        return Optional.of(storedTimestamp);
+    }
+
+    private void failOnConcurrentModification(CAS aCas, SourceDocument aDocument,
+            String aUsername, String aContextAction)
+        throws IOException
+    {
+        // If the type system of the CAS does not yet support CASMetadata, then we do not add it
+        // and wait for the next regular CAS upgrade before we include this data.
+        if (aCas.getTypeSystem().getType(CASMetadata._TypeName) == null) {
+            LOG.warn("Annotations of user [{}] for document {} in project {} do not support "
+                    + "CASMetadata yet - unable to detect concurrent modifications", aUsername,
+                    aDocument, aDocument.getProject());
+            return;
+        }
+
+        var cmds = aCas.select(CASMetadata._TypeName).asList();
+        if (cmds.isEmpty()) {
+            LOG.warn("Annotations of user [{}] for document {} in project {} do not contain "
+                    + "CASMetadata yet - unable to check for concurrent modifications", aUsername,
+                    aDocument, aDocument.getProject());
+            return;
+        }
+
+        if (cmds.size() > 1) {
+            throw new IOException("CAS contains more than one CASMetadata instance");
+        }
+
+        var lastKnownUpdate = FSUtil.getFeature(cmds.get(0), "lastChangedOnDisk", Long.class);
+        verifyCasTimestamp(aDocument, aUsername, lastKnownUpdate, aContextAction);
+    }
+
+    @EventListener
+    public void onBeforeDocumentRemoved(BeforeDocumentRemovedEvent aEvent) throws IOException
+    {
+        var document = aEvent.getDocument();
+        var projectId = document.getProject().getId();
+
+        if (!stores.containsKey(projectId) && !Files.exists(getStoreFolder(projectId))) {
+            return;
+        }
+
+        getStore(projectId).deleteDocument(document.getId());
+    }
+
+    @EventListener
+    public void onBeforeProjectRemoved(BeforeProjectRemovedEvent aEvent) throws IOException
+    {
+        // The store is removed along with the project folder
+        var store = stores.remove(aEvent.getProject().getId());
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private void compact()
+    {
+        for (var entry : stores.entrySet()) {
+            var store = entry.getValue();
+            try {
+                var compacted = store.compact(segmentProperties.getCompactionThreshold());
+                if (compacted > 0) {
+                    LOG.info("Compacted {} CAS segments of project [{}] - {} segments, "
+                            + "{} bytes ({} bytes dead) remaining", compacted, entry.getKey(),
+                            store.getSegmentCount(), store.getSize(), store.getDeadBytes());
+                }
+            }
+            catch (Exception e) {
+                LOG.error("Unable to compact CAS segments of project [{}]", entry.getKey(), e);
+            }
+        }
+    }
+
+    @Override
+    public void destroy()
+    {
+        compactionExecutor.shutdownNow();
+
+        for (var store : stores.values()) {
+            try {
+                store.close();
+            }
+            catch (IOException e) {
+                LOG.error("Unable to close CAS segment store", e);
+            }
+        }
+        stores.clear();
+    }
+
+    private SegmentStore getStore(long aProjectId) throws IOException
+    {
+        try {
+            return stores.computeIfAbsent(aProjectId, id -> {
+                try {
+                    return new SegmentStore(getStoreFolder(id),
+                            segmentProperties.getMaxSegmentSize().toBytes());
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Path getStoreFolder(long aProjectId)
+    {
+        return new File(repositoryProperties.getPath(),
+                "/" + PROJECT_FOLDER + "/" + aProjectId + "/" + SEGMENT_FOLDER).toPath();
+    }
+
+    private File getLegacyCasFile(SourceDocument aDocument, String aUser)
+    {
+        return new File(repositoryProperties.getPath(),
+                "/" + PROJECT_FOLDER + "/" + aDocument.getProject().getId() + "/"
+                        + DOCUMENT_FOLDER + "/" + aDocument.getId() + "/" + ANNOTATION_FOLDER
+                        + "/" + aUser + FileSystemCasStorageDriver.SER_CAS_EXTENSION);
+    }
+
+    private static String formatTimestamp(long aTime)
+    {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(aTime);
+    }
+
+    private record SerializedTypeSystem(String digest, byte[] data) {}
+
+    public static class Metadata
+        implements CasStorageMetadata
+    {
+        private final long timestamp;
+        private final long size;
+
+        public Metadata(long aTimestamp, long aSize)
+        {
+            timestamp = aTimestamp;
+            size = aSize;
+        }
+
+        @Override
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+
+        @Override
+        public long getSize()
+        {
+            return size;
+        }
+
+        @Override
+        public long getVersion()
+        {
+            return timestamp;
+        }
+    }
+}
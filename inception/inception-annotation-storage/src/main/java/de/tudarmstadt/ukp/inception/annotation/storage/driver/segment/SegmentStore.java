@@ -0,0 +1,857 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.driver.segment;
+
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.toList;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only store for the CASes of a single project. The store consists of a sequence of
+ * {@link Segment segments}. New records are always appended to the last (active) segment. Once the
+ * active segment exceeds the maximum segment size, a new segment is started.
+ * <p>
+ * There are three kinds of records: CAS records, delete records (tombstones) and type system
+ * records. CAS records do not contain the type system. Instead, they refer to a type system record
+ * which is shared by all CASes using the same type system.
+ * <p>
+ * The in-memory index always points to the latest record for a given document and user. Saving a
+ * CAS appends a new record and then swaps the pointer in the index. The index is rebuilt from the
+ * segments when the store is opened. Records which have not been completely written (e.g. because
+ * the application crashed) are detected via their checksum and ignored.
+ * <p>
+ * Records which are no longer referenced by the index are dead. Segments with a high ratio of dead
+ * data can be {@link #compact(double) compacted}. This moves the live records to the active segment
+ * and then removes the old segment.
+ */
+final class SegmentStore
+    implements Closeable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String SEGMENT_EXTENSION = ".seg";
+
+    private static final int MAGIC = 0x49435331; // "ICS1"
+
+    private static final byte TYPE_CAS = 1;
+    private static final byte TYPE_DELETE = 2;
+    private static final byte TYPE_TYPE_SYSTEM = 3;
+
+    // magic (4), type (1), document ID (8), timestamp (8), type system ID (8), payload length (4),
+    // payload checksum (4), user length (2)
+    private static final int FIXED_HEADER_SIZE = 39;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long maxSegmentSize;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final Map<Key, Entry> index = new ConcurrentHashMap<>();
+    private final Map<Key, Entry> tombstones = new ConcurrentHashMap<>();
+    private final Map<Long, Entry> typeSystems = new ConcurrentHashMap<>();
+    private final Map<String, Long> typeSystemsByDigest = new ConcurrentHashMap<>();
+
+    // Guarded by appendLock
+    private final List<Path> pendingDeletions = new ArrayList<>();
+    private boolean closed;
+
+    private volatile Segment activeSegment;
+
+    public SegmentStore(Path aDirectory, long aMaxSegmentSize) throws IOException
+    {
+        directory = aDirectory;
+        maxSegmentSize = aMaxSegmentSize;
+
+        Files.createDirectories(directory);
+
+        try {
+            openSegments();
+        }
+        catch (IOException | RuntimeException e) {
+            closeSegments();
+            throw e;
+        }
+    }
+
+    private void openSegments() throws IOException
+    {
+        List<Path> files;
+        try (var stream = Files.list(directory)) {
+            files = stream //
+                    .filter(f -> f.getFileName().toString().endsWith(SEGMENT_EXTENSION)) //
+                    .collect(toList());
+        }
+
+        for (var file : files) {
+            var name = file.getFileName().toString();
+            long id;
+            try {
+                id = Long.parseLong(name.substring(0, name.length() - SEGMENT_EXTENSION.length()));
+            }
+            catch (NumberFormatException e) {
+                LOG.warn("Ignoring unexpected file [{}] in CAS segment store", file);
+                continue;
+            }
+
+            segments.put(id, Segment.open(id, file));
+        }
+
+        if (segments.isEmpty()) {
+            activeSegment = createSegment(1);
+            return;
+        }
+
+        activeSegment = segments.lastEntry().getValue();
+        for (var segment : segments.values()) {
+            // Only the last segment may contain incompletely written records, so we only need to
+            // verify the checksums there
+            scan(segment, segment == activeSegment);
+        }
+
+        LOG.debug("Opened CAS segment store [{}]: {} segments, {} CASes, {} type systems",
+                directory, segments.size(), index.size(), typeSystems.size());
+    }
+
+    private void scan(Segment aSegment, boolean aVerify) throws IOException
+    {
+        var fileSize = aSegment.getChannel().size();
+        var pos = 0l;
+        while (pos < fileSize) {
+            var entry = readEntry(aSegment, pos, fileSize);
+            if (entry == null || (aVerify && !verify(entry))) {
+                break;
+            }
+
+            install(entry);
+            pos = entry.end();
+        }
+
+        if (pos < fileSize) {
+            LOG.warn("Ignoring {} bytes of incomplete data at the end of CAS segment [{}]",
+                    fileSize - pos, aSegment.getFile());
+
+            // Subsequent appends go to the active segment, so we must make sure that no remains
+            // of the incomplete data are left behind the next record
+            if (aSegment == activeSegment) {
+                aSegment.getChannel().truncate(pos);
+            }
+        }
+
+        aSegment.setSize(pos);
+    }
+
+    public Optional<Entry> get(long aDocumentId, String aUser)
+    {
+        return Optional.ofNullable(index.get(new Key(aDocumentId, aUser)));
+    }
+
+    /**
+     * Appends a new CAS record and makes it the current version of the CAS.
+     *
+     * @param aTimestamp
+     *            the timestamp of the new version. If the current version has the same or a newer
+     *            timestamp, the timestamp is adjusted such that the versions can be distinguished.
+     * @return the new record.
+     */
+    public Entry write(long aDocumentId, String aUser, long aTypeSystemId, long aTimestamp,
+            PayloadWriter aWriter)
+        throws IOException
+    {
+        appendLock.lock();
+        try {
+            var previous = index.get(new Key(aDocumentId, aUser));
+            var timestamp = previous != null ? Math.max(aTimestamp, previous.timestamp + 1)
+                    : aTimestamp;
+            var entry = append(TYPE_CAS, aDocumentId, aUser, aTypeSystemId, timestamp, aWriter);
+            install(entry);
+            return entry;
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #write} but only writes the record if there is no current version of the CAS
+     * yet.
+     *
+     * @return the current version of the CAS, either the existing one or the new one.
+     */
+    public Entry writeIfAbsent(long aDocumentId, String aUser, long aTypeSystemId,
+            long aTimestamp, PayloadWriter aWriter)
+        throws IOException
+    {
+        appendLock.lock();
+        try {
+            var existing = index.get(new Key(aDocumentId, aUser));
+            if (existing != null) {
+                return existing;
+            }
+
+            return write(aDocumentId, aUser, aTypeSystemId, aTimestamp, aWriter);
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    public boolean delete(long aDocumentId, String aUser) throws IOException
+    {
+        appendLock.lock();
+        try {
+            if (!index.containsKey(new Key(aDocumentId, aUser))) {
+                return false;
+            }
+
+            install(append(TYPE_DELETE, aDocumentId, aUser, 0, currentTimeMillis(), null));
+            return true;
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    public void deleteDocument(long aDocumentId) throws IOException
+    {
+        appendLock.lock();
+        try {
+            var keys = index.keySet().stream() //
+                    .filter(key -> key.documentId() == aDocumentId) //
+                    .collect(toList());
+            for (var key : keys) {
+                delete(key.documentId(), key.user());
+            }
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Adds the given serialized type system to the store unless the store already contains it.
+     *
+     * @return the ID of the type system record.
+     */
+    public long putTypeSystem(String aDigest, byte[] aData) throws IOException
+    {
+        var existing = typeSystemsByDigest.get(aDigest);
+        if (existing != null) {
+            return existing;
+        }
+
+        appendLock.lock();
+        try {
+            existing = typeSystemsByDigest.get(aDigest);
+            if (existing != null) {
+                return existing;
+            }
+
+            var id = typeSystems.keySet().stream().mapToLong(Long::longValue).max().orElse(0) + 1;
+            install(append(TYPE_TYPE_SYSTEM, id, aDigest, 0, currentTimeMillis(),
+                    out -> out.write(aData)));
+            return id;
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the current version of the given CAS. The reader operates directly on the memory-mapped
+     * record.
+     *
+     * @return the result of the reader or nothing if there is no such CAS.
+     */
+    public <T> Optional<T> read(long aDocumentId, String aUser, PayloadReader<T> aReader)
+        throws IOException
+    {
+        var key = new Key(aDocumentId, aUser);
+        return read(() -> index.get(key), aReader);
+    }
+
+    public <T> T readTypeSystem(long aTypeSystemId, PayloadReader<T> aReader) throws IOException
+    {
+        return read(() -> typeSystems.get(aTypeSystemId), aReader).orElseThrow(
+                () -> new IOException("Type system [" + aTypeSystemId + "] not found in CAS "
+                        + "segment store [" + directory + "]"));
+    }
+
+    private <T> Optional<T> read(EntryLookup aLookup, PayloadReader<T> aReader) throws IOException
+    {
+        while (true) {
+            var entry = aLookup.get();
+            if (entry == null) {
+                return Optional.empty();
+            }
+
+            var buffer = entry.segment.map(entry.payloadOffset(), entry.payloadLength);
+            if (buffer == null) {
+                // The segment has been compacted while we were looking - the record has been
+                // moved by now, so we try again
+                continue;
+            }
+
+            var crc = new CRC32();
+            crc.update(buffer.duplicate());
+            if ((int) crc.getValue() != entry.payloadCrc) {
+                throw new IOException("Checksum mismatch for record at offset [" + entry.offset
+                        + "] in CAS segment [" + entry.segment.getFile() + "]");
+            }
+
+            return Optional.ofNullable(aReader.read(entry, new ByteBufferInputStream(buffer)));
+        }
+    }
+
+    /**
+     * Compacts all segments (except for the active one) in which the ratio of dead data exceeds
+     * the given threshold.
+     *
+     * @return the number of compacted segments.
+     */
+    public int compact(double aThreshold) throws IOException
+    {
+        var candidates = segments.values().stream() //
+                .filter(segment -> segment != activeSegment) //
+                .filter(segment -> segment.getDeadRatio() >= aThreshold) //
+                .collect(toList());
+
+        for (var segment : candidates) {
+            compact(segment);
+        }
+
+        appendLock.lock();
+        try {
+            deletePendingSegments();
+        }
+        finally {
+            appendLock.unlock();
+        }
+
+        return candidates.size();
+    }
+
+    private void compact(Segment aSegment) throws IOException
+    {
+        LOG.debug("Compacting CAS segment {}", aSegment);
+
+        // Move the live records one-by-one so that writers are not blocked for too long
+        var pos = 0l;
+        while (pos < aSegment.size()) {
+            var entry = readEntry(aSegment, pos, aSegment.size());
+            if (entry == null) {
+                break;
+            }
+            pos = entry.end();
+
+            appendLock.lock();
+            try {
+                ensureOpen();
+                if (isLive(entry)) {
+                    relocate(entry);
+                }
+            }
+            finally {
+                appendLock.unlock();
+            }
+        }
+
+        appendLock.lock();
+        try {
+            segments.remove(aSegment.getId());
+            aSegment.retire();
+            pendingDeletions.add(aSegment.getFile());
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    private boolean isLive(Entry aEntry)
+    {
+        Entry current;
+        switch (aEntry.type) {
+        case TYPE_CAS:
+            current = index.get(aEntry.getKey());
+            break;
+        case TYPE_DELETE:
+            current = tombstones.get(aEntry.getKey());
+            // A tombstone is only required as long as there may be older records of the CAS in
+            // older segments. If there are no older segments, we can drop it.
+            if (current != null && current.segment == aEntry.segment
+                    && current.offset == aEntry.offset
+                    && segments.firstKey() == aEntry.segment.getId()) {
+                tombstones.remove(aEntry.getKey());
+                return false;
+            }
+            break;
+        case TYPE_TYPE_SYSTEM:
+            current = typeSystems.get(aEntry.documentId);
+            break;
+        default:
+            return false;
+        }
+
+        return current != null && current.segment == aEntry.segment
+                && current.offset == aEntry.offset;
+    }
+
+    private void relocate(Entry aEntry) throws IOException
+    {
+        var buffer = aEntry.segment.map(aEntry.payloadOffset(), aEntry.payloadLength);
+        var relocated = append(aEntry.type, aEntry.documentId, aEntry.user, aEntry.typeSystemId,
+                aEntry.timestamp, out -> Channels.newChannel(out).write(buffer));
+
+        if (relocated.payloadCrc != aEntry.payloadCrc) {
+            LOG.warn("Checksum mismatch while compacting record at offset [{}] in CAS segment [{}]",
+                    aEntry.offset, aEntry.segment.getFile());
+        }
+
+        install(relocated);
+    }
+
+    private void deletePendingSegments()
+    {
+        for (var i = pendingDeletions.iterator(); i.hasNext();) {
+            var file = i.next();
+            try {
+                Files.deleteIfExists(file);
+                i.remove();
+            }
+            catch (IOException e) {
+                // On some platforms, files cannot be deleted while they are still mapped, so we
+                // try again later
+                LOG.debug("Unable to delete compacted CAS segment [{}] - will try again later",
+                        file, e);
+            }
+        }
+    }
+
+    public long getSize()
+    {
+        return segments.values().stream().mapToLong(Segment::size).sum();
+    }
+
+    public long getDeadBytes()
+    {
+        return segments.values().stream().mapToLong(Segment::getDeadBytes).sum();
+    }
+
+    public int getSegmentCount()
+    {
+        return segments.size();
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        appendLock.lock();
+        try {
+            closed = true;
+            closeSegments();
+            deletePendingSegments();
+        }
+        finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void closeSegments()
+    {
+        for (var segment : segments.values()) {
+            try {
+                segment.close();
+            }
+            catch (IOException e) {
+                LOG.error("Unable to close CAS segment [{}]", segment.getFile(), e);
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException
+    {
+        if (closed) {
+            throw new IOException("CAS segment store [" + directory + "] has been closed");
+        }
+    }
+
+    private Segment createSegment(long aId) throws IOException
+    {
+        var file = directory.resolve(String.format("%012d%s", aId, SEGMENT_EXTENSION));
+        var segment = Segment.open(aId, file);
+        segments.put(aId, segment);
+        return segment;
+    }
+
+    private Entry append(byte aType, long aDocumentId, String aUser, long aTypeSystemId,
+            long aTimestamp, PayloadWriter aWriter)
+        throws IOException
+    {
+        ensureOpen();
+
+        var segment = activeSegment;
+        if (segment.size() >= maxSegmentSize) {
+            segment = createSegment(segments.lastKey() + 1);
+            activeSegment = segment;
+        }
+
+        var userBytes = aUser.getBytes(UTF_8);
+        if (userBytes.length > Short.MAX_VALUE) {
+            throw new IOException("User name too long");
+        }
+
+        var channel = segment.getChannel();
+        var start = segment.size();
+        var headerLength = FIXED_HEADER_SIZE + userBytes.length;
+        try {
+            // The payload is streamed directly into the segment. The header is written last, so
+            // a record is only valid once it has been completely written.
+            var out = new ChannelOutputStream(channel, start + headerLength);
+            var crc = new CRC32();
+            if (aWriter != null) {
+                try (var os = new BufferedOutputStream(new CheckedOutputStream(out, crc),
+                        BUFFER_SIZE)) {
+                    aWriter.write(os);
+                }
+            }
+
+            var payloadLength = out.getPosition() - start - headerLength;
+            if (payloadLength > Integer.MAX_VALUE) {
+                throw new IOException("Record too large: " + payloadLength + " bytes");
+            }
+
+            var header = ByteBuffer.allocate(headerLength) //
+                    .putInt(MAGIC) //
+                    .put(aType) //
+                    .putLong(aDocumentId) //
+                    .putLong(aTimestamp) //
+                    .putLong(aTypeSystemId) //
+                    .putInt((int) payloadLength) //
+                    .putInt((int) crc.getValue()) //
+                    .putShort((short) userBytes.length) //
+                    .put(userBytes);
+            header.flip();
+            writeFully(channel, header, start);
+
+            // The record must be on disk before the index points to it - otherwise a crash could
+            // lose a CAS version which was already reported as saved
+            channel.force(true);
+
+            var entry = new Entry(segment, start, headerLength, aType, aDocumentId, aTimestamp,
+                    aTypeSystemId, (int) payloadLength, (int) crc.getValue(), aUser);
+            segment.setSize(entry.end());
+            return entry;
+        }
+        catch (IOException | RuntimeException e) {
+            // Drop the incomplete record - the next append would overwrite it anyway
+            try {
+                channel.truncate(start);
+            }
+            catch (IOException ex) {
+                e.addSuppressed(ex);
+            }
+            throw e;
+        }
+    }
+
+    private void install(Entry aEntry)
+    {
+        switch (aEntry.type) {
+        case TYPE_CAS:
+            supersede(index.put(aEntry.getKey(), aEntry));
+            supersede(tombstones.remove(aEntry.getKey()));
+            break;
+        case TYPE_DELETE:
+            supersede(index.remove(aEntry.getKey()));
+            supersede(tombstones.put(aEntry.getKey(), aEntry));
+            break;
+        case TYPE_TYPE_SYSTEM:
+            supersede(typeSystems.put(aEntry.documentId, aEntry));
+            typeSystemsByDigest.put(aEntry.user, aEntry.documentId);
+            break;
+        default:
+            throw new IllegalStateException("Unknown record type [" + aEntry.type + "]");
+        }
+    }
+
+    private void supersede(Entry aEntry)
+    {
+        if (aEntry != null) {
+            aEntry.segment.addDeadBytes(aEntry.length());
+        }
+    }
+
+    private Entry readEntry(Segment aSegment, long aPosition, long aLimit) throws IOException
+    {
+        if (aPosition + FIXED_HEADER_SIZE > aLimit) {
+            return null;
+        }
+
+        var header = ByteBuffer.allocate(FIXED_HEADER_SIZE);
+        aSegment.read(header, aPosition);
+        header.flip();
+        if (header.remaining() < FIXED_HEADER_SIZE || header.getInt() != MAGIC) {
+            return null;
+        }
+
+        var type = header.get();
+        var documentId = header.getLong();
+        var timestamp = header.getLong();
+        var typeSystemId = header.getLong();
+        var payloadLength = header.getInt();
+        var payloadCrc = header.getInt();
+        var userLength = header.getShort();
+
+        if (type < TYPE_CAS || type > TYPE_TYPE_SYSTEM || payloadLength < 0 || userLength < 0
+                || aPosition + FIXED_HEADER_SIZE + userLength + payloadLength > aLimit) {
+            return null;
+        }
+
+        var userBuffer = ByteBuffer.allocate(userLength);
+        aSegment.read(userBuffer, aPosition + FIXED_HEADER_SIZE);
+        var user = new String(userBuffer.array(), 0, userBuffer.position(), UTF_8);
+
+        return new Entry(aSegment, aPosition, FIXED_HEADER_SIZE + userLength, type, documentId,
+                timestamp, typeSystemId, payloadLength, payloadCrc, user);
+    }
+
+    private boolean verify(Entry aEntry) throws IOException
+    {
+        var buffer = aEntry.segment.map(aEntry.payloadOffset(), aEntry.payloadLength);
+        var crc = new CRC32();
+        crc.update(buffer);
+        return (int) crc.getValue() == aEntry.payloadCrc;
+    }
+
+    private static void writeFully(FileChannel aChannel, ByteBuffer aBuffer, long aPosition)
+        throws IOException
+    {
+        var pos = aPosition;
+        while (aBuffer.hasRemaining()) {
+            pos += aChannel.write(aBuffer, pos);
+        }
+    }
+
+    static String digest(byte[] aData)
+    {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(aData));
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    interface PayloadWriter
+    {
+        void write(OutputStream aOut) throws IOException;
+    }
+
+    @FunctionalInterface
+    interface PayloadReader<T>
+    {
+        T read(Entry aEntry, InputStream aIn) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface EntryLookup
+    {
+        Entry get();
+    }
+
+    private record Key(long documentId, String user) {}
+
+    /**
+     * Pointer to a record in a segment.
+     */
+    static final class Entry
+    {
+        private final Segment segment;
+        private final long offset;
+        private final int headerLength;
+        private final byte type;
+        private final long documentId;
+        private final long timestamp;
+        private final long typeSystemId;
+        private final int payloadLength;
+        private final int payloadCrc;
+        private final String user;
+
+        private Entry(Segment aSegment, long aOffset, int aHeaderLength, byte aType,
+                long aDocumentId, long aTimestamp, long aTypeSystemId, int aPayloadLength,
+                int aPayloadCrc, String aUser)
+        {
+            segment = aSegment;
+            offset = aOffset;
+            headerLength = aHeaderLength;
+            type = aType;
+            documentId = aDocumentId;
+            timestamp = aTimestamp;
+            typeSystemId = aTypeSystemId;
+            payloadLength = aPayloadLength;
+            payloadCrc = aPayloadCrc;
+            user = aUser;
+        }
+
+        public long getTimestamp()
+        {
+            return timestamp;
+        }
+
+        public long getTypeSystemId()
+        {
+            return typeSystemId;
+        }
+
+        /**
+         * @return the size of the serialized CAS (excluding the type system).
+         */
+        public int getSize()
+        {
+            return payloadLength;
+        }
+
+        private Key getKey()
+        {
+            return new Key(documentId, user);
+        }
+
+        private long payloadOffset()
+        {
+            return offset + headerLength;
+        }
+
+        private long end()
+        {
+            return payloadOffset() + payloadLength;
+        }
+
+        private long length()
+        {
+            return headerLength + payloadLength;
+        }
+    }
+
+    private static final class ChannelOutputStream
+        extends OutputStream
+    {
+        private final FileChannel channel;
+        private long position;
+
+        public ChannelOutputStream(FileChannel aChannel, long aPosition)
+        {
+            channel = aChannel;
+            position = aPosition;
+        }
+
+        public long getPosition()
+        {
+            return position;
+        }
+
+        @Override
+        public void write(int aByte) throws IOException
+        {
+            write(new byte[] { (byte) aByte }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] aBytes, int aOffset, int aLength) throws IOException
+        {
+            writeFully(channel, ByteBuffer.wrap(aBytes, aOffset, aLength), position);
+            position += aLength;
+        }
+    }
+
+    private static final class ByteBufferInputStream
+        extends InputStream
+    {
+        private final ByteBuffer buffer;
+
+        public ByteBufferInputStream(ByteBuffer aBuffer)
+        {
+            buffer = aBuffer;
+        }
+
+        @Override
+        public int read()
+        {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] aBytes, int aOffset, int aLength)
+        {
+            if (aLength == 0) {
+                return 0;
+            }
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            var length = Math.min(aLength, buffer.remaining());
+            buffer.get(aBytes, aOffset, length);
+            return length;
+        }
+
+        @Override
+        public long skip(long aCount)
+        {
+            var count = (int) Math.min(Math.max(aCount, 0), buffer.remaining());
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available()
+        {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage;
+
+import static org.apache.commons.lang3.StringUtils.repeat;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.uima.cas.CAS;
+import org.junit.jupiter.api.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+
+class CasHolderTest
+{
+    private static final CasKey KEY = new CasKey(1l, 1l, "user");
+
+    @Test
+    void thatEstimatedSizeGrowsWithCas() throws Exception
+    {
+        var empty = new CasHolder(KEY);
+        var shortText = new CasHolder(KEY, makeCas("This is a test", 0));
+        var longText = new CasHolder(KEY, makeCas(repeat("This is a test ", 1000), 0));
+        var annotated = new CasHolder(KEY, makeCas(repeat("This is a test ", 1000), 1000));
+
+        assertThat(empty.getEstimatedSize()).isZero();
+        assertThat(shortText.getEstimatedSize()).isPositive();
+        assertThat(longText.getEstimatedSize()) //
+                .as("Text is charged to the CAS") //
+                .isGreaterThanOrEqualTo(shortText.getEstimatedSize() + 14_000 * Character.BYTES);
+        assertThat(annotated.getEstimatedSize()) //
+                .as("Feature structures are charged to the CAS") //
+                .isGreaterThan(longText.getEstimatedSize() + 1000);
+    }
+
+    @Test
+    void thatEstimatedSizeIncludesAllViews() throws Exception
+    {
+        var cas = makeCas("This is a test", 0);
+        var before = new CasHolder(KEY, cas).getEstimatedSize();
+
+        cas.createView("other").setDocumentText(repeat("x", 1000));
+
+        assertThat(new CasHolder(KEY, cas).getEstimatedSize()) //
+                .isGreaterThanOrEqualTo(before + 1000 * Character.BYTES);
+    }
+
+    private CAS makeCas(String aText, int aAnnotations) throws Exception
+    {
+        var cas = WebAnnoCasUtil.createCas();
+        cas.setDocumentText(aText);
+        for (int i = 0; i < aAnnotations; i++) {
+            cas.addFsToIndexes(cas.createAnnotation(cas.getAnnotationType(), 0, 1));
+        }
+        return cas;
+    }
+}
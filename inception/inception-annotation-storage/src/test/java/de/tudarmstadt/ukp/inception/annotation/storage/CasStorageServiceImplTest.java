@@ -28,6 +28,7 @@ import static de.tudarmstadt.ukp.clarin.webanno.support.WebAnnoConst.INITIAL_CAS
 import static de.tudarmstadt.ukp.inception.annotation.storage.CasMetadataUtils.getInternalTypeSystem;
 import static de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession.openNested;
 import static java.lang.Thread.sleep;
+import static java.time.Duration.ofSeconds;
 import static java.util.Arrays.asList;
 import static org.apache.commons.lang3.StringUtils.repeat;
 import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
@@ -35,6 +36,7 @@ import static org.apache.uima.fit.util.JCasUtil.select;
 import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.awaitility.Awaitility.await;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -58,6 +60,7 @@ import org.junit.jupiter.api.io.TempDir;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.util.unit.DataSize;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
 import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasProvider;
@@ -75,6 +78,17 @@ import de.tudarmstadt.ukp.inception.schema.api.event.LayerConfigurationChangedEv
 
 public class CasStorageServiceImplTest
 {
+    /**
+     * Lower bound of the estimated size of a CAS created by {@link #createLargeCasFiles}.
+     */
+    private static final long LARGE_CAS_SIZE = 100_000 * Character.BYTES;
+
+    /**
+     * Shared-access cache memory limit which fits two CASes created by
+     * {@link #createLargeCasFiles}, but not three.
+     */
+    private static final long LARGE_CAS_CACHE_MEMORY = 2 * LARGE_CAS_SIZE + LARGE_CAS_SIZE / 2;
+
     private Logger log = LoggerFactory.getLogger(getClass());
 
     private AtomicBoolean exception = new AtomicBoolean(false);
@@ -227,6 +241,77 @@ public class CasStorageServiceImplTest
                 .isNotEqualTo(casIdentity3);
     }
 
+    @Test
+    public void thatSharedAccessCacheEvictsByWeight() throws Exception
+    {
+        // Setup fixture - the memory limit only fits two of the CASes while the count limit would
+        // fit all of them
+        var cacheProperties = new CasStorageCachePropertiesImpl();
+        cacheProperties.setSharedCasCacheSize(1000);
+        cacheProperties.setSharedCasCacheMemory(DataSize.ofBytes(LARGE_CAS_CACHE_MEMORY));
+        sut = new CasStorageServiceImpl(driver, cacheProperties, null, null);
+        var docs = createLargeCasFiles(6l, 5, "test");
+
+        // Actual test
+        for (var doc : docs) {
+            readSharedCas(doc, "test");
+        }
+
+        await().atMost(ofSeconds(5)).until(() -> sut.getSharedAccessCacheSize() <= 2);
+
+        assertThat(sut.getSharedAccessCacheSize()).isPositive();
+        assertThat(sut.getSharedAccessCacheWeight()) //
+                .isPositive() //
+                .isLessThanOrEqualTo(cacheProperties.getSharedCasCacheMemory().toBytes());
+    }
+
+    @Test
+    public void thatSharedAccessCacheMetricsReflectEvictions() throws Exception
+    {
+        // Setup fixture
+        var cacheProperties = new CasStorageCachePropertiesImpl();
+        cacheProperties.setSharedCasCacheSize(1000);
+        cacheProperties.setSharedCasCacheMemory(DataSize.ofBytes(LARGE_CAS_CACHE_MEMORY));
+        sut = new CasStorageServiceImpl(driver, cacheProperties, null, null);
+        var metrics = new CasStorageServiceSharedAccessCacheAdapter(sut, cacheProperties);
+        var docs = createLargeCasFiles(7l, 5, "test");
+
+        // Actual test
+        readSharedCas(docs.get(0), "test");
+        readSharedCas(docs.get(0), "test");
+
+        assertThat(metrics.getHitCount()).isEqualTo(1);
+        assertThat(metrics.getHitRate()).isEqualTo(0.5);
+        assertThat(metrics.getEvictionCount()).isZero();
+        assertThat(metrics.getEvictionWeight()).isZero();
+        assertThat(metrics.getActiveWeight()).isGreaterThanOrEqualTo(LARGE_CAS_SIZE);
+        var bytesHeldBeforeEviction = metrics.getActiveWeight();
+
+        for (var doc : docs.subList(1, docs.size())) {
+            readSharedCas(doc, "test");
+        }
+
+        await().atMost(ofSeconds(5)).until(() -> metrics.getActiveCount() <= 2);
+
+        assertThat(metrics.getEvictionCount()).isGreaterThanOrEqualTo(3);
+        assertThat(metrics.getEvictionWeight())
+                .isGreaterThanOrEqualTo(metrics.getEvictionCount() * LARGE_CAS_SIZE);
+        assertThat(metrics.getActiveWeight()) //
+                .isGreaterThanOrEqualTo(bytesHeldBeforeEviction) //
+                .isLessThanOrEqualTo(metrics.getMaxWeight());
+        assertThat(metrics.getWeightUtilizationRate()).isBetween(0.5, 1.0);
+
+        // At most two of the CASes are still in the cache, so reading all of them again misses
+        // at least three times
+        var missesBefore = metrics.getMissCount();
+        for (var doc : docs) {
+            readSharedCas(doc, "test");
+        }
+
+        assertThat(metrics.getMissCount()).isGreaterThanOrEqualTo(missesBefore + 3);
+        assertThat(metrics.getHitRate()).isLessThanOrEqualTo(3.0 / 11.0);
+    }
+
     @Test
     public void testConcurrentAccess() throws Exception
     {
@@ -638,6 +723,27 @@ public class CasStorageServiceImplTest
         }
     };
 
+    private List<SourceDocument> createLargeCasFiles(long aProjectId, int aCount, String aUser)
+        throws Exception
+    {
+        var docs = new ArrayList<SourceDocument>();
+        try (CasStorageSession session = openNested(true)) {
+            for (int i = 0; i < aCount; i++) {
+                var doc = makeSourceDocument(aProjectId, i + 1, "test" + i);
+                createCasFile(doc, aUser, repeat("x", (int) (LARGE_CAS_SIZE / Character.BYTES)));
+                docs.add(doc);
+            }
+        }
+        return docs;
+    }
+
+    private void readSharedCas(SourceDocument aDocument, String aUser) throws Exception
+    {
+        try (CasStorageSession session = openNested()) {
+            sut.readOrCreateCas(aDocument, aUser, AUTO_CAS_UPGRADE, null, SHARED_READ_ONLY_ACCESS);
+        }
+    }
+
     private CAS makeCas(String aText) throws IOException
     {
         try {
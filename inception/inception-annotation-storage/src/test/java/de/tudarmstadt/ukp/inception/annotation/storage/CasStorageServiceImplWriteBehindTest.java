@@ -0,0 +1,342 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXCLUSIVE_WRITE_ACCESS;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.UNMANAGED_NON_INITIALIZING_ACCESS;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasUpgradeMode.NO_CAS_UPGRADE;
+import static de.tudarmstadt.ukp.inception.annotation.storage.CasMetadataUtils.getInternalTypeSystem;
+import static de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession.openNested;
+import static java.lang.Thread.sleep;
+import static java.time.Duration.ofHours;
+import static java.time.Duration.ofSeconds;
+import static java.util.Arrays.asList;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.apache.uima.cas.CAS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.ConcurentCasModificationException;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageBackupProperties;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageCachePropertiesImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStoragePropertiesImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.FileSystemCasStorageDriver;
+import de.tudarmstadt.ukp.inception.documents.api.RepositoryProperties;
+
+public class CasStorageServiceImplWriteBehindTest
+{
+    private static final String USER = "user";
+
+    private CasStorageServiceImpl sut;
+    private FileSystemCasStorageDriver driver;
+
+    @TempDir
+    File testFolder;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        var repositoryProperties = new RepositoryProperties();
+        repositoryProperties.setPath(testFolder);
+
+        driver = spy(new FileSystemCasStorageDriver(repositoryProperties,
+                new CasStorageBackupProperties(), new CasStoragePropertiesImpl()));
+
+        // Pending writes are only flushed when the tests ask for it
+        var properties = new CasStorageCachePropertiesImpl();
+        properties.setWriteBehind(true);
+        properties.setWriteBehindDelay(ofHours(1));
+        properties.setWriteBehindMaxDelay(ofHours(1));
+
+        sut = new CasStorageServiceImpl(driver, properties, null, null);
+    }
+
+    @AfterEach
+    public void tearDown()
+    {
+        sut.destroy();
+    }
+
+    @Test
+    public void thatRepeatedWritesAreCoalesced() throws Exception
+    {
+        var doc = makeSourceDocument(1l);
+        createCasFile(doc);
+
+        try (var session = openNested(true)) {
+            var cas = sut.readCas(doc, USER, EXCLUSIVE_WRITE_ACCESS);
+            for (int i = 0; i < 3; i++) {
+                addAnnotation(cas, i, i + 1);
+                sut.writeCas(doc, cas, USER);
+            }
+        }
+
+        verify(driver, never()).writeCas(any(), any(), any());
+
+        sut.destroy();
+
+        verify(driver, times(1)).writeCas(eq(doc), eq(USER), any());
+        assertThat(annotationCount(driver.readCas(doc, USER))).isEqualTo(3);
+    }
+
+    @Test
+    public void thatPendingWriteIsFlushedBeforeCasIsReadFromStorage() throws Exception
+    {
+        var doc = makeSourceDocument(2l);
+        createCasFile(doc);
+        queueWrite(doc);
+
+        verify(driver, never()).writeCas(any(), any(), any());
+
+        try (var session = openNested(true)) {
+            var cas = sut.readCas(doc, USER, UNMANAGED_NON_INITIALIZING_ACCESS);
+            assertThat(annotationCount(cas)).isEqualTo(1);
+        }
+
+        verify(driver, times(1)).writeCas(eq(doc), eq(USER), any());
+    }
+
+    @Test
+    public void thatPendingWriteIsFlushedBeforeExport() throws Exception
+    {
+        var doc = makeSourceDocument(3l);
+        createCasFile(doc);
+        queueWrite(doc);
+
+        sut.exportCas(doc, USER, OutputStream.nullOutputStream());
+
+        verify(driver, times(1)).writeCas(eq(doc), eq(USER), any());
+        assertThat(annotationCount(driver.readCas(doc, USER))).isEqualTo(1);
+    }
+
+    @Test
+    public void thatPendingWriteIsDiscardedOnDelete() throws Exception
+    {
+        var doc = makeSourceDocument(4l);
+        createCasFile(doc);
+        queueWrite(doc);
+
+        try (var session = openNested(true)) {
+            sut.deleteCas(doc, USER);
+        }
+
+        sut.destroy();
+
+        verify(driver, never()).writeCas(any(), any(), any());
+        assertThat(driver.existsCas(doc, USER)).isFalse();
+    }
+
+    @Test
+    public void thatPendingWriteIsDiscardedOnImport() throws Exception
+    {
+        var doc = makeSourceDocument(5l);
+        createCasFile(doc);
+
+        var exported = new ByteArrayOutputStream();
+        sut.exportCas(doc, USER, exported);
+
+        queueWrite(doc);
+
+        sut.importCas(doc, USER, new ByteArrayInputStream(exported.toByteArray()));
+
+        sut.destroy();
+
+        verify(driver, never()).writeCas(any(), any(), any());
+        assertThat(annotationCount(driver.readCas(doc, USER))).isZero();
+    }
+
+    @Test
+    public void thatPendingWritesOfUserAreFlushedWhenSessionIsDestroyed() throws Exception
+    {
+        var doc1 = makeSourceDocument(6l);
+        var doc2 = makeSourceDocument(7l);
+        createCasFile(doc1);
+        createCasFile(doc2);
+
+        queueWriteAs("alice", doc1);
+        queueWriteAs("bob", doc2);
+
+        sut.onSessionDestroyed(sessionDestroyed("alice"));
+
+        await().atMost(ofSeconds(10)).untilAsserted(
+                () -> verify(driver, times(1)).writeCas(eq(doc1), eq(USER), any()));
+        verify(driver, never()).writeCas(eq(doc2), eq(USER), any());
+        assertThat(annotationCount(driver.readCas(doc1, USER))).isEqualTo(1);
+    }
+
+    @Test
+    public void thatPendingWritesAreFlushedOnDestroy() throws Exception
+    {
+        var doc1 = makeSourceDocument(8l);
+        var doc2 = makeSourceDocument(9l);
+        createCasFile(doc1);
+        createCasFile(doc2);
+        queueWrite(doc1);
+        queueWrite(doc2);
+
+        sut.destroy();
+
+        verify(driver, times(1)).writeCas(eq(doc1), eq(USER), any());
+        verify(driver, times(1)).writeCas(eq(doc2), eq(USER), any());
+        assertThat(annotationCount(driver.readCas(doc1, USER))).isEqualTo(1);
+        assertThat(annotationCount(driver.readCas(doc2, USER))).isEqualTo(1);
+    }
+
+    @Test
+    public void thatTimestampSupersededByOwnFlushIsNotConcurrentModification() throws Exception
+    {
+        var doc = makeSourceDocument(10l);
+        createCasFile(doc);
+        var expected = sut.getCasTimestamp(doc, USER).get();
+
+        // Make sure the flush yields a different timestamp
+        sleep(10);
+        queueWrite(doc);
+        sut.exportCas(doc, USER, OutputStream.nullOutputStream());
+
+        var actual = sut.getCasTimestamp(doc, USER).get();
+        assertThat(actual).isNotEqualTo(expected);
+        assertThat(sut.verifyCasTimestamp(doc, USER, expected, "test")).contains(actual);
+
+        // Once somebody else writes the CAS, the old timestamp is no longer acceptable
+        sleep(10);
+        sut.forceActionOnCas(doc, USER, (d, u) -> driver.readCas(d, u),
+                cas -> addAnnotation(cas, 2, 3), true);
+
+        assertThatExceptionOfType(ConcurentCasModificationException.class)
+                .isThrownBy(() -> sut.verifyCasTimestamp(doc, USER, expected, "test"));
+    }
+
+    private void queueWrite(SourceDocument aDocument) throws Exception
+    {
+        try (var session = openNested(true)) {
+            var cas = sut.readCas(aDocument, USER, EXCLUSIVE_WRITE_ACCESS);
+            addAnnotation(cas, 0, 1);
+            sut.writeCas(aDocument, cas, USER);
+        }
+    }
+
+    private void queueWriteAs(String aPrincipal, SourceDocument aDocument) throws Exception
+    {
+        SecurityContextHolder.getContext()
+                .setAuthentication(new TestingAuthenticationToken(aPrincipal, null));
+        try {
+            queueWrite(aDocument);
+        }
+        finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private void createCasFile(SourceDocument aDocument) throws Exception
+    {
+        try (var session = openNested(true)) {
+            sut.readOrCreateCas(aDocument, USER, NO_CAS_UPGRADE, () -> makeCas("This is a test"),
+                    EXCLUSIVE_WRITE_ACCESS);
+        }
+        clearInvocations(driver);
+    }
+
+    private static SessionDestroyedEvent sessionDestroyed(String aPrincipal)
+    {
+        var context = new SecurityContextImpl(new TestingAuthenticationToken(aPrincipal, null));
+        return new SessionDestroyedEvent("session")
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public List<SecurityContext> getSecurityContexts()
+            {
+                return List.of(context);
+            }
+
+            @Override
+            public String getId()
+            {
+                return "session";
+            }
+        };
+    }
+
+    private static void addAnnotation(CAS aCas, int aBegin, int aEnd)
+    {
+        aCas.addFsToIndexes(aCas.createAnnotation(aCas.getAnnotationType(), aBegin, aEnd));
+    }
+
+    private static long annotationCount(CAS aCas)
+    {
+        return aCas.select(aCas.getAnnotationType()) //
+                .filter(ann -> ann.getType().equals(aCas.getAnnotationType())) //
+                .count();
+    }
+
+    private CAS makeCas(String aText) throws IOException
+    {
+        try {
+            var cas = WebAnnoCasUtil.createCas(mergeTypeSystems(
+                    asList(createTypeSystemDescription(), getInternalTypeSystem())));
+            cas.setDocumentText(aText);
+            return cas;
+        }
+        catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    private SourceDocument makeSourceDocument(long aDocumentId)
+    {
+        var project = new Project();
+        project.setId(1l);
+
+        var doc = new SourceDocument();
+        doc.setProject(project);
+        doc.setId(aDocumentId);
+        doc.setName("test");
+
+        return doc;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs JMH benchmarks and writes the results as JSON so they can be compared between releases.
+ * Any regular JMH command line options can be passed, e.g. {@code -p tokens=10000} to restrict
+ * the parameters or {@code -rff results.json} to change the result file. This is shared by the
+ * benchmark runners of all modules.
+ */
+public final class BenchmarkRunner
+{
+    private BenchmarkRunner()
+    {
+        // No instances
+    }
+
+    /**
+     * @param aArgs
+     *            the JMH command line options.
+     * @param aDefaultResultFile
+     *            the result file unless one is given on the command line.
+     * @param aDefaultBenchmarks
+     *            the benchmarks to run unless some are given on the command line.
+     */
+    public static void run(String[] aArgs, String aDefaultResultFile,
+            Class<?>... aDefaultBenchmarks)
+        throws Exception
+    {
+        var commandLine = new CommandLineOptions(aArgs);
+
+        // Settings made here take precedence over the parent, so only set the defaults if they
+        // have not been given on the command line
+        var options = new OptionsBuilder().parent(commandLine);
+
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+
+        if (!commandLine.getResult().hasValue()) {
+            options.result(aDefaultResultFile);
+        }
+
+        if (commandLine.getIncludes().isEmpty()) {
+            for (var benchmark : aDefaultBenchmarks) {
+                options.include(benchmark.getSimpleName());
+            }
+        }
+
+        new Runner(options.build()).run();
+    }
+}
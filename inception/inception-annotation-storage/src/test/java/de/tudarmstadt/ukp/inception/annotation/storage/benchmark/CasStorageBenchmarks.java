@@ -0,0 +1,34 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.benchmark;
+
+/**
+ * Runs the CAS storage benchmarks.
+ * 
+ * @see BenchmarkRunner
+ */
+public class CasStorageBenchmarks
+{
+    public static final String DEFAULT_RESULT_FILE = "target/cas-storage-benchmark.json";
+
+    public static void main(String[] aArgs) throws Exception
+    {
+        BenchmarkRunner.run(aArgs, DEFAULT_RESULT_FILE, CasStorageDriverBenchmark.class,
+                CasStorageServiceBenchmark.class);
+    }
+}
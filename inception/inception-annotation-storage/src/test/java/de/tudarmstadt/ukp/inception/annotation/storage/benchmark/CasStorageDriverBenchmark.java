@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.benchmark;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.CASImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.annotation.storage.benchmark.SyntheticCasGenerator.LayerMix;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageBackupProperties;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStoragePropertiesImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageSegmentProperties;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.CasStorageDriver;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.FileSystemCasStorageDriver;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.segment.SegmentCasStorageDriver;
+import de.tudarmstadt.ukp.inception.documents.api.RepositoryProperties;
+
+/**
+ * Measures reading, writing and exporting CASes through the {@link CasStorageDriver}
+ * implementations and their different serialization options.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-D" + CASImpl.ALWAYS_HOLD_ONTO_FSS + "=true")
+public class CasStorageDriverBenchmark
+{
+    private static final String USER = "benchmark";
+
+    public enum DriverVariant
+    {
+        /**
+         * File system driver with the default settings (compressed).
+         */
+        FILESYSTEM,
+
+        /**
+         * File system driver writing uncompressed CASes.
+         */
+        FILESYSTEM_UNCOMPRESSED,
+
+        /**
+         * File system driver checking every CAS by reading it back after writing it.
+         */
+        FILESYSTEM_PARANOID,
+
+        /**
+         * File system driver creating a backup on every write.
+         */
+        FILESYSTEM_BACKUP,
+
+        /**
+         * File system driver writing only the changes to a per-document journal.
+         */
+        FILESYSTEM_DELTA,
+
+        /**
+         * Segment driver storing all CASes of a project in shared segment files.
+         */
+        SEGMENT;
+    }
+
+    @Param({ "1000", "10000", "100000" })
+    public int tokens;
+
+    @Param({ "TOKENS", "SPANS", "RELATIONS" })
+    public LayerMix layers;
+
+    @Param({ "FILESYSTEM", "FILESYSTEM_UNCOMPRESSED", "FILESYSTEM_PARANOID", "FILESYSTEM_BACKUP",
+            "FILESYSTEM_DELTA", "SEGMENT" })
+    public DriverVariant driver;
+
+    private Path repositoryFolder;
+    private CasStorageDriver sut;
+    private SourceDocument document;
+    private CAS cas;
+    private int editPosition;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        repositoryFolder = Files.createTempDirectory("cas-storage-benchmark");
+
+        var project = new Project();
+        project.setId(1l);
+        project.setName("benchmark");
+
+        document = new SourceDocument();
+        document.setProject(project);
+        document.setId(1l);
+        document.setName("benchmark.txt");
+
+        sut = makeDriver();
+        sut.writeCas(document, USER, new SyntheticCasGenerator().generate(tokens, layers));
+
+        // This is the CAS that gets edited and saved again by the write benchmark
+        cas = sut.readCas(document, USER);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        if (sut instanceof SegmentCasStorageDriver) {
+            ((SegmentCasStorageDriver) sut).destroy();
+        }
+
+        FileUtils.deleteQuietly(repositoryFolder.toFile());
+    }
+
+    @Benchmark
+    public CAS read() throws IOException
+    {
+        return sut.readCas(document, USER);
+    }
+
+    /**
+     * Simulates an annotation action followed by a save.
+     */
+    @Benchmark
+    public void write() throws IOException
+    {
+        var textLength = cas.getDocumentText().length();
+        editPosition = (editPosition + 7) % (textLength - 1);
+        SyntheticCasGenerator.addSpan(cas, editPosition, editPosition + 1);
+        sut.writeCas(document, USER, cas);
+    }
+
+    @Benchmark
+    public void export() throws IOException
+    {
+        sut.exportCas(document, USER, NullOutputStream.INSTANCE);
+    }
+
+    private CasStorageDriver makeDriver()
+    {
+        var repositoryProperties = new RepositoryProperties();
+        repositoryProperties.setPath(repositoryFolder.toFile());
+
+        var properties = new CasStoragePropertiesImpl();
+        properties.setCompressedCasSerialization(driver != DriverVariant.FILESYSTEM_UNCOMPRESSED);
+        properties.setParanoidCasSerialization(driver == DriverVariant.FILESYSTEM_PARANOID);
+        properties.setDeltaCasSerialization(driver == DriverVariant.FILESYSTEM_DELTA);
+
+        var backupProperties = new CasStorageBackupProperties();
+        // Backups are created at most once per interval, so use the shortest possible interval
+        backupProperties.setInterval(driver == DriverVariant.FILESYSTEM_BACKUP ? 1 : 0);
+
+        if (driver == DriverVariant.SEGMENT) {
+            return new SegmentCasStorageDriver(repositoryProperties, properties,
+                    new CasStorageSegmentProperties());
+        }
+
+        return new FileSystemCasStorageDriver(repositoryProperties, backupProperties, properties);
+    }
+}
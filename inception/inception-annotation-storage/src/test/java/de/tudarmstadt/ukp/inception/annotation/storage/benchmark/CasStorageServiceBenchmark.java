@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.benchmark;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getRealCas;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.UNMANAGED_ACCESS;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasUpgradeMode.FORCE_CAS_UPGRADE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.uima.cas.impl.Serialization.deserializeCASComplete;
+import static org.apache.uima.cas.impl.Serialization.serializeCASComplete;
+import static org.apache.uima.cas.impl.Serialization.serializeWithCompression;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.fit.factory.CasFactory;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasIOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasUpgradeMode;
+import de.tudarmstadt.ukp.clarin.webanno.diag.CasDoctor;
+import de.tudarmstadt.ukp.clarin.webanno.diag.ChecksRegistryImpl;
+import de.tudarmstadt.ukp.clarin.webanno.diag.RepairsRegistryImpl;
+import de.tudarmstadt.ukp.clarin.webanno.diag.checks.AllFeatureStructuresIndexedCheck;
+import de.tudarmstadt.ukp.clarin.webanno.diag.checks.CASMetadataTypeIsPresentCheck;
+import de.tudarmstadt.ukp.clarin.webanno.diag.checks.NegativeSizeAnnotationsCheck;
+import de.tudarmstadt.ukp.clarin.webanno.diag.checks.UniqueDocumentAnnotationCheck;
+import de.tudarmstadt.ukp.clarin.webanno.diag.repairs.SwitchBeginAndEndOnNegativeSizedAnnotationsRepair;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageServiceImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession;
+import de.tudarmstadt.ukp.inception.annotation.storage.benchmark.SyntheticCasGenerator.LayerMix;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageBackupProperties;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageCachePropertiesImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStoragePropertiesImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.FileSystemCasStorageDriver;
+import de.tudarmstadt.ukp.inception.documents.api.RepositoryProperties;
+import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
+
+/**
+ * Measures the parts of loading and saving a CAS which happen in the {@link CasStorageServiceImpl}
+ * on top of the storage driver, i.e. running the {@link CasDoctor} and upgrading the CAS to the
+ * current type system of the project.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-D" + CASImpl.ALWAYS_HOLD_ONTO_FSS + "=true")
+public class CasStorageServiceBenchmark
+{
+    private static final String USER = "benchmark";
+
+    @Param({ "1000", "10000", "100000" })
+    public int tokens;
+
+    @Param({ "TOKENS", "SPANS", "RELATIONS" })
+    public LayerMix layers;
+
+    /**
+     * Whether the {@link CasDoctor} runs its repairs on every load/save or only its checks.
+     */
+    @Param({ "false", "true" })
+    public boolean repairs;
+
+    private Path repositoryFolder;
+    private CasStorageServiceImpl sut;
+    private SourceDocument document;
+    private CAS cas;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        repositoryFolder = Files.createTempDirectory("cas-storage-benchmark");
+
+        var project = new Project();
+        project.setId(1l);
+        project.setName("benchmark");
+
+        document = new SourceDocument();
+        document.setProject(project);
+        document.setId(1l);
+        document.setName("benchmark.txt");
+
+        var generator = new SyntheticCasGenerator();
+
+        var repositoryProperties = new RepositoryProperties();
+        repositoryProperties.setPath(repositoryFolder.toFile());
+        var driver = new FileSystemCasStorageDriver(repositoryProperties,
+                new CasStorageBackupProperties(), new CasStoragePropertiesImpl());
+
+        sut = new CasStorageServiceImpl(driver, new CasStorageCachePropertiesImpl(),
+                makeCasDoctor(), makeSchemaService(generator.getUpgradedTypeSystem()));
+
+        cas = generator.generate(tokens, layers);
+        driver.writeCas(document, USER, cas);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        FileUtils.deleteQuietly(repositoryFolder.toFile());
+    }
+
+    /**
+     * Loads the CAS from storage, checks/repairs it and upgrades it to the project type system.
+     */
+    @Benchmark
+    public CAS readWithUpgrade() throws Exception
+    {
+        try (var session = CasStorageSession.open()) {
+            return sut.readOrCreateCas(document, USER, FORCE_CAS_UPGRADE, null, UNMANAGED_ACCESS);
+        }
+    }
+
+    /**
+     * Loads the CAS from storage, upgrades it to the project type system and saves it again.
+     */
+    @Benchmark
+    public void upgrade() throws Exception
+    {
+        try (var session = CasStorageSession.open()) {
+            sut.upgradeCas(document, USER);
+        }
+    }
+
+    @Benchmark
+    public void analyzeAndRepair()
+    {
+        sut.analyzeAndRepair(document, USER, cas);
+    }
+
+    private CasDoctor makeCasDoctor()
+    {
+        // Only the checks and repairs which do not need access to the layer configuration
+        var checksRegistry = new ChecksRegistryImpl(List.of(new AllFeatureStructuresIndexedCheck(),
+                new CASMetadataTypeIsPresentCheck(), new NegativeSizeAnnotationsCheck(),
+                new UniqueDocumentAnnotationCheck()));
+        checksRegistry.init();
+        var repairsRegistry = new RepairsRegistryImpl(
+                List.of(new SwitchBeginAndEndOnNegativeSizedAnnotationsRepair()));
+        repairsRegistry.init();
+
+        var casDoctor = new CasDoctor(checksRegistry, repairsRegistry);
+        casDoctor.setActiveChecks(checksRegistry.getExtensions().stream() //
+                .map(check -> check.getId()) //
+                .toArray(String[]::new));
+        if (repairs) {
+            casDoctor.setActiveRepairs(repairsRegistry.getExtensions().stream() //
+                    .map(repair -> repair.getId()) //
+                    .toArray(String[]::new));
+        }
+        return casDoctor;
+    }
+
+    /**
+     * The schema service is not available to this module, so we stub the CAS upgrade with the
+     * lenient re-loading of the CAS into the target type system that the schema service performs.
+     */
+    private static AnnotationSchemaService makeSchemaService(
+            TypeSystemDescription aTargetTypeSystem)
+        throws Exception
+    {
+        var schemaService = mock(AnnotationSchemaService.class);
+        doAnswer(call -> {
+            upgradeCas(call.getArgument(0), aTargetTypeSystem);
+            return null;
+        }).when(schemaService).upgradeCas(any(CAS.class), any(SourceDocument.class), anyString());
+        doAnswer(call -> {
+            upgradeCas(call.getArgument(0), aTargetTypeSystem);
+            return null;
+        }).when(schemaService).upgradeCas(any(CAS.class), any(SourceDocument.class), anyString(),
+                any(CasUpgradeMode.class));
+        return schemaService;
+    }
+
+    private static void upgradeCas(CAS aCas, TypeSystemDescription aTargetTypeSystem)
+        throws Exception
+    {
+        var realCas = (CASImpl) getRealCas(aCas);
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (realCas.getBaseCAS()) {
+            var sourceTypeSystem = realCas.getTypeSystem();
+            var buffer = new ByteArrayOutputStream();
+            serializeWithCompression(realCas, buffer, sourceTypeSystem);
+
+            var tempCas = CasFactory.createCas(aTargetTypeSystem);
+            deserializeCASComplete(serializeCASComplete((CASImpl) tempCas), realCas);
+            CasIOUtils.load(new ByteArrayInputStream(buffer.toByteArray()), realCas,
+                    sourceTypeSystem);
+        }
+    }
+}
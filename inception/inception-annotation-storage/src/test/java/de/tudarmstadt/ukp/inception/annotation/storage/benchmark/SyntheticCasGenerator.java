@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.benchmark;
+
+import static de.tudarmstadt.ukp.inception.annotation.storage.CasMetadataUtils.getInternalTypeSystem;
+import static java.util.Arrays.asList;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
+
+import java.util.Random;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.TypeSystemDescription_impl;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+
+/**
+ * Generates synthetic CASes for the CAS storage benchmarks. The CASes use their own small type
+ * system so that the benchmarks do not depend on a project layer configuration. The generated
+ * content is deterministic for a given size and layer mix.
+ */
+public class SyntheticCasGenerator
+{
+    public static final String TYPE_SENTENCE = "benchmark.Sentence";
+    public static final String TYPE_TOKEN = "benchmark.Token";
+    public static final String TYPE_SPAN = "benchmark.Span";
+    public static final String TYPE_RELATION = "benchmark.Relation";
+    public static final String FEAT_VALUE = "value";
+    public static final String FEAT_GOVERNOR = "Governor";
+    public static final String FEAT_DEPENDENT = "Dependent";
+    public static final String FEAT_EXTRA = "extra";
+
+    private static final int SENTENCE_LENGTH = 20;
+    private static final int SPAN_INTERVAL = 3;
+    private static final String[] LABELS = { "PER", "LOC", "ORG", "MISC" };
+
+    public enum LayerMix
+    {
+        /**
+         * Only tokens and sentences.
+         */
+        TOKENS,
+
+        /**
+         * Tokens, sentences and a labeled span on every third token.
+         */
+        SPANS,
+
+        /**
+         * Tokens, sentences, spans and a labeled relation between consecutive spans.
+         */
+        RELATIONS;
+    }
+
+    private final TypeSystemDescription typeSystem;
+    private final TypeSystemDescription upgradedTypeSystem;
+
+    public SyntheticCasGenerator() throws ResourceInitializationException
+    {
+        typeSystem = mergeTypeSystems(
+                asList(createTypeSystemDescription(), getInternalTypeSystem(), layers(false)));
+        upgradedTypeSystem = mergeTypeSystems(
+                asList(createTypeSystemDescription(), getInternalTypeSystem(), layers(true)));
+    }
+
+    public TypeSystemDescription getTypeSystem()
+    {
+        return typeSystem;
+    }
+
+    /**
+     * @return the type system with an additional feature on the span layer, as it would result
+     *         from a change to the layer configuration of a project.
+     */
+    public TypeSystemDescription getUpgradedTypeSystem()
+    {
+        return upgradedTypeSystem;
+    }
+
+    public CAS generate(int aTokens, LayerMix aLayers) throws ResourceInitializationException
+    {
+        var cas = WebAnnoCasUtil.createCas(typeSystem);
+        var rnd = new Random(aTokens);
+
+        var text = new StringBuilder();
+        var tokenOffsets = new int[aTokens * 2];
+        for (var i = 0; i < aTokens; i++) {
+            if (i > 0) {
+                text.append(i % SENTENCE_LENGTH == 0 ? "\n" : " ");
+            }
+            tokenOffsets[i * 2] = text.length();
+            var length = 1 + rnd.nextInt(10);
+            for (var n = 0; n < length; n++) {
+                text.append((char) ('a' + rnd.nextInt(26)));
+            }
+            tokenOffsets[i * 2 + 1] = text.length();
+        }
+        cas.setDocumentText(text.toString());
+        DocumentMetaData.create(cas);
+
+        var sentenceType = cas.getTypeSystem().getType(TYPE_SENTENCE);
+        var tokenType = cas.getTypeSystem().getType(TYPE_TOKEN);
+        var spanType = cas.getTypeSystem().getType(TYPE_SPAN);
+        var relationType = cas.getTypeSystem().getType(TYPE_RELATION);
+        var spanValue = spanType.getFeatureByBaseName(FEAT_VALUE);
+        var relationValue = relationType.getFeatureByBaseName(FEAT_VALUE);
+        var governor = relationType.getFeatureByBaseName(FEAT_GOVERNOR);
+        var dependent = relationType.getFeatureByBaseName(FEAT_DEPENDENT);
+
+        AnnotationFS previousSpan = null;
+        for (var i = 0; i < aTokens; i++) {
+            var begin = tokenOffsets[i * 2];
+            var end = tokenOffsets[i * 2 + 1];
+
+            if (i % SENTENCE_LENGTH == 0) {
+                var last = Math.min(i + SENTENCE_LENGTH, aTokens) - 1;
+                cas.addFsToIndexes(
+                        cas.createAnnotation(sentenceType, begin, tokenOffsets[last * 2 + 1]));
+            }
+
+            cas.addFsToIndexes(cas.createAnnotation(tokenType, begin, end));
+
+            if (aLayers == LayerMix.TOKENS || i % SPAN_INTERVAL != 0) {
+                continue;
+            }
+
+            var span = cas.createAnnotation(spanType, begin, end);
+            span.setStringValue(spanValue, LABELS[rnd.nextInt(LABELS.length)]);
+            cas.addFsToIndexes(span);
+
+            if (aLayers == LayerMix.RELATIONS && previousSpan != null) {
+                var relation = cas.createAnnotation(relationType, begin, end);
+                relation.setFeatureValue(governor, previousSpan);
+                relation.setFeatureValue(dependent, span);
+                relation.setStringValue(relationValue, LABELS[rnd.nextInt(LABELS.length)]);
+                cas.addFsToIndexes(relation);
+            }
+
+            previousSpan = span;
+        }
+
+        return cas;
+    }
+
+    /**
+     * Adds a span annotation to the given CAS to simulate a single annotation action.
+     */
+    public static void addSpan(CAS aCas, int aBegin, int aEnd)
+    {
+        var spanType = aCas.getTypeSystem().getType(TYPE_SPAN);
+        var span = aCas.createAnnotation(spanType, aBegin, aEnd);
+        span.setStringValue(spanType.getFeatureByBaseName(FEAT_VALUE), LABELS[0]);
+        aCas.addFsToIndexes(span);
+    }
+
+    private static TypeSystemDescription layers(boolean aUpgraded)
+    {
+        var tsd = new TypeSystemDescription_impl();
+        tsd.addType(TYPE_SENTENCE, "", CAS.TYPE_NAME_ANNOTATION);
+        tsd.addType(TYPE_TOKEN, "", CAS.TYPE_NAME_ANNOTATION);
+
+        var span = tsd.addType(TYPE_SPAN, "", CAS.TYPE_NAME_ANNOTATION);
+        span.addFeature(FEAT_VALUE, "", CAS.TYPE_NAME_STRING);
+        if (aUpgraded) {
+            span.addFeature(FEAT_EXTRA, "", CAS.TYPE_NAME_STRING);
+        }
+
+        var relation = tsd.addType(TYPE_RELATION, "", CAS.TYPE_NAME_ANNOTATION);
+        relation.addFeature(FEAT_GOVERNOR, "", TYPE_SPAN);
+        relation.addFeature(FEAT_DEPENDENT, "", TYPE_SPAN);
+        relation.addFeature(FEAT_VALUE, "", CAS.TYPE_NAME_STRING);
+
+        return tsd;
+    }
+}
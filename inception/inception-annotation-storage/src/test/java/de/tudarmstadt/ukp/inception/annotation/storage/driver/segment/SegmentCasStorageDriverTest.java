@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.driver.segment;
+
+import static de.tudarmstadt.ukp.inception.annotation.storage.CasMetadataUtils.getInternalTypeSystem;
+import static java.util.Arrays.asList;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.CASImpl;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageBackupProperties;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStoragePropertiesImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageSegmentProperties;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.DeltaCasJournal;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.FileSystemCasStorageDriver;
+import de.tudarmstadt.ukp.inception.documents.api.RepositoryProperties;
+
+public class SegmentCasStorageDriverTest
+{
+    {
+        System.setProperty(CASImpl.ALWAYS_HOLD_ONTO_FSS, "true");
+    }
+
+    private static final String USER = "user";
+
+    private @TempDir File repositoryFolder;
+
+    private RepositoryProperties repositoryProperties;
+    private CasStoragePropertiesImpl casStorageProperties;
+    private SourceDocument document;
+    private SegmentCasStorageDriver sut;
+
+    @BeforeEach
+    void setup()
+    {
+        repositoryProperties = new RepositoryProperties();
+        repositoryProperties.setPath(repositoryFolder);
+
+        casStorageProperties = new CasStoragePropertiesImpl();
+        casStorageProperties.setDeltaCasSerialization(true);
+
+        var project = new Project();
+        project.setId(1l);
+
+        document = new SourceDocument();
+        document.setProject(project);
+        document.setId(1l);
+        document.setName("test");
+
+        sut = new SegmentCasStorageDriver(repositoryProperties, casStorageProperties,
+                new CasStorageSegmentProperties());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception
+    {
+        sut.destroy();
+    }
+
+    @Test
+    void thatMigrationRetainsLegacyFiles() throws Exception
+    {
+        var legacyDriver = new FileSystemCasStorageDriver(repositoryProperties,
+                new CasStorageBackupProperties(), casStorageProperties);
+        legacyDriver.writeCas(document, USER, makeCas("This is a test."));
+        var legacyCas = legacyDriver.readCas(document, USER);
+        addAnnotation(legacyCas, 10, 14);
+        legacyDriver.writeCas(document, USER, legacyCas);
+
+        var casFile = legacyDriver.getCasFile(document, USER);
+        var journalFile = DeltaCasJournal.getJournalFile(casFile);
+        assertThat(journalFile).exists();
+
+        var cas = sut.readCas(document, USER);
+        assertThat(offsets(cas)).isEqualTo(offsets(legacyCas));
+        assertThat(casFile).exists();
+        assertThat(journalFile).exists();
+
+        addAnnotation(cas, 8, 9);
+        sut.writeCas(document, USER, cas);
+        assertThat(casFile).exists();
+        assertThat(journalFile).exists();
+
+        assertThat(offsets(sut.readCas(document, USER))).isEqualTo(offsets(cas));
+        assertThat(offsets(legacyDriver.readCas(document, USER)))
+                .isEqualTo(offsets(legacyCas));
+    }
+
+    private CAS makeCas(String aText) throws Exception
+    {
+        var cas = WebAnnoCasUtil.createCas(mergeTypeSystems(
+                asList(createTypeSystemDescription(), getInternalTypeSystem())));
+        cas.setDocumentText(aText);
+        DocumentMetaData.create(cas);
+        addAnnotation(cas, 0, 4);
+        addAnnotation(cas, 5, 7);
+        return cas;
+    }
+
+    private static void addAnnotation(CAS aCas, int aBegin, int aEnd)
+    {
+        aCas.addFsToIndexes(aCas.createAnnotation(aCas.getAnnotationType(), aBegin, aEnd));
+    }
+
+    private static String offsets(CAS aCas)
+    {
+        var sb = new StringBuilder();
+        for (AnnotationFS ann : aCas.<AnnotationFS> select(CAS.TYPE_NAME_ANNOTATION)) {
+            sb.append(ann.getType().getShortName()).append(ann.getBegin()).append('-')
+                    .append(ann.getEnd()).append(' ');
+        }
+        return sb.toString();
+    }
+}
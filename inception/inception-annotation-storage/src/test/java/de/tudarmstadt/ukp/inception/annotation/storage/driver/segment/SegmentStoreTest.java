@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.annotation.storage.driver.segment;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class SegmentStoreTest
+{
+    @Test
+    void thatRecordsSurviveReopening(@TempDir Path aTempDir) throws Exception
+    {
+        try (var sut = new SegmentStore(aTempDir, 1024)) {
+            var ts = sut.putTypeSystem("digest", bytes("typesystem"));
+            assertThat(sut.putTypeSystem("digest", bytes("typesystem"))).isEqualTo(ts);
+
+            sut.write(1, "user1", ts, 1000, out -> out.write(bytes("v1")));
+            sut.write(1, "user1", ts, 1000, out -> out.write(bytes("v2")));
+            sut.write(1, "user2", ts, 1000, out -> out.write(bytes("other")));
+            sut.write(2, "user1", ts, 1000, out -> out.write(bytes("deleted")));
+            assertThat(sut.delete(2, "user1")).isTrue();
+        }
+
+        try (var sut = new SegmentStore(aTempDir, 1024)) {
+            assertThat(read(sut, 1, "user1")).contains("v2");
+            assertThat(read(sut, 1, "user2")).contains("other");
+            assertThat(read(sut, 2, "user1")).isEmpty();
+            assertThat(sut.get(1, "user1").get().getTimestamp()) //
+                    .as("versions must have distinct timestamps") //
+                    .isEqualTo(1001);
+            assertThat(sut.readTypeSystem(sut.get(1, "user1").get().getTypeSystemId(),
+                    (entry, in) -> new String(in.readAllBytes(), UTF_8))).isEqualTo("typesystem");
+        }
+    }
+
+    @Test
+    void thatIncompleteRecordIsIgnored(@TempDir Path aTempDir) throws Exception
+    {
+        try (var sut = new SegmentStore(aTempDir, 1024)) {
+            sut.write(1, "user1", 0, 1000, out -> out.write(bytes("complete")));
+        }
+
+        // Simulate a crash while appending a record
+        try (var files = Files.list(aTempDir)) {
+            var segment = files.findFirst().get();
+            Files.write(segment, new byte[100], APPEND);
+        }
+
+        try (var sut = new SegmentStore(aTempDir, 1024)) {
+            assertThat(read(sut, 1, "user1")).contains("complete");
+
+            sut.write(1, "user1", 0, 1000, out -> out.write(bytes("next")));
+        }
+
+        try (var sut = new SegmentStore(aTempDir, 1024)) {
+            assertThat(read(sut, 1, "user1")).contains("next");
+        }
+    }
+
+    @Test
+    void thatCompactionRetainsLiveRecords(@TempDir Path aTempDir) throws Exception
+    {
+        var payload = new byte[300];
+
+        try (var sut = new SegmentStore(aTempDir, 1024)) {
+            var ts = sut.putTypeSystem("digest", bytes("typesystem"));
+            for (var i = 0; i < 10; i++) {
+                sut.write(1, "user1", ts, 1000, out -> out.write(payload));
+            }
+            sut.write(2, "user1", ts, 1000, out -> out.write(bytes("live")));
+            sut.write(3, "user1", ts, 1000, out -> out.write(bytes("deleted")));
+            sut.delete(3, "user1");
+            sut.write(1, "user1", ts, 1000, out -> out.write(bytes("latest")));
+
+            var segmentsBefore = sut.getSegmentCount();
+            assertThat(sut.compact(0.5)).isGreaterThan(0);
+            assertThat(sut.getSegmentCount()).isLessThan(segmentsBefore);
+
+            assertThat(read(sut, 1, "user1")).contains("latest");
+            assertThat(read(sut, 2, "user1")).contains("live");
+            assertThat(read(sut, 3, "user1")).isEmpty();
+        }
+
+        try (var sut = new SegmentStore(aTempDir, 1024)) {
+            assertThat(read(sut, 1, "user1")).contains("latest");
+            assertThat(read(sut, 2, "user1")).contains("live");
+            assertThat(read(sut, 3, "user1")).isEmpty();
+            assertThat(sut.readTypeSystem(sut.get(2, "user1").get().getTypeSystemId(),
+                    (entry, in) -> new String(in.readAllBytes(), UTF_8))).isEqualTo("typesystem");
+        }
+    }
+
+    private static Optional<String> read(SegmentStore aStore, long aDocumentId, String aUser)
+        throws IOException
+    {
+        return aStore.read(aDocumentId, aUser,
+                (entry, in) -> new String(in.readAllBytes(), UTF_8));
+    }
+
+    private static byte[] bytes(String aString)
+    {
+        return aString.getBytes(UTF_8);
+    }
+}
@@ -23,6 +23,8 @@ import static java.util.stream.Collectors.toList;
 
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.uima.cas.CAS;
@@ -32,6 +34,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.EventListener;
 import org.springframework.core.annotation.Order;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
@@ -39,7 +42,10 @@ import de.tudarmstadt.ukp.clarin.webanno.api.annotation.config.AnnotationAutoCon
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.inception.annotation.events.AnnotationEvent;
+import de.tudarmstadt.ukp.inception.documents.event.AfterCasWrittenEvent;
 import de.tudarmstadt.ukp.inception.rendering.Renderer;
+import de.tudarmstadt.ukp.inception.rendering.pipeline.CachingRenderStep;
 import de.tudarmstadt.ukp.inception.rendering.pipeline.RenderStep;
 import de.tudarmstadt.ukp.inception.rendering.request.RenderRequest;
 import de.tudarmstadt.ukp.inception.rendering.vmodel.VDocument;
@@ -52,10 +58,17 @@ import de.tudarmstadt.ukp.inception.schema.api.layer.LayerSupportRegistry;
  * <p>
  * This class is exposed as a Spring Component via {@link AnnotationAutoConfiguration#preRenderer}.
  * </p>
+ * <p>
+ * The output of this step only depends on the CAS, the viewport, the visible layers and the layer
+ * configuration. It can therefore be cached by the rendering pipeline. To detect changes to the
+ * annotations, a version is maintained per document which is bumped whenever an annotation event
+ * is received or an annotation CAS of the document is written. Likewise, a version is maintained
+ * per project which is bumped when the layer configuration changes.
+ * </p>
  */
 @Order(RenderStep.RENDER_STRUCTURE)
 public class PreRendererImpl
-    implements PreRenderer
+    implements PreRenderer, CachingRenderStep
 {
     public static final String ID = "PreRenderer";
 
@@ -67,6 +80,12 @@ public class PreRendererImpl
     private LoadingCache<Project, List<AnnotationFeature>> supportedFeaturesCache;
     private LoadingCache<Project, List<AnnotationFeature>> allFeaturesCache;
 
+    // Versions are drawn from a global sequence so that a version which was dropped from the cache
+    // and is bumped again later can never collide with the version it had before.
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final Cache<Long, Long> documentVersions;
+    private final Cache<Long, Long> projectVersions;
+
     @Autowired
     public PreRendererImpl(LayerSupportRegistry aLayerSupportRegistry,
             AnnotationSchemaService aAnnotationService)
@@ -82,6 +101,15 @@ public class PreRendererImpl
                 .expireAfterAccess(5, MINUTES) //
                 .maximumSize(10 * 1024) //
                 .build(annotationService::listAnnotationFeature);
+
+        // The versions must outlive the cached render results of the pipeline - otherwise a stale
+        // result could be picked up again when a version falls back to its initial value
+        documentVersions = Caffeine.newBuilder() //
+                .expireAfterAccess(60, MINUTES) //
+                .build();
+        projectVersions = Caffeine.newBuilder() //
+                .expireAfterAccess(60, MINUTES) //
+                .build();
     }
 
     @Override
@@ -90,6 +118,26 @@ public class PreRendererImpl
         return ID;
     }
 
+    @Override
+    public Optional<Object> getCacheKey(RenderRequest aRequest)
+    {
+        var document = aRequest.getSourceDocument();
+        var user = aRequest.getAnnotationUser();
+        if (document == null || document.getId() == null || user == null) {
+            return Optional.empty();
+        }
+
+        var projectId = document.getProject().getId();
+        var layerIds = aRequest.getVisibleLayers().stream() //
+                .map(AnnotationLayer::getId) //
+                .collect(toList());
+
+        return Optional.of(new PreRenderKey(document.getId(), user.getUsername(),
+                getVersion(documentVersions, document.getId()),
+                getVersion(projectVersions, projectId), aRequest.getWindowBeginOffset(),
+                aRequest.getWindowEndOffset(), layerIds));
+    }
+
     @Override
     public void render(VDocument aResponse, RenderRequest aRequest)
     {
@@ -149,5 +197,40 @@ public class PreRendererImpl
                 .removeIf(key -> Objects.equals(key.getId(), aEvent.getProject().getId()));
         allFeaturesCache.asMap().keySet()
                 .removeIf(key -> Objects.equals(key.getId(), aEvent.getProject().getId()));
+        bumpVersion(projectVersions, aEvent.getProject().getId());
     }
+
+    @EventListener
+    public void onAnnotationEvent(AnnotationEvent aEvent)
+    {
+        if (aEvent.getDocument() != null) {
+            bumpVersion(documentVersions, aEvent.getDocument().getId());
+        }
+        else {
+            // Some bulk events only report the project
+            bumpVersion(projectVersions, aEvent.getProject().getId());
+        }
+    }
+
+    @EventListener
+    public void onAfterCasWritten(AfterCasWrittenEvent aEvent)
+    {
+        bumpVersion(documentVersions, aEvent.getDocument().getDocument().getId());
+    }
+
+    private void bumpVersion(Cache<Long, Long> aVersions, Long aId)
+    {
+        if (aId != null) {
+            aVersions.put(aId, versionSequence.incrementAndGet());
+        }
+    }
+
+    private static long getVersion(Cache<Long, Long> aVersions, Long aId)
+    {
+        var version = aId != null ? aVersions.getIfPresent(aId) : null;
+        return version != null ? version : 0;
+    }
+
+    private record PreRenderKey(long documentId, String user, long documentVersion,
+            long projectVersion, int windowBegin, int windowEnd, List<Long> layerIds) {}
 }
@@ -0,0 +1,183 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.annotation.rendering;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.annotation.events.AnnotationEvent;
+import de.tudarmstadt.ukp.inception.documents.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.inception.rendering.model.Range;
+import de.tudarmstadt.ukp.inception.rendering.request.RenderRequest;
+import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.inception.schema.api.event.LayerConfigurationChangedEvent;
+import de.tudarmstadt.ukp.inception.schema.api.layer.LayerSupportRegistry;
+
+class PreRendererImplTest
+{
+    private PreRendererImpl sut;
+
+    private Project project;
+    private SourceDocument document;
+    private SourceDocument otherDocument;
+    private AnnotationLayer layer;
+    private User user;
+
+    @BeforeEach
+    void setup()
+    {
+        sut = new PreRendererImpl(mock(LayerSupportRegistry.class),
+                mock(AnnotationSchemaService.class));
+
+        project = new Project("test");
+        project.setId(1l);
+
+        document = new SourceDocument("doc1", project, "text");
+        document.setId(1l);
+
+        otherDocument = new SourceDocument("doc2", project, "text");
+        otherDocument.setId(2l);
+
+        layer = new AnnotationLayer();
+        layer.setId(1l);
+
+        user = new User("user");
+    }
+
+    @Test
+    void thatKeyIsStableWithoutChanges()
+    {
+        assertThat(key(document, 0, 100)).isEqualTo(key(document, 0, 100));
+    }
+
+    @Test
+    void thatKeyCapturesViewportUserAndLayers()
+    {
+        var key = key(document, 0, 100);
+
+        assertThat(key(document, 0, 50)).isNotEqualTo(key);
+        assertThat(sut.getCacheKey(request(document, 0, 100, new User("other"), List.of(layer))))
+                .isNotEqualTo(key);
+        assertThat(sut.getCacheKey(request(document, 0, 100, user, List.of()))) //
+                .isNotEqualTo(key);
+    }
+
+    @Test
+    void thatAnnotationEventInvalidatesDocument()
+    {
+        var key = key(document, 0, 100);
+        var otherKey = key(otherDocument, 0, 100);
+
+        sut.onAnnotationEvent(new TestAnnotationEvent(document));
+
+        assertThat(key(document, 0, 100)).isNotEqualTo(key);
+        assertThat(key(otherDocument, 0, 100)).isEqualTo(otherKey);
+    }
+
+    @Test
+    void thatProjectLevelAnnotationEventInvalidatesAllDocuments()
+    {
+        var key = key(document, 0, 100);
+        var otherKey = key(otherDocument, 0, 100);
+
+        sut.onAnnotationEvent(new TestAnnotationEvent(project));
+
+        assertThat(key(document, 0, 100)).isNotEqualTo(key);
+        assertThat(key(otherDocument, 0, 100)).isNotEqualTo(otherKey);
+    }
+
+    @Test
+    void thatCasWriteInvalidatesDocument()
+    {
+        var key = key(document, 0, 100);
+        var otherKey = key(otherDocument, 0, 100);
+
+        sut.onAfterCasWritten(new AfterCasWrittenEvent(this,
+                new AnnotationDocument(user.getUsername(), document), null));
+
+        assertThat(key(document, 0, 100)).isNotEqualTo(key);
+        assertThat(key(otherDocument, 0, 100)).isEqualTo(otherKey);
+    }
+
+    @Test
+    void thatLayerConfigurationChangeInvalidatesProject()
+    {
+        var key = key(document, 0, 100);
+        var otherKey = key(otherDocument, 0, 100);
+
+        sut.beforeLayerConfigurationChanged(new LayerConfigurationChangedEvent(this, project));
+
+        assertThat(key(document, 0, 100)).isNotEqualTo(key);
+        assertThat(key(otherDocument, 0, 100)).isNotEqualTo(otherKey);
+    }
+
+    @Test
+    void thatUnsavedDocumentIsNotCached()
+    {
+        var unsaved = new SourceDocument("doc3", project, "text");
+
+        assertThat(sut.getCacheKey(request(unsaved, 0, 100, user, List.of(layer)))).isEmpty();
+    }
+
+    private Object key(SourceDocument aDocument, int aBegin, int aEnd)
+    {
+        return sut.getCacheKey(request(aDocument, aBegin, aEnd, user, List.of(layer))).get();
+    }
+
+    private RenderRequest request(SourceDocument aDocument, int aBegin, int aEnd, User aUser,
+            List<AnnotationLayer> aLayers)
+    {
+        return RenderRequest.builder() //
+                .withDocument(aDocument, aUser) //
+                .withWindow(aBegin, aEnd) //
+                .withVisibleLayers(aLayers) //
+                .build();
+    }
+
+    private class TestAnnotationEvent
+        extends AnnotationEvent
+    {
+        private static final long serialVersionUID = 1L;
+
+        TestAnnotationEvent(SourceDocument aDocument)
+        {
+            super(PreRendererImplTest.this, aDocument, user.getUsername(), layer);
+        }
+
+        TestAnnotationEvent(Project aProject)
+        {
+            super(PreRendererImplTest.this, aProject, user.getUsername(), layer);
+        }
+
+        @Override
+        public Range getAffectedRange()
+        {
+            return Range.UNDEFINED;
+        }
+    }
+}
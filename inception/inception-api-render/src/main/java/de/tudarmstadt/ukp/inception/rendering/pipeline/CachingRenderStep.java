@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.rendering.pipeline;
+
+import java.util.Optional;
+
+import de.tudarmstadt.ukp.inception.rendering.request.RenderRequest;
+
+/**
+ * A {@link RenderStep} whose output depends only on the CAS being rendered and on the information
+ * captured in its {@link #getCacheKey cache key}. The {@link RenderingPipeline} can re-use the
+ * result of such steps across requests and users as long as all steps before them are cacheable as
+ * well.
+ */
+public interface CachingRenderStep
+    extends RenderStep
+{
+    /**
+     * @param aRequest
+     *            the render request.
+     * @return a key which captures everything other than the CAS instance that influences the
+     *         output of this step, e.g. the document, the viewport, the visible layers or the
+     *         version of the annotations. If the output must not be cached for the given request,
+     *         an empty value is returned. The key must implement {@code equals} and
+     *         {@code hashCode}.
+     */
+    Optional<Object> getCacheKey(RenderRequest aRequest);
+}
@@ -19,12 +19,21 @@ package de.tudarmstadt.ukp.inception.rendering.pipeline;
 
 import static de.tudarmstadt.ukp.clarin.webanno.support.wicket.WicketUtil.serverTiming;
 import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MINUTES;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.uima.cas.CAS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
 import de.tudarmstadt.ukp.inception.rendering.config.RenderingAutoConfig;
 import de.tudarmstadt.ukp.inception.rendering.request.RenderRequest;
 import de.tudarmstadt.ukp.inception.rendering.vmodel.VDocument;
@@ -33,17 +42,42 @@ import de.tudarmstadt.ukp.inception.rendering.vmodel.VDocument;
  * <p>
  * This class is exposed as a Spring Component via {@link RenderingAutoConfig#renderingPipeline}.
  * </p>
+ * <p>
+ * The output of the leading {@link CachingRenderStep caching steps} of the pipeline is cached per
+ * CAS instance. Since the CAS instances are shared between users viewing the same document (see
+ * the shared CAS cache of the storage service), the cached fragments can be re-used across users
+ * and requests. On a cache hit, the remaining steps are applied to a copy of the cached fragment.
+ * </p>
+ * <p>
+ * Only the structure step is cached at the moment. The steps following it re-run on every request
+ * and are cheap compared to the structure step. The recommendation step depends on the predictions
+ * of the session owner and on the suggestions the owner has accepted, rejected or skipped, neither
+ * of which is versioned. The label and color steps depend on the preferences of the session owner.
+ * Since the cacheable steps must form a prefix of the pipeline, the label and color steps could
+ * only be cached if the recommendation step was cached as well.
+ * </p>
  */
 public class RenderingPipelineImpl
     implements RenderingPipeline
 {
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    private static final int MAX_FRAGMENTS_PER_CAS = 8;
+
     private final RenderStepExtensionPoint renderStepExtensionPoint;
 
+    // The CAS is used as a weak key (identity) so that fragments are dropped together with the CAS
+    private final Cache<CAS, Map<List<Object>, VDocument>> fragmentCache;
+
     public RenderingPipelineImpl(RenderStepExtensionPoint aRenderStepExtensionPoint)
     {
         renderStepExtensionPoint = aRenderStepExtensionPoint;
+
+        fragmentCache = Caffeine.newBuilder() //
+                .weakKeys() //
+                .expireAfterAccess(2, MINUTES) //
+                .maximumSize(256) //
+                .build();
     }
 
     @Override
@@ -52,15 +86,104 @@ public class RenderingPipelineImpl
         LOG.trace("Rendering [{}-{}]", aRequest.getWindowBeginOffset(),
                 aRequest.getWindowEndOffset());
 
-        VDocument vdoc = new VDocument();
+        var steps = renderStepExtensionPoint.getExtensions(aRequest);
+        var fragmentKeys = getFragmentKeys(steps, aRequest);
+
+        VDocument vdoc = null;
+        int firstStep = 0;
+        Map<List<Object>, VDocument> fragments = null;
+        if (!fragmentKeys.isEmpty()) {
+            fragments = fragmentCache.get(aRequest.getCas(), $ -> newFragmentMap());
+
+            // Look for the longest cached prefix of the pipeline
+            synchronized (fragments) {
+                for (int i = fragmentKeys.size(); i > 0 && vdoc == null; i--) {
+                    var fragment = fragments.get(fragmentKeys.get(i - 1));
+                    if (fragment != null) {
+                        vdoc = new VDocument(fragment);
+                        firstStep = i;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < firstStep; i++) {
+            LOG.trace("Render cache hit for step [{}]", steps.get(i).getId());
+            serverTiming("Rendering", "Rendering (" + steps.get(i).getId() + ", cache hit)", 0);
+        }
+
+        if (vdoc == null) {
+            vdoc = new VDocument();
+        }
 
-        for (RenderStep step : renderStepExtensionPoint.getExtensions(aRequest)) {
+        for (int i = firstStep; i < steps.size(); i++) {
+            var step = steps.get(i);
             long start = currentTimeMillis();
             step.render(vdoc, aRequest);
-            serverTiming("Rendering", "Rendering (" + step.getId() + ")",
-                    currentTimeMillis() - start);
+
+            if (i < fragmentKeys.size()) {
+                // Snapshot the fragment before the subsequent steps modify it
+                var fragment = new VDocument(vdoc);
+                synchronized (fragments) {
+                    fragments.put(fragmentKeys.get(i), fragment);
+                }
+                serverTiming("Rendering", "Rendering (" + step.getId() + ", cache miss)",
+                        currentTimeMillis() - start);
+            }
+            else {
+                serverTiming("Rendering", "Rendering (" + step.getId() + ")",
+                        currentTimeMillis() - start);
+            }
         }
 
         return vdoc;
     }
+
+    /**
+     * @return for each of the leading cacheable steps, the key of the fragment produced by the
+     *         steps up to and including it. The list stops at the first step that cannot be
+     *         cached.
+     */
+    private List<List<Object>> getFragmentKeys(List<RenderStep> aSteps, RenderRequest aRequest)
+    {
+        var keys = new ArrayList<List<Object>>();
+
+        if (aRequest.getCas() == null) {
+            return keys;
+        }
+
+        var prefix = new ArrayList<Object>();
+        for (var step : aSteps) {
+            if (!(step instanceof CachingRenderStep)) {
+                break;
+            }
+
+            var key = ((CachingRenderStep) step).getCacheKey(aRequest);
+            if (key.isEmpty()) {
+                break;
+            }
+
+            prefix.add(step.getId());
+            prefix.add(key.get());
+            keys.add(List.copyOf(prefix));
+        }
+
+        return keys;
+    }
+
+    private static Map<List<Object>, VDocument> newFragmentMap()
+    {
+        // Access-ordered so that the least recently used fragment is evicted first. Access must
+        // be synchronized on the map.
+        return new LinkedHashMap<>(16, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, VDocument> aEldest)
+            {
+                return size() > MAX_FRAGMENTS_PER_CAS;
+            }
+        };
+    }
 }
@@ -0,0 +1,41 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.rendering.vmodel.serialization;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import de.tudarmstadt.ukp.inception.rendering.request.RenderRequest;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.VDocument;
+
+/**
+ * A {@link VDocumentSerializer} which can also write its output directly to a
+ * {@link JsonGenerator} without building an intermediate object graph. The output must be the same
+ * as serializing the result of {@link #render} with Jackson. Since the generator determines the
+ * encoding, this also allows writing binary encodings such as CBOR.
+ *
+ * @param <T>
+ *            the type of the object graph produced by {@link #render}.
+ */
+public interface StreamingVDocumentSerializer<T>
+    extends VDocumentSerializer<T>
+{
+    void write(VDocument aVdoc, RenderRequest aRequest, JsonGenerator aGenerator)
+        throws IOException;
+}
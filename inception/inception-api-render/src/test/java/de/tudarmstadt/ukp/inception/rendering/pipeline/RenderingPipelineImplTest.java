@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.rendering.pipeline;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.apache.uima.cas.CAS;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.inception.rendering.request.RenderRequest;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.VDocument;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.VID;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.VRange;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.VSpan;
+
+class RenderingPipelineImplTest
+{
+    private RenderStepExtensionPoint renderStepExtensionPoint;
+    private RenderingPipelineImpl sut;
+
+    private AnnotationLayer layer;
+    private CAS cas;
+
+    @BeforeEach
+    void setup()
+    {
+        renderStepExtensionPoint = mock(RenderStepExtensionPoint.class);
+        sut = new RenderingPipelineImpl(renderStepExtensionPoint);
+
+        layer = new AnnotationLayer();
+        layer.setId(1l);
+        cas = mock(CAS.class);
+    }
+
+    @Test
+    void thatCachedStepIsSkippedOnHit()
+    {
+        var structure = new StructureStep("structure", "v1");
+        var labels = new LabelStep();
+        steps(structure, labels);
+
+        var first = sut.render(request(cas));
+        var second = sut.render(request(cas));
+
+        assertThat(structure.invocations).isEqualTo(1);
+        assertThat(labels.invocations).isEqualTo(2);
+        assertThat(second.spans()).hasSize(1);
+        assertThat(second.getText()).isEqualTo(first.getText());
+    }
+
+    @Test
+    void thatChangedKeyIsMiss()
+    {
+        var structure = new StructureStep("structure", "v1");
+        steps(structure);
+
+        sut.render(request(cas));
+        structure.key = "v2";
+        sut.render(request(cas));
+        sut.render(request(cas));
+
+        assertThat(structure.invocations).isEqualTo(2);
+    }
+
+    @Test
+    void thatOtherCasIsMiss()
+    {
+        var structure = new StructureStep("structure", "v1");
+        steps(structure);
+
+        sut.render(request(cas));
+        sut.render(request(mock(CAS.class)));
+
+        assertThat(structure.invocations).isEqualTo(2);
+    }
+
+    @Test
+    void thatStepWithoutKeyIsNotCached()
+    {
+        var structure = new StructureStep("structure", null);
+        steps(structure);
+
+        sut.render(request(cas));
+        sut.render(request(cas));
+
+        assertThat(structure.invocations).isEqualTo(2);
+    }
+
+    @Test
+    void thatOnlyLeadingCachingStepsAreCached()
+    {
+        var labels = new LabelStep();
+        var structure = new StructureStep("structure", "v1");
+        steps(labels, structure);
+
+        sut.render(request(cas));
+        sut.render(request(cas));
+
+        assertThat(structure.invocations).isEqualTo(2);
+    }
+
+    @Test
+    void thatLongestCachedPrefixIsUsed()
+    {
+        var structure = new StructureStep("structure", "v1");
+        var extra = new StructureStep("extra", "v1");
+        steps(structure, extra);
+
+        sut.render(request(cas));
+        extra.key = "v2";
+        sut.render(request(cas));
+
+        assertThat(structure.invocations).isEqualTo(1);
+        assertThat(extra.invocations).isEqualTo(2);
+    }
+
+    @Test
+    void thatCachedSnapshotIsIsolatedFromLaterSteps()
+    {
+        var structure = new StructureStep("structure", "v1");
+        var labels = new LabelStep();
+        steps(structure, labels);
+
+        var first = sut.render(request(cas));
+        first.spans().forEach(span -> span.setColorHint("red"));
+        var second = sut.render(request(cas));
+
+        // The label step must see the snapshot as produced by the cached step, neither the
+        // labels it set during the first render nor what the caller did with the result
+        assertThat(labels.seenLabels).containsExactly(null, null);
+        assertThat(second.spans()) //
+                .extracting(VSpan::getColorHint) //
+                .containsOnlyNulls();
+        assertThat(second.spans()).doesNotContainAnyElementsOf(first.spans());
+    }
+
+    private void steps(RenderStep... aSteps)
+    {
+        when(renderStepExtensionPoint.getExtensions(any())).thenReturn(List.of(aSteps));
+    }
+
+    private RenderRequest request(CAS aCas)
+    {
+        return RenderRequest.builder() //
+                .withCas(aCas) //
+                .withWindow(0, 10) //
+                .build();
+    }
+
+    private class StructureStep
+        implements CachingRenderStep
+    {
+        private final String id;
+        private String key;
+        private int invocations;
+
+        StructureStep(String aId, String aKey)
+        {
+            id = aId;
+            key = aKey;
+        }
+
+        @Override
+        public String getId()
+        {
+            return id;
+        }
+
+        @Override
+        public Optional<Object> getCacheKey(RenderRequest aRequest)
+        {
+            return Optional.ofNullable(key);
+        }
+
+        @Override
+        public void render(VDocument aVDoc, RenderRequest aRequest)
+        {
+            invocations++;
+            aVDoc.setText("0123456789");
+            aVDoc.add(new VSpan(layer, new VID(id, invocations), new VRange(0, 1), Map.of()));
+        }
+    }
+
+    private static class LabelStep
+        implements RenderStep
+    {
+        private final List<String> seenLabels = new ArrayList<>();
+        private int invocations;
+
+        @Override
+        public String getId()
+        {
+            return "labels";
+        }
+
+        @Override
+        public void render(VDocument aVDoc, RenderRequest aRequest)
+        {
+            invocations++;
+            for (var span : aVDoc.spans()) {
+                seenLabels.add(span.getLabelHint());
+                span.setLabelHint("label");
+            }
+        }
+    }
+}
@@ -17,13 +17,12 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.constraints.export;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,7 +43,6 @@ import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 public class ConstraintsExporter
     implements ProjectExporter
 {
-    private static final String CONSTRAINTS = "/constraints/";
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -52,17 +50,15 @@ public class ConstraintsExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws IOException
     {
-        File constraintsDir = new File(aStage + CONSTRAINTS);
-        FileUtils.forceMkdir(constraintsDir);
         String fileName;
         for (ConstraintSet set : constraintsService.listConstraintSets(aRequest.getProject())) {
             fileName = set.getName();
             // Copying with file's original name to save ConstraintSet's name
-            FileUtils.copyFile(constraintsService.exportConstraintAsFile(set),
-                    new File(constraintsDir, fileName));
+            ZipUtils.writeEntry(aStage, ConstraintsService.CONSTRAINTS + "/" + fileName,
+                    constraintsService.exportConstraintAsFile(set));
         }
     }
 
@@ -36,6 +36,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -45,6 +46,9 @@ import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.StringUtils;
@@ -73,6 +77,8 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.support.uima.ICasUtil;
 import de.tudarmstadt.ukp.inception.annotation.layer.relation.RelationAdapter;
 import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 
 public class CasDiff
 {
@@ -92,6 +98,12 @@ public class CasDiff
 
     private boolean recurseIntoLinkFeatures = false;
 
+    /**
+     * The features considered by {@link #equalsFS} for a given type. The types of different CASes
+     * may be different objects, so this is keyed by identity.
+     */
+    private final Map<Type, Feature[]> labelFeatureCache = new IdentityHashMap<>();
+
     private CasDiff(int aBegin, int aEnd, Iterable<? extends DiffAdapter> aAdapters,
             LinkCompareBehavior aLinkCompareBehavior)
     {
@@ -134,6 +146,38 @@ public class CasDiff
         return doDiff(aAdapters, aLinkCompareBehavior, casMap, aBegin, aEnd);
     }
 
+    /**
+     * Calculate the differences between CASes in parallel. This method scopes the calculation of
+     * differences to a span instead of calculating them on the whole text.
+     * 
+     * @param aAdapters
+     *            a set of diff adapters telling how the diff algorithm should handle different
+     *            features
+     * @param aLinkCompareBehavior
+     *            the link comparison mode
+     * @param aCasMap
+     *            a set of CASes, each associated with an ID
+     * @param aBegin
+     *            begin of the span for which differences should be calculated.
+     * @param aEnd
+     *            end of the span for which differences should be calculated.
+     * @param aPool
+     *            the pool on which to calculate the diff.
+     * @return a diff result.
+     * @see #doDiff(Iterable, LinkCompareBehavior, Map, int, int, ForkJoinPool)
+     */
+    public static CasDiff doDiffSingle(Iterable<? extends DiffAdapter> aAdapters,
+            LinkCompareBehavior aLinkCompareBehavior, Map<String, CAS> aCasMap, int aBegin,
+            int aEnd, ForkJoinPool aPool)
+    {
+        Map<String, List<CAS>> casMap = new LinkedHashMap<>();
+        for (Entry<String, CAS> e : aCasMap.entrySet()) {
+            casMap.put(e.getKey(), asList(e.getValue()));
+        }
+
+        return doDiff(aAdapters, aLinkCompareBehavior, casMap, aBegin, aEnd, aPool);
+    }
+
     /**
      * Calculate the differences between CASes.
      * 
@@ -153,7 +197,8 @@ public class CasDiff
 
     /**
      * Calculate the differences between CASes. This method scopes the calculation of differences to
-     * a span instead of calculating them on the whole text.
+     * a span instead of calculating them on the whole text. If there are multiple adapters for the
+     * same type, the annotations of that type are only added once.
      * 
      * @param aAdapters
      *            a set of diff adapters telling how the diff algorithm should handle different
@@ -186,13 +231,14 @@ public class CasDiff
         sanityCheck(aCasMap);
 
         CasDiff diff = new CasDiff(aBegin, aEnd, aAdapters, aLinkCompareBehavior);
+        diff.registerCases(aCasMap);
 
+        Set<String> types = getTypes(aAdapters);
         for (Entry<String, List<CAS>> e : aCasMap.entrySet()) {
             int casId = 0;
             for (CAS cas : e.getValue()) {
-                for (DiffAdapter adapter : aAdapters) {
-                    // null elements in the list can occur if a user has never worked on a CAS
-                    diff.addCas(e.getKey(), casId, cas != null ? cas : null, adapter.getType());
+                for (String type : types) {
+                    diff.addAnnotations(e.getKey(), casId, cas, type);
                 }
                 casId++;
             }
@@ -203,6 +249,124 @@ public class CasDiff
         return diff;
     }
 
+    /**
+     * Calculate the differences between CASes in parallel. The work is partitioned by type and by
+     * the index of the CAS within the CAS lists. Positions include both, so the partitions never
+     * share a configuration set and can be calculated independently. Within each partition, the
+     * CAS groups are processed in the order of the CAS map. Thus, merging the partitions yields
+     * the same diff as {@link #doDiff(Iterable, LinkCompareBehavior, Map, int, int)}. Like there,
+     * the annotations of a type for which there are multiple adapters are only added once.
+     * <p>
+     * The CASes are accessed concurrently from multiple threads. They must not be modified while
+     * the diff is being calculated.
+     * 
+     * @param aAdapters
+     *            a set of diff adapters telling how the diff algorithm should handle different
+     *            features
+     * @param aLinkCompareBehavior
+     *            the link comparison mode
+     * @param aCasMap
+     *            a set of CASes, each associated with an ID
+     * @param aBegin
+     *            begin of the span for which differences should be calculated.
+     * @param aEnd
+     *            end of the span for which differences should be calculated.
+     * @param aPool
+     *            the pool on which to calculate the diff.
+     * @return a diff.
+     */
+    public static CasDiff doDiff(Iterable<? extends DiffAdapter> aAdapters,
+            LinkCompareBehavior aLinkCompareBehavior, Map<String, List<CAS>> aCasMap, int aBegin,
+            int aEnd, ForkJoinPool aPool)
+    {
+        if (aCasMap.isEmpty()) {
+            return new CasDiff(0, 0, aAdapters, aLinkCompareBehavior);
+        }
+
+        List<CAS> casList = aCasMap.values().iterator().next();
+        if (casList.isEmpty()) {
+            return new CasDiff(0, 0, aAdapters, aLinkCompareBehavior);
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        sanityCheck(aCasMap);
+
+        CasDiff diff = new CasDiff(aBegin, aEnd, aAdapters, aLinkCompareBehavior);
+        diff.registerCases(aCasMap);
+
+        Set<String> types = getTypes(aAdapters);
+        if (types.isEmpty()) {
+            return diff;
+        }
+
+        // The adapters of the diff are updated while merging the partitions, so the partitions
+        // get a snapshot
+        List<DiffAdapter> adapters = new ArrayList<>(diff.diffAdapters.values());
+
+        List<ForkJoinTask<CasDiff>> partitions = new ArrayList<>();
+        for (String type : types) {
+            for (int casId = 0; casId < casList.size(); casId++) {
+                CasDiff partitionDiff = new CasDiff(aBegin, aEnd, adapters, aLinkCompareBehavior);
+                partitionDiff.cases = diff.cases;
+                int partitionCasId = casId;
+                partitions
+                        .add(aPool.submit(() -> partitionDiff.addPartition(type, partitionCasId)));
+            }
+        }
+
+        // Join in submission order so that the fallback adapters are merged deterministically
+        for (ForkJoinTask<CasDiff> partition : partitions) {
+            CasDiff partitionDiff = partition.join();
+            diff.configSets.putAll(partitionDiff.configSets);
+            partitionDiff.diffAdapters.forEach(diff.diffAdapters::putIfAbsent);
+        }
+
+        LOG.trace("Parallel CASDiff of {} partitions completed in {} ms", partitions.size(),
+                System.currentTimeMillis() - startTime);
+
+        return diff;
+    }
+
+    /**
+     * Adding the same type twice would add the same annotations twice, so duplicate types are
+     * skipped.
+     */
+    private static Set<String> getTypes(Iterable<? extends DiffAdapter> aAdapters)
+    {
+        Set<String> types = new LinkedHashSet<>();
+        for (DiffAdapter adapter : aAdapters) {
+            types.add(adapter.getType());
+        }
+        return types;
+    }
+
+    /**
+     * Remembers all CASes, including those which contain no annotations of the diffed types.
+     * {@code null} elements in the CAS lists can occur if a user has never worked on a CAS.
+     */
+    private void registerCases(Map<String, List<CAS>> aCasMap)
+    {
+        for (Entry<String, List<CAS>> e : aCasMap.entrySet()) {
+            cases.put(e.getKey(), new ArrayList<>(e.getValue()));
+        }
+    }
+
+    /**
+     * Adds the annotations of the given type from the CASes at the given index of the CAS lists.
+     * The CASes must already have been registered in {@link #cases}.
+     * 
+     * @return this diff.
+     */
+    private CasDiff addPartition(String aType, int aCasId)
+    {
+        for (Entry<String, List<CAS>> e : cases.entrySet()) {
+            addAnnotations(e.getKey(), aCasId, e.getValue().get(aCasId), aType);
+        }
+
+        return this;
+    }
+
     /**
      * Sanity check - all CASes should have the same text.
      */
@@ -268,36 +432,11 @@ public class CasDiff
     }
 
     /**
-     * CASes are added to the diff one after another, building the diff iteratively. A CAS can be
-     * added multiple times for different types. Make sure a CAS is not added twice with the same
-     * type!
-     * 
-     * @param aCasGroupId
-     *            the ID of the CAS group to add.
-     * @param aCas
-     *            the CAS itself.
-     * @param aType
-     *            the type on which to calculate the diff.
+     * Adds the annotations of the given type from the given CAS to the diff. The CAS must already
+     * have been registered in {@link #cases}.
      */
-    private void addCas(String aCasGroupId, int aCasId, CAS aCas, String aType)
+    private void addAnnotations(String aCasGroupId, int aCasId, CAS aCas, String aType)
     {
-        // Remember that we have already seen this CAS.
-        List<CAS> casList = cases.get(aCasGroupId);
-        if (casList == null) {
-            casList = new ArrayList<>();
-            cases.put(aCasGroupId, casList);
-        }
-
-        // Avoid adding same CAS twice in cases where we add multiple types from a CAS. If the
-        // current CAS ID is greater than the size of the current CAS list, then we did not add
-        // it yet. Before, we checked whether the casList already contained the current CAS, but
-        // that failed when we had multiple "null" CASes.
-        if ((casList.size() - 1) < aCasId) {
-            casList.add(aCas);
-        }
-        assert (casList.size() - 1) == aCasId : "Expected CAS ID [" + (casList.size() - 1)
-                + "] but was [" + aCasId + "]";
-
         // null elements in the list can occur if a user has never worked on a CAS
         // We add these to the internal list above, but then we bail out here.
         if (aCas == null) {
@@ -387,20 +526,16 @@ public class CasDiff
         }
 
         if (aSet.position.getFeature() == null) {
-            // Check if this configuration is already present
-            Configuration configuration = null;
-            for (Configuration cfg : aSet.getConfigurations()) {
-                // Handle main positions
-                if (equalsFS(cfg.getRepresentative(cases), aFS)) {
-                    configuration = cfg;
-                    break;
-                }
-            }
+            // Check if this configuration is already present - only configurations with the same
+            // feature value hash can be equal
+            int hash = hashFS(aFS);
+            Configuration configuration = aSet.findConfiguration(hash,
+                    cfg -> equalsFS(cfg.getRepresentative(cases), aFS));
 
             // Not found, add new one
             if (configuration == null) {
                 configuration = new Configuration(aSet.position);
-                aSet.addConfiguration(configuration);
+                aSet.addConfiguration(configuration, hash);
             }
 
             configuration.add(aCasGroupId, aFS);
@@ -424,7 +559,8 @@ public class CasDiff
                 LinkFeatureDecl decl = adapter.getLinkFeature(aSet.position.getFeature());
 
                 // Check if this configuration is already present
-                Configuration configuration = null;
+                int hash;
+                Predicate<Configuration> matcher;
                 switch (aSet.position.getLinkCompareBehavior()) {
                 case LINK_TARGET_AS_LABEL: {
                     String role = link.getStringValue(
@@ -436,7 +572,8 @@ public class CasDiff
                     AnnotationFS target = (AnnotationFS) link.getFeatureValue(
                             link.getType().getFeatureByBaseName(decl.getTargetFeature()));
 
-                    cfgLoop: for (Configuration cfg : aSet.configurations) {
+                    hash = hashAnnotationPosition(target);
+                    matcher = cfg -> {
                         FeatureStructure repFS = cfg.getRepresentative(cases);
                         AID repAID = cfg.getRepresentativeAID();
                         FeatureStructure repLink = FSUtil.getFeature(repFS,
@@ -446,11 +583,8 @@ public class CasDiff
                                 repLink.getType().getFeatureByBaseName(decl.getTargetFeature()));
 
                         // Compare targets
-                        if (equalsAnnotationFS(repTarget, target)) {
-                            configuration = cfg;
-                            break cfgLoop;
-                        }
-                    }
+                        return equalsAnnotationFS(repTarget, target);
+                    };
                     break;
                 }
                 case LINK_ROLE_AS_LABEL: {
@@ -464,7 +598,8 @@ public class CasDiff
                     String role = link.getStringValue(
                             link.getType().getFeatureByBaseName(decl.getRoleFeature()));
 
-                    cfgLoop: for (Configuration cfg : aSet.configurations) {
+                    hash = role != null ? role.hashCode() : 0;
+                    matcher = cfg -> {
                         FeatureStructure repFS = cfg.getRepresentative(cases);
                         AID repAID = cfg.getRepresentativeAID();
                         FeatureStructure repLink = FSUtil.getFeature(repFS,
@@ -474,11 +609,8 @@ public class CasDiff
                                 repLink.getType().getFeatureByBaseName(decl.getRoleFeature()));
 
                         // Compare roles
-                        if (role.equals(linkRole)) {
-                            configuration = cfg;
-                            break cfgLoop;
-                        }
-                    }
+                        return role.equals(linkRole);
+                    };
                     break;
                 }
                 default:
@@ -486,10 +618,12 @@ public class CasDiff
                             "Unknown link target comparison mode [" + linkCompareBehavior + "]");
                 }
 
+                Configuration configuration = aSet.findConfiguration(hash, matcher);
+
                 // Not found, add new one
                 if (configuration == null) {
                     configuration = new Configuration(aSet.position);
-                    aSet.configurations.add(configuration);
+                    aSet.addConfiguration(configuration, hash);
                 }
 
                 configuration.add(aCasGroupId, aFS, aSet.position.getFeature(), i);
@@ -511,6 +645,14 @@ public class CasDiff
         private List<Configuration> configurations = new ArrayList<>();
         private Set<String> casGroupIds = new LinkedHashSet<>();
 
+        /**
+         * The configurations by the hash of the feature structures they contain. Within each
+         * bucket, the configurations are in the same order as in {@link #configurations}. The index
+         * is only maintained while the diff is being built. It is dropped if configurations are
+         * added from the outside since these cannot be hashed.
+         */
+        private transient Int2ObjectMap<List<Configuration>> configurationIndex;
+
         public ConfigurationSet(Position aPosition)
         {
             position = aPosition;
@@ -548,6 +690,48 @@ public class CasDiff
         public void addConfiguration(Configuration aCfg)
         {
             configurations.add(aCfg);
+            configurationIndex = null;
+        }
+
+        private void addConfiguration(Configuration aCfg, int aHash)
+        {
+            if (configurationIndex == null && configurations.isEmpty()) {
+                configurationIndex = new Int2ObjectOpenHashMap<>();
+            }
+
+            configurations.add(aCfg);
+
+            if (configurationIndex != null) {
+                List<Configuration> bucket = configurationIndex.get(aHash);
+                if (bucket == null) {
+                    bucket = new ArrayList<>();
+                    configurationIndex.put(aHash, bucket);
+                }
+                bucket.add(aCfg);
+            }
+        }
+
+        /**
+         * @return the first configuration with the given hash that is accepted by the matcher. If
+         *         there is no index, all configurations are checked.
+         */
+        private Configuration findConfiguration(int aHash, Predicate<Configuration> aMatcher)
+        {
+            List<Configuration> candidates = configurationIndex != null
+                    ? configurationIndex.get(aHash)
+                    : configurations;
+
+            if (candidates == null) {
+                return null;
+            }
+
+            for (Configuration cfg : candidates) {
+                if (aMatcher.test(cfg)) {
+                    return cfg;
+                }
+            }
+
+            return null;
         }
 
         public Optional<Configuration> findConfiguration(String aCasGroupId, FeatureStructure aFS)
@@ -602,6 +786,119 @@ public class CasDiff
         return configSets.get(aPosition);
     }
 
+    /**
+     * Calculates a hash over the label feature values of the given feature structure. The hash is
+     * consistent with {@link #equalsFS}: if two feature structures are equal, then they have the
+     * same hash. Features which are not set contribute nothing to the hash because
+     * {@link #equalsFS} treats them as having their default value. Features pointing to other
+     * feature structures are not hashed at all - these are left to {@link #equalsFS}.
+     * 
+     * @param aFS
+     *            a feature structure.
+     * @return the hash.
+     */
+    private int hashFS(FeatureStructure aFS)
+    {
+        Type type = aFS.getType();
+        int hash = type.getName().hashCode();
+
+        // Sum up the feature hashes so the result does not depend on the order of the features
+        // in the type system
+        for (Feature f : getLabelFeatures(type)) {
+            int valueHash = hashFeatureValue(aFS, f);
+            if (valueHash != 0) {
+                hash += 31 * f.getShortName().hashCode() ^ valueHash;
+            }
+        }
+
+        return hash;
+    }
+
+    private Feature[] getLabelFeatures(Type aType)
+    {
+        Feature[] features = labelFeatureCache.get(aType);
+        if (features != null) {
+            return features;
+        }
+
+        DiffAdapter adapter = diffAdapters.get(aType.getName());
+        if (adapter == null) {
+            features = new Feature[0];
+        }
+        else {
+            Set<String> labelFeatures = adapter.getLabelFeatures();
+            features = aType.getFeatures().stream() //
+                    .filter(f -> labelFeatures.contains(f.getShortName())) //
+                    .filter(f -> recurseIntoLinkFeatures
+                            || adapter.getLinkFeature(f.getShortName()) == null) //
+                    .toArray(Feature[]::new);
+        }
+
+        labelFeatureCache.put(aType, features);
+        return features;
+    }
+
+    /**
+     * @return the hash of the feature value or {@code 0} if the feature has its default value.
+     */
+    private static int hashFeatureValue(FeatureStructure aFS, Feature aFeature)
+    {
+        switch (aFeature.getRange().getName()) {
+        case CAS.TYPE_NAME_STRING_ARRAY: {
+            var value = FSUtil.getFeature(aFS, aFeature, Set.class);
+            return value != null ? value.hashCode() : 0;
+        }
+        case CAS.TYPE_NAME_BOOLEAN:
+            return aFS.getBooleanValue(aFeature) ? 1 : 0;
+        case CAS.TYPE_NAME_BYTE:
+            return aFS.getByteValue(aFeature);
+        case CAS.TYPE_NAME_DOUBLE: {
+            // 0.0 and -0.0 are equal but have different hashes
+            double value = aFS.getDoubleValue(aFeature);
+            return value != 0.0d ? Double.hashCode(value) : 0;
+        }
+        case CAS.TYPE_NAME_FLOAT: {
+            float value = aFS.getFloatValue(aFeature);
+            return value != 0.0f ? Float.hashCode(value) : 0;
+        }
+        case CAS.TYPE_NAME_INTEGER:
+            return aFS.getIntValue(aFeature);
+        case CAS.TYPE_NAME_LONG:
+            return Long.hashCode(aFS.getLongValue(aFeature));
+        case CAS.TYPE_NAME_SHORT:
+            return aFS.getShortValue(aFeature);
+        case CAS.TYPE_NAME_STRING: {
+            String value = aFS.getStringValue(aFeature);
+            return value != null ? value.hashCode() : 0;
+        }
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Calculates a hash of the position of the given annotation which is consistent with
+     * {@link #equalsAnnotationFS}. Span positions are defined by the offsets of the annotation, so
+     * these are included. Types without an adapter are treated as spans by
+     * {@link #getAdapter(String)}.
+     */
+    private int hashAnnotationPosition(AnnotationFS aFS)
+    {
+        if (aFS == null) {
+            return 0;
+        }
+
+        String typeName = aFS.getType().getName();
+        int hash = typeName.hashCode();
+
+        DiffAdapter adapter = diffAdapters.get(typeName);
+        if (adapter == null || adapter instanceof SpanDiffAdapter) {
+            hash = 31 * (31 * hash + aFS.getBegin()) + aFS.getEnd();
+        }
+
+        return hash;
+    }
+
     /**
      * Compare two feature structure to each other. Comparison is done recursively, but stops at
      * feature values that are annotations. For these, only offsets are checked, but feature values
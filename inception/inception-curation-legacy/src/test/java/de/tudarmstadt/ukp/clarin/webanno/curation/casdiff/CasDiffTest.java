@@ -24,6 +24,7 @@ import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CurationTestUti
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CurationTestUtils.loadWebAnnoTsv3;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CurationTestUtils.makeLinkFS;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CurationTestUtils.makeLinkHostFS;
+import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CurationTestUtils.readConll2006;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.LinkCompareBehavior.LINK_ROLE_AS_LABEL;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.LinkCompareBehavior.LINK_TARGET_AS_LABEL;
 import static de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.relation.RelationDiffAdapter.DEPENDENCY_DIFF_ADAPTER;
@@ -41,6 +42,8 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Type;
@@ -54,8 +57,10 @@ import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.apache.uima.util.CasCreationUtils;
 import org.junit.jupiter.api.Test;
 
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.Configuration;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.CasDiff.DiffResult;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.DiffAdapter;
+import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.api.Position;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.relation.RelationDiffAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.span.SpanDiffAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.support.WebAnnoConst;
@@ -456,6 +461,150 @@ public class CasDiffTest
         // assertEquals(1, agreement.getPluralitySets().size());
     }
 
+    @Test
+    public void parallelDiffTest() throws Exception
+    {
+        var casByUser = new LinkedHashMap<String, List<CAS>>();
+        casByUser.put("user1", asList(readConll2006("casdiff/someDifferences/user1.conll"),
+                readConll2006("casdiff/relationDistance/user1.conll")));
+        casByUser.put("user2", asList(readConll2006("casdiff/someDifferences/user2.conll"),
+                readConll2006("casdiff/relationDistance/user2.conll")));
+        casByUser.put("user3", asList(readConll2006("casdiff/someDifferences/user1.conll"), null));
+
+        List<? extends DiffAdapter> diffAdapters = asList(POS_DIFF_ADAPTER,
+                DEPENDENCY_DIFF_ADAPTER);
+
+        DiffResult sequential = doDiff(diffAdapters, LINK_TARGET_AS_LABEL, casByUser).toResult();
+
+        var pool = new ForkJoinPool(4);
+        try {
+            DiffResult parallel = doDiff(diffAdapters, LINK_TARGET_AS_LABEL, casByUser, -1, -1,
+                    pool).toResult();
+
+            assertSameDiff(parallel, sequential);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelDiffWithDuplicateAdaptersTest() throws Exception
+    {
+        var casByUser = new LinkedHashMap<String, List<CAS>>();
+        casByUser.put("user1", asList(readConll2006("casdiff/someDifferences/user1.conll")));
+        casByUser.put("user2", asList(readConll2006("casdiff/someDifferences/user2.conll")));
+
+        DiffResult expected = doDiff(asList(POS_DIFF_ADAPTER), LINK_TARGET_AS_LABEL, casByUser)
+                .toResult();
+
+        List<? extends DiffAdapter> diffAdapters = asList(POS_DIFF_ADAPTER, POS_DIFF_ADAPTER);
+
+        // Both modes add the annotations of a type only once, even if there are multiple adapters
+        assertSameDiff(doDiff(diffAdapters, LINK_TARGET_AS_LABEL, casByUser).toResult(),
+                expected);
+
+        var pool = new ForkJoinPool(4);
+        try {
+            assertSameDiff(doDiff(diffAdapters, LINK_TARGET_AS_LABEL, casByUser, -1, -1, pool)
+                    .toResult(), expected);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void parallelDiffWithoutAdaptersTest() throws Exception
+    {
+        var casByUser = new LinkedHashMap<String, List<CAS>>();
+        casByUser.put("user1", asList(readConll2006("casdiff/someDifferences/user1.conll")));
+        // A user who has never worked on the document
+        casByUser.put("user2", asList((CAS) null));
+
+        CasDiff sequential = doDiff(asList(), LINK_TARGET_AS_LABEL, casByUser);
+
+        assertThat(sequential.toResult().getPositions()).isEmpty();
+        assertThat(sequential.getCasMap()).isEqualTo(casByUser);
+
+        var pool = new ForkJoinPool(4);
+        try {
+            CasDiff parallel = doDiff(asList(), LINK_TARGET_AS_LABEL, casByUser, -1, -1, pool);
+
+            assertThat(parallel.toResult().getPositions()).isEmpty();
+            assertThat(parallel.getCasMap()).isEqualTo(casByUser);
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private static void assertSameDiff(DiffResult aActual, DiffResult aExpected)
+    {
+        // Positions do not implement equals(), but they are sorted in both diffs
+        assertThat(aActual.getPositions()) //
+                .extracting(Position::toString) //
+                .containsExactlyElementsOf(aExpected.getPositions().stream() //
+                        .map(Position::toString) //
+                        .toList());
+
+        var actualSets = new ArrayList<>(aActual.getConfigurationSets());
+        var expectedSets = new ArrayList<>(aExpected.getConfigurationSets());
+        for (int i = 0; i < expectedSets.size(); i++) {
+            assertThat(actualSets.get(i).getCasGroupIds()) //
+                    .containsExactlyElementsOf(expectedSets.get(i).getCasGroupIds());
+            assertThat(actualSets.get(i).getConfigurations()) //
+                    .extracting(Configuration::toString) //
+                    .containsExactlyElementsOf(expectedSets.get(i).getConfigurations().stream() //
+                            .map(Configuration::toString) //
+                            .toList());
+        }
+    }
+
+    @Test
+    public void stackedLabelsInDifferentOrderTest() throws Exception
+    {
+        var cas1 = createText("test");
+        buildAnnotation(cas1, POS.class).on("test") //
+                .withFeature("PosValue", "NN") //
+                .buildAndAddToIndexes();
+        buildAnnotation(cas1, POS.class).on("test") //
+                .withFeature("PosValue", "VB") //
+                .buildAndAddToIndexes();
+
+        var cas2 = createText("test");
+        buildAnnotation(cas2, POS.class).on("test") //
+                .withFeature("PosValue", "VB") //
+                .buildAndAddToIndexes();
+        buildAnnotation(cas2, POS.class).on("test") //
+                .withFeature("PosValue", "NN") //
+                .buildAndAddToIndexes();
+        buildAnnotation(cas2, POS.class).on("test") //
+                .withFeature("PosValue", "JJ") //
+                .buildAndAddToIndexes();
+
+        var casByUser = new LinkedHashMap<String, List<CAS>>();
+        casByUser.put("user1", asList(cas1));
+        casByUser.put("user2", asList(cas2));
+
+        CasDiff diff = doDiff(asList(POS_DIFF_ADAPTER), LINK_TARGET_AS_LABEL, casByUser);
+        DiffResult result = diff.toResult();
+
+        // result.print(System.out);
+
+        assertThat(result.size()).isEqualTo(1);
+
+        var cfgSet = result.getConfigurationSets().iterator().next();
+        assertThat(cfgSet.getConfigurations()) //
+                .extracting(cfg -> FSUtil.getFeature(cfg.getRepresentative(casByUser),
+                        "PosValue", String.class)) //
+                .containsExactly("NN", "VB", "JJ");
+        assertThat(cfgSet.getConfigurations()) //
+                .extracting(Configuration::getCasGroupIds) //
+                .containsExactly(Set.of("user1", "user2"), Set.of("user1", "user2"),
+                        Set.of("user2"));
+    }
+
     @Test
     public void multiValueStringFeatureDifferenceTestWithNull() throws Exception
     {
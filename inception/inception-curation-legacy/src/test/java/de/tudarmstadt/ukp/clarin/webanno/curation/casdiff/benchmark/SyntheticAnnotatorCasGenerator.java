@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.curation.casdiff.benchmark;
+
+import static org.apache.uima.fit.factory.JCasFactory.createJCas;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.resource.ResourceInitializationException;
+
+import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.pos.POS;
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import de.tudarmstadt.ukp.dkpro.core.api.syntax.type.dependency.Dependency;
+
+/**
+ * Generates synthetic multi-annotator CASes for the CAS diff benchmarks. Every annotator annotates
+ * the same text with part-of-speech tags on every token, named entities on every third token and a
+ * dependency relation between consecutive tokens. Each label deviates from a shared reference
+ * label with a given probability, so that the diff has to deal with a realistic mix of agreeing
+ * and disagreeing configurations. The generated content is deterministic for a given set of
+ * parameters.
+ */
+public class SyntheticAnnotatorCasGenerator
+{
+    private static final int SENTENCE_LENGTH = 20;
+    private static final int NAMED_ENTITY_INTERVAL = 3;
+    private static final String[] POS_TAGS = { "NN", "VB", "JJ", "ADV", "DET", "PRP" };
+    private static final String[] NE_LABELS = { "PER", "LOC", "ORG", "MISC" };
+    private static final String[] DEP_LABELS = { "nsubj", "obj", "amod", "det", "root" };
+
+    private final double disagreement;
+
+    /**
+     * @param aDisagreement
+     *            the probability that an annotator deviates from the reference label.
+     */
+    public SyntheticAnnotatorCasGenerator(double aDisagreement)
+    {
+        disagreement = aDisagreement;
+    }
+
+    /**
+     * @return the CASes of the given number of annotators, each with one CAS per document, in the
+     *         form expected by the CAS diff.
+     */
+    public Map<String, List<CAS>> generate(int aAnnotators, int aDocuments, int aTokens)
+        throws ResourceInitializationException
+    {
+        var casByUser = new LinkedHashMap<String, List<CAS>>();
+        for (var annotator = 0; annotator < aAnnotators; annotator++) {
+            var casses = new ArrayList<CAS>();
+            for (var document = 0; document < aDocuments; document++) {
+                casses.add(generate(annotator, document, aTokens));
+            }
+            casByUser.put("annotator" + annotator, casses);
+        }
+        return casByUser;
+    }
+
+    private CAS generate(int aAnnotator, int aDocument, int aTokens)
+        throws ResourceInitializationException
+    {
+        // The reference draws from the same sequence for every annotator, so all annotators get
+        // the same text and the same reference labels
+        var reference = new Random(aDocument * 31L + aTokens);
+        var deviation = new Random(aAnnotator * 31L + aDocument);
+
+        var text = new StringBuilder();
+        var tokenOffsets = new int[aTokens * 2];
+        for (var i = 0; i < aTokens; i++) {
+            if (i > 0) {
+                text.append(i % SENTENCE_LENGTH == 0 ? "\n" : " ");
+            }
+            tokenOffsets[i * 2] = text.length();
+            var length = 1 + reference.nextInt(10);
+            for (var n = 0; n < length; n++) {
+                text.append((char) ('a' + reference.nextInt(26)));
+            }
+            tokenOffsets[i * 2 + 1] = text.length();
+        }
+
+        var jcas = createJCas();
+        jcas.setDocumentText(text.toString());
+        var dmd = DocumentMetaData.create(jcas);
+        dmd.setDocumentId("document" + aDocument);
+        dmd.setCollectionId("annotator" + aAnnotator);
+
+        Token previousToken = null;
+        for (var i = 0; i < aTokens; i++) {
+            var begin = tokenOffsets[i * 2];
+            var end = tokenOffsets[i * 2 + 1];
+
+            if (i % SENTENCE_LENGTH == 0) {
+                var last = Math.min(i + SENTENCE_LENGTH, aTokens) - 1;
+                new Sentence(jcas, begin, tokenOffsets[last * 2 + 1]).addToIndexes();
+            }
+
+            var token = new Token(jcas, begin, end);
+            token.addToIndexes();
+
+            var pos = new POS(jcas, begin, end);
+            pos.setPosValue(label(reference, deviation, POS_TAGS));
+            pos.addToIndexes();
+
+            // Draw the labels unconditionally to keep the reference sequence in sync
+            var neLabel = label(reference, deviation, NE_LABELS);
+            if (i % NAMED_ENTITY_INTERVAL == 0) {
+                var ne = new NamedEntity(jcas, begin, end);
+                ne.setValue(neLabel);
+                ne.addToIndexes();
+            }
+
+            var depLabel = label(reference, deviation, DEP_LABELS);
+            if (previousToken != null) {
+                var dep = new Dependency(jcas, begin, end);
+                dep.setGovernor(previousToken);
+                dep.setDependent(token);
+                dep.setDependencyType(depLabel);
+                dep.addToIndexes();
+            }
+
+            previousToken = token;
+        }
+
+        return jcas.getCas();
+    }
+
+    private String label(Random aReference, Random aDeviation, String[] aLabels)
+    {
+        var label = aLabels[aReference.nextInt(aLabels.length)];
+        if (aDeviation.nextDouble() < disagreement) {
+            label = aLabels[aDeviation.nextInt(aLabels.length)];
+        }
+        return label;
+    }
+}
@@ -24,24 +24,18 @@ import static de.tudarmstadt.ukp.clarin.webanno.model.SourceDocumentState.CURATI
 import static de.tudarmstadt.ukp.clarin.webanno.support.WebAnnoConst.CURATION_USER;
 import static java.lang.Math.ceil;
 import static java.util.Arrays.asList;
-import static org.apache.commons.io.FileUtils.forceDelete;
-import static org.apache.commons.io.FileUtils.forceMkdir;
 import static org.apache.commons.io.FilenameUtils.getExtension;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.tuple.Pair;
@@ -50,6 +44,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.export.BulkExportExecutor;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.DocumentImportExportService;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.FullProjectExportRequest;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.ProjectExportException;
@@ -60,6 +55,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.format.FormatSupport;
 import de.tudarmstadt.ukp.clarin.webanno.export.model.ExportedProject;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 import de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage;
 import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession;
 import de.tudarmstadt.ukp.inception.curation.config.CurationServiceAutoConfiguration;
@@ -75,9 +71,9 @@ import de.tudarmstadt.ukp.inception.documents.exporters.SourceDocumentExporter;
 public class CuratedDocumentsExporter
     implements ProjectExporter
 {
-    private static final String CURATION_FOLDER = "/curation/";
+    private static final String CURATION_FOLDER = "curation/";
     private static final String CURATION_AS_SERIALISED_CAS = "curation_ser";
-    private static final String CURATION_CAS_FOLDER = "/" + CURATION_AS_SERIALISED_CAS + "/";
+    private static final String CURATION_CAS_FOLDER = CURATION_AS_SERIALISED_CAS + "/";
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -99,104 +95,108 @@ public class CuratedDocumentsExporter
     }
 
     /**
-     * Copy, if exists, curation documents to a folder that will be exported as Zip file
+     * Copy, if exists, curation documents into the Zip file of the export
      * 
      * @param aStage
-     *            The folder where curated documents are copied to be exported as Zip File
+     *            The Zip stream of the export into which curated documents are written
      * @throws IOException
+     * @throws InterruptedException
      * @throws ProjectExportException
      */
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
-        throws IOException, ProjectExportException
+            ExportedProject aExProject, ZipOutputStream aStage)
+        throws IOException, InterruptedException, ProjectExportException
     {
         Project project = aRequest.getProject();
 
         // The export process may store project-related information in this context to ensure it
-        // is looked up only once during the bulk operation and the DB is not hit too often.
-        Map<Pair<Project, String>, Object> bulkOperationContext = new HashMap<>();
+        // is looked up only once during the bulk operation and the DB is not hit too often. The
+        // context is shared with the conversion workers, so it needs to be thread-safe.
+        Map<Pair<Project, String>, Object> bulkOperationContext = new ConcurrentHashMap<>();
 
         // Get all the source documents from the project
         List<SourceDocument> documents = documentService.listSourceDocuments(project);
 
         int initProgress = aMonitor.getProgress() - 1;
         int i = 1;
-        for (SourceDocument sourceDocument : documents) {
-            try (CasStorageSession session = CasStorageSession.openNested()) {
-                File curationCasDir = new File(aStage,
-                        CURATION_CAS_FOLDER + sourceDocument.getName());
-                forceMkdir(curationCasDir);
+        try (var conversions = new BulkExportExecutor(importExportService.getExportParallelism())) {
+            for (SourceDocument sourceDocument : documents) {
+                try (CasStorageSession session = CasStorageSession.openNested()) {
+                    // If depending on aInProgress, include only the the curation documents that
+                    // are finished or also the ones that are in progress
+                    if (documentService.existsCas(sourceDocument, CURATION_USER)
+                            && (aRequest.isIncludeInProgress()
+                                    && CURATION_IN_PROGRESS.equals(sourceDocument.getState()))
+                            || CURATION_FINISHED.equals(sourceDocument.getState())) {
+                        // Copy CAS - this is used when importing the project again
+                        exportSerializedCas(aStage, sourceDocument);
 
-                File curationDir = new File(aStage, CURATION_FOLDER + sourceDocument.getName());
-                forceMkdir(curationDir);
+                        // Determine which format to use for export
+                        if (aRequest.getFormat() != null) {
+                            String formatId = FORMAT_AUTO.equals(aRequest.getFormat())
+                                    ? sourceDocument.getFormat()
+                                    : aRequest.getFormat();
 
-                // If depending on aInProgress, include only the the curation documents that are
-                // finished or also the ones that are in progress
-                if (documentService.existsCas(sourceDocument, CURATION_USER)
-                        && (aRequest.isIncludeInProgress()
-                                && CURATION_IN_PROGRESS.equals(sourceDocument.getState()))
-                        || CURATION_FINISHED.equals(sourceDocument.getState())) {
-                    // Copy CAS - this is used when importing the project again
-                    exportSerializedCas(sourceDocument, curationCasDir);
+                            FormatSupport format = importExportService
+                                    .getWritableFormatById(formatId).orElseGet(() -> {
+                                        var fallbackFormat = importExportService
+                                                .getFallbackFormat();
+                                        aMonitor.addMessage(LogMessage.warn(this,
+                                                "Curation: %s No writer found for original "
+                                                        + "format [%s] - exporting as [%s] "
+                                                        + "instead.",
+                                                sourceDocument, formatId,
+                                                fallbackFormat.getName()));
+                                        return fallbackFormat;
+                                    });
 
-                    // Determine which format to use for export
-                    if (aRequest.getFormat() != null) {
-                        String formatId = FORMAT_AUTO.equals(aRequest.getFormat())
-                                ? sourceDocument.getFormat()
-                                : aRequest.getFormat();
-
-                        FormatSupport format = importExportService.getWritableFormatById(formatId)
-                                .orElseGet(() -> {
-                                    var fallbackFormat = importExportService.getFallbackFormat();
-                                    aMonitor.addMessage(LogMessage.warn(this,
-                                            "Curation: %s No writer found for original format [%s] "
-                                                    + "- exporting as [%s] instead.",
-                                            sourceDocument, formatId, fallbackFormat.getName()));
-                                    return fallbackFormat;
-                                });
-
-                        // Copy secondary export format for convenience - not used during import
-                        exportAdditionalFormat(bulkOperationContext, sourceDocument, curationDir,
-                                format);
+                            // Copy secondary export format for convenience - not used during
+                            // import
+                            exportAdditionalFormat(aStage, conversions, bulkOperationContext,
+                                    sourceDocument, format);
+                        }
                     }
                 }
+
+                int progress = initProgress + (int) ceil(((double) i) / documents.size() * 10.0);
+                conversions.afterPending(() -> aMonitor.setProgress(progress));
+                i++;
             }
-            aMonitor.setProgress(initProgress + (int) ceil(((double) i) / documents.size() * 10.0));
-            i++;
+
+            conversions.awaitAll();
         }
     }
 
-    private void exportAdditionalFormat(Map<Pair<Project, String>, Object> bulkOperationContext,
-            SourceDocument srcDoc, File curationDir, FormatSupport format)
-        throws ProjectExportException, IOException
+    private void exportAdditionalFormat(ZipOutputStream aStage, BulkExportExecutor aConversions,
+            Map<Pair<Project, String>, Object> bulkOperationContext, SourceDocument srcDoc,
+            FormatSupport format)
+        throws ProjectExportException, IOException, InterruptedException
     {
-        File curationFile = null;
-        try {
-            curationFile = importExportService.exportAnnotationDocument(srcDoc, CURATION_USER,
-                    format, CURATION_USER, CURATION, true, bulkOperationContext);
-            var filename = CURATION_USER + "." + getExtension(curationFile.getName());
-            FileUtils.copyFile(curationFile, new File(curationDir, filename));
-        }
-        catch (UIMAException | IOException e) {
-            throw new ProjectExportException("Error exporting annotations of " + srcDoc.getName()
-                    + " for user [" + CURATION_USER + "] as [" + format.getName() + "]: "
-                    + ExceptionUtils.getRootCauseMessage(e), e);
-        }
-        finally {
-            if (curationFile != null) {
-                forceDelete(curationFile);
+        aConversions.submit(() -> {
+            try {
+                return importExportService.exportAnnotationDocument(srcDoc, CURATION_USER, format,
+                        CURATION_USER, CURATION, true, bulkOperationContext);
             }
-        }
+            catch (UIMAException | IOException e) {
+                throw new ProjectExportException("Error exporting annotations of "
+                        + srcDoc.getName() + " for user [" + CURATION_USER + "] as ["
+                        + format.getName() + "]: " + ExceptionUtils.getRootCauseMessage(e), e);
+            }
+        }, curationFile -> {
+            var filename = CURATION_USER + "." + getExtension(curationFile.getName());
+            ZipUtils.writeEntry(aStage, CURATION_FOLDER + srcDoc.getName() + "/" + filename,
+                    curationFile);
+        });
     }
 
-    private void exportSerializedCas(SourceDocument sourceDocument, File curationCasDir)
-        throws IOException, FileNotFoundException
+    private void exportSerializedCas(ZipOutputStream aStage, SourceDocument sourceDocument)
+        throws IOException
     {
-        try (OutputStream os = new FileOutputStream(
-                new File(curationCasDir, CURATION_USER + ".ser"))) {
-            documentService.exportCas(sourceDocument, CURATION_USER, os);
-        }
+        // Serialized CASes are usually compressed already
+        ZipUtils.writeUncompressedEntry(aStage,
+                CURATION_CAS_FOLDER + sourceDocument.getName() + "/" + CURATION_USER + ".ser",
+                os -> documentService.exportCas(sourceDocument, CURATION_USER, os));
     }
 
     /**
@@ -19,9 +19,9 @@ package de.tudarmstadt.ukp.inception.curation.export;
 
 import static java.lang.invoke.MethodHandles.lookup;
 
-import java.io.File;
 import java.util.Optional;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,7 +61,7 @@ public class CurationWorkflowExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
+            ExportedProject aExProject, ZipOutputStream aStage)
     {
         Project project = aRequest.getProject();
 
@@ -28,6 +28,7 @@ import static org.slf4j.LoggerFactory.getLogger;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
@@ -103,8 +104,10 @@ public class CurationMergeServiceImpl
 
         DiffResult diff;
         try (StopWatch watch = new StopWatch(LOG, "CasDiff")) {
-            diff = doDiffSingle(adapters, LINK_ROLE_AS_LABEL, aCassesToMerge, 0, MAX_VALUE)
-                    .toResult();
+            // The diff covers all layers of the whole document, so it pays off to calculate it
+            // in parallel
+            diff = doDiffSingle(adapters, LINK_ROLE_AS_LABEL, aCassesToMerge, 0, MAX_VALUE,
+                    ForkJoinPool.commonPool()).toResult();
         }
 
         try (StopWatch watch = new StopWatch(LOG, "CasMerge")) {
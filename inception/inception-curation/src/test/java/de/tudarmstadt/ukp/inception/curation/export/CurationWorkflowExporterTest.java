@@ -22,8 +22,8 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-import java.io.File;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -85,9 +85,9 @@ public class CurationWorkflowExporterTest
         FullProjectExportRequest exportRequest = new FullProjectExportRequest(project, null, false);
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(project, null, "test");
         ExportedProject exportedProject = new ExportedProject();
-        File file = mock(File.class);
+        var stage = mock(ZipOutputStream.class);
 
-        sut.exportData(exportRequest, monitor, exportedProject, file);
+        sut.exportData(exportRequest, monitor, exportedProject, stage);
 
         // Import the project again
         ArgumentCaptor<CurationWorkflow> captor = ArgumentCaptor.forClass(CurationWorkflow.class);
@@ -17,10 +17,10 @@
  */
 package de.tudarmstadt.ukp.inception.diam.model.compactv2;
 
-import de.tudarmstadt.ukp.inception.rendering.vmodel.serialization.VDocumentSerializer;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.serialization.StreamingVDocumentSerializer;
 
 public interface CompactSerializerV2
-    extends VDocumentSerializer<CompactAnnotatedText>
+    extends StreamingVDocumentSerializer<CompactAnnotatedText>
 {
     // No additional methods
 }
@@ -20,14 +20,19 @@ package de.tudarmstadt.ukp.inception.diam.model.compactv2;
 import static java.util.Arrays.asList;
 import static java.util.stream.Collectors.toList;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.math3.util.Precision;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
@@ -35,8 +40,11 @@ import de.tudarmstadt.ukp.inception.diam.model.compactv2.config.DiamCompactV2Aut
 import de.tudarmstadt.ukp.inception.rendering.request.RenderRequest;
 import de.tudarmstadt.ukp.inception.rendering.vmodel.VAnnotationMarker;
 import de.tudarmstadt.ukp.inception.rendering.vmodel.VArc;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.VComment;
 import de.tudarmstadt.ukp.inception.rendering.vmodel.VDocument;
 import de.tudarmstadt.ukp.inception.rendering.vmodel.VID;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.VObject;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.VRange;
 import de.tudarmstadt.ukp.inception.rendering.vmodel.VSpan;
 import de.tudarmstadt.ukp.inception.rendering.vmodel.VTextMarker;
 import de.tudarmstadt.ukp.inception.schema.api.config.AnnotationSchemaProperties;
@@ -46,6 +54,11 @@ import de.tudarmstadt.ukp.inception.support.text.TextUtils;
  * <p>
  * This class is exposed as a Spring Component via {@link DiamCompactV2AutoConfig#compactSerializerV2}.
  * </p>
+ * <p>
+ * Next to building a {@link CompactAnnotatedText} object graph, the serializer can
+ * {@link #write stream} the same structure directly to a {@link JsonGenerator}. This avoids
+ * allocating the object graph (and a JSON tree) for large viewports.
+ * </p>
  */
 public class CompactSerializerV2Impl
     implements CompactSerializerV2
@@ -81,6 +94,241 @@ public class CompactSerializerV2Impl
         return aResponse;
     }
 
+    @Override
+    public void write(VDocument aVDoc, RenderRequest aRequest, JsonGenerator aGenerator)
+        throws IOException
+    {
+        var layers = new ArrayList<AnnotationLayer>();
+        var hasRelations = false;
+        var hasSpans = false;
+        for (var layer : aVDoc.getAnnotationLayers()) {
+            if (isIncluded(layer)) {
+                layers.add(layer);
+                hasRelations |= !aVDoc.arcs(layer.getId()).isEmpty();
+                hasSpans |= !aVDoc.spans(layer.getId()).isEmpty();
+            }
+        }
+
+        var commentsByVid = new HashMap<VID, List<VComment>>();
+        for (var comment : aVDoc.comments()) {
+            commentsByVid.computeIfAbsent(comment.getVid(), $ -> new ArrayList<>()).add(comment);
+        }
+
+        aGenerator.writeStartObject();
+        aGenerator.writeStringField("action", CompactAnnotatedText.COMMAND);
+
+        aGenerator.writeArrayFieldStart("layers");
+        for (var layer : layers) {
+            aGenerator.writeStartObject();
+            aGenerator.writeNumberField("id", layer.getId());
+            aGenerator.writeStringField("name", layer.getUiName());
+            aGenerator.writeEndObject();
+        }
+        aGenerator.writeEndArray();
+
+        if (aRequest.isIncludeText() && aVDoc.getText() != null) {
+            aGenerator.writeStringField("text",
+                    TextUtils.sanitizeVisibleText(aVDoc.getText(), '\uFFFD'));
+        }
+
+        aGenerator.writeFieldName("window");
+        writeRange(aGenerator, aVDoc.getWindowBegin(), aVDoc.getWindowEnd());
+
+        if (hasRelations) {
+            aGenerator.writeArrayFieldStart("relations");
+            for (var layer : layers) {
+                for (var varc : aVDoc.arcs(layer.getId())) {
+                    writeRelation(aGenerator, varc, commentsByVid);
+                }
+            }
+            aGenerator.writeEndArray();
+        }
+
+        if (hasSpans) {
+            aGenerator.writeArrayFieldStart("spans");
+            for (var layer : layers) {
+                for (var vspan : aVDoc.spans(layer.getId())) {
+                    writeSpan(aGenerator, aRequest, vspan, commentsByVid);
+                }
+            }
+            aGenerator.writeEndArray();
+        }
+
+        writeMarkers(aGenerator, aRequest, aVDoc);
+
+        aGenerator.writeEndObject();
+        aGenerator.flush();
+    }
+
+    private void writeRelation(JsonGenerator aGenerator, VArc aArc,
+            Map<VID, List<VComment>> aComments)
+        throws IOException
+    {
+        aGenerator.writeStartArray();
+        aGenerator.writeNumber(aArc.getLayer().getId());
+        aGenerator.writeString(aArc.getVid().toString());
+        aGenerator.writeStartArray();
+        writeArgument(aGenerator, aArc.getSource(), "Arg1");
+        writeArgument(aGenerator, aArc.getTarget(), "Arg2");
+        aGenerator.writeEndArray();
+        writeAttributes(aGenerator, aArc, null, aComments);
+        aGenerator.writeEndArray();
+    }
+
+    private void writeArgument(JsonGenerator aGenerator, VID aTarget, String aLabel)
+        throws IOException
+    {
+        aGenerator.writeStartArray();
+        aGenerator.writeString(aTarget.toString());
+        aGenerator.writeString(aLabel);
+        aGenerator.writeEndArray();
+    }
+
+    private void writeSpan(JsonGenerator aGenerator, RenderRequest aRequest, VSpan aSpan,
+            Map<VID, List<VComment>> aComments)
+        throws IOException
+    {
+        aGenerator.writeStartArray();
+        aGenerator.writeNumber(aSpan.getLayer().getId());
+        aGenerator.writeString(aSpan.getVid().toString());
+
+        aGenerator.writeStartArray();
+        for (var range : aSpan.getRanges()) {
+            writeRange(aGenerator, range, aRequest.isClipSpans());
+        }
+        aGenerator.writeEndArray();
+
+        String clipped = null;
+        if (aRequest.isClipSpans()) {
+            var ranges = aSpan.getRanges();
+            var atStart = ranges.get(0).isClippedAtBegin();
+            var atEnd = ranges.get(ranges.size() - 1).isClippedAtEnd();
+            if (atStart || atEnd) {
+                clipped = (atStart ? CompactSpanAttributes.VALUE_CLIPPED_AT_START : "")
+                        + (atEnd ? CompactSpanAttributes.VALUE_CLIPPED_AT_END : "");
+            }
+        }
+
+        writeAttributes(aGenerator, aSpan, clipped, aComments);
+        aGenerator.writeEndArray();
+    }
+
+    private void writeAttributes(JsonGenerator aGenerator, VObject aObject, String aClipped,
+            Map<VID, List<VComment>> aComments)
+        throws IOException
+    {
+        aGenerator.writeStartObject();
+
+        if (aObject.getLabelHint() != null) {
+            aGenerator.writeStringField(CompactAnnotationAttributes.ATTR_LABEL,
+                    aObject.getLabelHint());
+        }
+
+        if (aObject.getColorHint() != null) {
+            aGenerator.writeStringField(CompactAnnotationAttributes.ATTR_COLOR,
+                    aObject.getColorHint());
+        }
+
+        var comments = aComments.get(aObject.getVid());
+        if (comments != null) {
+            aGenerator.writeArrayFieldStart(CompactAnnotationAttributes.ATTR_COMMENTS);
+            for (var comment : comments) {
+                aGenerator.writeStartArray();
+                aGenerator.writeString(comment.getComment());
+                var code = getCommentCode(comment);
+                if (!CompactComment.INFO.equals(code)) {
+                    aGenerator.writeString(code);
+                }
+                aGenerator.writeEndArray();
+            }
+            aGenerator.writeEndArray();
+        }
+
+        if (aObject.getScore() != 0.0d) {
+            aGenerator.writeNumberField(CompactAnnotationAttributes.ATTR_SCORE,
+                    Precision.round(aObject.getScore(), 2));
+        }
+
+        if (aClipped != null) {
+            aGenerator.writeStringField(CompactSpanAttributes.ATTR_CLIPPED, aClipped);
+        }
+
+        aGenerator.writeEndObject();
+    }
+
+    private void writeMarkers(JsonGenerator aGenerator, RenderRequest aRequest, VDocument aVDoc)
+        throws IOException
+    {
+        var annotationMarkers = new ArrayList<VAnnotationMarker>();
+        var textMarkers = new ArrayList<VTextMarker>();
+        for (var marker : aVDoc.getMarkers()) {
+            if (marker instanceof VAnnotationMarker) {
+                annotationMarkers.add((VAnnotationMarker) marker);
+            }
+            else if (marker instanceof VTextMarker) {
+                textMarkers.add((VTextMarker) marker);
+            }
+        }
+
+        if (!annotationMarkers.isEmpty()) {
+            aGenerator.writeArrayFieldStart("annotationMarkers");
+            for (var marker : annotationMarkers) {
+                aGenerator.writeStartArray();
+                aGenerator.writeString(marker.getType());
+                aGenerator.writeStartArray();
+                aGenerator.writeString(marker.getVid().toString());
+                aGenerator.writeEndArray();
+                aGenerator.writeEndArray();
+            }
+            aGenerator.writeEndArray();
+        }
+
+        if (!textMarkers.isEmpty()) {
+            aGenerator.writeArrayFieldStart("textMarkers");
+            for (var marker : textMarkers) {
+                aGenerator.writeStartArray();
+                aGenerator.writeString(marker.getType());
+                aGenerator.writeStartArray();
+                writeRange(aGenerator, marker.getRange(), aRequest.isClipSpans());
+                aGenerator.writeEndArray();
+                aGenerator.writeEndArray();
+            }
+            aGenerator.writeEndArray();
+        }
+    }
+
+    private void writeRange(JsonGenerator aGenerator, VRange aRange, boolean aClipped)
+        throws IOException
+    {
+        if (aClipped) {
+            writeRange(aGenerator, aRange.getBegin(), aRange.getEnd());
+        }
+        else {
+            writeRange(aGenerator, aRange.getOriginalBegin(), aRange.getOriginalEnd());
+        }
+    }
+
+    private void writeRange(JsonGenerator aGenerator, int aBegin, int aEnd) throws IOException
+    {
+        aGenerator.writeStartArray();
+        aGenerator.writeNumber(aBegin);
+        aGenerator.writeNumber(aEnd);
+        aGenerator.writeEndArray();
+    }
+
+    private boolean isIncluded(AnnotationLayer aLayer)
+    {
+        if (!properties.isTokenLayerEditable() && Token._TypeName.equals(aLayer.getName())) {
+            return false;
+        }
+
+        if (!properties.isSentenceLayerEditable() && Sentence._TypeName.equals(aLayer.getName())) {
+            return false;
+        }
+
+        return true;
+    }
+
     private void renderLayers(RenderRequest aRequest, CompactAnnotatedText aResponse,
             VDocument aVDoc)
     {
@@ -89,12 +337,7 @@ public class CompactSerializerV2Impl
         var vidToAnnotation = new HashMap<VID, CompactAnnotation>();
 
         for (AnnotationLayer layer : aVDoc.getAnnotationLayers()) {
-            if (!properties.isTokenLayerEditable() && Token._TypeName.equals(layer.getName())) {
-                continue;
-            }
-
-            if (!properties.isSentenceLayerEditable()
-                    && Sentence._TypeName.equals(layer.getName())) {
+            if (!isIncluded(layer)) {
                 continue;
             }
 
@@ -187,19 +430,21 @@ public class CompactSerializerV2Impl
                 continue;
             }
 
-            String code;
-            switch (comment.getCommentType()) {
-            case ERROR:
-                code = CompactComment.ERROR;
-                break;
-            case INFO:
-                code = CompactComment.INFO;
-                break;
-            default:
-                throw new IllegalStateException(
-                        "Unsupported comment type [" + comment.getCommentType() + "]");
-            }
-            cann.getAttributes().getComments().add(new CompactComment(comment.getComment(), code));
+            cann.getAttributes().getComments()
+                    .add(new CompactComment(comment.getComment(), getCommentCode(comment)));
+        }
+    }
+
+    private String getCommentCode(VComment aComment)
+    {
+        switch (aComment.getCommentType()) {
+        case ERROR:
+            return CompactComment.ERROR;
+        case INFO:
+            return CompactComment.INFO;
+        default:
+            throw new IllegalStateException(
+                    "Unsupported comment type [" + aComment.getCommentType() + "]");
         }
     }
 
@@ -20,6 +20,7 @@ package de.tudarmstadt.ukp.inception.diam.model.compactv2;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.contentOf;
 
+import java.io.StringWriter;
 import java.util.Map;
 
 import org.junit.jupiter.api.Test;
@@ -50,6 +51,36 @@ public class CompactSerializerV2ImplTest
     
     @Test
     void thatSerializationWorks() throws Exception
+    {
+        var req = RenderRequest.builder() //
+                .withWindow(0, Integer.MAX_VALUE) //
+                .build();
+        var sut = new CompactSerializerV2Impl(annotationSchemaProperties);
+        var cdoc = sut.render(buildDocument(), req);
+        var actual = JSONUtil.toPrettyJsonString(cdoc);
+
+        assertThat(actual)
+                .isEqualTo(contentOf(getClass().getResource("/compactv2/reference.json")));
+    }
+
+    @Test
+    void thatStreamingSerializationMatchesReference() throws Exception
+    {
+        var req = RenderRequest.builder() //
+                .withWindow(0, Integer.MAX_VALUE) //
+                .build();
+        var sut = new CompactSerializerV2Impl(annotationSchemaProperties);
+        var out = new StringWriter();
+        try (var generator = JSONUtil.getObjectMapper().getFactory().createGenerator(out)) {
+            sut.write(buildDocument(), req, generator);
+        }
+
+        var mapper = JSONUtil.getObjectMapper();
+        assertThat(mapper.readTree(out.toString())).isEqualTo(
+                mapper.readTree(contentOf(getClass().getResource("/compactv2/reference.json"))));
+    }
+
+    private VDocument buildDocument()
     {
         var spanLayer = AnnotationLayer.builder() //
                 .withId(1l) //
@@ -85,15 +116,6 @@ public class CompactSerializerV2ImplTest
         vdoc.add(new VComment(span2.getVid(), VCommentType.ERROR, "error"));
         vdoc.add(new VAnnotationMarker(VMarker.FOCUS, span1.getVid()));
         vdoc.add(new VTextMarker(VMarker.MATCH, new VRange(8, 9)));
-
-        var req = RenderRequest.builder() //
-                .withWindow(0, Integer.MAX_VALUE) //
-                .build();
-        var sut = new CompactSerializerV2Impl(annotationSchemaProperties);
-        var cdoc = sut.render(vdoc, req);
-        var actual = JSONUtil.toPrettyJsonString(cdoc);
-
-        assertThat(actual)
-                .isEqualTo(contentOf(getClass().getResource("/compactv2/reference.json")));
+        return vdoc;
     }
 }
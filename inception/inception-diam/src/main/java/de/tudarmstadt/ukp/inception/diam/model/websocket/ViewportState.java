@@ -17,10 +17,10 @@
  */
 package de.tudarmstadt.ukp.inception.diam.model.websocket;
 
-import static java.util.Collections.newSetFromMap;
-
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -30,9 +30,14 @@ public class ViewportState
 {
     private final ViewportDefinition vpd;
 
-    private final Set<Pair<String, String>> subscriberSessionIds = newSetFromMap(
-            new ConcurrentHashMap<>());
+    // Subscriptions (session ID, subscription ID) in the order in which they were made and the
+    // name of the subscribing user
+    private final Map<Pair<String, String>, String> subscriptions = new LinkedHashMap<>();
+
+    private final Deque<UpdateRange> pendingUpdates = new ArrayDeque<>();
+    private boolean updating;
 
+    private byte[] payload;
     private JsonNode json;
 
     public ViewportState(ViewportDefinition aVpd)
@@ -45,34 +50,137 @@ public class ViewportState
         return vpd;
     }
 
+    /**
+     * @param aPayload
+     *            the rendered viewport as sent to a new subscriber in the encoding requested by the
+     *            viewport format. It is kept in serialized form because this is much more compact
+     *            than a JSON tree. The tree is only built when the first update needs to be diffed
+     *            against it.
+     */
+    public synchronized void setPayload(byte[] aPayload)
+    {
+        payload = aPayload;
+        json = null;
+    }
+
+    public synchronized byte[] getPayload()
+    {
+        return payload;
+    }
+
+    /**
+     * @param aJson
+     *            the rendered viewport as last sent to the subscribers in the form of an update.
+     *            Keeping the tree avoids parsing the previous state again for the next update.
+     */
     public synchronized void setJson(JsonNode aJson)
     {
         json = aJson;
+        payload = null;
     }
 
+    /**
+     * @return the rendered viewport as last sent to the subscribers in the form of an update or
+     *         {@code null} if there was no update since the last {@link #setPayload payload} was
+     *         set.
+     */
     public synchronized JsonNode getJson()
     {
         return json;
     }
 
-    public void removeSubscriber(String aId)
+    /**
+     * All subscribers receive the same updates, so the viewport can only be rendered on behalf of
+     * one of them. This is the user of the oldest subscription, so that the perspective does not
+     * change whenever somebody else subscribes.
+     * 
+     * @return name of the user on whose behalf the viewport is rendered or {@code null} if there
+     *         are no subscribers.
+     */
+    public synchronized String getSessionOwner()
+    {
+        return subscriptions.values().stream().findFirst().orElse(null);
+    }
+
+    /**
+     * Queues an update of the given range. Updates of a viewport are processed one after the other
+     * so that each diff is based on the state the subscribers have seen last.
+     * 
+     * @param aBegin
+     *            begin offset of the update.
+     * @param aEnd
+     *            end offset of the update.
+     * @return whether the caller needs to start processing the queued updates using
+     *         {@link #nextUpdate()}. If the updates are already being processed, the update is
+     *         picked up by the running processing.
+     */
+    public synchronized boolean queueUpdate(int aBegin, int aEnd)
+    {
+        // A queued update which has not been rendered yet already includes the new changes if it
+        // covers their range
+        for (var pending : pendingUpdates) {
+            if (pending.begin() <= aBegin && aEnd <= pending.end()) {
+                return false;
+            }
+        }
+
+        pendingUpdates.add(new UpdateRange(aBegin, aEnd));
+
+        if (updating) {
+            return false;
+        }
+
+        updating = true;
+        return true;
+    }
+
+    /**
+     * @return the next update to process or {@code null} if there are no more updates. In the
+     *         latter case, the next call to {@link #queueUpdate} starts the processing again. The
+     *         viewport is rendered as a whole for every update, so all queued updates are merged
+     *         into a single one.
+     */
+    public synchronized UpdateRange nextUpdate()
+    {
+        var next = pendingUpdates.poll();
+        if (next == null) {
+            updating = false;
+            return null;
+        }
+
+        UpdateRange pending;
+        while ((pending = pendingUpdates.poll()) != null) {
+            next = next.union(pending);
+        }
+        return next;
+    }
+
+    public synchronized void removeSubscriber(String aId)
+    {
+        subscriptions.keySet().removeIf(p -> p.getKey().equals(aId));
+    }
+
+    public synchronized void addSubscription(String aSubscriberId, String aSubscriptionId,
+            String aUser)
     {
-        subscriberSessionIds.removeIf(p -> p.getKey().equals(aId));
+        subscriptions.putIfAbsent(Pair.of(aSubscriberId, aSubscriptionId), aUser);
     }
 
-    public void addSubscription(String aSubscriberId, String aSubscriptionId)
+    public synchronized boolean hasSubscribers()
     {
-        subscriberSessionIds.add(Pair.of(aSubscriberId, aSubscriptionId));
+        return !subscriptions.isEmpty();
     }
 
-    public boolean hasSubscribers()
+    public synchronized void removeSubscription(String aSessionId, String aSubscriptionId)
     {
-        return !subscriberSessionIds.isEmpty();
+        subscriptions.remove(Pair.of(aSessionId, aSubscriptionId));
     }
 
-    public void removeSubscription(String aSessionId, String aSubscriptionId)
+    public record UpdateRange(int begin, int end)
     {
-        subscriberSessionIds.removeIf(
-                p -> p.getKey().equals(aSessionId) && p.getValue().equals(aSubscriptionId));
+        public UpdateRange union(UpdateRange aOther)
+        {
+            return new UpdateRange(Math.min(begin, aOther.begin), Math.max(end, aOther.end));
+        }
     }
 }
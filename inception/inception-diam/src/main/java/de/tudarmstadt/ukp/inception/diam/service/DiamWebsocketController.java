@@ -26,17 +26,28 @@ import static de.tudarmstadt.ukp.inception.websocket.config.WebSocketConstants.T
 import static de.tudarmstadt.ukp.inception.websocket.config.WebSocketConstants.TOPIC_ELEMENT_PROJECT;
 import static de.tudarmstadt.ukp.inception.websocket.config.WebSocketConstants.TOPIC_ELEMENT_USER;
 import static java.lang.Integer.MAX_VALUE;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toList;
+import static org.apache.commons.lang3.StringUtils.substringAfter;
+import static org.apache.commons.lang3.StringUtils.substringBefore;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.security.Principal;
 import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.event.EventListener;
@@ -51,8 +62,13 @@ import org.springframework.util.PropertyPlaceholderHelper;
 import org.springframework.web.socket.messaging.SessionDisconnectEvent;
 import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.flipkart.zjsonpatch.JsonDiff;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.RawValue;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
@@ -64,18 +80,23 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
+import de.tudarmstadt.ukp.inception.annotation.events.AnnotationEvent;
+import de.tudarmstadt.ukp.inception.annotation.layer.relation.RelationEvent;
 import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession;
 import de.tudarmstadt.ukp.inception.diam.messages.MViewportInit;
 import de.tudarmstadt.ukp.inception.diam.messages.MViewportUpdate;
 import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportDefinition;
 import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportState;
+import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportState.UpdateRange;
 import de.tudarmstadt.ukp.inception.documents.api.DocumentService;
 import de.tudarmstadt.ukp.inception.documents.api.RepositoryProperties;
 import de.tudarmstadt.ukp.inception.documents.event.AfterCasWrittenEvent;
 import de.tudarmstadt.ukp.inception.project.api.ProjectService;
 import de.tudarmstadt.ukp.inception.recommendation.api.event.TransientAnnotationStateChangedEvent;
+import de.tudarmstadt.ukp.inception.rendering.model.Range;
 import de.tudarmstadt.ukp.inception.rendering.pipeline.RenderingPipeline;
 import de.tudarmstadt.ukp.inception.rendering.request.RenderRequest;
+import de.tudarmstadt.ukp.inception.rendering.vmodel.serialization.StreamingVDocumentSerializer;
 import de.tudarmstadt.ukp.inception.rendering.vmodel.serialization.VDocumentSerializerExtensionPoint;
 import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
 
@@ -86,11 +107,19 @@ import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
 @ConditionalOnExpression("${websocket.enabled:true}")
 @Controller
 public class DiamWebsocketController
+    implements DisposableBean
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     public static final String FORMAT_LEGACY = "legacy";
 
+    /**
+     * The format may carry an encoding suffix, e.g. {@code compact_v2+cbor}. Without a suffix, the
+     * viewport is sent as JSON.
+     */
+    public static final String ENCODING_SEPARATOR = "+";
+    public static final String ENCODING_CBOR = "cbor";
+
     public static final String PARAM_FROM = "from";
     public static final String PARAM_TO = "to";
     public static final String PARAM_FORMAT = "format";
@@ -130,6 +159,16 @@ public class DiamWebsocketController
 
     private final LoadingCache<ViewportDefinition, ViewportState> activeViewports;
 
+    // Ranges touched by annotation events since the CAS was last written. When the CAS is written,
+    // only the viewports overlapping these ranges need to be updated.
+    private final Cache<ChangedDocument, UpdateRange> changedRanges;
+
+    private final ObjectMapper cborMapper = new CBORMapper();
+
+    // Updates are rendered and sent off the thread which triggered them (usually the thread which
+    // saved the CAS) so that saving does not have to wait for all subscribers
+    private final ExecutorService updateExecutor;
+
     public DiamWebsocketController(SimpMessagingTemplate aMsgTemplate,
             RenderingPipeline aRenderingPipeline, DocumentService aDocumentService,
             RepositoryProperties aRepositoryProperties, AnnotationSchemaService aSchemaService,
@@ -150,6 +189,23 @@ public class DiamWebsocketController
         activeViewports = Caffeine.newBuilder() //
                 .expireAfterAccess(Duration.ofMinutes(30)) //
                 .build(this::initState);
+
+        changedRanges = Caffeine.newBuilder() //
+                .expireAfterWrite(Duration.ofMinutes(30)) //
+                .build();
+
+        updateExecutor = Executors.newFixedThreadPool(
+                max(1, min(4, Runtime.getRuntime().availableProcessors() / 2)),
+                new BasicThreadFactory.Builder() //
+                        .namingPattern("diam-update-%d") //
+                        .daemon(true) //
+                        .build());
+    }
+
+    @Override
+    public void destroy()
+    {
+        updateExecutor.shutdownNow();
     }
 
     @EventListener
@@ -157,12 +213,8 @@ public class DiamWebsocketController
     {
         log.trace("Unsubscribing {} from all viewports", aEvent.getSessionId());
 
-        activeViewports.asMap().entrySet().stream() //
-                .filter(e -> {
-                    e.getValue().removeSubscriber(aEvent.getSessionId());
-                    return !e.getValue().hasSubscribers();
-                }) //
-                .forEach(e -> closeViewport(e.getKey()));
+        activeViewports.asMap().forEach((vpd, vps) -> afterUnsubscribe(vpd, vps,
+                () -> vps.removeSubscriber(aEvent.getSessionId())));
     }
 
     @EventListener
@@ -175,12 +227,26 @@ public class DiamWebsocketController
 
         log.trace("Unsubscribing {} from subscription {}", sessionId, subscriptionId);
 
-        activeViewports.asMap().entrySet().stream() //
-                .filter(e -> {
-                    e.getValue().removeSubscription(sessionId, subscriptionId);
-                    return !e.getValue().hasSubscribers();
-                }) //
-                .forEach(e -> closeViewport(e.getKey()));
+        activeViewports.asMap().forEach((vpd, vps) -> afterUnsubscribe(vpd, vps,
+                () -> vps.removeSubscription(sessionId, subscriptionId)));
+    }
+
+    private void afterUnsubscribe(ViewportDefinition aVpd, ViewportState aVps,
+            Runnable aUnsubscribe)
+    {
+        var sessionOwner = aVps.getSessionOwner();
+        aUnsubscribe.run();
+
+        if (!aVps.hasSubscribers()) {
+            closeViewport(aVpd);
+            return;
+        }
+
+        // The remaining subscribers have seen the viewport from the perspective of the previous
+        // owner, so they need an update if the perspective changes
+        if (!Objects.equals(sessionOwner, aVps.getSessionOwner())) {
+            queueUpdate(aVpd, aVps, aVpd.getBegin(), aVpd.getEnd());
+        }
     }
 
     private void closeViewport(ViewportDefinition aVpd)
@@ -189,10 +255,53 @@ public class DiamWebsocketController
         activeViewports.invalidate(aVpd);
     }
 
+    @EventListener
+    public void onAnnotationEvent(AnnotationEvent aEvent)
+    {
+        if (aEvent.getDocument() == null || aEvent.getDocumentOwner() == null) {
+            return;
+        }
+
+        changedRanges.asMap().merge(
+                new ChangedDocument(aEvent.getDocument().getId(), aEvent.getDocumentOwner()),
+                getAffectedRange(aEvent), UpdateRange::union);
+    }
+
+    private static UpdateRange getAffectedRange(AnnotationEvent aEvent)
+    {
+        // The affected range of a relation event does not necessarily cover both endpoints, but
+        // the relation is visible in all viewports containing any of them
+        if (aEvent instanceof RelationEvent) {
+            var source = ((RelationEvent) aEvent).getSourceAnnotation();
+            var target = ((RelationEvent) aEvent).getTargetAnnotation();
+            if (source != null && target != null) {
+                return new UpdateRange(min(source.getBegin(), target.getBegin()),
+                        max(source.getEnd(), target.getEnd()));
+            }
+        }
+
+        var range = aEvent.getAffectedRange();
+        if (range == null || Range.UNDEFINED.equals(range) || range.getBegin() < 0) {
+            return new UpdateRange(0, MAX_VALUE);
+        }
+
+        return new UpdateRange(range.getBegin(), range.getEnd());
+    }
+
     @TransactionalEventListener(fallbackExecution = true)
     public void onAfterCasWritten(AfterCasWrittenEvent aEvent)
     {
-        sendUpdate(aEvent.getDocument());
+        var doc = aEvent.getDocument();
+
+        // Without annotation events, we do not know what changed
+        var changed = changedRanges.asMap()
+                .remove(new ChangedDocument(doc.getDocument().getId(), doc.getUser()));
+        if (changed == null) {
+            sendUpdate(doc);
+            return;
+        }
+
+        sendUpdate(doc, changed.begin(), changed.end());
     }
 
     @EventListener
@@ -203,7 +312,7 @@ public class DiamWebsocketController
     }
 
     @SubscribeMapping(DOCUMENT_VIEWPORT_TOPIC_TEMPLATE)
-    public JsonNode onSubscribeToAnnotationDocument(SimpMessageHeaderAccessor aHeaderAccessor,
+    public Object onSubscribeToAnnotationDocument(SimpMessageHeaderAccessor aHeaderAccessor,
             Principal aPrincipal, //
             @DestinationVariable(PARAM_PROJECT) long aProjectId,
             @DestinationVariable(PARAM_DOCUMENT) long aDocumentId,
@@ -227,12 +336,19 @@ public class DiamWebsocketController
 
             log.trace("Subscribing {} to {}", aHeaderAccessor.getSessionId(), vpd.getTopic());
             vps.addSubscription(aHeaderAccessor.getSessionId(),
-                    aHeaderAccessor.getSubscriptionId());
+                    aHeaderAccessor.getSubscriptionId(), aPrincipal.getName());
 
-            JsonNode json = render(project, aDocumentId, aUser, aViewportBegin, aViewportEnd,
-                    aFormat);
-            vps.setJson(json);
-            return json;
+            // Render from the same perspective as for the other subscribers of the viewport
+            byte[] payload = render(project, getSessionOwner(vpd, vps), aDocumentId, aUser,
+                    aViewportBegin, aViewportEnd, aFormat);
+            vps.setPayload(payload);
+
+            if (isBinary(aFormat)) {
+                return payload;
+            }
+
+            // Pass the JSON through as-is instead of parsing it into a tree again
+            return new RawValue(new String(payload, UTF_8));
         }
         finally {
             MDC.remove(KEY_REPOSITORY_PATH);
@@ -271,8 +387,23 @@ public class DiamWebsocketController
     // }
     // }
 
-    private JsonNode render(Project aProject, long aDocumentId, String aUser, int aViewportBegin,
-            int aViewportEnd, String aFormat)
+    /**
+     * @return the rendered viewport in the encoding requested by the format.
+     */
+    private byte[] render(Project aProject, User aSessionOwner, long aDocumentId, String aUser,
+            int aViewportBegin, int aViewportEnd, String aFormat)
+        throws IOException
+    {
+        var out = new ByteArrayOutputStream();
+        try (var generator = getMapper(aFormat).getFactory().createGenerator(out)) {
+            render(aProject, aSessionOwner, aDocumentId, aUser, aViewportBegin, aViewportEnd,
+                    aFormat, generator);
+        }
+        return out.toByteArray();
+    }
+
+    private void render(Project aProject, User aSessionOwner, long aDocumentId, String aUser,
+            int aViewportBegin, int aViewportEnd, String aFormat, JsonGenerator aGenerator)
         throws IOException
     {
         var doc = documentService.getSourceDocument(aProject.getId(), aDocumentId);
@@ -289,7 +420,7 @@ public class DiamWebsocketController
                 .collect(toList());
 
         var request = RenderRequest.builder() //
-                .withSessionOwner(userRepository.getCurrentUser()) //
+                .withSessionOwner(aSessionOwner) //
                 .withDocument(doc, user) //
                 .withWindow(aViewportBegin, aViewportEnd) //
                 .withCas(cas) //
@@ -298,14 +429,44 @@ public class DiamWebsocketController
 
         var vdoc = renderingPipeline.render(request);
 
-        if (FORMAT_LEGACY.equals(aFormat)) {
-            return JSONUtil.getObjectMapper().valueToTree(new MViewportInit(vdoc));
+        var mapper = getMapper(aFormat);
+        var formatId = substringBefore(aFormat, ENCODING_SEPARATOR);
+
+        if (FORMAT_LEGACY.equals(formatId)) {
+            mapper.writeValue(aGenerator, new MViewportInit(vdoc));
+            return;
         }
 
-        var serializer = vDocumentSerializerExtensionPoint.getExtension(aFormat).orElseThrow(
+        var serializer = vDocumentSerializerExtensionPoint.getExtension(formatId).orElseThrow(
                 () -> new IllegalStateException("Unsupported format [" + aFormat + "]"));
 
-        return JSONUtil.getObjectMapper().valueToTree(serializer.render(vdoc, request));
+        if (serializer instanceof StreamingVDocumentSerializer) {
+            // Write directly from the VDocument without building an intermediate object graph
+            ((StreamingVDocumentSerializer<?>) serializer).write(vdoc, request, aGenerator);
+            return;
+        }
+
+        mapper.writeValue(aGenerator, serializer.render(vdoc, request));
+    }
+
+    private ObjectMapper getMapper(String aFormat)
+    {
+        var encoding = substringAfter(aFormat, ENCODING_SEPARATOR);
+
+        if (encoding.isEmpty()) {
+            return JSONUtil.getObjectMapper();
+        }
+
+        if (ENCODING_CBOR.equals(encoding)) {
+            return cborMapper;
+        }
+
+        throw new IllegalStateException("Unsupported encoding [" + encoding + "]");
+    }
+
+    private boolean isBinary(String aFormat)
+    {
+        return !substringAfter(aFormat, ENCODING_SEPARATOR).isEmpty();
     }
 
     private ViewportState initState(ViewportDefinition aVpd)
@@ -330,34 +491,80 @@ public class DiamWebsocketController
     {
         activeViewports.asMap().entrySet().stream() //
                 .filter(e -> e.getKey().matches(aDocumentId, aUser, aUpdateBegin, aUpdateEnd)) //
-                .forEach(e -> sendUpdate(e.getKey(), e.getValue(), aProjectId, aDocumentId, aUser,
-                        aUpdateBegin, aUpdateEnd));
+                .forEach(e -> queueUpdate(e.getKey(), e.getValue(), aUpdateBegin, aUpdateEnd));
+    }
+
+    private void queueUpdate(ViewportDefinition aVpd, ViewportState aVps, int aUpdateBegin,
+            int aUpdateEnd)
+    {
+        if (aVps.queueUpdate(aUpdateBegin, aUpdateEnd)) {
+            updateExecutor.execute(() -> processUpdates(aVpd, aVps));
+        }
     }
 
-    private void sendUpdate(ViewportDefinition vpd, ViewportState vps, long aProjectId,
-            long aDocumentId, String aUser, int aUpdateBegin, int aUpdateEnd)
+    private void processUpdates(ViewportDefinition aVpd, ViewportState aVps)
     {
-        // MDC.put(KEY_REPOSITORY_PATH, repositoryProperties.getPath().toString());
+        MDC.put(KEY_REPOSITORY_PATH, repositoryProperties.getPath().toString());
+
+        try {
+            UpdateRange update;
+            while ((update = aVps.nextUpdate()) != null) {
+                sendUpdate(aVpd, aVps, update.begin(), update.end());
+            }
+        }
+        finally {
+            MDC.remove(KEY_REPOSITORY_PATH);
+        }
+    }
 
-        try (CasStorageSession session = CasStorageSession.openNested()) {
+    private void sendUpdate(ViewportDefinition vpd, ViewportState vps, int aUpdateBegin,
+            int aUpdateEnd)
+    {
+        try (CasStorageSession session = CasStorageSession.open()) {
             Project project = projectService.getProject(vpd.getProjectId());
-            JsonNode newJson = render(project, vpd.getDocumentId(), vpd.getUser(), vpd.getBegin(),
-                    vpd.getEnd(), vpd.getFormat());
 
-            JsonNode diff = JsonDiff.asJson(vps.getJson(), newJson);
+            var mapper = getMapper(vpd.getFormat());
+
+            // Only the initial payload needs parsing - after that, the tree from the last update
+            // is the base for the diff
+            var oldJson = vps.getJson();
+            if (oldJson == null && vps.getPayload() != null) {
+                oldJson = mapper.readTree(vps.getPayload());
+            }
+
+            var buffer = new TokenBuffer(mapper, false);
+            render(project, getSessionOwner(vpd, vps), vpd.getDocumentId(), vpd.getUser(),
+                    vpd.getBegin(), vpd.getEnd(), vpd.getFormat(), buffer);
+            JsonNode newJson = mapper.readTree(buffer.asParser());
+
+            JsonNode diff = ViewportDiff.diff(oldJson, newJson);
 
             vps.setJson(newJson);
 
-            msgTemplate.convertAndSend("/topic" + vpd.getTopic(),
-                    new MViewportUpdate(aUpdateBegin, aUpdateEnd, diff));
+            var update = new MViewportUpdate(aUpdateBegin, aUpdateEnd, diff);
+            if (isBinary(vpd.getFormat())) {
+                msgTemplate.convertAndSend("/topic" + vpd.getTopic(),
+                        mapper.writeValueAsBytes(update));
+            }
+            else {
+                msgTemplate.convertAndSend("/topic" + vpd.getTopic(), update);
+            }
         }
         catch (Exception ex) {
             log.error("Unable to render update", ex);
         }
+    }
 
-        // finally {
-        // MDC.remove(KEY_REPOSITORY_PATH);
-        // }
+    private User getSessionOwner(ViewportDefinition aVpd, ViewportState aVps)
+    {
+        User sessionOwner = null;
+        if (aVps.getSessionOwner() != null) {
+            sessionOwner = userRepository.get(aVps.getSessionOwner());
+        }
+        if (sessionOwner == null) {
+            sessionOwner = userRepository.getUserOrCurationUser(aVpd.getUser());
+        }
+        return sessionOwner;
     }
 
     private Project getProject(long aProjectId) throws AccessDeniedException
@@ -387,4 +594,6 @@ public class DiamWebsocketController
             throw new AccessDeniedException(aMessage);
         }
     }
+
+    private record ChangedDocument(long documentId, String user) {}
 }
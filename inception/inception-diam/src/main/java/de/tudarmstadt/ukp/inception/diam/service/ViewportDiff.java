@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.diam.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Calculates the JSON patch which turns the previous state of a viewport into the new state.
+ * <p>
+ * Instead of a generic tree diff, the patch is built from the structure of the viewport models:
+ * the top-level properties are compared one by one and lists of annotations are matched by the
+ * {@code vid} of their elements. Unchanged annotations are skipped and new, changed or removed
+ * annotations result in a single operation each. If a list cannot be matched that way (e.g.
+ * because its elements have no unique VID or because the order of the annotations changed), the
+ * list is replaced as a whole.
+ */
+final class ViewportDiff
+{
+    private static final String VID = "vid";
+
+    private ViewportDiff()
+    {
+        // No instances
+    }
+
+    public static ArrayNode diff(JsonNode aOld, JsonNode aNew)
+    {
+        var patch = JsonNodeFactory.instance.arrayNode();
+
+        if (aOld instanceof ObjectNode && aNew instanceof ObjectNode) {
+            diffObject(patch, (ObjectNode) aOld, (ObjectNode) aNew);
+        }
+        else if (aOld == null || !aOld.equals(aNew)) {
+            addOperation(patch, "replace", "", aNew);
+        }
+
+        return patch;
+    }
+
+    private static void diffObject(ArrayNode aPatch, ObjectNode aOld, ObjectNode aNew)
+    {
+        var oldFields = aOld.fieldNames();
+        while (oldFields.hasNext()) {
+            var field = oldFields.next();
+            if (!aNew.has(field)) {
+                addOperation(aPatch, "remove", pointer(field), null);
+            }
+        }
+
+        var newFields = aNew.fields();
+        while (newFields.hasNext()) {
+            var entry = newFields.next();
+            var path = pointer(entry.getKey());
+            var oldValue = aOld.get(entry.getKey());
+            var newValue = entry.getValue();
+
+            if (oldValue == null) {
+                addOperation(aPatch, "add", path, newValue);
+            }
+            else if (oldValue.equals(newValue)) {
+                continue;
+            }
+            else if (oldValue instanceof ArrayNode && newValue instanceof ArrayNode
+                    && diffAnnotations(aPatch, path, (ArrayNode) oldValue, (ArrayNode) newValue)) {
+                continue;
+            }
+            else {
+                addOperation(aPatch, "replace", path, newValue);
+            }
+        }
+    }
+
+    /**
+     * Adds the operations required to turn the old annotation list into the new one to the patch.
+     * 
+     * @return {@code false} if the lists cannot be matched by VID. In this case, no operations are
+     *         added to the patch.
+     */
+    private static boolean diffAnnotations(ArrayNode aPatch, String aPath, ArrayNode aOld,
+            ArrayNode aNew)
+    {
+        var oldKeys = keys(aOld);
+        var newKeys = keys(aNew);
+        if (oldKeys == null || newKeys == null) {
+            return false;
+        }
+
+        var newKeySet = new HashSet<>(newKeys);
+        var operations = JsonNodeFactory.instance.arrayNode();
+
+        // Remove annotations which are gone - going backwards so the indices remain valid
+        var retained = new ArrayList<String>();
+        var retainedValues = new HashMap<String, JsonNode>();
+        for (var i = oldKeys.size() - 1; i >= 0; i--) {
+            if (!newKeySet.contains(oldKeys.get(i))) {
+                addOperation(operations, "remove", aPath + "/" + i, null);
+            }
+        }
+        for (var i = 0; i < oldKeys.size(); i++) {
+            if (newKeySet.contains(oldKeys.get(i))) {
+                retained.add(oldKeys.get(i));
+                retainedValues.put(oldKeys.get(i), aOld.get(i));
+            }
+        }
+
+        // Walk the new list - after each step, the list in the client matches the new list up to
+        // the current position followed by the not-yet-visited retained annotations
+        var k = 0;
+        for (var j = 0; j < newKeys.size(); j++) {
+            var key = newKeys.get(j);
+            var newValue = aNew.get(j);
+
+            if (k < retained.size() && retained.get(k).equals(key)) {
+                if (!retainedValues.get(key).equals(newValue)) {
+                    addOperation(operations, "replace", aPath + "/" + j, newValue);
+                }
+                k++;
+            }
+            else if (!retainedValues.containsKey(key)) {
+                addOperation(operations, "add", aPath + "/" + j, newValue);
+            }
+            else {
+                // The order of the annotations has changed
+                return false;
+            }
+        }
+
+        // If most of the list has changed, replacing it is cheaper
+        if (operations.size() > aNew.size() / 2 + 1) {
+            return false;
+        }
+
+        aPatch.addAll(operations);
+        return true;
+    }
+
+    /**
+     * @return the VIDs of the elements in the given list or {@code null} if not all elements have
+     *         a unique VID. Elements can be objects with a {@code vid} property or arrays with the
+     *         VID as first element (as produced by the compact format).
+     */
+    private static List<String> keys(ArrayNode aArray)
+    {
+        var keys = new ArrayList<String>(aArray.size());
+        var seen = new HashSet<String>();
+        for (var element : aArray) {
+            JsonNode key = null;
+            if (element.isObject()) {
+                key = element.get(VID);
+            }
+            else if (element.isArray() && !element.isEmpty()) {
+                key = element.get(0);
+            }
+
+            if (key == null || !key.isTextual() || !seen.add(key.asText())) {
+                return null;
+            }
+
+            keys.add(key.asText());
+        }
+        return keys;
+    }
+
+    private static void addOperation(ArrayNode aPatch, String aOp, String aPath, JsonNode aValue)
+    {
+        var operation = aPatch.addObject();
+        operation.put("op", aOp);
+        operation.put("path", aPath);
+        if (aValue != null) {
+            operation.set("value", aValue);
+        }
+    }
+
+    private static String pointer(String aField)
+    {
+        return "/" + aField.replace("~", "~0").replace("/", "~1");
+    }
+}
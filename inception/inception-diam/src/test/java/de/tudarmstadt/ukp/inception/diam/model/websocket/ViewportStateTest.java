@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.diam.model.websocket;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import de.tudarmstadt.ukp.inception.diam.model.websocket.ViewportState.UpdateRange;
+
+class ViewportStateTest
+{
+    private ViewportState sut;
+
+    @BeforeEach
+    void setup()
+    {
+        sut = new ViewportState(new ViewportDefinition(1, 2, "user", 0, 100, "format"));
+    }
+
+    @Test
+    void thatSessionOwnerIsOldestSubscriber()
+    {
+        assertThat(sut.getSessionOwner()).isNull();
+
+        sut.addSubscription("s1", "sub1", "alice");
+        sut.addSubscription("s2", "sub1", "bob");
+
+        assertThat(sut.getSessionOwner()).isEqualTo("alice");
+
+        sut.removeSubscriber("s1");
+
+        assertThat(sut.getSessionOwner()).isEqualTo("bob");
+
+        sut.removeSubscription("s2", "sub1");
+
+        assertThat(sut.getSessionOwner()).isNull();
+        assertThat(sut.hasSubscribers()).isFalse();
+    }
+
+    @Test
+    void thatQueuedUpdatesAreMerged()
+    {
+        assertThat(sut.queueUpdate(10, 20)).isTrue();
+        assertThat(sut.nextUpdate()).isEqualTo(new UpdateRange(10, 20));
+
+        // Updates arriving while the first one is rendered are processed together afterwards
+        assertThat(sut.queueUpdate(30, 40)).isFalse();
+        assertThat(sut.queueUpdate(5, 15)).isFalse();
+        assertThat(sut.queueUpdate(32, 38)).isFalse();
+        assertThat(sut.nextUpdate()).isEqualTo(new UpdateRange(5, 40));
+
+        assertThat(sut.nextUpdate()).isNull();
+        assertThat(sut.queueUpdate(0, 1)).isTrue();
+    }
+
+    @Test
+    void thatPayloadAndTreeReplaceEachOther()
+    {
+        var payload = new byte[] { '{', '}' };
+        var json = JsonNodeFactory.instance.objectNode();
+
+        sut.setPayload(payload);
+        assertThat(sut.getPayload()).isSameAs(payload);
+        assertThat(sut.getJson()).isNull();
+
+        sut.setJson(json);
+        assertThat(sut.getPayload()).isNull();
+        assertThat(sut.getJson()).isSameAs(json);
+
+        sut.setPayload(payload);
+        assertThat(sut.getJson()).isNull();
+    }
+}
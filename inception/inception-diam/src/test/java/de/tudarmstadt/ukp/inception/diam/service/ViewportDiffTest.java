@@ -0,0 +1,102 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.diam.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.flipkart.zjsonpatch.JsonPatch;
+
+import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
+
+class ViewportDiffTest
+{
+    @Test
+    void thatUnchangedViewportProducesEmptyPatch() throws Exception
+    {
+        var json = json("{'text':'abc','spans':[['1',[[0,1]],{}],['2',[[1,2]],{}]]}");
+
+        assertThat(ViewportDiff.diff(json, json.deepCopy())).isEmpty();
+    }
+
+    @Test
+    void thatAddedSpanProducesSingleOperation() throws Exception
+    {
+        var oldJson = json("{'text':'abc','spans':[['1',[[0,1]],{}],['3',[[2,3]],{}]]}");
+        var newJson = json(
+                "{'text':'abc','spans':[['1',[[0,1]],{}],['2',[[1,2]],{}],['3',[[2,3]],{}]]}");
+
+        var patch = ViewportDiff.diff(oldJson, newJson);
+
+        assertThat(patch).hasSize(1);
+        assertThat(patch.get(0).get("op").asText()).isEqualTo("add");
+        assertThat(patch.get(0).get("path").asText()).isEqualTo("/spans/1");
+        assertThat(JsonPatch.apply(patch, oldJson)).isEqualTo(newJson);
+    }
+
+    @Test
+    void thatChangedAndRemovedAnnotationsArePatched() throws Exception
+    {
+        var oldJson = json("{'text':'abc','spans':[" //
+                + "{'vid':'1','begin':0,'end':1,'label':'A'}," //
+                + "{'vid':'2','begin':1,'end':2,'label':'B'}," //
+                + "{'vid':'3','begin':2,'end':3,'label':'C'}," //
+                + "{'vid':'4','begin':2,'end':3,'label':'D'}," //
+                + "{'vid':'5','begin':2,'end':3,'label':'E'}]}");
+        var newJson = json("{'text':'abc','spans':[" //
+                + "{'vid':'1','begin':0,'end':1,'label':'A'}," //
+                + "{'vid':'3','begin':2,'end':3,'label':'X'}," //
+                + "{'vid':'4','begin':2,'end':3,'label':'D'}," //
+                + "{'vid':'5','begin':2,'end':3,'label':'E'}]}");
+
+        var patch = ViewportDiff.diff(oldJson, newJson);
+
+        assertThat(patch).hasSize(2);
+        assertThat(JsonPatch.apply(patch, oldJson)).isEqualTo(newJson);
+    }
+
+    @Test
+    void thatReorderedAnnotationsReplaceList() throws Exception
+    {
+        var oldJson = json("{'spans':[['1',[[0,1]],{}],['2',[[1,2]],{}]],'relations':[]}");
+        var newJson = json("{'spans':[['2',[[1,2]],{}],['1',[[0,1]],{}]]}");
+
+        var patch = ViewportDiff.diff(oldJson, newJson);
+
+        assertThat(patch).hasSize(2);
+        assertThat(JsonPatch.apply(patch, oldJson)).isEqualTo(newJson);
+    }
+
+    @Test
+    void thatMissingPreviousStateReplacesEverything() throws Exception
+    {
+        var newJson = json("{'text':'abc'}");
+
+        var patch = ViewportDiff.diff(null, newJson);
+
+        assertThat(patch).hasSize(1);
+        assertThat(patch.get(0).get("path").asText()).isEmpty();
+    }
+
+    private static JsonNode json(String aJson) throws Exception
+    {
+        return JSONUtil.getObjectMapper().readTree(aJson.replace('\'', '"'));
+    }
+}
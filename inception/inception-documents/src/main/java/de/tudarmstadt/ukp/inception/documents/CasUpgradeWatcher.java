@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.documents;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
+import de.tudarmstadt.ukp.inception.schema.api.event.LayerConfigurationChangedEvent;
+
+/**
+ * Watches the layer configuration of projects and upgrades the CASes of a project in the
+ * background after the configuration has changed. CASes which are accessed before the background
+ * upgrade has reached them are still upgraded on demand when they are loaded.
+ */
+@Component
+public class CasUpgradeWatcher
+{
+    private final SchedulingService schedulingService;
+
+    // Incremented on every layer configuration change so a running upgrade can notice that it has
+    // been superseded by a newer one
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public CasUpgradeWatcher(SchedulingService aSchedulingService)
+    {
+        schedulingService = aSchedulingService;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        var project = aEvent.getProject();
+        var generation = generations.computeIfAbsent(project.getId(), $ -> new AtomicLong())
+                .incrementAndGet();
+
+        schedulingService.enqueue(
+                new UpgradeProjectCasTask(project, getClass().getSimpleName(), generation));
+    }
+
+    /**
+     * @param aProject
+     *            a project.
+     * @param aGeneration
+     *            the generation of the layer configuration an upgrade has been started for.
+     * @return whether the layer configuration of the given project has changed again since the
+     *         given generation.
+     */
+    boolean isSuperseded(Project aProject, long aGeneration)
+    {
+        var generation = generations.get(aProject.getId());
+        return generation != null && generation.get() != aGeneration;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.documents;
+
+import static de.tudarmstadt.ukp.clarin.webanno.support.WebAnnoConst.CURATION_USER;
+import static de.tudarmstadt.ukp.inception.project.api.ProjectService.withProjectLogger;
+import static java.lang.Math.min;
+import static java.lang.System.currentTimeMillis;
+import static java.time.Duration.ofSeconds;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Objects;
+
+import javax.persistence.NoResultException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasStorageService;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession;
+import de.tudarmstadt.ukp.inception.documents.api.DocumentService;
+import de.tudarmstadt.ukp.inception.project.api.ProjectService;
+import de.tudarmstadt.ukp.inception.scheduling.DebouncingTask;
+import de.tudarmstadt.ukp.inception.scheduling.TaskPriority;
+import de.tudarmstadt.ukp.inception.scheduling.TaskState;
+
+/**
+ * Upgrades all CASes of a project to the current project type system. CASes which are already
+ * up-to-date are not written. The task throttles itself so that it does not occupy the storage
+ * more than the users working on the project.
+ * <p>
+ * If the layer configuration changes again while the task is running, the task stops and leaves
+ * the remaining work to the task which has been scheduled for the new configuration. Because
+ * up-to-date CASes are skipped, the new task quickly catches up with the progress of the old one.
+ */
+public class UpgradeProjectCasTask
+    extends DebouncingTask
+{
+    private static final Logger LOG = LoggerFactory.getLogger(UpgradeProjectCasTask.class);
+
+    private static final long MAX_PAUSE = 1_000;
+
+    private @Autowired ProjectService projectService;
+    private @Autowired DocumentService documentService;
+    private @Autowired CasStorageService casStorageService;
+    private @Autowired CasUpgradeWatcher casUpgradeWatcher;
+
+    private final long generation;
+
+    public UpgradeProjectCasTask(Project aProject, String aTrigger, long aGeneration)
+    {
+        super(aProject, aTrigger, ofSeconds(10));
+        generation = aGeneration;
+    }
+
+    @Override
+    public String getTitle()
+    {
+        return "Upgrading annotations to the current layer configuration...";
+    }
+
+    @Override
+    public TaskPriority getPriority()
+    {
+        return TaskPriority.BULK;
+    }
+
+    @Override
+    public void execute()
+    {
+        Project project;
+        try {
+            project = projectService.getProject(getProject().getId());
+        }
+        catch (NoResultException e) {
+            // The project has been deleted in the meantime - nothing to upgrade
+            return;
+        }
+
+        var documents = documentService.listSourceDocuments(project);
+        var stats = new UpgradeStats();
+
+        try (var session = CasStorageSession.open()) {
+            var progress = 0;
+            getMonitor().setStateAndProgress(TaskState.RUNNING, progress, documents.size());
+
+            for (var document : documents) {
+                if (casUpgradeWatcher.isSuperseded(project, generation)) {
+                    LOG.debug("Layer configuration of project {} changed again - stopping upgrade",
+                            project);
+                    break;
+                }
+
+                if (!upgradeDocument(document, stats)) {
+                    break;
+                }
+
+                progress++;
+                getMonitor().setStateAndProgress(TaskState.RUNNING, progress, documents.size());
+            }
+        }
+
+        try (var logCtx = withProjectLogger(project)) {
+            LOG.info("Upgraded {} of {} CASes in project {} ({} failed)", stats.upgraded,
+                    stats.checked, project, stats.failed);
+        }
+    }
+
+    /**
+     * @return whether to continue with the next document.
+     */
+    private boolean upgradeDocument(SourceDocument aDocument, UpgradeStats aStats)
+    {
+        var users = new ArrayList<String>();
+        for (var annotationDocument : documentService.listAllAnnotationDocuments(aDocument)) {
+            users.add(annotationDocument.getUser());
+        }
+        users.add(CURATION_USER);
+
+        for (var user : users) {
+            var start = currentTimeMillis();
+            try {
+                if (casStorageService.upgradeCasIfRequired(aDocument, user)) {
+                    aStats.upgraded++;
+                }
+            }
+            catch (IOException e) {
+                aStats.failed++;
+                LOG.error("Unable to upgrade CAS of user [{}] for document {} in project {}", user,
+                        aDocument, aDocument.getProject(), e);
+            }
+            aStats.checked++;
+
+            // Pause for as long as the upgrade took, so users loading or saving CASes in the
+            // meantime get at least half of the storage throughput
+            try {
+                Thread.sleep(min(currentTimeMillis() - start, MAX_PAUSE));
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o)
+    {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        UpgradeProjectCasTask task = (UpgradeProjectCasTask) o;
+        return getProject().equals(task.getProject());
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return Objects.hash(getProject());
+    }
+
+    private static class UpgradeStats
+    {
+        int checked;
+        int upgraded;
+        int failed;
+    }
+}
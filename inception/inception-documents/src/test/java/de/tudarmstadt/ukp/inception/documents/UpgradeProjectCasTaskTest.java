@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.documents;
+
+import static de.tudarmstadt.ukp.clarin.webanno.support.WebAnnoConst.CURATION_USER;
+import static java.lang.System.currentTimeMillis;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasStorageService;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.documents.api.DocumentService;
+import de.tudarmstadt.ukp.inception.documents.api.RepositoryProperties;
+import de.tudarmstadt.ukp.inception.project.api.ProjectService;
+import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
+import de.tudarmstadt.ukp.inception.scheduling.Task;
+import de.tudarmstadt.ukp.inception.schema.api.event.LayerConfigurationChangedEvent;
+
+@ExtendWith(MockitoExtension.class)
+class UpgradeProjectCasTaskTest
+{
+    private static final String ANNOTATOR = "anno1";
+
+    private @Mock ProjectService projectService;
+    private @Mock DocumentService documentService;
+    private @Mock CasStorageService casStorageService;
+    private @Mock SchedulingService schedulingService;
+
+    private @TempDir File repositoryFolder;
+
+    private AnnotationConfigApplicationContext context;
+    private CasUpgradeWatcher casUpgradeWatcher;
+    private Project project;
+    private SourceDocument document;
+
+    @BeforeEach
+    void setup()
+    {
+        project = new Project("test");
+        project.setId(1l);
+
+        document = new SourceDocument("doc", project, "text");
+        document.setId(1l);
+
+        casUpgradeWatcher = new CasUpgradeWatcher(schedulingService);
+
+        var repositoryProperties = new RepositoryProperties();
+        repositoryProperties.setPath(repositoryFolder);
+
+        // The scheduler autowires tasks from the application context before running them
+        context = new AnnotationConfigApplicationContext();
+        var beanFactory = context.getBeanFactory();
+        beanFactory.registerSingleton("projectService", projectService);
+        beanFactory.registerSingleton("documentService", documentService);
+        beanFactory.registerSingleton("casStorageService", casStorageService);
+        beanFactory.registerSingleton("casUpgradeWatcher", casUpgradeWatcher);
+        beanFactory.registerSingleton("repositoryProperties", repositoryProperties);
+        context.refresh();
+
+        lenient().when(projectService.getProject(project.getId())).thenReturn(project);
+        lenient().when(documentService.listSourceDocuments(project)).thenReturn(asList(document));
+        lenient().when(documentService.listAllAnnotationDocuments(document))
+                .thenReturn(asList(new AnnotationDocument(ANNOTATOR, document)));
+    }
+
+    @AfterEach
+    void tearDown()
+    {
+        context.close();
+    }
+
+    @Test
+    void thatAllCasesOfProjectAreUpgraded() throws Exception
+    {
+        var task = layerConfigurationChanged();
+
+        run(task);
+
+        verify(casStorageService).upgradeCasIfRequired(document, ANNOTATOR);
+        verify(casStorageService).upgradeCasIfRequired(document, CURATION_USER);
+    }
+
+    @Test
+    void thatSupersededUpgradeStops() throws Exception
+    {
+        var first = layerConfigurationChanged();
+        var second = layerConfigurationChanged();
+
+        assertThat(first) //
+                .as("Scheduler replaces a queued upgrade of the same project") //
+                .isEqualTo(second) //
+                .isNotSameAs(second);
+
+        run(first);
+
+        verifyNoInteractions(casStorageService);
+
+        run(second);
+
+        verify(casStorageService).upgradeCasIfRequired(document, ANNOTATOR);
+        verify(casStorageService).upgradeCasIfRequired(document, CURATION_USER);
+    }
+
+    @Test
+    void thatUpgradePausesAfterEachCas() throws Exception
+    {
+        when(casStorageService.upgradeCasIfRequired(any(), any())).thenAnswer(call -> {
+            Thread.sleep(100);
+            return true;
+        });
+
+        var task = layerConfigurationChanged();
+
+        var start = currentTimeMillis();
+        run(task);
+
+        // Two CASes taking 100ms each plus a pause of the same duration after each of them
+        assertThat(currentTimeMillis() - start).isGreaterThanOrEqualTo(400);
+    }
+
+    private UpgradeProjectCasTask layerConfigurationChanged()
+    {
+        casUpgradeWatcher.onLayerConfigurationChanged(
+                new LayerConfigurationChangedEvent(this, project));
+
+        var captor = ArgumentCaptor.forClass(Task.class);
+        verify(schedulingService, atLeastOnce()).enqueue(captor.capture());
+        return (UpgradeProjectCasTask) captor.getValue();
+    }
+
+    private void run(Task aTask)
+    {
+        var factory = context.getAutowireCapableBeanFactory();
+        factory.autowireBean(aTask);
+        factory.initializeBean(aTask, "transientTask");
+        aTask.run();
+    }
+}
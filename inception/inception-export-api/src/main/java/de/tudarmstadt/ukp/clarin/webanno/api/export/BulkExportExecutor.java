@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.export;
+
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.slf4j.LoggerFactory.getLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.function.FailableConsumer;
+import org.slf4j.Logger;
+import org.slf4j.MDC;
+
+/**
+ * Converts documents to an export format on a bounded pool of worker threads during a bulk export.
+ * <p>
+ * Each conversion produces a temporary file. The file is handed to the completion callback of the
+ * conversion on the thread which submitted the conversion, in the order in which the conversions
+ * were submitted. The callbacks can thus e.g. write the files to a ZIP stream which must not be
+ * accessed concurrently. Afterwards, the files are deleted. To keep the memory consumption and the
+ * number of temporary files bounded, submitting a conversion blocks while there are already twice
+ * as many pending conversions as there are workers.
+ * <p>
+ * With a parallelism of {@code 1} or less, the conversions are run directly on the calling thread.
+ */
+public class BulkExportExecutor
+    implements AutoCloseable
+{
+    private static final Logger LOG = getLogger(lookup().lookupClass());
+
+    private final ExecutorService executor;
+    private final Map<String, String> loggingContext;
+    private final Deque<PendingStep> pending = new ArrayDeque<>();
+    private final int maxPendingConversions;
+
+    private int pendingConversions;
+
+    public BulkExportExecutor(int aParallelism)
+    {
+        if (aParallelism > 1) {
+            var threadFactory = new BasicThreadFactory.Builder() //
+                    .daemon(true) //
+                    .namingPattern("inception-export-%d") //
+                    .build();
+            executor = Executors.newFixedThreadPool(aParallelism, threadFactory);
+            maxPendingConversions = 2 * aParallelism;
+        }
+        else {
+            executor = null;
+            maxPendingConversions = 0;
+        }
+
+        // The workers need the logging context of the export, e.g. to log to the project log
+        loggingContext = MDC.getCopyOfContextMap();
+    }
+
+    /**
+     * @param aConversion
+     *            the conversion producing a temporary file.
+     * @param aCompletion
+     *            the callback receiving the file produced by the conversion.
+     */
+    public void submit(Callable<File> aConversion, FailableConsumer<File, IOException> aCompletion)
+        throws IOException, InterruptedException, ProjectExportException
+    {
+        Future<File> conversion;
+        if (executor != null) {
+            conversion = executor.submit(() -> runWithLoggingContext(aConversion));
+        }
+        else {
+            var task = new FutureTask<>(aConversion);
+            task.run();
+            conversion = task;
+        }
+
+        pending.add(new PendingStep(conversion, aCompletion));
+        pendingConversions++;
+
+        while (pendingConversions > maxPendingConversions) {
+            completeNext();
+        }
+    }
+
+    /**
+     * Runs the given action once all conversions submitted so far have been completed, e.g. to
+     * report the progress of the export.
+     */
+    public void afterPending(Runnable aAction)
+    {
+        if (pending.isEmpty()) {
+            aAction.run();
+            return;
+        }
+
+        pending.add(new PendingStep(null, $ -> aAction.run()));
+    }
+
+    /**
+     * Waits for all pending conversions and completes them.
+     */
+    public void awaitAll() throws IOException, InterruptedException, ProjectExportException
+    {
+        while (!pending.isEmpty()) {
+            completeNext();
+        }
+    }
+
+    private void completeNext() throws IOException, InterruptedException, ProjectExportException
+    {
+        var step = pending.peek();
+
+        if (step.conversion == null) {
+            pending.poll();
+            step.completion.accept(null);
+            return;
+        }
+
+        // If we are interrupted while waiting, the step remains pending so that the file of the
+        // conversion is cleaned up when the executor is closed
+        File file;
+        try {
+            file = step.conversion.get();
+        }
+        catch (ExecutionException e) {
+            pending.poll();
+            pendingConversions--;
+            rethrow(e.getCause());
+            return;
+        }
+
+        pending.poll();
+        pendingConversions--;
+
+        try {
+            step.completion.accept(file);
+        }
+        finally {
+            if (file != null) {
+                Files.deleteIfExists(file.toPath());
+            }
+        }
+
+        // Run any actions that were waiting for this conversion
+        while (!pending.isEmpty() && pending.peek().conversion == null) {
+            pending.poll().completion.accept(null);
+        }
+    }
+
+    private File runWithLoggingContext(Callable<File> aConversion) throws Exception
+    {
+        if (loggingContext != null) {
+            MDC.setContextMap(loggingContext);
+        }
+
+        try {
+            return aConversion.call();
+        }
+        finally {
+            MDC.clear();
+        }
+    }
+
+    private static void rethrow(Throwable aCause)
+        throws IOException, InterruptedException, ProjectExportException
+    {
+        if (aCause instanceof IOException) {
+            throw (IOException) aCause;
+        }
+
+        if (aCause instanceof InterruptedException) {
+            throw (InterruptedException) aCause;
+        }
+
+        if (aCause instanceof ProjectExportException) {
+            throw (ProjectExportException) aCause;
+        }
+
+        if (aCause instanceof RuntimeException) {
+            throw (RuntimeException) aCause;
+        }
+
+        if (aCause instanceof Error) {
+            throw (Error) aCause;
+        }
+
+        throw new ProjectExportException(aCause);
+    }
+
+    @Override
+    public void close()
+    {
+        if (executor != null) {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, MINUTES);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // If the export failed or was cancelled, there may be conversions which have never been
+        // completed - we need to clean up their files
+        for (var step : pending) {
+            if (step.conversion == null || !step.conversion.isDone()) {
+                continue;
+            }
+
+            try {
+                var file = step.conversion.get();
+                if (file != null) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+            catch (ExecutionException | InterruptedException | IOException e) {
+                LOG.debug("Unable to clean up after pending conversion", e);
+            }
+        }
+
+        pending.clear();
+    }
+
+    private static class PendingStep
+    {
+        private final Future<File> conversion;
+        private final FailableConsumer<File, IOException> completion;
+
+        public PendingStep(Future<File> aConversion,
+                FailableConsumer<File, IOException> aCompletion)
+        {
+            conversion = aConversion;
+            completion = aCompletion;
+        }
+    }
+}
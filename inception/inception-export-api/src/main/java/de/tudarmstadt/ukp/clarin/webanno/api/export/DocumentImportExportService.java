@@ -88,6 +88,12 @@ public interface DocumentImportExportService
 
     FormatSupport getFallbackFormat();
 
+    /**
+     * @return the number of documents that may be converted concurrently during a bulk export.
+     * @see BulkExportExecutor
+     */
+    int getExportParallelism();
+
     default List<ResourceReference> getFormatCssStylesheets(SourceDocument aDoc)
     {
         Optional<FormatSupport> maybeFormatSupport = getFormatById(aDoc.getFormat());
@@ -17,12 +17,12 @@
  */
 package de.tudarmstadt.ukp.clarin.webanno.api.export;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import de.tudarmstadt.ukp.clarin.webanno.export.model.ExportedProject;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
@@ -39,8 +39,13 @@ public interface ProjectExporter
         return Collections.emptyList();
     }
 
+    /**
+     * @param aStage
+     *            the ZIP stream of the export into which any files are written directly. The
+     *            exporter must not close it.
+     */
     void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws ProjectExportException, IOException, InterruptedException;
 
     void importData(ProjectImportRequest aRequest, Project aProject, ExportedProject aExProject,
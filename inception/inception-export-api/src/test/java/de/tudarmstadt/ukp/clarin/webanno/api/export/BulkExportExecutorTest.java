@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.clarin.webanno.api.export;
+
+import static java.time.Duration.ofMillis;
+import static java.time.Duration.ofSeconds;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BulkExportExecutorTest
+{
+    private @TempDir File tempDir;
+
+    private final List<File> createdFiles = new CopyOnWriteArrayList<>();
+
+    @Test
+    void thatCompletionsRunInSubmissionOrderOnCallingThread() throws Exception
+    {
+        var completed = new ArrayList<Integer>();
+        var completionThreads = new ArrayList<Thread>();
+
+        try (var executor = new BulkExportExecutor(4)) {
+            for (int i = 0; i < 20; i++) {
+                int n = i;
+                // Later conversions finish earlier
+                executor.submit(() -> {
+                    Thread.sleep(20 - n);
+                    return createFile(n);
+                }, file -> {
+                    assertThat(file).hasContent(String.valueOf(n));
+                    completed.add(n);
+                    completionThreads.add(Thread.currentThread());
+                });
+            }
+            executor.awaitAll();
+        }
+
+        assertThat(completed).containsExactlyElementsOf(range(20));
+        assertThat(completionThreads).containsOnly(Thread.currentThread());
+        assertThat(createdFiles).hasSize(20).allSatisfy(file -> assertThat(file).doesNotExist());
+    }
+
+    @Test
+    void thatActionsRunAfterPrecedingConversions() throws Exception
+    {
+        var events = new ArrayList<String>();
+
+        try (var executor = new BulkExportExecutor(2)) {
+            executor.afterPending(() -> events.add("start"));
+            executor.submit(() -> createFile(0), file -> events.add("0"));
+            executor.submit(() -> createFile(1), file -> events.add("1"));
+            executor.afterPending(() -> events.add("progress"));
+            executor.submit(() -> createFile(2), file -> events.add("2"));
+            executor.awaitAll();
+        }
+
+        assertThat(events).containsExactly("start", "0", "1", "progress", "2");
+    }
+
+    @Test
+    void thatSubmitBlocksWhileTwiceAsManyConversionsAsWorkersArePending() throws Exception
+    {
+        var release = new CountDownLatch(1);
+        var submitted = new AtomicInteger();
+        var completed = new AtomicInteger();
+
+        try (var executor = new BulkExportExecutor(2)) {
+            var submitter = CompletableFuture.runAsync(() -> {
+                try {
+                    for (int i = 0; i < 5; i++) {
+                        int n = i;
+                        executor.submit(() -> {
+                            release.await();
+                            return createFile(n);
+                        }, file -> completed.incrementAndGet());
+                        submitted.incrementAndGet();
+                    }
+                    executor.awaitAll();
+                }
+                catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            // Two workers allow for four pending conversions - the fifth has to wait
+            await().atMost(ofSeconds(5)).until(() -> submitted.get() == 4);
+            await().during(ofMillis(200)).atMost(ofSeconds(1))
+                    .until(() -> submitted.get() == 4 && completed.get() == 0);
+
+            release.countDown();
+            submitter.get();
+        }
+
+        assertThat(submitted).hasValue(5);
+        assertThat(completed).hasValue(5);
+        assertThat(createdFiles).hasSize(5).allSatisfy(file -> assertThat(file).doesNotExist());
+    }
+
+    @Test
+    void thatConversionErrorsArePropagated() throws Exception
+    {
+        assertThatThrownBy(() -> convertFailing(() -> {
+            throw new IOException("io");
+        })).isInstanceOf(IOException.class).hasMessage("io");
+
+        assertThatThrownBy(() -> convertFailing(() -> {
+            throw new IllegalStateException("runtime");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("runtime");
+
+        assertThatThrownBy(() -> convertFailing(() -> {
+            throw new Exception("checked");
+        })).isInstanceOf(ProjectExportException.class).hasRootCauseMessage("checked");
+    }
+
+    @Test
+    void thatFilesAreDeletedWhenCompletionFails() throws Exception
+    {
+        try (var executor = new BulkExportExecutor(2)) {
+            executor.submit(() -> createFile(0), file -> {
+                throw new IOException("completion");
+            });
+            executor.submit(() -> createFile(1), file -> {
+                // Nothing to do
+            });
+
+            assertThatThrownBy(executor::awaitAll).hasMessage("completion");
+
+            await().atMost(ofSeconds(5)).until(() -> createdFiles.size() == 2);
+        }
+
+        assertThat(createdFiles).allSatisfy(file -> assertThat(file).doesNotExist());
+    }
+
+    @Test
+    void thatFilesAreDeletedWhenConversionFails() throws Exception
+    {
+        var completed = new AtomicInteger();
+
+        try (var executor = new BulkExportExecutor(2)) {
+            executor.submit(() -> {
+                throw new IOException("conversion");
+            }, file -> completed.incrementAndGet());
+            executor.submit(() -> createFile(1), file -> completed.incrementAndGet());
+            executor.submit(() -> createFile(2), file -> completed.incrementAndGet());
+
+            assertThatThrownBy(executor::awaitAll).hasMessage("conversion");
+
+            await().atMost(ofSeconds(5)).until(() -> createdFiles.size() == 2);
+        }
+
+        assertThat(completed).hasValue(0);
+        assertThat(createdFiles).allSatisfy(file -> assertThat(file).doesNotExist());
+    }
+
+    @Test
+    void thatFilesAreDeletedWhenExportIsCancelled() throws Exception
+    {
+        var release = new CountDownLatch(1);
+
+        try (var executor = new BulkExportExecutor(2)) {
+            executor.submit(() -> {
+                release.await();
+                return createFile(0);
+            }, file -> {
+                // Nothing to do
+            });
+            executor.submit(() -> createFile(1), file -> {
+                // Nothing to do
+            });
+
+            // Cancel the export while it is waiting for the first conversion
+            Thread.currentThread().interrupt();
+            assertThatThrownBy(executor::awaitAll).isInstanceOf(InterruptedException.class);
+
+            // The conversion completes nevertheless
+            release.countDown();
+            await().atMost(ofSeconds(5)).until(() -> createdFiles.size() == 2);
+        }
+
+        assertThat(createdFiles).allSatisfy(file -> assertThat(file).doesNotExist());
+    }
+
+    private void convertFailing(Callable<File> aFailingConversion) throws Exception
+    {
+        try (var executor = new BulkExportExecutor(2)) {
+            executor.submit(() -> createFile(0), file -> {
+                // Nothing to do
+            });
+            executor.submit(aFailingConversion, file -> {
+                // Nothing to do
+            });
+            executor.awaitAll();
+        }
+    }
+
+    private File createFile(int aIndex) throws IOException
+    {
+        var file = File.createTempFile("conversion-" + aIndex + "-", ".tmp", tempDir);
+        Files.writeString(file.toPath(), String.valueOf(aIndex));
+        createdFiles.add(file);
+        return file;
+    }
+
+    private static List<Integer> range(int aCount)
+    {
+        var list = new ArrayList<Integer>();
+        for (int i = 0; i < aCount; i++) {
+            list.add(i);
+        }
+        return list;
+    }
+}
@@ -64,6 +64,7 @@ import org.apache.uima.cas.CASException;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
@@ -211,6 +212,12 @@ public class DocumentImportExportServiceImpl
         return fallbackFormat;
     }
 
+    @Override
+    public int getExportParallelism()
+    {
+        return properties.getExportParallelism();
+    }
+
     @Override
     @Transactional
     public File exportAnnotationDocument(SourceDocument aDocument, String aUser,
@@ -558,13 +565,24 @@ public class DocumentImportExportServiceImpl
                 bulkOperationContext.put(exportTypeSystemKey, exportTypeSystem);
             }
 
+            // Compiling the type system is expensive as well, so we keep the compiled type system
+            // in the bulk-context too
+            Pair<Project, String> exportCasTypeSystemKey = Pair.of(project,
+                    "exportCasTypeSystem");
+            TypeSystem exportCasTypeSystem = (TypeSystem) bulkOperationContext
+                    .get(exportCasTypeSystemKey);
+            if (exportCasTypeSystem == null) {
+                exportCasTypeSystem = WebAnnoCasUtil.createCas(exportTypeSystem).getTypeSystem();
+                bulkOperationContext.put(exportCasTypeSystemKey, exportCasTypeSystem);
+            }
+
             try (var session = CasStorageSession.openNested()) {
                 CAS exportCas = WebAnnoCasUtil.createCas();
                 session.add(EXPORT_CAS, EXCLUSIVE_WRITE_ACCESS, exportCas);
 
                 // Update type system the CAS, compact it (remove all non-reachable feature
                 // structures) and remove all internal feature structures in the process
-                prepareCasForExport(aCas, exportCas, aDocument, exportTypeSystem);
+                annotationService.upgradeCas(aCas, exportCas, exportCasTypeSystem);
 
                 // Update the source file name in case it is changed for some reason. This is
                 // necessary for the writers to create the files under the correct names.
@@ -670,32 +688,83 @@ public class DocumentImportExportServiceImpl
         documentMetadata.setDocumentId(aFileName);
     }
 
-    private void addLayerAndFeatureDefinitionAnnotations(CAS aCas, Project aProject,
+    /**
+     * @return the supported features grouped by layer. The layers and the features of each layer
+     *         are sorted by name.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<AnnotationLayer, List<AnnotationFeature>> listLayerDefinitions(Project aProject,
             Map<Pair<Project, String>, Object> aBulkOperationContext)
     {
-        List<AnnotationFeature> allFeatures = listSupportedFeatures(aProject,
-                aBulkOperationContext);
-
-        Type layerDefType = aCas.getTypeSystem().getType(TYPE_NAME_LAYER_DEFINITION);
-        Type featureDefType = aCas.getTypeSystem().getType(TYPE_NAME_FEATURE_DEFINITION);
+        Pair<Project, String> exportLayersKey = Pair.of(aProject, "exportLayerDefinitions");
+        Object cachedDefinitions = aBulkOperationContext.get(exportLayersKey);
+        if (cachedDefinitions != null) {
+            return (Map<AnnotationLayer, List<AnnotationFeature>>) cachedDefinitions;
+        }
 
-        Map<AnnotationLayer, List<AnnotationFeature>> featuresGroupedByLayer = allFeatures.stream() //
-                .collect(groupingBy(AnnotationFeature::getLayer));
+        Map<AnnotationLayer, List<AnnotationFeature>> featuresGroupedByLayer = //
+                listSupportedFeatures(aProject, aBulkOperationContext).stream() //
+                        .collect(groupingBy(AnnotationFeature::getLayer));
 
         List<AnnotationLayer> layers = featuresGroupedByLayer.keySet().stream()
                 .sorted(comparing(AnnotationLayer::getName)) //
                 .collect(toList());
 
+        var layerDefinitions = new LinkedHashMap<AnnotationLayer, List<AnnotationFeature>>();
         for (var layer : layers) {
+            layerDefinitions.put(layer, featuresGroupedByLayer.get(layer).stream()
+                    .sorted(Comparator.comparing(AnnotationFeature::getName)) //
+                    .collect(toList()));
+        }
+
+        var result = unmodifiableMap(layerDefinitions);
+        aBulkOperationContext.put(exportLayersKey, result);
+        return result;
+    }
+
+    /**
+     * @return pairs of layer name and tagset name for all features which use a tagset.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Pair<String, String>> listTagsetDefinitions(Project aProject,
+            Map<Pair<Project, String>, Object> aBulkOperationContext)
+    {
+        Pair<Project, String> exportTagsetsKey = Pair.of(aProject, "exportTagsetDefinitions");
+        Object cachedDefinitions = aBulkOperationContext.get(exportTagsetsKey);
+        if (cachedDefinitions != null) {
+            return (List<Pair<String, String>>) cachedDefinitions;
+        }
+
+        var tagsetDefinitions = new ArrayList<Pair<String, String>>();
+        for (AnnotationFeature feature : listSupportedFeatures(aProject, aBulkOperationContext)) {
+            TagSet tagSet = feature.getTagset();
+            if (tagSet == null || CHAIN_TYPE.equals(feature.getLayer().getType())) {
+                continue;
+            }
+
+            tagsetDefinitions.add(Pair.of(feature.getLayer().getName(), tagSet.getName()));
+        }
+
+        var result = unmodifiableList(tagsetDefinitions);
+        aBulkOperationContext.put(exportTagsetsKey, result);
+        return result;
+    }
+
+    private void addLayerAndFeatureDefinitionAnnotations(CAS aCas, Project aProject,
+            Map<Pair<Project, String>, Object> aBulkOperationContext)
+    {
+        Type layerDefType = aCas.getTypeSystem().getType(TYPE_NAME_LAYER_DEFINITION);
+        Type featureDefType = aCas.getTypeSystem().getType(TYPE_NAME_FEATURE_DEFINITION);
+
+        for (var layerDefinition : listLayerDefinitions(aProject, aBulkOperationContext)
+                .entrySet()) {
+            var layer = layerDefinition.getKey();
             final var layerDefFs = aCas.createFS(layerDefType);
             setFeature(layerDefFs, FEATURE_BASE_NAME_NAME, layer.getName());
             setFeature(layerDefFs, FEATURE_BASE_NAME_UI_NAME, layer.getUiName());
             aCas.addFsToIndexes(layerDefFs);
 
-            List<AnnotationFeature> features = featuresGroupedByLayer.get(layer).stream()
-                    .sorted(Comparator.comparing(AnnotationFeature::getName)).collect(toList());
-
-            for (var feature : features) {
+            for (var feature : layerDefinition.getValue()) {
                 final var featureDefFs = aCas.createFS(featureDefType);
                 setFeature(featureDefFs, FEATURE_BASE_NAME_LAYER, layerDefFs);
                 setFeature(featureDefFs, FEATURE_BASE_NAME_NAME, feature.getName());
@@ -708,19 +777,13 @@ public class DocumentImportExportServiceImpl
     private void addTagsetDefinitionAnnotations(CAS aCas, Project aProject,
             Map<Pair<Project, String>, Object> aBulkOperationContext)
     {
-        List<AnnotationFeature> features = listSupportedFeatures(aProject, aBulkOperationContext);
-
-        for (AnnotationFeature feature : features) {
-            TagSet tagSet = feature.getTagset();
-            if (tagSet == null || CHAIN_TYPE.equals(feature.getLayer().getType())) {
-                continue;
-            }
-            String aLayer = feature.getLayer().getName();
-            String aTagSetName = tagSet.getName();
+        Type tagsetType = getType(aCas, TagsetDescription.class);
+        Feature layerFeature = tagsetType.getFeatureByBaseName(FEATURE_BASE_NAME_LAYER);
+        Feature nameFeature = tagsetType.getFeatureByBaseName(FEATURE_BASE_NAME_NAME);
 
-            Type tagsetType = getType(aCas, TagsetDescription.class);
-            Feature layerFeature = tagsetType.getFeatureByBaseName(FEATURE_BASE_NAME_LAYER);
-            Feature nameFeature = tagsetType.getFeatureByBaseName(FEATURE_BASE_NAME_NAME);
+        for (var tagsetDefinition : listTagsetDefinitions(aProject, aBulkOperationContext)) {
+            String aLayer = tagsetDefinition.getLeft();
+            String aTagSetName = tagsetDefinition.getRight();
 
             boolean tagSetModified = false;
             // modify existing tagset Name
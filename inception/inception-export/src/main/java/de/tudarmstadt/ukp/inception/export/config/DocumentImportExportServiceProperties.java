@@ -25,6 +25,8 @@ public interface DocumentImportExportServiceProperties
 
     int getMaxSentences();
 
+    int getExportParallelism();
+
     public static enum CasDoctorOnImportPolicy
     {
         AUTO, OFF, ON
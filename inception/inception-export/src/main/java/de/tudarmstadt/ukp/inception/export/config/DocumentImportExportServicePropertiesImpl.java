@@ -26,6 +26,7 @@ public class DocumentImportExportServicePropertiesImpl
     private CasDoctorOnImportPolicy runCasDoctorOnImport = CasDoctorOnImportPolicy.AUTO;
     private int maxTokens = 2_000_000;
     private int maxSentences = 20_000;
+    private int exportParallelism = 1;
 
     @Override
     public CasDoctorOnImportPolicy getRunCasDoctorOnImport()
@@ -59,4 +60,15 @@ public class DocumentImportExportServicePropertiesImpl
     {
         maxSentences = aMaxSentences;
     }
+
+    @Override
+    public int getExportParallelism()
+    {
+        return exportParallelism;
+    }
+
+    public void setExportParallelism(int aExportParallelism)
+    {
+        exportParallelism = aExportParallelism;
+    }
 }
@@ -22,6 +22,7 @@ import java.io.IOException;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
@@ -47,7 +48,6 @@ public class ProjectLogExporter
     implements ProjectExporter
 {
     private static final String LOG = ProjectService.LOG_FOLDER;
-    private static final String LOG_FOLDER = "/" + LOG;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -60,14 +60,13 @@ public class ProjectLogExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws IOException
     {
         Project project = aRequest.getProject();
-        File logDir = new File(aStage + LOG_FOLDER);
-        FileUtils.forceMkdir(logDir);
-        if (projectService.getProjectLogFile(project).exists()) {
-            FileUtils.copyFileToDirectory(projectService.getProjectLogFile(project), logDir);
+        File logFile = projectService.getProjectLogFile(project);
+        if (logFile.exists()) {
+            ZipUtils.writeEntry(aStage, LOG + "/" + logFile.getName(), logFile);
         }
     }
 
@@ -19,9 +19,14 @@ package de.tudarmstadt.ukp.inception.export.exporters;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -48,7 +53,6 @@ public class ProjectMetaInfExporter
     implements ProjectExporter
 {
     private static final String META_INF_FOLDER = "META-INF";
-    private static final String META_INF = "/" + META_INF_FOLDER;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -61,14 +65,23 @@ public class ProjectMetaInfExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws IOException
     {
-        File metaInfDir = new File(aStage + META_INF);
-        FileUtils.forceMkdir(metaInfDir);
         File metaInf = projectService.getMetaInfFolder(aRequest.getProject());
-        if (metaInf.exists()) {
-            FileUtils.copyDirectory(metaInf, metaInfDir);
+        if (!metaInf.exists()) {
+            return;
+        }
+
+        Path metaInfPath = metaInf.toPath();
+        List<Path> files;
+        try (var paths = Files.walk(metaInfPath)) {
+            files = paths.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+
+        for (Path file : files) {
+            var relativePath = metaInfPath.relativize(file).toString().replace('\\', '/');
+            ZipUtils.writeEntry(aStage, META_INF_FOLDER + "/" + relativePath, file.toFile());
         }
     }
 
@@ -51,6 +51,7 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
 import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.impl.XmiCasDeserializer;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
@@ -134,12 +135,11 @@ public class DocumentImportExportServiceImplTest
         doReturn(emptyList()).when(schemaService).listAnnotationLayer(any());
         doReturn(emptyList()).when(schemaService).listSupportedFeatures((Project) any());
 
-        // The prepareCasForExport method internally calls getFullProjectTypeSystem, so we need to
+        // The export internally calls getFullProjectTypeSystem, so we need to
         // ensure this is actually callable and doesn't run into a mocked version which simply
         // returns null.
         when(schemaService.getFullProjectTypeSystem(any(), anyBoolean())).thenCallRealMethod();
-        doCallRealMethod().when(schemaService).upgradeCas(any(), any(),
-                any(TypeSystemDescription.class));
+        doCallRealMethod().when(schemaService).upgradeCas(any(), any(), any(TypeSystem.class));
 
         // Create type system with built-in types, internal types, but without any project-specific
         // types.
@@ -30,14 +30,13 @@ import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-import java.io.File;
 import java.util.List;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -60,8 +59,6 @@ import de.tudarmstadt.ukp.inception.project.api.ProjectService;
 @ExtendWith(MockitoExtension.class)
 public class ProjectPermissionsExporterTest
 {
-    public @TempDir File workFolder;
-
     private @Mock ApplicationContext appContext;
     private @Mock ProjectService projectService;
     private @Mock UserDao userService;
@@ -218,7 +215,7 @@ public class ProjectPermissionsExporterTest
     {
         FullProjectExportRequest exportRequest = new FullProjectExportRequest(project, null, false);
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(project, null, "test");
-        sut.exportData(exportRequest, monitor, exportedProject, workFolder);
+        sut.exportData(exportRequest, monitor, exportedProject, mock(ZipOutputStream.class));
     }
 
     private ArgumentCaptor<ProjectPermission> captureCreatedPermissions()
@@ -17,10 +17,10 @@
  */
 package de.tudarmstadt.ukp.inception.externalsearch.exporter;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,7 +58,7 @@ public class DocumentRepositoryExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aFile)
+            ExportedProject aExProject, ZipOutputStream aStage)
     {
         Project project = aRequest.getProject();
         List<ExportedDocumentRepository> exportedDocumentRepositories = new ArrayList<>();
@@ -23,9 +23,9 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-import java.io.File;
 import java.util.List;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -81,9 +81,9 @@ public class DocumentRepositoryExporterTest
         var exportRequest = new FullProjectExportRequest(project, null, false);
         var monitor = new ProjectExportTaskMonitor(project, null, "test");
         var exportedProject = new ExportedProject();
-        var file = mock(File.class);
+        var stage = mock(ZipOutputStream.class);
 
-        sut.exportData(exportRequest, monitor, exportedProject, file);
+        sut.exportData(exportRequest, monitor, exportedProject, stage);
 
         // Import the project again
         var captor = ArgumentCaptor.forClass(DocumentRepository.class);
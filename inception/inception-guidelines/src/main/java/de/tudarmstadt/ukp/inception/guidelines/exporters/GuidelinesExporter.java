@@ -25,8 +25,8 @@ import java.io.IOException;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,7 +51,6 @@ public class GuidelinesExporter
     implements ProjectExporter
 {
     public static final String GUIDELINE = "guideline";
-    private static final String GUIDELINES_FOLDER = "/" + GUIDELINE;
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -63,22 +62,21 @@ public class GuidelinesExporter
     }
 
     /**
-     * Copy Project guidelines from the file system of this project to the export folder
+     * Copy Project guidelines from the file system of this project to the export
      * 
      * @throws IOException
      */
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws IOException
     {
-        File guidelineDir = new File(aStage + GUIDELINES_FOLDER);
-        FileUtils.forceMkdir(guidelineDir);
         File annotationGuidlines = guidelinesService.getGuidelinesFolder(aRequest.getProject());
 
         if (annotationGuidlines.exists()) {
             for (File annotationGuideline : annotationGuidlines.listFiles()) {
-                FileUtils.copyFileToDirectory(annotationGuideline, guidelineDir);
+                ZipUtils.writeEntry(aStage, GUIDELINE + "/" + annotationGuideline.getName(),
+                        annotationGuideline);
             }
         }
     }
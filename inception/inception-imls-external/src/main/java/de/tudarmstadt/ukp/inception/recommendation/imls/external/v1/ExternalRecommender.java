@@ -164,6 +164,12 @@ public class ExternalRecommender
         return true;
     }
 
+    @Override
+    public boolean isPredictionThreadSafe()
+    {
+        return true;
+    }
+
     @Override
     public void train(RecommenderContext aContext, List<CAS> aCasses) throws RecommendationException
     {
@@ -106,6 +106,12 @@ public class StringMatchingRecommender
         return aContext.get(KEY_MODEL).map(Objects::nonNull).orElse(false);
     }
 
+    @Override
+    public boolean isPredictionThreadSafe()
+    {
+        return true;
+    }
+
     @Override
     public void exportModel(RecommenderContext aContext, OutputStream aOutput) throws IOException
     {
@@ -23,14 +23,13 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.span.gazete
 
 import static java.util.Arrays.asList;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -42,6 +41,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.export.ProjectExporter;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.ProjectImportRequest;
 import de.tudarmstadt.ukp.clarin.webanno.export.model.ExportedProject;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.exporter.RecommenderExporter;
@@ -83,7 +83,7 @@ public class GazeteerExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws IOException
     {
         Project project = aRequest.getProject();
@@ -97,11 +97,8 @@ public class GazeteerExporter
                 exportedGazeteer.setRecommender(recommender.getName());
                 exportedGazeteers.add(exportedGazeteer);
 
-                File targetFolder = new File(aStage, GAZETEERS_FOLDER);
-                targetFolder.mkdirs();
-
-                Files.copy(gazeteerService.getGazeteerFile(gazeteer).toPath(),
-                        new File(targetFolder, gazeteer.getId() + ".txt").toPath());
+                ZipUtils.writeEntry(aStage, GAZETEERS_FOLDER + "/" + gazeteer.getId() + ".txt",
+                        gazeteerService.getGazeteerFile(gazeteer));
             }
         }
 
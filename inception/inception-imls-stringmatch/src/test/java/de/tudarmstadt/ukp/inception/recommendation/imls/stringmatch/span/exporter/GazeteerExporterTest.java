@@ -32,6 +32,7 @@ import java.io.File;
 import java.util.List;
 import java.util.Optional;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.uima.cas.CAS;
@@ -130,7 +131,7 @@ public class GazeteerExporterTest
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(sourceProject, null,
                 "test");
         ExportedProject exportedProject = new ExportedProject();
-        sut.exportData(exportRequest, monitor, exportedProject, temporaryFolder);
+        sut.exportData(exportRequest, monitor, exportedProject, mock(ZipOutputStream.class));
 
         // Import the project again
         ArgumentCaptor<Gazeteer> gazeteerCaptor = ArgumentCaptor.forClass(Gazeteer.class);
@@ -23,15 +23,14 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.weblicht.exporter;
 
 import static java.util.Arrays.asList;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -43,6 +42,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.export.ProjectExporter;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.ProjectImportRequest;
 import de.tudarmstadt.ukp.clarin.webanno.export.model.ExportedProject;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.exporter.RecommenderExporter;
@@ -84,7 +84,7 @@ public class ChainExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws IOException
     {
         Project project = aRequest.getProject();
@@ -100,11 +100,8 @@ public class ChainExporter
                 exportedChain.setRecommender(recommender.getName());
                 exportedChains.add(exportedChain);
 
-                File targetFolder = new File(aStage, CHAINS_FOLDER);
-                targetFolder.mkdirs();
-
-                Files.copy(chainService.getChainFile(chain).toPath(),
-                        new File(targetFolder, chain.getId() + ".xml").toPath());
+                ZipUtils.writeEntry(aStage, CHAINS_FOLDER + "/" + chain.getId() + ".xml",
+                        chainService.getChainFile(chain));
             }
         }
 
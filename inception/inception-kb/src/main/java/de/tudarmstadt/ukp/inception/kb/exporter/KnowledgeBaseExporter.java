@@ -19,17 +19,14 @@ package de.tudarmstadt.ukp.inception.kb.exporter;
 
 import static java.util.Arrays.asList;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.io.FileUtils;
 import org.eclipse.rdf4j.repository.config.RepositoryImplConfig;
 import org.eclipse.rdf4j.repository.sparql.config.SPARQLRepositoryConfig;
 import org.eclipse.rdf4j.rio.RDFFormat;
@@ -45,6 +42,7 @@ import de.tudarmstadt.ukp.clarin.webanno.export.model.ExportedProject;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
+import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 import de.tudarmstadt.ukp.inception.kb.ConceptFeatureTraits;
 import de.tudarmstadt.ukp.inception.kb.ConceptFeatureTraits_ImplBase;
 import de.tudarmstadt.ukp.inception.kb.IriConstants;
@@ -102,7 +100,7 @@ public class KnowledgeBaseExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aFile)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws InterruptedException, IOException
     {
         Project project = aRequest.getProject();
@@ -151,7 +149,7 @@ public class KnowledgeBaseExporter
             }
             else {
                 // export local kb files
-                exportKnowledgeBaseFiles(aFile, kb);
+                exportKnowledgeBaseFiles(aStage, kb);
             }
 
         }
@@ -164,16 +162,13 @@ public class KnowledgeBaseExporter
      * exports the source files of local a knowledge base in the format specified in
      * {@link #knowledgeBaseFileExportFormat}
      */
-    private void exportKnowledgeBaseFiles(File aFile, KnowledgeBase kb) throws IOException
+    private void exportKnowledgeBaseFiles(ZipOutputStream aStage, KnowledgeBase kb)
+        throws IOException
     {
-        // create file with name "<knowledgebaseName>.<fileExtension>" in folder
-        // KB_FOLDER
-        File kbData = new File(aFile + getSourceFileName(kb));
-        FileUtils.forceMkdir(kbData.getParentFile());
-        kbData.createNewFile();
-        try (OutputStream os = new FileOutputStream(kbData)) {
-            kbService.exportData(kb, knowledgeBaseFileExportFormat, os);
-        }
+        // create entry with name "<knowledgebaseName>.<fileExtension>" in folder
+        // KB_FOLDER - remove leading "/"
+        ZipUtils.writeEntry(aStage, getSourceFileName(kb).substring(1),
+                os -> kbService.exportData(kb, knowledgeBaseFileExportFormat, os));
     }
 
     @Override
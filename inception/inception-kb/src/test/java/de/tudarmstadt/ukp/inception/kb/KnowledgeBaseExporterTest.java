@@ -30,11 +30,11 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.eclipse.rdf4j.model.vocabulary.OWL;
 import org.eclipse.rdf4j.model.vocabulary.RDF;
@@ -43,7 +43,6 @@ import org.eclipse.rdf4j.repository.sparql.config.SPARQLRepositoryConfig;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -73,8 +72,6 @@ public class KnowledgeBaseExporterTest
     private Project sourceProject;
     private Project targetProject;
 
-    public @TempDir File temporaryFolder;
-
     private KnowledgeBaseExporter sut;
 
     @BeforeEach
@@ -109,7 +106,7 @@ public class KnowledgeBaseExporterTest
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(sourceProject, null,
                 "test");
         ExportedProject exportedProject = new ExportedProject();
-        sut.exportData(exportRequest, monitor, exportedProject, temporaryFolder);
+        sut.exportData(exportRequest, monitor, exportedProject, mock(ZipOutputStream.class));
 
         // Import the project again
         ArgumentCaptor<KnowledgeBase> exportKbCaptor = ArgumentCaptor.forClass(KnowledgeBase.class);
@@ -144,7 +141,7 @@ public class KnowledgeBaseExporterTest
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(sourceProject, null,
                 "test");
         ExportedProject exportedProject = new ExportedProject();
-        sut.exportData(exportRequest, monitor, exportedProject, temporaryFolder);
+        sut.exportData(exportRequest, monitor, exportedProject, mock(ZipOutputStream.class));
 
         // Mock that the KB ID changes during import when registerKnowledgeBase is called
         doAnswer(i -> {
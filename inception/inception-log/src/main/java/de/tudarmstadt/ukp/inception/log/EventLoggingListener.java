@@ -17,7 +17,9 @@
  */
 package de.tudarmstadt.ukp.inception.log;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
@@ -51,8 +53,11 @@ public class EventLoggingListener
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
+    private static final int MAINTENANCE_BATCH_SIZE = 1000;
+
     private final EventRepository repo;
     private final ScheduledExecutorService scheduler;
+    private final ScheduledExecutorService maintenanceScheduler;
     private final Deque<LoggedEvent> queue;
     private final EventLoggingProperties properties;
     private final EventLoggingAdapterRegistry adapterRegistry;
@@ -71,6 +76,10 @@ public class EventLoggingListener
 
         scheduler = Executors.newSingleThreadScheduledExecutor();
         scheduler.scheduleAtFixedRate(() -> flush(), 1, 1, TimeUnit.SECONDS);
+
+        // Maintenance runs on its own thread so it does not hold up flushing new events
+        maintenanceScheduler = Executors.newSingleThreadScheduledExecutor();
+        maintenanceScheduler.scheduleWithFixedDelay(() -> maintain(), 1, 60, TimeUnit.MINUTES);
     }
 
     @EventListener
@@ -138,10 +147,43 @@ public class EventLoggingListener
         }
     }
 
+    private void maintain()
+    {
+        try {
+            pruneExpiredEvents();
+        }
+        catch (Exception e) {
+            log.error("Unable to perform event log maintenance", e);
+        }
+    }
+
+    private void pruneExpiredEvents()
+    {
+        var retention = properties.getRetention();
+        if (retention == null || retention.isNegative() || retention.isZero()) {
+            return;
+        }
+
+        var cutoff = Date.from(Instant.now().minus(retention));
+        long count = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            int deleted = repo.deleteLoggedEventsCreatedBefore(cutoff, MAINTENANCE_BATCH_SIZE);
+            if (deleted == 0) {
+                break;
+            }
+            count += deleted;
+        }
+
+        if (count > 0) {
+            log.info("Deleted {} logged events created before {}", count, cutoff);
+        }
+    }
+
     @Override
     public void destroy() throws Exception
     {
-        // Kill the flush scheduler
+        // Kill the flush and maintenance schedulers
+        maintenanceScheduler.shutdownNow();
         scheduler.shutdownNow();
 
         // Make sure and pending events are flushed before the application shuts down
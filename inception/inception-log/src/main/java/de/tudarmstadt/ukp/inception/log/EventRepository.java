@@ -18,6 +18,7 @@
 package de.tudarmstadt.ukp.inception.log;
 
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.lang3.function.FailableConsumer;
@@ -94,4 +95,17 @@ public interface EventRepository
      *            return this number of recent events or less
      */
     List<LoggedEvent> listRecentActivity(String aUsername, int aMaxSize);
+
+    /**
+     * Deletes the oldest events created before the given cutoff. To avoid long-running
+     * transactions, only up to the given number of events is deleted at a time.
+     * 
+     * @param aCutoff
+     *            events created before this point in time are deleted
+     * @param aMaxCount
+     *            the maximum number of events to delete
+     * @return the number of deleted events. If this is {@code 0}, no more events need to be
+     *         deleted.
+     */
+    int deleteLoggedEventsCreatedBefore(Date aCutoff, int aMaxCount);
 }
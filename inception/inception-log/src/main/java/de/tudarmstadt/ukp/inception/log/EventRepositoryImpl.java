@@ -18,10 +18,20 @@
 package de.tudarmstadt.ukp.inception.log;
 
 import static java.lang.String.join;
+import static java.sql.Statement.RETURN_GENERATED_KEYS;
+import static java.sql.Types.BIGINT;
+import static java.sql.Types.VARCHAR;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -35,12 +45,16 @@ import javax.persistence.TypedQuery;
 import org.apache.commons.lang3.function.FailableConsumer;
 import org.apache.commons.lang3.stream.Streams;
 import org.apache.commons.lang3.tuple.Pair;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
 import de.tudarmstadt.ukp.inception.log.config.EventLoggingAutoConfiguration;
 import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
 
@@ -55,6 +69,17 @@ public class EventRepositoryImpl
 {
     private final int RECENT_ACTIVITY_HORIZON = 3500;
 
+    /**
+     * Number of events sent to the database in a single JDBC batch.
+     */
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    private static final String INSERT_EVENT = join("\n", //
+            "INSERT INTO logged_event", //
+            "  (event, created, user, project, document, annotator, details, recommender_id,", //
+            "   layer, feature)", //
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private @PersistenceContext EntityManager entityManager;
@@ -69,15 +94,119 @@ public class EventRepositoryImpl
     @Transactional
     public void create(LoggedEvent... aEvents)
     {
+        if (aEvents.length == 0) {
+            return;
+        }
+
         long start = System.currentTimeMillis();
         for (LoggedEvent event : aEvents) {
             log.trace("{}", event);
-            entityManager.persist(event);
+            extractIndexedDetails(event);
         }
+
+        // Persisting the events one-by-one via JPA does not allow batching because the IDs are
+        // generated by the database. So we send them as JDBC batches instead.
+        entityManager.unwrap(Session.class).doWork(connection -> insert(connection, aEvents));
         long duration = System.currentTimeMillis() - start;
 
-        if (aEvents.length > 0 && !log.isTraceEnabled()) {
-            log.debug("... {} events stored ... ({}ms)", aEvents.length, duration);
+        if (!log.isTraceEnabled()) {
+            log.debug("... {} events stored ... ({}ms)", aEvents.length, duration);
+        }
+    }
+
+    private void insert(Connection aConnection, LoggedEvent[] aEvents) throws SQLException
+    {
+        try (PreparedStatement stmt = aConnection.prepareStatement(INSERT_EVENT,
+                RETURN_GENERATED_KEYS)) {
+            for (int offset = 0; offset < aEvents.length; offset += INSERT_BATCH_SIZE) {
+                int end = Math.min(offset + INSERT_BATCH_SIZE, aEvents.length);
+
+                for (int i = offset; i < end; i++) {
+                    LoggedEvent event = aEvents[i];
+                    stmt.setString(1, event.getEvent());
+                    stmt.setTimestamp(2, new Timestamp(event.getCreated().getTime()));
+                    stmt.setString(3, event.getUser());
+                    stmt.setLong(4, event.getProject());
+                    stmt.setLong(5, event.getDocument());
+                    setNullableString(stmt, 6, event.getAnnotator());
+                    setNullableString(stmt, 7, event.getDetails());
+                    if (event.getRecommenderId() != null) {
+                        stmt.setLong(8, event.getRecommenderId());
+                    }
+                    else {
+                        stmt.setNull(8, BIGINT);
+                    }
+                    setNullableString(stmt, 9, event.getLayer());
+                    setNullableString(stmt, 10, event.getFeature());
+                    stmt.addBatch();
+                }
+
+                stmt.executeBatch();
+
+                // Not all drivers report the generated keys for batches, but if they do, we
+                // pass them on to the events
+                try (var keys = stmt.getGeneratedKeys()) {
+                    for (int i = offset; i < end && keys.next(); i++) {
+                        aEvents[i].setId(keys.getLong(1));
+                    }
+                }
+            }
+        }
+    }
+
+    static void setNullableString(PreparedStatement aStmt, int aIndex, String aValue)
+        throws SQLException
+    {
+        if (aValue != null) {
+            aStmt.setString(aIndex, aValue);
+        }
+        else {
+            aStmt.setNull(aIndex, VARCHAR);
+        }
+    }
+
+    /**
+     * Copies the detail fields which are used for looking up events into dedicated columns, unless
+     * they have already been set explicitly.
+     */
+    static void extractIndexedDetails(LoggedEvent aEvent)
+    {
+        if (isBlank(aEvent.getDetails())) {
+            return;
+        }
+
+        if (aEvent.getRecommenderId() != null && aEvent.getLayer() != null
+                && aEvent.getFeature() != null) {
+            return;
+        }
+
+        JsonNode details;
+        try {
+            details = JSONUtil.getObjectMapper().readTree(aEvent.getDetails());
+        }
+        catch (IOException e) {
+            // Not all events have JSON details
+            return;
+        }
+
+        if (details == null || !details.isObject()) {
+            return;
+        }
+
+        var recommenderId = details.get("recommenderId");
+        if (aEvent.getRecommenderId() == null && recommenderId != null
+                && recommenderId.canConvertToLong()) {
+            aEvent.setRecommenderId(recommenderId.asLong());
+        }
+
+        var layer = details.get("layer");
+        if (aEvent.getLayer() == null && layer != null && layer.isTextual()) {
+            aEvent.setLayer(layer.asText());
+        }
+
+        var feature = details.get("feature");
+        if (aEvent.getFeature() == null && feature != null && feature.isTextual()) {
+            aEvent.setFeature(feature.asText());
         }
     }
 
@@ -86,9 +215,21 @@ public class EventRepositoryImpl
     public List<LoggedEvent> listLoggedEventsForRecommender(Project aProject, String aUsername,
             String aEventType, int aMaxSize, long aRecommenderId)
     {
-        String detailStr = "%\"recommenderId\":" + aRecommenderId + "%";
+        String query = String.join("\n", //
+                "FROM LoggedEvent WHERE ", //
+                "user = :user AND ", //
+                "project = :project AND ", //
+                "event = :event AND ", //
+                "recommenderId = :recommenderId ", //
+                "ORDER BY created DESC");
 
-        return listLoggedEventsForDetail(aProject, aUsername, aEventType, aMaxSize, detailStr);
+        return entityManager.createQuery(query, LoggedEvent.class) //
+                .setParameter("user", aUsername) //
+                .setParameter("project", aProject.getId()) //
+                .setParameter("event", aEventType) //
+                .setParameter("recommenderId", aRecommenderId) //
+                .setMaxResults(aMaxSize) //
+                .getResultList();
     }
 
     @Override
@@ -198,6 +339,29 @@ public class EventRepositoryImpl
                 .getResultList();
     }
 
+    @Override
+    @Transactional
+    public int deleteLoggedEventsCreatedBefore(Date aCutoff, int aMaxCount)
+    {
+        String idQuery = String.join("\n", //
+                "SELECT id FROM LoggedEvent WHERE ", //
+                "created < :cutoff ", //
+                "ORDER BY created");
+
+        List<Long> ids = entityManager.createQuery(idQuery, Long.class) //
+                .setParameter("cutoff", aCutoff) //
+                .setMaxResults(aMaxCount) //
+                .getResultList();
+
+        if (ids.isEmpty()) {
+            return 0;
+        }
+
+        return entityManager.createQuery("DELETE FROM LoggedEvent WHERE id IN (:ids)") //
+                .setParameter("ids", ids) //
+                .executeUpdate();
+    }
+
     @Override
     @Transactional
     public <E extends Throwable> void forEachLoggedEvent(Project aProject,
@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.log;
+
+import static java.lang.String.join;
+import static java.sql.Types.BIGINT;
+import static java.util.Collections.nCopies;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.tudarmstadt.ukp.inception.log.model.LoggedEvent;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+
+/**
+ * Copies the recommender ID, layer and feature from the JSON details of events logged before the
+ * indexed detail columns were introduced into these columns. Events logged later already have the
+ * columns filled when they are stored. As a Liquibase change, the backfill runs only once.
+ */
+public class IndexedDetailsBackfillChange
+    implements CustomTaskChange
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Only these events have a top-level recommender ID, layer or feature in their details.
+     */
+    private static final List<String> EVENTS_WITH_INDEXED_DETAILS = List.of( //
+            "RecommenderEvaluationResultEvent", //
+            "RecommendationAcceptedEvent", //
+            "RecommendationRejectedEvent", //
+            "ActiveLearningRecommendationEvent", //
+            "ActiveLearningSuggestionOfferedEvent", //
+            "FeatureValueUpdatedEvent");
+
+    private static final String SELECT_EVENTS = join("\n", //
+            "SELECT id, details FROM logged_event", //
+            "WHERE id > ? AND details IS NOT NULL AND event IN (" + //
+                    join(", ", nCopies(EVENTS_WITH_INDEXED_DETAILS.size(), "?")) + ")", //
+            "ORDER BY id");
+
+    private static final String UPDATE_EVENT = join("\n", //
+            "UPDATE logged_event", //
+            "SET recommender_id = ?, layer = ?, feature = ?", //
+            "WHERE id = ?");
+
+    @Override
+    public void execute(Database aDatabase) throws CustomChangeException
+    {
+        try {
+            var connection = (JdbcConnection) aDatabase.getConnection();
+            var count = backfill(connection.getWrappedConnection());
+
+            if (count > 0) {
+                log.info("Updated indexed details of {} logged events", count);
+            }
+        }
+        catch (SQLException e) {
+            throw new CustomChangeException("Unable to update indexed details of logged events", e);
+        }
+    }
+
+    /**
+     * @return the number of updated events.
+     */
+    long backfill(Connection aConnection) throws SQLException
+    {
+        long count = 0;
+        long lastId = -1;
+        try (PreparedStatement select = aConnection.prepareStatement(SELECT_EVENTS);
+                PreparedStatement update = aConnection.prepareStatement(UPDATE_EVENT)) {
+            select.setMaxRows(BATCH_SIZE);
+            for (int i = 0; i < EVENTS_WITH_INDEXED_DETAILS.size(); i++) {
+                select.setString(i + 2, EVENTS_WITH_INDEXED_DETAILS.get(i));
+            }
+
+            int selected;
+            do {
+                select.setLong(1, lastId);
+
+                selected = 0;
+                int updated = 0;
+                try (var rs = select.executeQuery()) {
+                    while (rs.next()) {
+                        selected++;
+                        lastId = rs.getLong(1);
+
+                        var event = new LoggedEvent();
+                        event.setDetails(rs.getString(2));
+                        EventRepositoryImpl.extractIndexedDetails(event);
+
+                        if (event.getRecommenderId() == null && event.getLayer() == null
+                                && event.getFeature() == null) {
+                            continue;
+                        }
+
+                        if (event.getRecommenderId() != null) {
+                            update.setLong(1, event.getRecommenderId());
+                        }
+                        else {
+                            update.setNull(1, BIGINT);
+                        }
+                        EventRepositoryImpl.setNullableString(update, 2, event.getLayer());
+                        EventRepositoryImpl.setNullableString(update, 3, event.getFeature());
+                        update.setLong(4, lastId);
+                        update.addBatch();
+                        updated++;
+                    }
+                }
+
+                if (updated > 0) {
+                    update.executeBatch();
+                    count += updated;
+                }
+            }
+            while (selected == BATCH_SIZE);
+        }
+
+        return count;
+    }
+
+    @Override
+    public String getConfirmationMessage()
+    {
+        return "Updated indexed details of logged events";
+    }
+
+    @Override
+    public void setUp()
+    {
+        // Nothing to do
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor aResourceAccessor)
+    {
+        // Nothing to do
+    }
+
+    @Override
+    public ValidationErrors validate(Database aDatabase)
+    {
+        return new ValidationErrors();
+    }
+}
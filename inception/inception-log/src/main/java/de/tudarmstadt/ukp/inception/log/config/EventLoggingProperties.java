@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.log.config;
 
+import java.time.Duration;
 import java.util.Set;
 
 public interface EventLoggingProperties
@@ -32,4 +33,13 @@ public interface EventLoggingProperties
      *            events never to be written to the event log.
      */
     void setExcludeEvents(Set<String> aExcludeEvents);
+
+    Duration getRetention();
+
+    /**
+     * @param aRetention
+     *            how long events are kept in the event log. If this is not set or not positive,
+     *            events are kept forever.
+     */
+    void setRetention(Duration aRetention);
 }
@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.log.config;
 
+import java.time.Duration;
 import java.util.Set;
 
 import org.springframework.boot.availability.AvailabilityChangeEvent;
@@ -42,6 +43,8 @@ public class EventLoggingPropertiesImpl
             "BrokerAvailabilityEvent", //
             "ShutdownDialogAvailableEvent");
 
+    private Duration retention;
+
     @Override
     public boolean isEnabled()
     {
@@ -65,4 +68,16 @@ public class EventLoggingPropertiesImpl
     {
         excludeEvents = aExcludeEvents;
     }
+
+    @Override
+    public Duration getRetention()
+    {
+        return retention;
+    }
+
+    @Override
+    public void setRetention(Duration aRetention)
+    {
+        retention = aRetention;
+    }
 }
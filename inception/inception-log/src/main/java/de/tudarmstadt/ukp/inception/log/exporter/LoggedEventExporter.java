@@ -20,9 +20,8 @@ package de.tudarmstadt.ukp.inception.log.exporter;
 import static java.util.Arrays.asList;
 import static java.util.function.Function.identity;
 
-import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -34,6 +33,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,6 +52,7 @@ import de.tudarmstadt.ukp.clarin.webanno.api.export.ProjectImportRequest;
 import de.tudarmstadt.ukp.clarin.webanno.export.model.ExportedProject;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 import de.tudarmstadt.ukp.inception.documents.api.DocumentService;
 import de.tudarmstadt.ukp.inception.documents.exporters.SourceDocumentExporter;
 import de.tudarmstadt.ukp.inception.log.EventRepository;
@@ -89,7 +90,7 @@ public class LoggedEventExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aFile)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws IOException
     {
         Project project = aRequest.getProject();
@@ -104,15 +105,29 @@ public class LoggedEventExporter
         documentService.listSourceDocuments(project)
                 .forEach(doc -> documentNameIndex.put(doc.getId(), doc.getName()));
 
-        File eventLog = new File(aFile, EVENT_LOG);
-        eventLog.createNewFile();
-        try (JsonGenerator jGenerator = new ObjectMapper().getFactory()
-                .createGenerator(new FileOutputStream(eventLog), JsonEncoding.UTF8)) {
+        ZipUtils.writeEntry(aStage, EVENT_LOG, os -> writeLoggedEvents(project, os,
+                documentNameIndex, eventCount, missingDocuments, droppedEvents));
+
+        LOG.info("Exported [{}] logged events for project [{}]", eventCount.get(),
+                project.getName());
+        if (!missingDocuments.isEmpty()) {
+            LOG.info("Skipped [{}] logged events for [{}] documents no longer existing",
+                    droppedEvents.get(), missingDocuments.size());
+        }
+    }
+
+    private void writeLoggedEvents(Project aProject, OutputStream aOut,
+            Map<Long, String> aDocumentNameIndex, AtomicInteger aEventCount,
+            Set<Long> aMissingDocuments, AtomicInteger aDroppedEvents)
+        throws IOException
+    {
+        try (JsonGenerator jGenerator = new ObjectMapper().getFactory().createGenerator(aOut,
+                JsonEncoding.UTF8)) {
 
             jGenerator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
 
             // Stream data
-            eventRepository.forEachLoggedEvent(project, event -> {
+            eventRepository.forEachLoggedEvent(aProject, event -> {
                 // check if the export has been cancelled
                 if (Thread.interrupted()) {
                     throw new InterruptedException();
@@ -122,14 +137,14 @@ public class LoggedEventExporter
                 // If the document ID is -1, then there is no document linked up to this event.
                 // In this case, we do not need to try resolving the IDs to a name.
                 if (event.getDocument() != -1) {
-                    documentName = documentNameIndex.get(event.getDocument());
+                    documentName = aDocumentNameIndex.get(event.getDocument());
                     if (documentName == null) {
                         // The document has been deleted from the project so we cannot link up
                         // events back up to this document during import. So since this is not
                         // possible, we can even save ourselves the effort of exporting the logged
                         // events on a document that doesn't exist anymore.
-                        missingDocuments.add(event.getDocument());
-                        droppedEvents.incrementAndGet();
+                        aMissingDocuments.add(event.getDocument());
+                        aDroppedEvents.incrementAndGet();
                         return;
                     }
                 }
@@ -146,16 +161,9 @@ public class LoggedEventExporter
                     throw new RuntimeException(e);
                 }
 
-                eventCount.incrementAndGet();
+                aEventCount.incrementAndGet();
             });
         }
-
-        LOG.info("Exported [{}] logged events for project [{}]", eventCount.get(),
-                project.getName());
-        if (!missingDocuments.isEmpty()) {
-            LOG.info("Skipped [{}] logged events for [{}] documents no longer existing",
-                    droppedEvents.get(), missingDocuments.size());
-        }
     }
 
     @Override
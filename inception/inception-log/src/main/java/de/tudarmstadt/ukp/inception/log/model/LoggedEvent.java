@@ -18,6 +18,7 @@
 package de.tudarmstadt.ukp.inception.log.model;
 
 import java.util.Date;
+import java.util.Objects;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -73,6 +74,27 @@ public class LoggedEvent
     @Column(length = 64000, nullable = true)
     private String details;
 
+    /**
+     * If the details refer to a recommender, its ID is extracted here so that events can be looked
+     * up by recommender efficiently. Otherwise, the recommender ID should be null.
+     */
+    @Column(name = "recommender_id", nullable = true)
+    private Long recommenderId;
+
+    /**
+     * If the details refer to a layer, its name is extracted here. Otherwise, the layer should be
+     * null.
+     */
+    @Column(nullable = true)
+    private String layer;
+
+    /**
+     * If the details refer to a feature, its name is extracted here. Otherwise, the feature should
+     * be null.
+     */
+    @Column(nullable = true)
+    private String feature;
+
     public LoggedEvent()
     {
         // Needed by JPA
@@ -157,6 +179,36 @@ public class LoggedEvent
         document = aDocument;
     }
 
+    public Long getRecommenderId()
+    {
+        return recommenderId;
+    }
+
+    public void setRecommenderId(Long aRecommenderId)
+    {
+        recommenderId = aRecommenderId;
+    }
+
+    public String getLayer()
+    {
+        return layer;
+    }
+
+    public void setLayer(String aLayer)
+    {
+        layer = aLayer;
+    }
+
+    public String getFeature()
+    {
+        return feature;
+    }
+
+    public void setFeature(String aFeature)
+    {
+        feature = aFeature;
+    }
+
     /**
      * For testing only.
      */
@@ -171,6 +223,25 @@ public class LoggedEvent
         return id;
     }
 
+    @Override
+    public int hashCode()
+    {
+        return id != null ? id.hashCode() : System.identityHashCode(this);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        LoggedEvent other = (LoggedEvent) obj;
+        return id != null && Objects.equals(id, other.id);
+    }
+
     @Override
     public String toString()
     {
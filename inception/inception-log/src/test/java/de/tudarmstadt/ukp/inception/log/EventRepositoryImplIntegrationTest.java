@@ -32,6 +32,7 @@ import java.util.Date;
 import java.util.List;
 
 import org.apache.uima.util.CasCreationUtils;
+import org.hibernate.Session;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -271,6 +272,70 @@ public class EventRepositoryImplIntegrationTest
         assertThat(loggedEvents).as("Check that no logged event is found").isEmpty();
     }
 
+    @Test
+    public void getLoggedEvents_WithLoggedEventOfRecommenderIdWithSamePrefix_ShouldReturnEmptyList()
+    {
+        le = buildLoggedEvent(project, user.getUsername(), EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT,
+                new Date(), -1, "{\"recommenderId\":" + RECOMMENDER_ID + "0}");
+        sut.create(le);
+
+        List<LoggedEvent> loggedEvents = sut.listLoggedEventsForRecommender(project,
+                user.getUsername(), EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, 5, RECOMMENDER_ID);
+
+        assertThat(loggedEvents).as("Check that no logged event is found").isEmpty();
+    }
+
+    @Test
+    public void deleteLoggedEventsCreatedBefore_ShouldOnlyDeleteOlderEvents() throws Exception
+    {
+        DateFormat df = new SimpleDateFormat("yy-MM-dd HH:mm:ss");
+        for (int i = 0; i < 3; i++) {
+            sut.create(buildLoggedEvent(project, USERNAME, EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT,
+                    df.parse("19-04-03 0" + i + ":00:00"), -1, DETAIL_JSON));
+        }
+        le = buildLoggedEvent(project, USERNAME, EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT,
+                df.parse("19-04-05 10:00:00"), -1, DETAIL_JSON);
+        sut.create(le);
+
+        var cutoff = df.parse("19-04-04 00:00:00");
+        assertThat(sut.deleteLoggedEventsCreatedBefore(cutoff, 2)).isEqualTo(2);
+        assertThat(sut.deleteLoggedEventsCreatedBefore(cutoff, 2)).isEqualTo(1);
+        assertThat(sut.deleteLoggedEventsCreatedBefore(cutoff, 2)).isEqualTo(0);
+
+        List<LoggedEvent> loggedEvents = sut.listLoggedEventsForRecommender(project,
+                user.getUsername(), EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, 5, RECOMMENDER_ID);
+
+        assertThat(loggedEvents).containsExactly(le);
+    }
+
+    @Test
+    public void backfill_ShouldOnlyUpdateEventsWithIndexedDetails() throws Exception
+    {
+        le = buildLoggedEvent(project, USERNAME, EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT,
+                new Date(), -1, DETAIL_JSON);
+        sut.create(le);
+        sut.create(buildLoggedEvent(project, USERNAME, SPAN_CREATED_EVENT, new Date(), -1,
+                DETAIL_JSON));
+
+        // Simulate events logged before the indexed detail columns were introduced
+        var em = testEntityManager.getEntityManager();
+        em.createQuery("UPDATE LoggedEvent SET recommenderId = null, layer = null, feature = null")
+                .executeUpdate();
+        assertThat(sut.listLoggedEventsForRecommender(project, USERNAME,
+                EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, 5, RECOMMENDER_ID)).isEmpty();
+
+        em.unwrap(Session.class).doWork(connection -> assertThat(
+                new IndexedDetailsBackfillChange().backfill(connection)).isEqualTo(1));
+        testEntityManager.clear();
+
+        assertThat(sut.listLoggedEventsForRecommender(project, USERNAME,
+                EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT, 5, RECOMMENDER_ID)).hasSize(1);
+        assertThat(em.createQuery("FROM LoggedEvent WHERE recommenderId IS NOT NULL",
+                LoggedEvent.class).getResultList()) //
+                        .extracting(LoggedEvent::getEvent) //
+                        .containsExactly(EVENT_TYPE_RECOMMENDER_EVALUATION_EVENT);
+    }
+
     @Test
     public void getFilteredRecentLoggedEvents_ShouldReturnEvent()
     {
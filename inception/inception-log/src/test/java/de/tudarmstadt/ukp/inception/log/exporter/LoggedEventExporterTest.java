@@ -28,11 +28,14 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.lang3.function.FailableConsumer;
 import org.apache.commons.lang3.stream.Streams;
@@ -96,7 +99,11 @@ public class LoggedEventExporterTest
         var zipFile = mock(ZipFile.class);
         when(zipFile.getEntry(any())).thenReturn(new ZipEntry("event.log"));
         when(zipFile.getInputStream(any()))
-                .thenAnswer(_invocation -> new FileInputStream(new File(workFolder, "event.log")));
+                .thenAnswer(_invocation -> {
+                    var zis = new ZipInputStream(new FileInputStream(exportFile()));
+                    zis.getNextEntry();
+                    return zis;
+                });
 
         // Export the project and import it again
         runExportImportAndFetchEvents(zipFile);
@@ -176,6 +183,11 @@ public class LoggedEventExporterTest
         return asList(event1, event2, event3, event4);
     }
 
+    private File exportFile()
+    {
+        return new File(workFolder, "export.zip");
+    }
+
     private void runExportImportAndFetchEvents(ZipFile aZipFile) throws Exception
     {
         // Export the project
@@ -183,7 +195,9 @@ public class LoggedEventExporterTest
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(project, null, "test");
         ExportedProject exportedProject = new ExportedProject();
 
-        sut.exportData(exportRequest, monitor, exportedProject, workFolder);
+        try (var stage = new ZipOutputStream(new FileOutputStream(exportFile()))) {
+            sut.exportData(exportRequest, monitor, exportedProject, stage);
+        }
 
         // Import the project again
         lenient().doNothing().when(eventRepository).create(loggedEventCaptor.capture());
@@ -123,6 +123,19 @@ public class VArc
         target = aTarget;
     }
 
+    private VArc(VArc aOther)
+    {
+        super(aOther);
+        source = aOther.source;
+        target = aOther.target;
+    }
+
+    @Override
+    public VArc copy()
+    {
+        return new VArc(this);
+    }
+
     public void setSource(VID aSource)
     {
         source = aSource;
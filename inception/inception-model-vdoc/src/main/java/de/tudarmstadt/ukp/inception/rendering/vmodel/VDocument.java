@@ -60,6 +60,25 @@ public class VDocument
         // Nothing to do
     }
 
+    /**
+     * Creates a deep copy of the given document. Spans and arcs are copied such that they can be
+     * modified without affecting the original. Comments and markers are immutable and are shared.
+     * 
+     * @param aOther
+     *            the document to copy.
+     */
+    public VDocument(VDocument aOther)
+    {
+        windowBegin = aOther.windowBegin;
+        windowEnd = aOther.windowEnd;
+        text = aOther.text;
+        annotationLayers.putAll(aOther.annotationLayers);
+        aOther.spans.values().forEach(span -> add(span.copy()));
+        aOther.arcs.values().forEach(arc -> add(arc.copy()));
+        comments.putAll(aOther.comments);
+        markers.addAll(aOther.markers);
+    }
+
     public void setWindowBegin(int aWindowBegin)
     {
         windowBegin = aWindowBegin;
@@ -52,6 +52,30 @@ public abstract class VObject
         equivalenceSet = aEquivalenceSet;
     }
 
+    /**
+     * Copy constructor. The features are copied, the layer and the VIDs are shared because they are
+     * not modified during rendering.
+     * 
+     * @param aOther
+     *            the object to copy.
+     */
+    protected VObject(VObject aOther)
+    {
+        layer = aOther.layer;
+        vid = aOther.vid;
+        features = new HashMap<>(aOther.features);
+        equivalenceSet = aOther.equivalenceSet;
+        color = aOther.color;
+        label = aOther.label;
+        score = aOther.score;
+        actionButtons = aOther.actionButtons;
+    }
+
+    /**
+     * @return a copy of this object which can be modified independently of the original.
+     */
+    public abstract VObject copy();
+
     public VID getVid()
     {
         return vid;
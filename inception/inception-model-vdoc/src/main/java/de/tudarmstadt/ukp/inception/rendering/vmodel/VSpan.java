@@ -104,6 +104,19 @@ public class VSpan
         ranges = aOffsets != null ? aOffsets : new ArrayList<>();
     }
 
+    private VSpan(VSpan aOther)
+    {
+        super(aOther);
+        // VRanges are immutable, so we only need to copy the list
+        ranges = new ArrayList<>(aOther.ranges);
+    }
+
+    @Override
+    public VSpan copy()
+    {
+        return new VSpan(this);
+    }
+
     public List<VRange> getOffsets()
     {
         return ranges;
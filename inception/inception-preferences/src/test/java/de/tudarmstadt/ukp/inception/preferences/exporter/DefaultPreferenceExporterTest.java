@@ -23,11 +23,11 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -86,9 +86,9 @@ public class DefaultPreferenceExporterTest
         FullProjectExportRequest exportRequest = new FullProjectExportRequest(project, null, false);
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(project, null, "test");
         ExportedProject exportedProject = new ExportedProject();
-        File file = mock(File.class);
+        var stage = mock(ZipOutputStream.class);
 
-        sut.exportData(exportRequest, monitor, exportedProject, file);
+        sut.exportData(exportRequest, monitor, exportedProject, stage);
 
         // Import the project again
         ArgumentCaptor<DefaultProjectPreference> captor = ArgumentCaptor
@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.project.export;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.zip.ZipFile;
 
@@ -43,6 +44,26 @@ public interface ProjectExportService
             File aProjectZipFile)
         throws ProjectExportException, IOException, InterruptedException;
 
+    /**
+     * Exports the project as a ZIP file directly to the given stream. The stream is not closed.
+     * 
+     * @param aRequest
+     *            the export request.
+     * @param aMonitor
+     *            the monitor to report progress and messages to.
+     * @param aOut
+     *            the stream to write the ZIP file to.
+     * @throws ProjectExportException
+     *             if the export fails.
+     * @throws IOException
+     *             if an I/O error occurs.
+     * @throws InterruptedException
+     *             if the export has been cancelled.
+     */
+    void exportProject(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
+            OutputStream aOut)
+        throws ProjectExportException, IOException, InterruptedException;
+
     ProjectExportTaskHandle startProjectExportTask(FullProjectExportRequest aModel,
             String aUsername);
 
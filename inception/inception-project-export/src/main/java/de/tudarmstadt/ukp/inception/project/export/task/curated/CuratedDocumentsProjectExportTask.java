@@ -27,11 +27,15 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.export.BulkExportExecutor;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.DocumentImportExportService;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.ProjectExportException;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.ProjectExportTaskMonitor;
@@ -147,55 +151,68 @@ public class CuratedDocumentsProjectExportTask
             });
         }
 
+        // The export process may store project-related information in this context to ensure it
+        // is looked up only once during the bulk operation and the DB is not hit too often. The
+        // context is shared with the conversion workers, so it needs to be thread-safe.
+        Map<Pair<Project, String>, Object> bulkOperationContext = new ConcurrentHashMap<>();
+
         int initProgress = aMonitor.getProgress() - 1;
         int i = 1;
-        for (SourceDocument sourceDocument : documents) {
-            // check if the export has been cancelled
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-
-            try (CasStorageSession session = CasStorageSession.openNested()) {
-                File curationCasDir = new File(
-                        aCopyDir + CURATION_AS_SERIALISED_CAS + sourceDocument.getName());
-                FileUtils.forceMkdir(curationCasDir);
-
-                File curationDir = new File(aCopyDir + CURATION_FOLDER + sourceDocument.getName());
-                FileUtils.forceMkdir(curationDir);
-
-                // If depending on a InProgress, include only the the curation documents that are
-                // finished or also the ones that are in progress
-                if ((aIncludeInProgress && SourceDocumentState.CURATION_IN_PROGRESS
-                        .equals(sourceDocument.getState()))
-                        || SourceDocumentState.CURATION_FINISHED
-                                .equals(sourceDocument.getState())) {
-                    if (documentService.existsCas(sourceDocument, CURATION_USER)) {
-                        // Copy CAS - this is used when importing the project again
-                        try (OutputStream os = new FileOutputStream(
-                                new File(curationDir, CURATION_USER + ".ser"))) {
-                            documentService.exportCas(sourceDocument, CURATION_USER, os);
-                        }
+        try (var conversions = new BulkExportExecutor(importExportService.getExportParallelism())) {
+            for (SourceDocument sourceDocument : documents) {
+                // check if the export has been cancelled
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
 
-                        // Copy secondary export format for convenience - not used during import
-                        try {
-                            File curationFile = importExportService.exportAnnotationDocument(
-                                    sourceDocument, WebAnnoConst.CURATION_USER, format,
-                                    WebAnnoConst.CURATION_USER, Mode.CURATION);
-                            FileUtils.copyFileToDirectory(curationFile, curationDir);
-                            FileUtils.forceDelete(curationFile);
-                        }
-                        catch (Exception e) {
-                            // error("Unexpected error while exporting project: " +
-                            // ExceptionUtils.getRootCauseMessage(e) );
-                            throw new ProjectExportException(
-                                    "Aborting due to unrecoverable error while exporting!");
+                try (CasStorageSession session = CasStorageSession.openNested()) {
+                    File curationCasDir = new File(
+                            aCopyDir + CURATION_AS_SERIALISED_CAS + sourceDocument.getName());
+                    FileUtils.forceMkdir(curationCasDir);
+
+                    File curationDir = new File(
+                            aCopyDir + CURATION_FOLDER + sourceDocument.getName());
+                    FileUtils.forceMkdir(curationDir);
+
+                    // If depending on a InProgress, include only the the curation documents that
+                    // are finished or also the ones that are in progress
+                    if ((aIncludeInProgress && SourceDocumentState.CURATION_IN_PROGRESS
+                            .equals(sourceDocument.getState()))
+                            || SourceDocumentState.CURATION_FINISHED
+                                    .equals(sourceDocument.getState())) {
+                        if (documentService.existsCas(sourceDocument, CURATION_USER)) {
+                            // Copy CAS - this is used when importing the project again
+                            try (OutputStream os = new FileOutputStream(
+                                    new File(curationDir, CURATION_USER + ".ser"))) {
+                                documentService.exportCas(sourceDocument, CURATION_USER, os);
+                            }
+
+                            // Copy secondary export format for convenience - not used during
+                            // import
+                            conversions.submit(() -> {
+                                try {
+                                    return importExportService.exportAnnotationDocument(
+                                            sourceDocument, WebAnnoConst.CURATION_USER, format,
+                                            WebAnnoConst.CURATION_USER, Mode.CURATION, true,
+                                            bulkOperationContext);
+                                }
+                                catch (Exception e) {
+                                    throw new ProjectExportException(
+                                            "Aborting due to unrecoverable error while exporting!");
+                                }
+                            }, curationFile -> FileUtils.copyFileToDirectory(curationFile,
+                                    curationDir));
                         }
                     }
                 }
+
+                int progress = initProgress
+                        + (int) Math.ceil(((double) i) / documents.size() * 10.0);
+                conversions.afterPending(() -> aMonitor.setProgress(progress));
+                i++;
             }
-            aMonitor.setProgress(
-                    initProgress + (int) Math.ceil(((double) i) / documents.size() * 10.0));
-            i++;
+
+            conversions.awaitAll();
         }
     }
 }
@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.model;
+
+import static java.util.Comparator.comparingInt;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The suggestions of a single document, partitioned by recommender. Access is guarded by a
+ * read/write lock so that concurrent readers do not block each other.
+ * <p>
+ * Partitions can be shared between prediction generations. Once a partition has been
+ * {@link #markShared() shared}, it must no longer be modified. Writers must create a copy instead
+ * (copy-on-write). Copying a document partition is cheap because the recommender partitions are
+ * shared and only copied themselves when they are written to.
+ */
+class DocumentPredictions
+    implements Serializable
+{
+    private static final long serialVersionUID = 5453011295125626543L;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile boolean shared;
+
+    private final Map<Long, RecommenderPredictions> idxRecommender;
+
+    public DocumentPredictions()
+    {
+        idxRecommender = new HashMap<>();
+    }
+
+    /**
+     * Creates a writable copy of the given (shared) partition. The recommender partitions are
+     * shared between the original and the copy.
+     */
+    public DocumentPredictions(DocumentPredictions aOther)
+    {
+        aOther.lock.readLock().lock();
+        try {
+            idxRecommender = new HashMap<>(aOther.idxRecommender);
+            idxRecommender.values().forEach(RecommenderPredictions::markShared);
+        }
+        finally {
+            aOther.lock.readLock().unlock();
+        }
+    }
+
+    public void markShared()
+    {
+        shared = true;
+    }
+
+    public boolean isShared()
+    {
+        return shared;
+    }
+
+    public void put(AnnotationSuggestion aSuggestion)
+    {
+        lock.writeLock().lock();
+        try {
+            writableRecommender(aSuggestion.getRecommenderId()).put(aSuggestion);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adopts the given (shared) recommender partition from another generation without copying it.
+     *
+     * @return the number of adopted suggestions.
+     */
+    public int inheritRecommender(long aRecommenderId, RecommenderPredictions aPartition)
+    {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            var existing = idxRecommender.get(aRecommenderId);
+            if (existing == null || existing.isEmpty()) {
+                idxRecommender.put(aRecommenderId, aPartition);
+            }
+            else {
+                var target = writableRecommender(aRecommenderId);
+                aPartition.getAll().forEach(target::put);
+            }
+            return aPartition.size();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param aType
+     *            the suggestion type
+     * @param aLayerId
+     *            the layer ID
+     * @param aWindowBegin
+     *            the begin of the window or {@code -1} to ignore
+     * @param aWindowEnd
+     *            the end of the window or {@code -1} to ignore
+     * @return the suggestions of the given type on the given layer which are located within the
+     *         given window, ordered by the begin of their window.
+     */
+    public <T extends AnnotationSuggestion> List<T> getWindow(Class<T> aType, long aLayerId,
+            int aWindowBegin, int aWindowEnd)
+    {
+        lock.readLock().lock();
+        try {
+            var result = new ArrayList<T>();
+            var contributingPartitions = 0;
+            for (var partition : idxRecommender.values()) {
+                if (partition.collectWindow(aType, aLayerId, aWindowBegin, aWindowEnd, result)) {
+                    contributingPartitions++;
+                }
+            }
+
+            // Each partition delivers its suggestions in order, but if there are multiple
+            // recommenders on the same layer, we need to merge them.
+            if (contributingPartitions > 1) {
+                result.sort(comparingInt(AnnotationSuggestion::getWindowBegin));
+            }
+
+            return result;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<AnnotationSuggestion> getByRecommenderAndId(long aRecommenderId,
+            int aSuggestionId)
+    {
+        lock.readLock().lock();
+        try {
+            var partition = idxRecommender.get(aRecommenderId);
+            if (partition == null) {
+                return Optional.empty();
+            }
+
+            return partition.getById(aSuggestionId);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Optional<RecommenderPredictions> getRecommenderPartition(long aRecommenderId)
+    {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(idxRecommender.get(aRecommenderId));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<AnnotationSuggestion> getByRecommender(long aRecommenderId)
+    {
+        lock.readLock().lock();
+        try {
+            var partition = idxRecommender.get(aRecommenderId);
+            if (partition == null) {
+                return new ArrayList<>();
+            }
+
+            return new ArrayList<>(partition.getAll());
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<SpanSuggestion> getSpans(long aLayerId, int aBegin, int aEnd, String aFeature)
+    {
+        lock.readLock().lock();
+        try {
+            var result = new ArrayList<SpanSuggestion>();
+            for (var partition : idxRecommender.values()) {
+                result.addAll(partition.getSpans(aLayerId, aBegin, aEnd, aFeature));
+            }
+            return result;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<AnnotationSuggestion> getAll()
+    {
+        lock.readLock().lock();
+        try {
+            var result = new ArrayList<AnnotationSuggestion>();
+            for (var partition : idxRecommender.values()) {
+                result.addAll(partition.getAll());
+            }
+            return result;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean hasRecommender(long aRecommenderId)
+    {
+        lock.readLock().lock();
+        try {
+            return idxRecommender.containsKey(aRecommenderId);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void removeByRecommender(long aRecommenderId)
+    {
+        lock.writeLock().lock();
+        try {
+            checkWritable();
+            // The partition may be shared with another generation, so we must not clear it but
+            // only drop our reference to it.
+            idxRecommender.remove(aRecommenderId);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int countNew()
+    {
+        lock.readLock().lock();
+        try {
+            return idxRecommender.values().stream() //
+                    .mapToInt(RecommenderPredictions::countNew) //
+                    .sum();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size()
+    {
+        lock.readLock().lock();
+        try {
+            return idxRecommender.values().stream() //
+                    .mapToInt(RecommenderPredictions::size) //
+                    .sum();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    private RecommenderPredictions writableRecommender(long aRecommenderId)
+    {
+        checkWritable();
+
+        var partition = idxRecommender.get(aRecommenderId);
+        if (partition == null) {
+            partition = new RecommenderPredictions();
+            idxRecommender.put(aRecommenderId, partition);
+        }
+        else if (partition.isShared()) {
+            partition = new RecommenderPredictions(partition);
+            idxRecommender.put(aRecommenderId, partition);
+        }
+        return partition;
+    }
+
+    private void checkWritable()
+    {
+        if (shared) {
+            throw new IllegalStateException("Shared prediction partitions must not be modified");
+        }
+    }
+}
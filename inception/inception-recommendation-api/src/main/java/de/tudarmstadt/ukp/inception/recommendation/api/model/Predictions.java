@@ -18,10 +18,8 @@
 package de.tudarmstadt.ukp.inception.recommendation.api.model;
 
 import static java.util.Arrays.asList;
-import static java.util.Collections.emptyMap;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.unmodifiableSet;
-import static java.util.Comparator.comparingInt;
-import static java.util.stream.Collectors.toList;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -29,9 +27,9 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.Validate;
 
@@ -47,6 +45,15 @@ import de.tudarmstadt.ukp.inception.rendering.vmodel.VID;
 /**
  * If the prediction task has run it stores the predicted annotations for an annotation layer in the
  * predictions map.
+ * <p>
+ * The suggestions are partitioned by document and recommender. Each partition maintains its own
+ * indexes and its own read/write lock, so readers do not block each other and lookups for rendering
+ * or for alternative suggestions do not need to scan all suggestions of a document.
+ * <p>
+ * A new generation of predictions can {@link #inheritDocument inherit} or
+ * {@link #inheritRecommender inherit} partitions from its predecessor. Inherited partitions are
+ * shared between the generations and only copied when either of them modifies the partition
+ * (copy-on-write).
  */
 public class Predictions
     implements Serializable
@@ -58,7 +65,7 @@ public class Predictions
     private final User sessionOwner;
     private final String dataOwner;
 
-    private final Map<String, Map<ExtendedId, AnnotationSuggestion>> idxDocuments = new HashMap<>();
+    private final Map<String, DocumentPredictions> idxDocuments = new ConcurrentHashMap<>();
 
     private final Object predictionsLock = new Object();
     private final Set<String> seenDocumentsForPrediction = new HashSet<>();
@@ -165,27 +172,15 @@ public class Predictions
      * {@code aWindowBegin} and {@code aWindowEnd} are {@code -1}, then they are ignored
      * respectively. This is useful when all suggestions should be fetched.
      */
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     private <T extends AnnotationSuggestion> List<T> getFlattenedPredictions(Class<T> type,
             String aDocumentName, AnnotationLayer aLayer, int aWindowBegin, int aWindowEnd)
     {
-        synchronized (predictionsLock) {
-            var byDocument = idxDocuments.getOrDefault(aDocumentName, emptyMap());
-            return byDocument.entrySet().stream() //
-                    .filter(f -> type.isInstance(f.getValue())) //
-                    .map(f -> (Entry<ExtendedId, T>) (Entry) f) //
-                    .filter(f -> f.getKey().getLayerId() == aLayer.getId()) //
-                    // .filter(f -> overlapping(f.getValue().getWindowBegin(),
-                    // f.getValue().getWindowEnd(),
-                    // aWindowBegin == -1 ? 0 : aWindowBegin,
-                    // aWindowEnd == -1 ? MAX_VALUE : aWindowEnd))
-                    .filter(f -> aWindowBegin == -1
-                            || (f.getValue().getWindowBegin() >= aWindowBegin))
-                    .filter(f -> aWindowEnd == -1 || (f.getValue().getWindowEnd() <= aWindowEnd))
-                    .sorted(comparingInt(e2 -> e2.getValue().getWindowBegin())) //
-                    .map(Map.Entry::getValue) //
-                    .collect(toList());
+        var byDocument = idxDocuments.get(aDocumentName);
+        if (byDocument == null) {
+            return emptyList();
         }
+
+        return byDocument.getWindow(type, aLayer.getId(), aWindowBegin, aWindowEnd);
     }
 
     /**
@@ -198,13 +193,12 @@ public class Predictions
      */
     public Optional<AnnotationSuggestion> getPredictionByVID(SourceDocument aDocument, VID aVID)
     {
-        synchronized (predictionsLock) {
-            var byDocument = idxDocuments.getOrDefault(aDocument.getName(), emptyMap());
-            return byDocument.values().stream() //
-                    .filter(suggestion -> suggestion.getId() == aVID.getSubId()) //
-                    .filter(suggestion -> suggestion.getRecommenderId() == aVID.getId()) //
-                    .findFirst();
+        var byDocument = idxDocuments.get(aDocument.getName());
+        if (byDocument == null) {
+            return Optional.empty();
         }
+
+        return byDocument.getByRecommenderAndId(aVID.getId(), aVID.getSubId());
     }
 
     /**
@@ -225,10 +219,7 @@ public class Predictions
                     }
                 }
 
-                var xid = new ExtendedId(prediction);
-                var byDocument = idxDocuments.computeIfAbsent(prediction.getDocumentName(),
-                        $ -> new HashMap<>());
-                byDocument.put(xid, prediction);
+                writableDocument(prediction.getDocumentName()).put(prediction);
 
                 if (prediction.getAge() == 0) {
                     newSuggestionCount++;
@@ -237,6 +228,106 @@ public class Predictions
         }
     }
 
+    /**
+     * Adopts all suggestions which the given predecessor generation has for the given document
+     * without copying them and marks the document as completed.
+     *
+     * @param aPredecessor
+     *            the previous generation of predictions
+     * @param aDocument
+     *            the document
+     * @return the number of inherited suggestions
+     */
+    public int inheritDocument(Predictions aPredecessor, SourceDocument aDocument)
+    {
+        int inherited = 0;
+
+        synchronized (predictionsLock) {
+            DocumentPredictions partition;
+            synchronized (aPredecessor.predictionsLock) {
+                partition = aPredecessor.idxDocuments.get(aDocument.getName());
+                if (partition != null) {
+                    partition.markShared();
+                }
+            }
+
+            if (partition != null) {
+                var existing = idxDocuments.get(aDocument.getName());
+                if (existing == null || existing.isEmpty()) {
+                    idxDocuments.put(aDocument.getName(), partition);
+                }
+                else {
+                    var target = writableDocument(aDocument.getName());
+                    partition.getAll().forEach(target::put);
+                }
+
+                inherited = partition.size();
+                newSuggestionCount += partition.countNew();
+            }
+        }
+
+        markDocumentAsPredictionCompleted(aDocument);
+
+        return inherited;
+    }
+
+    /**
+     * Adopts all suggestions which the given predecessor generation has for the given recommender
+     * and document without copying them.
+     *
+     * @param aPredecessor
+     *            the previous generation of predictions
+     * @param aRecommender
+     *            the recommender
+     * @param aDocumentName
+     *            the document name
+     * @return the number of inherited suggestions
+     */
+    public int inheritRecommender(Predictions aPredecessor, Recommender aRecommender,
+            String aDocumentName)
+    {
+        synchronized (predictionsLock) {
+            RecommenderPredictions partition;
+            synchronized (aPredecessor.predictionsLock) {
+                var byDocument = aPredecessor.idxDocuments.get(aDocumentName);
+                if (byDocument == null) {
+                    return 0;
+                }
+
+                partition = byDocument.getRecommenderPartition(aRecommender.getId()).orElse(null);
+                if (partition == null || partition.isEmpty()) {
+                    return 0;
+                }
+
+                partition.markShared();
+            }
+
+            var inherited = writableDocument(aDocumentName).inheritRecommender(aRecommender.getId(),
+                    partition);
+            newSuggestionCount += partition.countNew();
+            return inherited;
+        }
+    }
+
+    /**
+     * Must be called while holding the {@link #predictionsLock}.
+     */
+    private DocumentPredictions writableDocument(String aDocumentName)
+    {
+        var partition = idxDocuments.get(aDocumentName);
+
+        if (partition == null) {
+            partition = new DocumentPredictions();
+            idxDocuments.put(aDocumentName, partition);
+        }
+        else if (partition.isShared()) {
+            partition = new DocumentPredictions(partition);
+            idxDocuments.put(aDocumentName, partition);
+        }
+
+        return partition;
+    }
+
     public Project getProject()
     {
         return project;
@@ -244,9 +335,7 @@ public class Predictions
 
     public boolean isEmpty()
     {
-        synchronized (predictionsLock) {
-            return idxDocuments.values().stream().allMatch(Map::isEmpty);
-        }
+        return idxDocuments.values().stream().allMatch(DocumentPredictions::isEmpty);
     }
 
     public boolean hasNewSuggestions()
@@ -261,34 +350,29 @@ public class Predictions
 
     public int size()
     {
-        synchronized (predictionsLock) {
-            return idxDocuments.values().stream().mapToInt(Map::size).sum();
-        }
+        return idxDocuments.values().stream().mapToInt(DocumentPredictions::size).sum();
     }
 
     public void removePredictions(Long recommenderId)
     {
         synchronized (predictionsLock) {
-            idxDocuments.values().forEach(docGroup -> docGroup.entrySet() //
-                    .removeIf((p) -> p.getKey().getRecommenderId() == recommenderId));
+            for (var documentName : idxDocuments.keySet()) {
+                if (idxDocuments.get(documentName).hasRecommender(recommenderId)) {
+                    writableDocument(documentName).removeByRecommender(recommenderId);
+                }
+            }
         }
     }
 
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     public List<SpanSuggestion> getAlternativeSuggestions(SpanSuggestion aSuggestion)
     {
-        synchronized (predictionsLock) {
-            var byDocument = idxDocuments.getOrDefault(aSuggestion.getDocumentName(), emptyMap());
-            return byDocument.entrySet().stream() //
-                    .filter(f -> f.getValue() instanceof SpanSuggestion) //
-                    .map(f -> (Entry<ExtendedId, SpanSuggestion>) (Entry) f) //
-                    .filter(f -> f.getKey().getLayerId() == aSuggestion.getLayerId()) //
-                    .filter(f -> f.getValue().getBegin() == aSuggestion.getBegin()) //
-                    .filter(f -> f.getValue().getEnd() == aSuggestion.getEnd()) //
-                    .filter(f -> f.getValue().getFeature().equals(aSuggestion.getFeature())) //
-                    .map(Map.Entry::getValue) //
-                    .collect(toList());
+        var byDocument = idxDocuments.get(aSuggestion.getDocumentName());
+        if (byDocument == null) {
+            return emptyList();
         }
+
+        return byDocument.getSpans(aSuggestion.getLayerId(), aSuggestion.getBegin(),
+                aSuggestion.getEnd(), aSuggestion.getFeature());
     }
 
     /**
@@ -308,44 +392,36 @@ public class Predictions
      *            the given annotation feature name
      * @return the annotation suggestions
      */
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     public List<SpanSuggestion> getPredictionsByTokenAndFeature(String aDocumentName,
             AnnotationLayer aLayer, int aBegin, int aEnd, String aFeature)
     {
-        synchronized (predictionsLock) {
-            var byDocument = idxDocuments.getOrDefault(aDocumentName, emptyMap());
-            return byDocument.entrySet().stream() //
-                    .filter(f -> f.getValue() instanceof SpanSuggestion) //
-                    .map(f -> (Entry<ExtendedId, SpanSuggestion>) (Entry) f) //
-                    .filter(f -> f.getKey().getLayerId() == aLayer.getId()) //
-                    .filter(f -> f.getValue().getBegin() == aBegin) //
-                    .filter(f -> f.getValue().getEnd() == aEnd) //
-                    .filter(f -> f.getValue().getFeature().equals(aFeature)) //
-                    .map(Map.Entry::getValue) //
-                    .collect(toList());
+        var byDocument = idxDocuments.get(aDocumentName);
+        if (byDocument == null) {
+            return emptyList();
         }
+
+        return byDocument.getSpans(aLayer.getId(), aBegin, aEnd, aFeature);
     }
 
     public List<AnnotationSuggestion> getPredictionsByRecommenderAndDocument(
             Recommender aRecommender, String aDocumentName)
     {
-        synchronized (predictionsLock) {
-            var byDocument = idxDocuments.getOrDefault(aDocumentName, emptyMap());
-            return byDocument.entrySet().stream() //
-                    .filter(f -> f.getKey().getRecommenderId() == (long) aRecommender.getId())
-                    .map(Map.Entry::getValue) //
-                    .collect(toList());
+        var byDocument = idxDocuments.get(aDocumentName);
+        if (byDocument == null) {
+            return emptyList();
         }
+
+        return byDocument.getByRecommender(aRecommender.getId());
     }
 
     public List<AnnotationSuggestion> getPredictionsByDocument(String aDocumentName)
     {
-        synchronized (predictionsLock) {
-            var byDocument = idxDocuments.getOrDefault(aDocumentName, emptyMap());
-            return byDocument.entrySet().stream() //
-                    .map(Map.Entry::getValue) //
-                    .collect(toList());
+        var byDocument = idxDocuments.get(aDocumentName);
+        if (byDocument == null) {
+            return emptyList();
         }
+
+        return byDocument.getAll();
     }
 
     public void markDocumentAsPredictionCompleted(SourceDocument aDocument)
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.model;
+
+import static java.util.Collections.emptyList;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * The suggestions produced by a single recommender for a single document. Next to the primary index
+ * by {@link ExtendedId}, the suggestions are indexed by layer and window begin offset (for
+ * rendering), by suggestion ID (for {@link de.tudarmstadt.ukp.inception.rendering.vmodel.VID}
+ * lookups) and, for spans, by layer, offsets and feature (for finding alternatives).
+ * <p>
+ * Once a partition has been {@link #markShared() shared} between prediction generations, it must
+ * no longer be modified. Writers must create a copy instead. This class does not do any locking on
+ * its own - it is guarded by the {@link DocumentPredictions} it belongs to.
+ */
+class RecommenderPredictions
+    implements Serializable
+{
+    private static final long serialVersionUID = -2180311227405934474L;
+
+    private volatile boolean shared;
+
+    private final Map<ExtendedId, AnnotationSuggestion> idxId;
+    private final Map<Long, NavigableMap<Integer, List<AnnotationSuggestion>>> idxLayerWindow;
+    private final Map<Integer, AnnotationSuggestion> idxSuggestionId;
+    private final Map<SpanKey, List<SpanSuggestion>> idxSpan;
+
+    public RecommenderPredictions()
+    {
+        idxId = new HashMap<>();
+        idxLayerWindow = new HashMap<>();
+        idxSuggestionId = new HashMap<>();
+        idxSpan = new HashMap<>();
+    }
+
+    /**
+     * Creates a writable copy of the given partition. The suggestions themselves are not copied.
+     */
+    public RecommenderPredictions(RecommenderPredictions aOther)
+    {
+        idxId = new HashMap<>(aOther.idxId);
+        idxLayerWindow = new HashMap<>();
+        for (var layerEntry : aOther.idxLayerWindow.entrySet()) {
+            var byWindow = new TreeMap<Integer, List<AnnotationSuggestion>>();
+            for (var windowEntry : layerEntry.getValue().entrySet()) {
+                byWindow.put(windowEntry.getKey(), new ArrayList<>(windowEntry.getValue()));
+            }
+            idxLayerWindow.put(layerEntry.getKey(), byWindow);
+        }
+        idxSuggestionId = new HashMap<>(aOther.idxSuggestionId);
+        idxSpan = new HashMap<>();
+        for (var spanEntry : aOther.idxSpan.entrySet()) {
+            idxSpan.put(spanEntry.getKey(), new ArrayList<>(spanEntry.getValue()));
+        }
+    }
+
+    public void markShared()
+    {
+        shared = true;
+    }
+
+    public boolean isShared()
+    {
+        return shared;
+    }
+
+    public void put(AnnotationSuggestion aSuggestion)
+    {
+        if (shared) {
+            throw new IllegalStateException("Shared prediction partitions must not be modified");
+        }
+
+        var old = idxId.put(new ExtendedId(aSuggestion), aSuggestion);
+        if (old != null) {
+            unindex(old);
+        }
+        index(aSuggestion);
+    }
+
+    /**
+     * Adds the suggestions of the given type on the given layer which are located within the given
+     * window to the result list, ordered by the begin of their window.
+     *
+     * @param aType
+     *            the suggestion type
+     * @param aLayerId
+     *            the layer ID
+     * @param aWindowBegin
+     *            the begin of the window or {@code -1} to ignore
+     * @param aWindowEnd
+     *            the end of the window or {@code -1} to ignore
+     * @param aResult
+     *            the list to which to add the matching suggestions
+     * @return whether any suggestions were added
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends AnnotationSuggestion> boolean collectWindow(Class<T> aType, long aLayerId,
+            int aWindowBegin, int aWindowEnd, List<T> aResult)
+    {
+        var byWindow = idxLayerWindow.get(aLayerId);
+        if (byWindow == null) {
+            return false;
+        }
+
+        var begin = aWindowBegin == -1 ? Integer.MIN_VALUE : aWindowBegin;
+        var candidates = aWindowEnd == -1 ? byWindow.tailMap(begin, true)
+                : byWindow.subMap(begin, true, aWindowEnd, true);
+
+        var added = false;
+        for (var suggestions : candidates.values()) {
+            for (var suggestion : suggestions) {
+                if (!aType.isInstance(suggestion)) {
+                    continue;
+                }
+
+                if (aWindowEnd != -1 && suggestion.getWindowEnd() > aWindowEnd) {
+                    continue;
+                }
+
+                aResult.add((T) suggestion);
+                added = true;
+            }
+        }
+        return added;
+    }
+
+    public Optional<AnnotationSuggestion> getById(int aSuggestionId)
+    {
+        return Optional.ofNullable(idxSuggestionId.get(aSuggestionId));
+    }
+
+    public List<SpanSuggestion> getSpans(long aLayerId, int aBegin, int aEnd, String aFeature)
+    {
+        return idxSpan.getOrDefault(new SpanKey(aLayerId, aBegin, aEnd, aFeature), emptyList());
+    }
+
+    public Collection<AnnotationSuggestion> getAll()
+    {
+        return idxId.values();
+    }
+
+    /**
+     * @return the number of suggestions that have been added in the generation they were produced
+     *         in.
+     */
+    public int countNew()
+    {
+        var count = 0;
+        for (var suggestion : idxId.values()) {
+            if (suggestion.getAge() == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int size()
+    {
+        return idxId.size();
+    }
+
+    public boolean isEmpty()
+    {
+        return idxId.isEmpty();
+    }
+
+    private void index(AnnotationSuggestion aSuggestion)
+    {
+        idxLayerWindow.computeIfAbsent(aSuggestion.getLayerId(), $ -> new TreeMap<>()) //
+                .computeIfAbsent(aSuggestion.getWindowBegin(), $ -> new ArrayList<>()) //
+                .add(aSuggestion);
+
+        idxSuggestionId.put(aSuggestion.getId(), aSuggestion);
+
+        if (aSuggestion instanceof SpanSuggestion) {
+            var span = (SpanSuggestion) aSuggestion;
+            idxSpan.computeIfAbsent(new SpanKey(span), $ -> new ArrayList<>()).add(span);
+        }
+    }
+
+    private void unindex(AnnotationSuggestion aSuggestion)
+    {
+        var byWindow = idxLayerWindow.get(aSuggestion.getLayerId());
+        if (byWindow != null) {
+            var atBegin = byWindow.get(aSuggestion.getWindowBegin());
+            if (atBegin != null) {
+                removeIdentical(atBegin, aSuggestion);
+                if (atBegin.isEmpty()) {
+                    byWindow.remove(aSuggestion.getWindowBegin());
+                }
+            }
+            if (byWindow.isEmpty()) {
+                idxLayerWindow.remove(aSuggestion.getLayerId());
+            }
+        }
+
+        if (idxSuggestionId.get(aSuggestion.getId()) == aSuggestion) {
+            idxSuggestionId.remove(aSuggestion.getId());
+        }
+
+        if (aSuggestion instanceof SpanSuggestion) {
+            var key = new SpanKey((SpanSuggestion) aSuggestion);
+            var atSpan = idxSpan.get(key);
+            if (atSpan != null) {
+                removeIdentical(atSpan, aSuggestion);
+                if (atSpan.isEmpty()) {
+                    idxSpan.remove(key);
+                }
+            }
+        }
+    }
+
+    private static void removeIdentical(List<? extends AnnotationSuggestion> aList,
+            AnnotationSuggestion aSuggestion)
+    {
+        // AnnotationSuggestion.equals() does not consider the position, so we need to remove by
+        // identity here
+        for (var i = aList.iterator(); i.hasNext();) {
+            if (i.next() == aSuggestion) {
+                i.remove();
+                return;
+            }
+        }
+    }
+
+    private static final class SpanKey
+        implements Serializable
+    {
+        private static final long serialVersionUID = -3006011437376307539L;
+
+        private final long layerId;
+        private final int begin;
+        private final int end;
+        private final String feature;
+
+        public SpanKey(SpanSuggestion aSuggestion)
+        {
+            this(aSuggestion.getLayerId(), aSuggestion.getBegin(), aSuggestion.getEnd(),
+                    aSuggestion.getFeature());
+        }
+
+        public SpanKey(long aLayerId, int aBegin, int aEnd, String aFeature)
+        {
+            layerId = aLayerId;
+            begin = aBegin;
+            end = aEnd;
+            feature = aFeature;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(layerId, begin, end, feature);
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof SpanKey)) {
+                return false;
+            }
+
+            var other = (SpanKey) obj;
+            return layerId == other.layerId && begin == other.begin && end == other.end
+                    && Objects.equals(feature, other.feature);
+        }
+    }
+}
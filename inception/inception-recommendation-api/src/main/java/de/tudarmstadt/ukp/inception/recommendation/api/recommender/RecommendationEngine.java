@@ -171,6 +171,17 @@ public abstract class RecommendationEngine
         return PredictionCapability.PREDICTION_USES_TEXT_ONLY;
     }
 
+    /**
+     * @return whether {@link #predict} may be called concurrently for different documents using the
+     *         same {@link RecommenderContext}. When documents are predicted in parallel, calls to
+     *         engines which are not thread-safe are serialized on the context. By default, engines
+     *         are assumed not to be thread-safe.
+     */
+    public boolean isPredictionThreadSafe()
+    {
+        return false;
+    }
+
     /**
      * @param aContext
      *            previous context
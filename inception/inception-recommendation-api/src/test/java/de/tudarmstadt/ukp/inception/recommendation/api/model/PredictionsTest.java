@@ -39,6 +39,7 @@ import org.slf4j.LoggerFactory;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
@@ -138,6 +139,85 @@ class PredictionsTest
                 .containsExactlyInAnyOrder(0, 1);
     }
 
+    @Test
+    void thatIndexedLookupsMatchScan() throws Exception
+    {
+        var generatedPredictions = generatePredictions(10, 2, 100);
+        sut.putPredictions(generatedPredictions);
+
+        for (var suggestion : generatedPredictions) {
+            var span = (SpanSuggestion) suggestion;
+
+            var expectedAlternatives = generatedPredictions.stream() //
+                    .map(s -> (SpanSuggestion) s) //
+                    .filter(s -> s.getDocumentName().equals(span.getDocumentName())) //
+                    .filter(s -> s.getLayerId() == span.getLayerId()) //
+                    .filter(s -> s.getBegin() == span.getBegin()) //
+                    .filter(s -> s.getEnd() == span.getEnd()) //
+                    .filter(s -> s.getFeature().equals(span.getFeature())) //
+                    .collect(toList());
+            assertThat(sut.getAlternativeSuggestions(span)) //
+                    .containsExactlyInAnyOrderElementsOf(expectedAlternatives);
+
+            var doc = SourceDocument.builder().withName(span.getDocumentName()).build();
+            assertThat(sut.getPredictionByVID(doc, span.getVID())).containsSame(span);
+        }
+
+        sut.removePredictions(0l);
+
+        assertThat(sut.size()).isEqualTo(1000);
+        assertThat(sut.getPredictionsByDocument("doc0")) //
+                .extracting(AnnotationSuggestion::getRecommenderId) //
+                .containsOnly(1l);
+        assertThat(sut.getGroupedPredictions(SpanSuggestion.class, "doc0", layer, -1, -1)) //
+                .allSatisfy(group -> assertThat(group) //
+                        .extracting(AnnotationSuggestion::getRecommenderId) //
+                        .containsOnly(1l));
+    }
+
+    @Test
+    void thatInheritedPartitionsAreCopiedOnWrite() throws Exception
+    {
+        var doc0 = SourceDocument.builder().withName("doc0").build();
+        var doc1 = SourceDocument.builder().withName("doc1").build();
+        var rec1 = Recommender.builder().withId(1l).build();
+
+        sut.putPredictions(generatePredictions(2, 2, 100));
+
+        var successor = new Predictions(sut);
+        assertThat(successor.inheritDocument(sut, doc0)).isEqualTo(200);
+        assertThat(successor.inheritRecommender(sut, rec1, doc1.getName())).isEqualTo(100);
+
+        assertThat(successor.size()).isEqualTo(300);
+        assertThat(successor.hasRunPredictionOnDocument(doc0)).isTrue();
+        assertThat(successor.hasRunPredictionOnDocument(doc1)).isFalse();
+        assertThat(successor.getPredictionsByDocument("doc0")) //
+                .containsExactlyInAnyOrderElementsOf(sut.getPredictionsByDocument("doc0"));
+
+        // Modifying the successor must not affect the predecessor
+        successor.removePredictions(0l);
+        successor.putPredictions(asList(SpanSuggestion.builder() //
+                .withId(AnnotationSuggestion.NEW_ID) //
+                .withRecommenderId(1l) //
+                .withLayerId(layer.getId()) //
+                .withDocumentName("doc1") //
+                .withPosition(new Offset(0, 1)) //
+                .build()));
+
+        assertThat(successor.size()).isEqualTo(201);
+        assertThat(sut.size()).isEqualTo(400);
+        assertThat(sut.getPredictionsByDocument("doc0")) //
+                .extracting(AnnotationSuggestion::getRecommenderId) //
+                .contains(0l, 1l);
+        assertThat(sut.getPredictionsByDocument("doc1")).hasSize(200);
+
+        // Modifying the predecessor must not affect the successor
+        sut.removePredictions(1l);
+
+        assertThat(sut.size()).isEqualTo(200);
+        assertThat(successor.size()).isEqualTo(201);
+    }
+
     private List<AnnotationSuggestion> generatePredictions(int aDocs, int aRecommenders,
             int aSuggestions)
         throws Exception
@@ -22,4 +22,11 @@ public interface RecommenderProperties
     boolean isActionButtonsEnabled();
 
     boolean isEnabled();
+
+    /**
+     * @return number of worker threads used to predict multiple documents in parallel, e.g. when
+     *         predicting all documents in active learning mode. A value of {@code 1} (default)
+     *         predicts the documents sequentially.
+     */
+    int getPredictionParallelism();
 }
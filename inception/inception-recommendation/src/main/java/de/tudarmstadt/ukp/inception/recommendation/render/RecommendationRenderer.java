@@ -39,6 +39,10 @@ import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
  * This class is exposed as a Spring Component via
  * {@link RecommenderServiceAutoConfiguration#recommendationRenderer}.
  * </p>
+ * <p>
+ * This step is not a {@code CachingRenderStep} because its output also depends on the learning
+ * history of the session owner, which changes without the predictions changing.
+ * </p>
  */
 @Order(RenderStep.RENDER_SYNTHETIC_STRUCTURE)
 public class RecommendationRenderer
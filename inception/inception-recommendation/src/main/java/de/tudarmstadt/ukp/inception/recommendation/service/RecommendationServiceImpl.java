@@ -74,7 +74,12 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityManager;
@@ -88,6 +93,7 @@ import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
@@ -105,6 +111,7 @@ import org.apache.wicket.request.cycle.PageRequestHandlerTracker;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
@@ -175,6 +182,8 @@ import de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recommendatio
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderPropertiesImpl;
 import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommendationAcceptedEvent;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommendationRejectedEvent;
@@ -204,7 +213,7 @@ import de.tudarmstadt.ukp.inception.schema.api.adapter.TypeAdapter;
  * </p>
  */
 public class RecommendationServiceImpl
-    implements RecommendationService, LearningRecordService
+    implements RecommendationService, LearningRecordService, DisposableBean
 {
     private static final String AUTO_ACCEPT_ON_FIRST_ACCESS = "on-first-access";
 
@@ -225,6 +234,9 @@ public class RecommendationServiceImpl
     private final ProjectService projectService;
     private final ApplicationEventPublisher applicationEventPublisher;
     private final PreferencesService preferencesService;
+    private final RecommenderProperties properties;
+
+    private final ExecutorService predictionExecutor;
 
     private final ConcurrentMap<RecommendationStateKey, AtomicInteger> trainingTaskCounter;
     private final ConcurrentMap<RecommendationStateKey, RecommendationState> states;
@@ -253,7 +265,8 @@ public class RecommendationServiceImpl
             RecommenderFactoryRegistry aRecommenderFactoryRegistry,
             SchedulingService aSchedulingService, AnnotationSchemaService aAnnoService,
             DocumentService aDocumentService, ProjectService aProjectService,
-            EntityManager aEntityManager, ApplicationEventPublisher aApplicationEventPublisher)
+            EntityManager aEntityManager, ApplicationEventPublisher aApplicationEventPublisher,
+            RecommenderProperties aProperties)
     {
         preferencesService = aPreferencesService;
         sessionRegistry = aSessionRegistry;
@@ -265,9 +278,22 @@ public class RecommendationServiceImpl
         projectService = aProjectService;
         entityManager = aEntityManager;
         applicationEventPublisher = aApplicationEventPublisher;
+        properties = aProperties;
 
         trainingTaskCounter = new ConcurrentHashMap<>();
         states = new ConcurrentHashMap<>();
+
+        if (properties.getPredictionParallelism() > 1) {
+            predictionExecutor = Executors.newFixedThreadPool(properties.getPredictionParallelism(),
+                    new BasicThreadFactory.Builder() //
+                            .daemon(true) //
+                            .namingPattern("inception-prediction-%d") //
+                            .priority(Thread.MIN_PRIORITY) //
+                            .build());
+        }
+        else {
+            predictionExecutor = null;
+        }
     }
 
     public RecommendationServiceImpl(PreferencesService aPreferencesService,
@@ -278,7 +304,15 @@ public class RecommendationServiceImpl
     {
         this(aPreferencesService, aSessionRegistry, aUserRepository, aRecommenderFactoryRegistry,
                 aSchedulingService, aAnnoService, aDocumentService, (ProjectService) null,
-                aEntityManager, null);
+                aEntityManager, null, new RecommenderPropertiesImpl());
+    }
+
+    @Override
+    public void destroy()
+    {
+        if (predictionExecutor != null) {
+            predictionExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -1744,6 +1778,12 @@ public class RecommendationServiceImpl
         var predictions = activePredictions != null ? new Predictions(activePredictions)
                 : new Predictions(aSessionOwner, aDataOwner, aProject);
 
+        if (predictionExecutor != null && aDocuments.size() > 1) {
+            computePredictionsInParallel(activePredictions, predictions, aDocuments, aDataOwner,
+                    aMonitor);
+            return predictions;
+        }
+
         try (var casHolder = new PredictionCasHolder()) {
             // Generate new predictions or inherit at the recommender level
             aMonitor.setMaxProgress(aDocuments.size());
@@ -1764,6 +1804,62 @@ public class RecommendationServiceImpl
         }
     }
 
+    /**
+     * Distributes the given documents over the prediction worker pool. Each worker uses its own CAS
+     * storage session and its own prediction CAS. Since the documents are independent of each
+     * other, the results are the same as in the sequential mode - only the order in which
+     * suggestions IDs are assigned and log messages are recorded may differ. Engines which are not
+     * {@link RecommendationEngine#isPredictionThreadSafe() thread-safe} are only ever called by one
+     * worker at a time.
+     */
+    private void computePredictionsInParallel(Predictions aActivePredictions,
+            Predictions aPredictions, List<SourceDocument> aDocuments, String aDataOwner,
+            TaskMonitor aMonitor)
+    {
+        aMonitor.setMaxProgress(aDocuments.size());
+
+        var queue = new ConcurrentLinkedQueue<>(aDocuments);
+        var workers = min(properties.getPredictionParallelism(), aDocuments.size());
+        var futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < workers; i++) {
+            futures.add(predictionExecutor.submit(() -> {
+                try (var session = CasStorageSession.openNested();
+                        var casHolder = new PredictionCasHolder()) {
+                    SourceDocument document;
+                    while ((document = queue.poll()) != null) {
+                        aMonitor.addMessage(LogMessage.info(this, "%s", document.getName()));
+                        aMonitor.incrementProgress();
+                        computePredictions(aActivePredictions, aPredictions, casHolder.cas,
+                                document, aDataOwner, -1, -1);
+                    }
+                }
+                catch (ResourceInitializationException e) {
+                    aPredictions.log(LogMessage.error(this,
+                            "Cannot create prediction CAS, stopping predictions!"));
+                    LOG.error("Cannot create prediction CAS, stopping predictions!");
+                    queue.clear();
+                }
+            }));
+        }
+
+        for (var future : futures) {
+            try {
+                future.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                queue.clear();
+                futures.forEach(f -> f.cancel(true));
+                return;
+            }
+            catch (ExecutionException e) {
+                aPredictions.log(LogMessage.error(this, "Prediction worker failed: %s",
+                        e.getCause().getMessage()));
+                LOG.error("Prediction worker failed", e.getCause());
+            }
+        }
+    }
+
     @Override
     public Predictions computePredictions(User aSessionOwner, Project aProject,
             SourceDocument aCurrentDocument, String aDataOwner, List<SourceDocument> aInherit,
@@ -1804,16 +1900,17 @@ public class RecommendationServiceImpl
 
     /**
      * Extracts existing predictions from the last prediction run so we do not have to recalculate
-     * them. This is useful when the engine is not trainable.
+     * them. This is useful when the engine is not trainable. The suggestions are not copied but
+     * shared between the two prediction generations.
      */
     private void inheritSuggestionsAtRecommenderLevel(Predictions predictions, CAS aOriginalCas,
             Recommender aRecommender, Predictions activePredictions, SourceDocument document,
             User aUser)
     {
-        var suggestions = activePredictions.getPredictionsByRecommenderAndDocument(aRecommender,
+        var inherited = predictions.inheritRecommender(activePredictions, aRecommender,
                 document.getName());
 
-        if (suggestions.isEmpty()) {
+        if (inherited == 0) {
             LOG.debug("{} for user {} on document {} in project {} there " //
                     + "are no inheritable predictions", aRecommender, aUser, document,
                     aRecommender.getProject());
@@ -1824,17 +1921,16 @@ public class RecommendationServiceImpl
 
         LOG.debug("{} for user {} on document {} in project {} inherited {} " //
                 + "predictions", aRecommender, aUser, document, aRecommender.getProject(),
-                suggestions.size());
+                inherited);
 
         predictions.log(LogMessage.info(aRecommender.getName(),
-                "Inherited [%d] predictions from previous run", suggestions.size()));
-
-        predictions.putPredictions(suggestions);
+                "Inherited [%d] predictions from previous run", inherited));
     }
 
     /**
      * Extracts existing predictions from the last prediction run so we do not have to recalculate
-     * them. This is useful when the engine is not trainable.
+     * them. This is useful when the engine is not trainable. The suggestions are not copied but
+     * shared between the two prediction generations.
      */
     private void inheritSuggestionsAtDocumentLevel(Project aProject, SourceDocument aDocument,
             User aUser, Predictions aOldPredictions, Predictions aNewPredictions)
@@ -1843,13 +1939,10 @@ public class RecommendationServiceImpl
             return;
         }
 
-        var suggestions = aOldPredictions.getPredictionsByDocument(aDocument.getName());
+        var inherited = aNewPredictions.inheritDocument(aOldPredictions, aDocument);
 
         LOG.debug("[{}]({}) for user [{}] on document {} in project {} inherited {} predictions",
-                "ALL", "--", aUser.getUsername(), aDocument, aProject, suggestions.size());
-
-        aNewPredictions.putPredictions(suggestions);
-        aNewPredictions.markDocumentAsPredictionCompleted(aDocument);
+                "ALL", "--", aUser.getUsername(), aDocument, aProject, inherited);
     }
 
     /**
@@ -1868,8 +1961,18 @@ public class RecommendationServiceImpl
                 "Generating predictions for layer [%s]...", recommender.getLayer().getUiName()));
         LOG.trace("{}[{}]: Generating predictions for layer [{}]", sessionOwner,
                 recommender.getName(), recommender.getLayer().getUiName());
-        var predictedRange = aEngine.predict(aCtx, aPredictionCas, aPredictionBegin,
-                aPredictionEnd);
+        Range predictedRange;
+        if (aEngine.isPredictionThreadSafe()) {
+            predictedRange = aEngine.predict(aCtx, aPredictionCas, aPredictionBegin,
+                    aPredictionEnd);
+        }
+        else {
+            // The prediction workers share the context and thus the model of the recommender
+            synchronized (aCtx) {
+                predictedRange = aEngine.predict(aCtx, aPredictionCas, aPredictionBegin,
+                        aPredictionEnd);
+            }
+        }
 
         // Extract the suggestions from the data which the recommender has written into the CAS
         var generatedSuggestions = extractSuggestions(aIncomingPredictions.getGeneration(),
@@ -38,6 +38,7 @@ import de.tudarmstadt.ukp.inception.documents.api.DocumentService;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderTaskNotificationEvent;
+import de.tudarmstadt.ukp.inception.scheduling.TaskPriority;
 
 public class PredictionTask
     extends RecommendationTask_ImplBase
@@ -89,6 +90,13 @@ public class PredictionTask
         return "Generating annotation suggestions...";
     }
 
+    @Override
+    public TaskPriority getPriority()
+    {
+        // The user is waiting for the suggestions to appear in the editor
+        return TaskPriority.INTERACTIVE;
+    }
+
     @Override
     public void execute()
     {
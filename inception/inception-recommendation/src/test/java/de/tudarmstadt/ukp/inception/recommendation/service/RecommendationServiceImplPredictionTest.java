@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.SHARED_READ_ONLY_ACCESS;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasUpgradeMode.AUTO_CAS_UPGRADE;
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.CHARACTERS;
+import static de.tudarmstadt.ukp.clarin.webanno.support.WebAnnoConst.SPAN_TYPE;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.EvaluatedRecommender.makeActiveWithoutEvaluation;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.apache.uima.cas.CAS.TYPE_NAME_ANNOTATION;
+import static org.apache.uima.cas.CAS.TYPE_NAME_STRING;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityManager;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession;
+import de.tudarmstadt.ukp.inception.documents.api.DocumentService;
+import de.tudarmstadt.ukp.inception.recommendation.api.RecommenderFactoryRegistry;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.EvaluationResult;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderPropertiesImpl;
+import de.tudarmstadt.ukp.inception.rendering.model.Range;
+import de.tudarmstadt.ukp.inception.scheduling.TaskMonitor;
+import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.inception.schema.service.AnnotationSchemaServiceImpl;
+
+@ExtendWith(MockitoExtension.class)
+class RecommendationServiceImplPredictionTest
+{
+    private static final String TOOL = "word-tagger";
+    private static final String LAYER_NAME = "custom.Span";
+    private static final String FEATURE_NAME = "value";
+    private static final Pattern WORD = Pattern.compile("\\w+");
+
+    private @Mock AnnotationSchemaService schemaService;
+    private @Mock DocumentService documentService;
+    private @Mock RecommenderFactoryRegistry recommenderFactoryRegistry;
+    private @Mock RecommendationEngineFactory<?> engineFactory;
+    private @Mock EntityManager entityManager;
+
+    private User sessionOwner;
+    private Project project;
+    private AnnotationLayer layer;
+    private AnnotationFeature feature;
+    private Recommender recommender;
+    private List<SourceDocument> documents;
+
+    private AtomicInteger activePredictions;
+    private AtomicInteger maxActivePredictions;
+
+    @BeforeEach
+    void setup() throws Exception
+    {
+        sessionOwner = User.builder().withUsername("user").build();
+        project = Project.builder().withId(1l).withName("project").build();
+        layer = AnnotationLayer.builder() //
+                .withId(1l) //
+                .withName(LAYER_NAME) //
+                .withType(SPAN_TYPE) //
+                .withAnchoringMode(CHARACTERS) //
+                .withProject(project) //
+                .build();
+        feature = AnnotationFeature.builder() //
+                .withId(1l) //
+                .withName(FEATURE_NAME) //
+                .withType(TYPE_NAME_STRING) //
+                .withLayer(layer) //
+                .withProject(project) //
+                .build();
+        recommender = Recommender.builder() //
+                .withId(1l) //
+                .withName("recommender") //
+                .withTool(TOOL) //
+                .withProject(project) //
+                .withLayer(layer) //
+                .withFeature(feature) //
+                .withEnabled(true) //
+                .withMaxRecommendations(100) //
+                .build();
+
+        documents = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            var doc = SourceDocument.builder() //
+                    .withId((long) i) //
+                    .withName("doc" + i) //
+                    .withProject(project) //
+                    .build();
+            documents.add(doc);
+
+            var text = "Document " + i + " mentions word" + i + " and some more words here";
+            lenient().when(documentService.readAnnotationCas(doc, sessionOwner.getUsername(),
+                    AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS)).thenAnswer(call -> {
+                        var cas = WebAnnoCasUtil.createCas();
+                        cas.setDocumentText(text);
+                        return cas;
+                    });
+        }
+
+        activePredictions = new AtomicInteger();
+        maxActivePredictions = new AtomicInteger();
+
+        when(recommenderFactoryRegistry.getFactory(TOOL)).thenAnswer(call -> engineFactory);
+        when(engineFactory.accepts(layer, feature)).thenReturn(true);
+        when(entityManager.find(Recommender.class, recommender.getId())).thenReturn(recommender);
+        when(schemaService.getLayer(anyLong())).thenReturn(layer);
+        when(schemaService.listAnnotationFeature(project)).thenReturn(asList(feature));
+        when(schemaService.getFullProjectTypeSystem(project))
+                .thenAnswer(call -> createProjectTypeSystem());
+        doAnswer(call -> {
+            AnnotationSchemaServiceImpl._upgradeCas(call.getArgument(0), call.getArgument(1),
+                    call.getArgument(2));
+            return null;
+        }).when(schemaService).upgradeCas(any(CAS.class), any(CAS.class),
+                any(TypeSystemDescription.class));
+    }
+
+    @Test
+    void thatParallelPredictionProducesSameSuggestionsAsSequentialPrediction() throws Exception
+    {
+        when(engineFactory.build(eq(recommender))).thenAnswer(call -> new WordTagger(true));
+
+        var sequential = predict(1);
+        var parallel = predict(4);
+
+        for (var document : documents) {
+            assertThat(parallel.hasRunPredictionOnDocument(document)).isTrue();
+            assertThat(describe(parallel, document)) //
+                    .as("Suggestions for %s", document.getName()) //
+                    .isNotEmpty() //
+                    .containsExactlyInAnyOrderElementsOf(describe(sequential, document));
+        }
+        assertThat(parallel.size()).isEqualTo(sequential.size());
+    }
+
+    @Test
+    void thatEngineWhichIsNotThreadSafeIsNotCalledConcurrently() throws Exception
+    {
+        when(engineFactory.build(eq(recommender))).thenAnswer(call -> new WordTagger(false));
+
+        var sequential = predict(1);
+        var parallel = predict(4);
+
+        assertThat(maxActivePredictions.get()).isEqualTo(1);
+        for (var document : documents) {
+            assertThat(describe(parallel, document)) //
+                    .containsExactlyInAnyOrderElementsOf(describe(sequential, document));
+        }
+    }
+
+    private Predictions predict(int aParallelism)
+    {
+        var properties = new RecommenderPropertiesImpl();
+        properties.setPredictionParallelism(aParallelism);
+
+        var sut = new RecommendationServiceImpl(null, null, null, recommenderFactoryRegistry, null,
+                schemaService, documentService, null, entityManager, null, properties);
+        sut.setEvaluatedRecommenders(sessionOwner, layer,
+                asList(makeActiveWithoutEvaluation(recommender)));
+        sut.putContext(sessionOwner, recommender, RecommenderContext.emptyContext());
+
+        try (var session = CasStorageSession.open()) {
+            return sut.computePredictions(sessionOwner, project, documents,
+                    sessionOwner.getUsername(), new TaskMonitor(null, "user", "test"));
+        }
+    }
+
+    private List<String> describe(Predictions aPredictions, SourceDocument aDocument)
+    {
+        return aPredictions.getPredictionsByDocument(aDocument.getName()).stream() //
+                .map(s -> s.getPosition() + " " + s.getLabel() + " " + s.getScore()) //
+                .collect(toList());
+    }
+
+    private TypeSystemDescription createProjectTypeSystem() throws Exception
+    {
+        var tsd = UIMAFramework.getResourceSpecifierFactory().createTypeSystemDescription();
+        var type = tsd.addType(LAYER_NAME, null, TYPE_NAME_ANNOTATION);
+        type.addFeature(FEATURE_NAME, null, TYPE_NAME_STRING);
+        return mergeTypeSystems(asList(tsd, createTypeSystemDescription()));
+    }
+
+    /**
+     * Tags every word with its lower-cased form and tracks how many predictions run concurrently.
+     */
+    private class WordTagger
+        extends RecommendationEngine
+    {
+        private final boolean threadSafe;
+
+        public WordTagger(boolean aThreadSafe)
+        {
+            super(recommender);
+            threadSafe = aThreadSafe;
+        }
+
+        @Override
+        public Range predict(RecommenderContext aContext, CAS aCas, int aBegin, int aEnd)
+        {
+            maxActivePredictions.accumulateAndGet(activePredictions.incrementAndGet(), Math::max);
+            try {
+                var text = aCas.getDocumentText();
+                var matcher = WORD.matcher(text);
+                while (matcher.find()) {
+                    var ann = aCas.createAnnotation(getPredictedType(aCas), matcher.start(),
+                            matcher.end());
+                    ann.setStringValue(getPredictedFeature(aCas), matcher.group().toLowerCase());
+                    ann.setDoubleValue(getScoreFeature(aCas), 1.0 / matcher.group().length());
+                    ann.setBooleanValue(getIsPredictionFeature(aCas), true);
+                    aCas.addFsToIndexes(ann);
+                }
+
+                // Give other workers the chance to enter the engine at the same time
+                Thread.sleep(2);
+
+                return new Range(0, text.length());
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Range(0, 0);
+            }
+            finally {
+                activePredictions.decrementAndGet();
+            }
+        }
+
+        @Override
+        public boolean isPredictionThreadSafe()
+        {
+            return threadSafe;
+        }
+
+        @Override
+        public boolean isReadyForPrediction(RecommenderContext aContext)
+        {
+            return true;
+        }
+
+        @Override
+        public void train(RecommenderContext aContext, List<CAS> aCasses)
+        {
+            // Nothing to do
+        }
+
+        @Override
+        public EvaluationResult evaluate(List<CAS> aCasses, DataSplitter aDataSplitter)
+        {
+            return new EvaluationResult();
+        }
+
+        @Override
+        public int estimateSampleCount(List<CAS> aCasses)
+        {
+            return -1;
+        }
+    }
+}
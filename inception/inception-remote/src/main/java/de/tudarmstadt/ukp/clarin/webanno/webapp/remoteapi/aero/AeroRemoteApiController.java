@@ -463,6 +463,9 @@ public class AeroRemoteApiController
                 aFormat.orElse(WebAnnoTsv3FormatSupport.ID), true);
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(project, null,
                 "report-export");
+        // The export is written to a temporary file first. Once the response has started, a
+        // failure could no longer be reported to the client, which would be left with a
+        // truncated archive.
         File exportedFile = exportService.exportProject(request, monitor);
 
         // Turn the file into a resource and auto-delete the file when the resource closes the
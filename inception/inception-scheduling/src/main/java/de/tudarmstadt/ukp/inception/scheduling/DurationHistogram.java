@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of durations with exponentially growing buckets. Bucket {@code i} counts
+ * durations of up to {@code 2^i - 1} milliseconds, the last bucket counts everything longer.
+ */
+public class DurationHistogram
+{
+    private static final int BUCKETS = 24;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+
+    public void record(long aMillis)
+    {
+        var millis = Math.max(0, aMillis);
+        var bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(millis));
+        buckets.incrementAndGet(bucket);
+        count.increment();
+        totalMillis.add(millis);
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    public long getTotalMillis()
+    {
+        return totalMillis.sum();
+    }
+
+    public long getMeanMillis()
+    {
+        var n = getCount();
+        return n == 0 ? 0 : getTotalMillis() / n;
+    }
+
+    public int getBucketCount()
+    {
+        return BUCKETS;
+    }
+
+    /**
+     * @param aBucket
+     *            the bucket index
+     * @return the largest duration (inclusive) counted in the given bucket.
+     */
+    public long getBucketUpperBound(int aBucket)
+    {
+        if (aBucket >= BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+
+        return (1L << aBucket) - 1;
+    }
+
+    public long[] getBucketCounts()
+    {
+        var result = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            result[i] = buckets.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * @param aPercentile
+     *            the percentile as a value between 0 and 1.
+     * @return the upper bound of the bucket containing the given percentile.
+     */
+    public long getPercentileUpperBound(double aPercentile)
+    {
+        var counts = getBucketCounts();
+        var total = 0l;
+        for (var c : counts) {
+            total += c;
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        var threshold = Math.ceil(total * aPercentile);
+        var cumulative = 0l;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulative += counts[i];
+            if (cumulative >= threshold) {
+                return getBucketUpperBound(i);
+            }
+        }
+
+        return getBucketUpperBound(BUCKETS - 1);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "[count=" + getCount() + ", mean=" + getMeanMillis() + "ms, p50<="
+                + getPercentileUpperBound(0.5) + "ms, p95<=" + getPercentileUpperBound(0.95)
+                + "ms]";
+    }
+}
@@ -21,6 +21,7 @@ import static java.lang.Thread.MIN_PRIORITY;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.function.BiConsumer;
@@ -37,8 +38,15 @@ public class InspectableThreadPoolExecutor
             BiConsumer<Thread, Runnable> aBeforeExecuteCallback,
             BiConsumer<Runnable, Throwable> aAfterExecuteCallback)
     {
-        super(aNumberOfThreads, aNumberOfThreads, 0L, MILLISECONDS,
-                new ArrayBlockingQueue<>(queueSize, true), buildThreadFactory());
+        this(aNumberOfThreads, new ArrayBlockingQueue<>(queueSize, true), aBeforeExecuteCallback,
+                aAfterExecuteCallback);
+    }
+
+    public InspectableThreadPoolExecutor(int aNumberOfThreads, BlockingQueue<Runnable> aQueue,
+            BiConsumer<Thread, Runnable> aBeforeExecuteCallback,
+            BiConsumer<Runnable, Throwable> aAfterExecuteCallback)
+    {
+        super(aNumberOfThreads, aNumberOfThreads, 0L, MILLISECONDS, aQueue, buildThreadFactory());
 
         beforeExecuteCallback = aBeforeExecuteCallback;
         afterExecuteCallback = aAfterExecuteCallback;
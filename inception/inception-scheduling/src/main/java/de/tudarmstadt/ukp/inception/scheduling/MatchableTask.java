@@ -17,6 +17,8 @@
  */
 package de.tudarmstadt.ukp.inception.scheduling;
 
+import java.util.Collection;
+
 public interface MatchableTask
 {
     /**
@@ -28,4 +30,19 @@ public interface MatchableTask
      * @return whether the given task matches this one
      */
     MatchResult matches(Task aTask);
+
+    /**
+     * @return the keys under which the scheduler indexes this task while it is queued, scheduled or
+     *         running. Keys must implement {@link Object#equals} and {@link Object#hashCode}.
+     */
+    Collection<Object> getMatchKeys();
+
+    /**
+     * Used to look up the tasks which need to be passed to {@link #matches} without scanning all
+     * tasks known to the scheduler. Every task for which {@link #matches} may return something else
+     * than {@link MatchResult#NO_MATCH} must be indexed under at least one of these keys.
+     * 
+     * @return the keys of the tasks which this task may match.
+     */
+    Collection<Object> getMatchCandidateKeys();
 }
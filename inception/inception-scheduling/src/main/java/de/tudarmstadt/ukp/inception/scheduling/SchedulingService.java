@@ -84,4 +84,19 @@ public interface SchedulingService
      *            the task to be executed.
      */
     void executeSync(Task aTask);
+
+    /**
+     * @param aPriority
+     *            the priority class.
+     * @return statistics on the time tasks of the given priority class waited between being
+     *         enqueued and being started.
+     */
+    DurationHistogram getQueueWaitTimes(TaskPriority aPriority);
+
+    /**
+     * @param aPriority
+     *            the priority class.
+     * @return statistics on the time tasks of the given priority class took to run.
+     */
+    DurationHistogram getRunTimes(TaskPriority aPriority);
 }
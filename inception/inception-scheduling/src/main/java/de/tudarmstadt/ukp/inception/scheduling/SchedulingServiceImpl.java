@@ -19,6 +19,8 @@ package de.tudarmstadt.ukp.inception.scheduling;
 
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.NO_MATCH;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.UNQUEUE_EXISTING_AND_QUEUE_THIS;
+import static java.util.Collections.emptyList;
+import static java.util.Comparator.comparing;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 import java.io.IOException;
@@ -26,13 +28,20 @@ import java.lang.invoke.MethodHandles;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 
 import org.apache.commons.lang3.Validate;
@@ -61,49 +70,104 @@ import de.tudarmstadt.ukp.inception.scheduling.config.SchedulingServiceAutoConfi
  * This class is exposed as a Spring Component via
  * {@link SchedulingServiceAutoConfiguration#schedulingService}.
  * </p>
+ * <p>
+ * Tasks which have been handed to the executor are ordered by their {@link TaskPriority priority
+ * class}. Within a priority class, a fair-queuing tag is used to start the tasks of different
+ * users/projects in a round-robin fashion, so that a user scheduling many tasks cannot starve
+ * other users. Enqueued, scheduled and running tasks are additionally indexed by their
+ * {@link Task#equals equality} and by their {@link MatchableTask#getMatchKeys() match keys}. This
+ * allows checking for equivalent tasks without scanning all tasks known to the scheduler.
+ * </p>
  */
 public class SchedulingServiceImpl
     implements SchedulingService, DisposableBean
 {
     private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+    private static final Comparator<Runnable> TASK_ORDER = comparing(
+            (Runnable r) -> ((Task) r).getPriority())
+                    .thenComparingLong(r -> ((Task) r).getSchedulingTag()) //
+                    .thenComparingInt(r -> ((Task) r).getId());
+
     private final ApplicationContext applicationContext;
     private final ThreadPoolExecutor executor;
     private final ScheduledExecutorService watchdog;
     private final SessionRegistry sessionRegistry;
+    private final int queueSize;
 
     private final List<Task> runningTasks;
     private final List<Task> enqueuedTasks;
     private final Set<Project> deletionPending;
 
+    // Indexes by match key - guarded by synchronizing on this service
+    private final Map<Object, List<Task>> enqueuedTasksByKey = new HashMap<>();
+    private final Map<Object, List<Task>> activeTasksByKey = new HashMap<>();
+
+    // Fair queuing - the tag of the last task per user/project and the tag of the last started task
+    // (virtual time)
+    private final Map<String, Long> lastTagByFlow = new HashMap<>();
+    private final AtomicLong virtualTime = new AtomicLong();
+
+    private final Map<TaskPriority, DurationHistogram> queueWaitTimes;
+    private final Map<TaskPriority, DurationHistogram> runTimes;
+
     @Autowired
     public SchedulingServiceImpl(ApplicationContext aApplicationContext,
             SchedulingProperties aConfig, SessionRegistry aSessionRegistry)
     {
         sessionRegistry = aSessionRegistry;
         applicationContext = aApplicationContext;
+        queueSize = aConfig.getQueueSize();
         executor = new InspectableThreadPoolExecutor(aConfig.getNumberOfThreads(),
-                aConfig.getQueueSize(), this::beforeExecute, this::afterExecute);
+                new PriorityBlockingQueue<>(queueSize, TASK_ORDER), this::beforeExecute,
+                this::afterExecute);
         runningTasks = Collections.synchronizedList(new ArrayList<>());
         enqueuedTasks = Collections.synchronizedList(new ArrayList<>());
         deletionPending = Collections.synchronizedSet(new LinkedHashSet<>());
+        queueWaitTimes = new EnumMap<>(TaskPriority.class);
+        runTimes = new EnumMap<>(TaskPriority.class);
+        for (var priority : TaskPriority.values()) {
+            queueWaitTimes.put(priority, new DurationHistogram());
+            runTimes.put(priority, new DurationHistogram());
+        }
         watchdog = Executors.newScheduledThreadPool(1);
         watchdog.scheduleAtFixedRate(this::scheduleEligibleTasks, 5, 5, SECONDS);
     }
 
     private void beforeExecute(Thread aThread, Runnable aRunnable)
     {
-        runningTasks.add((Task) aRunnable);
+        var task = (Task) aRunnable;
+        virtualTime.accumulateAndGet(task.getSchedulingTag(), Math::max);
+        task.setStartTime(System.currentTimeMillis());
+        queueWaitTimes.get(task.getPriority()).record(task.getStartTime() - task.getEnqueueTime());
+        runningTasks.add(task);
         LOG.debug("Starting task [{}]", aRunnable);
     }
 
     private void afterExecute(Runnable aRunnable, Throwable aThrowable)
     {
-        runningTasks.remove(aRunnable);
+        var task = (Task) aRunnable;
+        runningTasks.remove(task);
+        runTimes.get(task.getPriority()).record(System.currentTimeMillis() - task.getStartTime());
+        synchronized (this) {
+            removeFromIndex(activeTasksByKey, task);
+        }
         LOG.debug("Completed task [{}]", aRunnable);
         scheduleEligibleTasks();
     }
 
+    @Override
+    public DurationHistogram getQueueWaitTimes(TaskPriority aPriority)
+    {
+        return queueWaitTimes.get(aPriority);
+    }
+
+    @Override
+    public DurationHistogram getRunTimes(TaskPriority aPriority)
+    {
+        return runTimes.get(aPriority);
+    }
+
     /**
      * @return tasks which have not been handed to the executor yet.
      */
@@ -123,6 +187,7 @@ public class SchedulingServiceImpl
     {
         List<Task> result = new ArrayList<>();
         executor.getQueue().forEach(r -> result.add((Task) r));
+        result.sort(TASK_ORDER);
         return result;
     }
 
@@ -179,8 +244,10 @@ public class SchedulingServiceImpl
             return;
         }
 
+        aTask.setEnqueueTime(System.currentTimeMillis());
+
         List<Task> tasksToUnqueue = new ArrayList<>();
-        for (Task enqueuedTask : enqueuedTasks) {
+        for (Task enqueuedTask : lookupCandidates(enqueuedTasksByKey, aTask)) {
             switch (matchTask(aTask, enqueuedTask)) {
             case DISCARD_OR_QUEUE_THIS:
                 // Check if the incoming task should be discarded
@@ -201,24 +268,25 @@ public class SchedulingServiceImpl
         for (Task taskToUnqueue : tasksToUnqueue) {
             LOG.debug("Matching task already queued - unqueuing exsting: [{}] in favor of "
                     + "incoming [{}]", taskToUnqueue, aTask);
-            enqueuedTasks.remove(taskToUnqueue);
+            unqueue(taskToUnqueue);
         }
 
-        if (containsMatchingTask(getScheduledTasks(), aTask)) {
-            LOG.debug("Matching task already scheduled - adding to queue: [{}]", aTask);
-            enqueuedTasks.add(aTask);
+        if (containsMatchingTask(lookupCandidates(activeTasksByKey, aTask), aTask)) {
+            LOG.debug("Matching task already scheduled or running - adding to queue: [{}]",
+                    aTask);
+            queue(aTask);
             return;
         }
 
-        if (containsMatchingTask(getRunningTasks(), aTask)) {
-            LOG.debug("Matching task already running - adding to queue: [{}]", aTask);
-            enqueuedTasks.add(aTask);
+        if (!aTask.isReadyToStart()) {
+            LOG.debug("Task not yet ready to start - adding to queue: [{}]", aTask);
+            queue(aTask);
             return;
         }
 
-        if (!aTask.isReadyToStart()) {
-            LOG.debug("Task not yet ready to start - adding to queue: [{}]", aTask);
-            enqueuedTasks.add(aTask);
+        if (!hasSchedulingCapacity()) {
+            LOG.debug("Scheduler queue is full - adding to queue: [{}]", aTask);
+            queue(aTask);
             return;
         }
 
@@ -227,6 +295,98 @@ public class SchedulingServiceImpl
         logState();
     }
 
+    private void queue(Task aTask)
+    {
+        enqueuedTasks.add(aTask);
+        addToIndex(enqueuedTasksByKey, aTask);
+    }
+
+    private void unqueue(Task aTask)
+    {
+        removeIdentical(enqueuedTasks, aTask);
+        removeFromIndex(enqueuedTasksByKey, aTask);
+    }
+
+    private boolean hasSchedulingCapacity()
+    {
+        return executor.getQueue().size() < queueSize;
+    }
+
+    /**
+     * @return the keys under which the given task is indexed. Every task is indexed under itself,
+     *         i.e. under its {@link Task#equals equality}, and {@link MatchableTask matchable tasks}
+     *         additionally under their match keys.
+     */
+    private static List<Object> indexKeys(Task aTask)
+    {
+        var keys = new ArrayList<Object>();
+        keys.add(aTask);
+        if (aTask instanceof MatchableTask) {
+            keys.addAll(((MatchableTask) aTask).getMatchKeys());
+        }
+        return keys;
+    }
+
+    /**
+     * @return the tasks from the given index which the given task may match.
+     */
+    private static Collection<Task> lookupCandidates(Map<Object, List<Task>> aIndex, Task aTask)
+    {
+        var candidateKeys = aTask instanceof MatchableTask
+                ? ((MatchableTask) aTask).getMatchCandidateKeys()
+                : List.<Object> of(aTask);
+
+        // A task may be indexed under several of the candidate keys, but it must be matched only
+        // once
+        var candidates = Collections.newSetFromMap(new IdentityHashMap<Task, Boolean>());
+        var result = new ArrayList<Task>();
+        for (var key : candidateKeys) {
+            for (var task : aIndex.getOrDefault(key, emptyList())) {
+                if (candidates.add(task)) {
+                    result.add(task);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addToIndex(Map<Object, List<Task>> aIndex, Task aTask)
+    {
+        for (var key : indexKeys(aTask)) {
+            aIndex.computeIfAbsent(key, $ -> new ArrayList<>()).add(aTask);
+        }
+    }
+
+    private static void removeFromIndex(Map<Object, List<Task>> aIndex, Task aTask)
+    {
+        for (var key : indexKeys(aTask)) {
+            var tasks = aIndex.get(key);
+            if (tasks == null) {
+                continue;
+            }
+
+            removeIdentical(tasks, aTask);
+
+            if (tasks.isEmpty()) {
+                aIndex.remove(key);
+            }
+        }
+    }
+
+    private static void removeIdentical(List<Task> aTasks, Task aTask)
+    {
+        // Task.equals() considers tasks of the same user and project to be equal, but here we want
+        // to remove exactly the given task
+        synchronized (aTasks) {
+            for (var i = aTasks.iterator(); i.hasNext();) {
+                if (i.next() == aTask) {
+                    i.remove();
+                    return;
+                }
+            }
+        }
+    }
+
     private MatchResult matchTask(Task aTask, Task aEnqueueTask)
     {
         if (aTask instanceof MatchableTask) {
@@ -255,6 +415,22 @@ public class SchedulingServiceImpl
     {
         LOG.debug("Scheduling task [{}]", aTask);
 
+        // Fair queuing: a task is tagged to run after the previous task of the same user (or of
+        // the same project for system tasks), but not before the task which was last started.
+        // This interleaves the tasks of different users/projects within a priority class.
+        var flow = aTask.getUser().map(u -> "user:" + u.getUsername())
+                .orElse("project:" + aTask.getProject().getSlug());
+        var tag = Math.max(virtualTime.get(), lastTagByFlow.getOrDefault(flow, 0l)) + 1;
+        aTask.setSchedulingTag(tag);
+        lastTagByFlow.put(flow, tag);
+        if (lastTagByFlow.size() > 1000) {
+            // Flows whose last tag is in the past do not influence the ordering anymore
+            var now = virtualTime.get();
+            lastTagByFlow.values().removeIf(t -> t <= now);
+        }
+
+        addToIndex(activeTasksByKey, aTask);
+
         try {
             // This auto-wires the task fields manually
             AutowireCapableBeanFactory factory = applicationContext.getAutowireCapableBeanFactory();
@@ -270,13 +446,17 @@ public class SchedulingServiceImpl
 
     private synchronized void scheduleEligibleTasks()
     {
-        Iterator<Task> i = enqueuedTasks.iterator();
-
-        while (i.hasNext()) {
-            Task t = i.next();
-            if (!getScheduledAndRunningTasks().contains(t) && t.isReadyToStart()) {
-                i.remove();
-                schedule(t);
+        synchronized (enqueuedTasks) {
+            Iterator<Task> i = enqueuedTasks.iterator();
+
+            while (i.hasNext() && hasSchedulingCapacity()) {
+                Task t = i.next();
+                // The task itself is one of its index keys, so this finds any equal active task
+                if (!activeTasksByKey.containsKey(t) && t.isReadyToStart()) {
+                    i.remove();
+                    removeFromIndex(enqueuedTasksByKey, t);
+                    schedule(t);
+                }
             }
         }
 
@@ -317,6 +497,7 @@ public class SchedulingServiceImpl
     {
         enqueuedTasks.removeIf(task -> {
             if (aPredicate.test(task)) {
+                removeFromIndex(enqueuedTasksByKey, task);
                 task.destroy();
                 return true;
             }
@@ -326,6 +507,7 @@ public class SchedulingServiceImpl
         executor.getQueue().removeIf(runnable -> {
             var task = (Task) runnable;
             if (aPredicate.test(task)) {
+                removeFromIndex(activeTasksByKey, task);
                 task.destroy();
                 return true;
             }
@@ -377,7 +559,11 @@ public class SchedulingServiceImpl
     public void destroy()
     {
         LOG.info("Shutting down scheduling service!");
-        enqueuedTasks.clear();
+        synchronized (this) {
+            enqueuedTasks.clear();
+            enqueuedTasksByKey.clear();
+            activeTasksByKey.clear();
+        }
         executor.getQueue().clear();
         watchdog.shutdownNow();
         executor.shutdownNow();
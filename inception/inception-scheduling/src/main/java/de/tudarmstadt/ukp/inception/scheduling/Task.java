@@ -51,6 +51,11 @@ public abstract class Task
 
     private TaskMonitor monitor;
 
+    // Book-keeping of the scheduler
+    private volatile long schedulingTag;
+    private volatile long enqueueTime;
+    private volatile long startTime;
+
     public Task(Project aProject, String aTrigger)
     {
         this(null, aProject, aTrigger);
@@ -119,6 +124,45 @@ public abstract class Task
         return true;
     }
 
+    /**
+     * @return the priority class of the task. Tasks of a higher priority class are started before
+     *         tasks of a lower priority class. The priority of a task must not change.
+     */
+    public TaskPriority getPriority()
+    {
+        return TaskPriority.BACKGROUND;
+    }
+
+    long getSchedulingTag()
+    {
+        return schedulingTag;
+    }
+
+    void setSchedulingTag(long aSchedulingTag)
+    {
+        schedulingTag = aSchedulingTag;
+    }
+
+    long getEnqueueTime()
+    {
+        return enqueueTime;
+    }
+
+    void setEnqueueTime(long aEnqueueTime)
+    {
+        enqueueTime = aEnqueueTime;
+    }
+
+    long getStartTime()
+    {
+        return startTime;
+    }
+
+    void setStartTime(long aStartTime)
+    {
+        startTime = aStartTime;
+    }
+
     void destroy()
     {
         if (monitor != null) {
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling;
+
+/**
+ * Priority class of a task. When multiple tasks are waiting for a free worker thread, tasks of a
+ * higher priority class are always started before tasks of a lower priority class. Within a
+ * priority class, tasks of different users and projects are started in a round-robin fashion.
+ */
+public enum TaskPriority
+{
+    /**
+     * Tasks on which a user is actively waiting, e.g. generating suggestions for the document that
+     * is currently open in the editor.
+     */
+    INTERACTIVE,
+
+    /**
+     * Regular background tasks, e.g. training recommenders or indexing individual documents.
+     */
+    BACKGROUND,
+
+    /**
+     * Long-running tasks affecting an entire project, e.g. rebuilding the search index.
+     */
+    BULK;
+}
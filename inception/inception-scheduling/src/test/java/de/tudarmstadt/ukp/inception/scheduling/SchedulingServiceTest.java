@@ -24,6 +24,7 @@ import static org.awaitility.Awaitility.await;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.junit.jupiter.api.AfterEach;
@@ -112,6 +113,85 @@ public class SchedulingServiceTest
                 .doesNotContain(tasksToRemove);
     }
 
+    @Test
+    public void thatInteractiveTasksAreStartedFirst()
+    {
+        sut.destroy();
+        var properties = new SchedulingProperties();
+        properties.setNumberOfThreads(1);
+        sut = new SchedulingServiceImpl(mockContext, properties, null);
+
+        var blocker = buildDummyTask("user0", "project0", TaskPriority.BACKGROUND);
+        sut.enqueue(blocker);
+        await().atMost(15, SECONDS).until(() -> sut.getRunningTasks().contains(blocker));
+
+        var bulk = buildDummyTask("user1", "project1", TaskPriority.BULK);
+        var background = buildDummyTask("user2", "project2", TaskPriority.BACKGROUND);
+        var interactive = buildDummyTask("user3", "project3", TaskPriority.INTERACTIVE);
+        sut.enqueue(bulk);
+        sut.enqueue(background);
+        sut.enqueue(interactive);
+
+        assertThat(sut.getScheduledTasks()) //
+                .containsExactly(interactive, background, bulk);
+    }
+
+    @Test
+    public void thatUsersTakeTurnsWithinPriority()
+    {
+        sut.destroy();
+        var properties = new SchedulingProperties();
+        properties.setNumberOfThreads(1);
+        sut = new SchedulingServiceImpl(mockContext, properties, null);
+
+        var blocker = buildDummyTask("user0", "project0", TaskPriority.BACKGROUND);
+        sut.enqueue(blocker);
+        await().atMost(15, SECONDS).until(() -> sut.getRunningTasks().contains(blocker));
+
+        var user1a = buildDummyTask("user1", "project1", TaskPriority.BACKGROUND);
+        var user1b = buildDummyTask("user1", "project2", TaskPriority.BACKGROUND);
+        var user1c = buildDummyTask("user1", "project3", TaskPriority.BACKGROUND);
+        var user2a = buildDummyTask("user2", "project1", TaskPriority.BACKGROUND);
+        var user2b = buildDummyTask("user2", "project2", TaskPriority.BACKGROUND);
+        for (var task : asList(user1a, user1b, user1c, user2a, user2b)) {
+            sut.enqueue(task);
+        }
+
+        // user2 should not have to wait until all tasks of user1 are done
+        assertThat(sut.getScheduledTasks()) //
+                .containsExactly(user1a, user2a, user1b, user2b, user1c);
+        assertThat(sut.getQueueWaitTimes(TaskPriority.BACKGROUND).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void thatMatchingQueuedTaskIsSuperseded()
+    {
+        sut.destroy();
+        var properties = new SchedulingProperties();
+        properties.setNumberOfThreads(1);
+        sut = new SchedulingServiceImpl(mockContext, properties, null);
+
+        var blocker = buildDummyTask("user0", "project0", TaskPriority.BACKGROUND);
+        sut.enqueue(blocker);
+        await().atMost(15, SECONDS).until(() -> sut.getRunningTasks().contains(blocker));
+
+        var doc1a = buildMatchableTask("user1", "project1", "doc1");
+        var doc1b = buildMatchableTask("user1", "project1", "doc1");
+        var doc1c = buildMatchableTask("user1", "project1", "doc1");
+        var doc2 = buildMatchableTask("user1", "project1", "doc2");
+        for (var task : asList(doc1a, doc1b, doc1c, doc2)) {
+            sut.enqueue(task);
+        }
+
+        // doc1a is scheduled, so doc1b has to wait in the queue until it is superseded by doc1c
+        assertThat(sut.getScheduledTasks()) //
+                .extracting(t -> ((DummyMatchableTask) t).key) //
+                .containsExactly("doc1", "doc2");
+        assertThat(sut.getScheduledTasks().get(0)).isSameAs(doc1a);
+        assertThat(sut.getEnqueuedTasks()).hasSize(1);
+        assertThat(sut.getEnqueuedTasks().get(0)).isSameAs(doc1c);
+    }
+
     private User buildUser(String aUsername)
     {
         return new User(aUsername);
@@ -127,7 +207,19 @@ public class SchedulingServiceTest
 
     private Task buildDummyTask(String aUsername, String aProjectName)
     {
-        var task = new DummyTask(buildUser(aUsername), buildProject(aProjectName));
+        return buildDummyTask(aUsername, aProjectName, TaskPriority.BACKGROUND);
+    }
+
+    private Task buildDummyTask(String aUsername, String aProjectName, TaskPriority aPriority)
+    {
+        var task = new DummyTask(buildUser(aUsername), buildProject(aProjectName), aPriority);
+        task.afterPropertiesSet();
+        return task;
+    }
+
+    private Task buildMatchableTask(String aUsername, String aProjectName, String aKey)
+    {
+        var task = new DummyMatchableTask(buildUser(aUsername), buildProject(aProjectName), aKey);
         task.afterPropertiesSet();
         return task;
     }
@@ -139,9 +231,18 @@ public class SchedulingServiceTest
     private static class DummyTask
         extends Task
     {
-        DummyTask(User aUser, Project aProject)
+        private final TaskPriority priority;
+
+        DummyTask(User aUser, Project aProject, TaskPriority aPriority)
         {
             super(aUser, aProject, "JUnit");
+            priority = aPriority;
+        }
+
+        @Override
+        public TaskPriority getPriority()
+        {
+            return priority;
         }
 
         @Override
@@ -157,4 +258,43 @@ public class SchedulingServiceTest
             }
         }
     }
+
+    /**
+     * A dummy task which matches other tasks with the same key.
+     */
+    private static class DummyMatchableTask
+        extends DummyTask
+        implements MatchableTask
+    {
+        private final String key;
+
+        DummyMatchableTask(User aUser, Project aProject, String aKey)
+        {
+            super(aUser, aProject, TaskPriority.BACKGROUND);
+            key = aKey;
+        }
+
+        @Override
+        public MatchResult matches(Task aTask)
+        {
+            if (aTask instanceof DummyMatchableTask
+                    && key.equals(((DummyMatchableTask) aTask).key)) {
+                return MatchResult.UNQUEUE_EXISTING_AND_QUEUE_THIS;
+            }
+
+            return MatchResult.NO_MATCH;
+        }
+
+        @Override
+        public Collection<Object> getMatchKeys()
+        {
+            return asList(key);
+        }
+
+        @Override
+        public Collection<Object> getMatchCandidateKeys()
+        {
+            return asList(key);
+        }
+    }
 }
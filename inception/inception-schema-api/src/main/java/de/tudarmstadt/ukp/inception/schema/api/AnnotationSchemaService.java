@@ -24,6 +24,7 @@ import java.util.Optional;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
@@ -556,6 +557,25 @@ public interface AnnotationSchemaService
     void upgradeCas(CAS aSourceCas, CAS aTargetCas, TypeSystemDescription aTargetTypeSystem)
         throws UIMAException, IOException;
 
+    /**
+     * Same as {@link #upgradeCas(CAS, CAS, TypeSystemDescription)} but using an already compiled
+     * target type system. This avoids compiling the type system over and over again when many
+     * CASes are upgraded to the same type system, e.g. during a bulk export.
+     * 
+     * @param aSourceCas
+     *            the CAS to read the contents from
+     * @param aTargetCas
+     *            the CAS to write the upgraded contents to
+     * @param aTargetTypeSystem
+     *            the target type system to which the CAS should be upgraded
+     * @throws UIMAException
+     *             if there was an UIMA-level problem
+     * @throws IOException
+     *             if there was an I/O-level problem
+     */
+    void upgradeCas(CAS aSourceCas, CAS aTargetCas, TypeSystem aTargetTypeSystem)
+        throws UIMAException, IOException;
+
     /**
      * @param aCas
      *            the CAS to upgrade
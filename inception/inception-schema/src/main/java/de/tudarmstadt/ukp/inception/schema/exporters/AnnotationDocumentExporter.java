@@ -33,29 +33,22 @@ import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toMap;
-import static org.apache.commons.io.FileUtils.copyFileToDirectory;
-import static org.apache.commons.io.FileUtils.forceDelete;
-import static org.apache.commons.io.FileUtils.forceMkdir;
 import static org.apache.commons.io.FilenameUtils.getExtension;
 
-import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
 import org.apache.commons.lang3.time.DurationFormatUtils;
@@ -68,6 +61,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
+import de.tudarmstadt.ukp.clarin.webanno.api.export.BulkExportExecutor;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.DocumentImportExportService;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.FullProjectExportRequest;
 import de.tudarmstadt.ukp.clarin.webanno.api.export.ProjectExportException;
@@ -83,6 +77,7 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.clarin.webanno.support.ZipUtils;
 import de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage;
 import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession;
 import de.tudarmstadt.ukp.inception.documents.api.DocumentService;
@@ -99,9 +94,9 @@ import de.tudarmstadt.ukp.inception.schema.config.AnnotationSchemaServiceAutoCon
 public class AnnotationDocumentExporter
     implements ProjectExporter
 {
-    private static final String ANNOTATION_ORIGINAL_FOLDER = "/annotation/";
+    private static final String ANNOTATION_ORIGINAL_FOLDER = "annotation/";
     private static final String ANNOTATION_AS_SERIALISED_CAS = "annotation_ser";
-    private static final String ANNOTATION_CAS_FOLDER = "/" + ANNOTATION_AS_SERIALISED_CAS + "/";
+    private static final String ANNOTATION_CAS_FOLDER = ANNOTATION_AS_SERIALISED_CAS + "/";
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -135,7 +130,7 @@ public class AnnotationDocumentExporter
 
     @Override
     public void exportData(FullProjectExportRequest aRequest, ProjectExportTaskMonitor aMonitor,
-            ExportedProject aExProject, File aStage)
+            ExportedProject aExProject, ZipOutputStream aStage)
         throws IOException, InterruptedException, ProjectExportException
     {
         exportAnnotationDocuments(aMonitor, aRequest.getProject(), aExProject);
@@ -166,14 +161,16 @@ public class AnnotationDocumentExporter
     }
 
     private void exportAnnotationDocumentContents(FullProjectExportRequest aRequest,
-            ProjectExportTaskMonitor aMonitor, ExportedProject aExProject, File aStage)
+            ProjectExportTaskMonitor aMonitor, ExportedProject aExProject,
+            ZipOutputStream aStage)
         throws IOException, InterruptedException, ProjectExportException
     {
         Project project = aRequest.getProject();
 
         // The export process may store project-related information in this context to ensure it
-        // is looked up only once during the bulk operation and the DB is not hit too often.
-        Map<Pair<Project, String>, Object> bulkOperationContext = new HashMap<>();
+        // is looked up only once during the bulk operation and the DB is not hit too often. The
+        // context is shared with the conversion workers, so it needs to be thread-safe.
+        Map<Pair<Project, String>, Object> bulkOperationContext = new ConcurrentHashMap<>();
 
         List<SourceDocument> documents = documentService.listSourceDocuments(project);
         int i = 1;
@@ -190,140 +187,147 @@ public class AnnotationDocumentExporter
         LoadingCache<String, User> usersCache = Caffeine.newBuilder()
                 .build(key -> userRepository.get(key));
 
-        for (SourceDocument srcDoc : documents) {
-            // check if the export has been cancelled
-            if (Thread.interrupted()) {
-                throw new InterruptedException();
-            }
-
-            try (CasStorageSession session = CasStorageSession.openNested()) {
-                FormatSupport format = null;
-                if (aRequest.getFormat() != null) {
-                    // Determine which format to use for export
-                    String formatId = FORMAT_AUTO.equals(aRequest.getFormat()) ? srcDoc.getFormat()
-                            : aRequest.getFormat();
-
-                    format = importExportService.getWritableFormatById(formatId).orElseGet(() -> {
-                        FormatSupport fallbackFormat = importExportService.getFallbackFormat();
-                        aMonitor.addMessage(LogMessage.warn(this, "Annotation: [%s] No writer "
-                                + "found for format [%s] - falling back to exporting as [%s] "
-                                + "instead.", srcDoc.getName(), formatId,
-                                fallbackFormat.getName()));
-                        return fallbackFormat;
-                    });
+        // The serialized CASes are written directly while the conversions to the export format
+        // may run in parallel. The converted files are written in the order of submission.
+        try (var conversions = new BulkExportExecutor(importExportService.getExportParallelism())) {
+            for (SourceDocument srcDoc : documents) {
+                // check if the export has been cancelled
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
                 }
 
-                //
-                // Export initial CASes
-                //
+                try (CasStorageSession session = CasStorageSession.openNested()) {
+                    FormatSupport format = null;
+                    if (aRequest.getFormat() != null) {
+                        format = getFormat(aRequest, aMonitor, srcDoc);
+                    }
 
-                // The initial CAS must always be exported to ensure that the converted source
-                // document will *always* have the state it had at the time of the initial import.
-                // We we do have a reliably initial CAS and instead lazily convert whenever an
-                // annotator starts annotating, then we could end up with two annotators having two
-                // different versions of their CAS e.g. if there was a code change in the reader
-                // component that affects its output.
+                    exportInitialCas(aStage, conversions, bulkOperationContext, srcDoc, format);
 
-                // If the initial CAS does not exist yet, it must be created before export.
-                if (!documentService.existsInitialCas(srcDoc)) {
-                    documentService.createOrReadInitialCas(srcDoc);
+                    exportUserCases(aStage, conversions, bulkOperationContext, srcDoc, format,
+                            srcToAnnIdx.computeIfAbsent(srcDoc, key -> emptyList()), usersCache);
                 }
 
-                File targetDir = new File(aStage, ANNOTATION_CAS_FOLDER + srcDoc.getName());
-                forceMkdir(targetDir);
+                int progress = initProgress + (int) ceil(((double) i) / documents.size() * 80.0);
+                conversions.afterPending(() -> aMonitor.setProgress(progress));
+                i++;
+            }
 
-                try (OutputStream os = new FileOutputStream(
-                        new File(targetDir, INITIAL_CAS_PSEUDO_USER + ".ser"))) {
-                    documentService.exportCas(srcDoc, INITIAL_CAS_PSEUDO_USER, os);
-                }
+            conversions.awaitAll();
+        }
+    }
 
-                if (format != null) {
-                    exportAdditionalFormat(aStage, bulkOperationContext, srcDoc, format,
-                            INITIAL_CAS_PSEUDO_USER);
-                }
+    private FormatSupport getFormat(FullProjectExportRequest aRequest,
+            ProjectExportTaskMonitor aMonitor, SourceDocument srcDoc)
+    {
+        // Determine which format to use for export
+        String formatId = FORMAT_AUTO.equals(aRequest.getFormat()) ? srcDoc.getFormat()
+                : aRequest.getFormat();
+
+        return importExportService.getWritableFormatById(formatId).orElseGet(() -> {
+            FormatSupport fallbackFormat = importExportService.getFallbackFormat();
+            aMonitor.addMessage(LogMessage.warn(this, "Annotation: [%s] No writer "
+                    + "found for format [%s] - falling back to exporting as [%s] "
+                    + "instead.", srcDoc.getName(), formatId, fallbackFormat.getName()));
+            return fallbackFormat;
+        });
+    }
 
-                log.info("Exported annotation document content for user [{}] for source document "
-                        + "{} in project {}", INITIAL_CAS_PSEUDO_USER, srcDoc, project);
+    private void exportInitialCas(ZipOutputStream aStage, BulkExportExecutor aConversions,
+            Map<Pair<Project, String>, Object> aBulkOperationContext, SourceDocument srcDoc,
+            FormatSupport format)
+        throws IOException, InterruptedException, ProjectExportException
+    {
+        // The initial CAS must always be exported to ensure that the converted source
+        // document will *always* have the state it had at the time of the initial import.
+        // We we do have a reliably initial CAS and instead lazily convert whenever an
+        // annotator starts annotating, then we could end up with two annotators having two
+        // different versions of their CAS e.g. if there was a code change in the reader
+        // component that affects its output.
+
+        // If the initial CAS does not exist yet, it must be created before export.
+        if (!documentService.existsInitialCas(srcDoc)) {
+            documentService.createOrReadInitialCas(srcDoc);
+        }
 
-                //
-                // Export per-user annotation document
-                //
+        exportSerializedCas(aStage, srcDoc, INITIAL_CAS_PSEUDO_USER);
 
-                // Export annotations from regular users
-                for (AnnotationDocument annDoc : srcToAnnIdx.computeIfAbsent(srcDoc,
-                        key -> emptyList())) {
+        if (format != null) {
+            exportAdditionalFormat(aStage, aConversions, aBulkOperationContext, srcDoc, format,
+                    INITIAL_CAS_PSEUDO_USER);
+        }
 
-                    // copy annotation document only for existing users and the state of the
-                    // annotation document is not NEW/IGNORE
-                    if (usersCache.get(annDoc.getUser()) != null
-                            && documentService.existsCas(annDoc)
-                            && !annDoc.getState().equals(AnnotationDocumentState.NEW)
-                            && !annDoc.getState().equals(AnnotationDocumentState.IGNORE)) {
+        log.info("Exported annotation document content for user [{}] for source document "
+                + "{} in project {}", INITIAL_CAS_PSEUDO_USER, srcDoc, srcDoc.getProject());
+    }
 
-                        exportSerializedCas(aStage, srcDoc, annDoc);
+    private void exportUserCases(ZipOutputStream aStage, BulkExportExecutor aConversions,
+            Map<Pair<Project, String>, Object> aBulkOperationContext, SourceDocument srcDoc,
+            FormatSupport format, List<AnnotationDocument> aAnnotationDocuments,
+            LoadingCache<String, User> aUsersCache)
+        throws IOException, InterruptedException, ProjectExportException
+    {
+        // Export annotations from regular users
+        for (AnnotationDocument annDoc : aAnnotationDocuments) {
+            // copy annotation document only for existing users and the state of the
+            // annotation document is not NEW/IGNORE
+            if (aUsersCache.get(annDoc.getUser()) != null
+                    && documentService.existsCas(annDoc)
+                    && !annDoc.getState().equals(AnnotationDocumentState.NEW)
+                    && !annDoc.getState().equals(AnnotationDocumentState.IGNORE)) {
 
-                        if (format != null) {
-                            exportAdditionalFormat(aStage, bulkOperationContext, srcDoc, format,
-                                    annDoc.getUser());
-                        }
+                exportSerializedCas(aStage, srcDoc, annDoc.getUser());
 
-                        log.info("Exported annotation document content for user [{}] for " //
-                                + "source document {} in project {}", annDoc.getUser(), srcDoc,
-                                project);
-                    }
+                if (format != null) {
+                    exportAdditionalFormat(aStage, aConversions, aBulkOperationContext, srcDoc,
+                            format, annDoc.getUser());
                 }
-            }
 
-            aMonitor.setProgress(initProgress + (int) ceil(((double) i) / documents.size() * 80.0));
-            i++;
+                log.info("Exported annotation document content for user [{}] for " //
+                        + "source document {} in project {}", annDoc.getUser(), srcDoc,
+                        srcDoc.getProject());
+            }
         }
     }
 
-    private void exportSerializedCas(File aStage, SourceDocument srcDoc, AnnotationDocument annDoc)
-        throws IOException, FileNotFoundException
+    private void exportSerializedCas(ZipOutputStream aStage, SourceDocument srcDoc,
+            String aUsername)
+        throws IOException
     {
-        File annSerDir = new File(
-                aStage.getAbsolutePath() + ANNOTATION_CAS_FOLDER + srcDoc.getName());
-        forceMkdir(annSerDir);
-        try (OutputStream os = new FileOutputStream(
-                new File(annSerDir, annDoc.getUser() + ".ser"))) {
-            documentService.exportCas(srcDoc, annDoc.getUser(), os);
-        }
+        // Serialized CASes are usually compressed already
+        ZipUtils.writeUncompressedEntry(aStage,
+                ANNOTATION_CAS_FOLDER + srcDoc.getName() + "/" + aUsername + ".ser",
+                os -> documentService.exportCas(srcDoc, aUsername, os));
     }
 
-    private void exportAdditionalFormat(File aStage,
+    private void exportAdditionalFormat(ZipOutputStream aStage, BulkExportExecutor aConversions,
             Map<Pair<Project, String>, Object> bulkOperationContext, SourceDocument srcDoc,
             FormatSupport format, String aUsername)
-        throws IOException, ProjectExportException
+        throws IOException, InterruptedException, ProjectExportException
     {
-        File annDocDir = new File(
-                aStage.getAbsolutePath() + ANNOTATION_ORIGINAL_FOLDER + srcDoc.getName());
-        File annFile = null;
-        try {
-            annFile = importExportService.exportAnnotationDocument(srcDoc, aUsername, format,
-                    aUsername, ANNOTATION, false, bulkOperationContext);
-            forceMkdir(annDocDir);
+        String annDocDir = ANNOTATION_ORIGINAL_FOLDER + srcDoc.getName() + "/";
 
+        aConversions.submit(() -> {
+            try {
+                return importExportService.exportAnnotationDocument(srcDoc, aUsername, format,
+                        aUsername, ANNOTATION, false, bulkOperationContext);
+            }
+            catch (UIMAException e) {
+                throw new ProjectExportException("Error exporting annotations of "
+                        + srcDoc.getName() + " for user [" + aUsername + "] as ["
+                        + format.getName() + "]: " + ExceptionUtils.getRootCauseMessage(e), e);
+            }
+        }, annFile -> {
             if (userRepository.isValidUsername(aUsername)
                     || RESERVED_USERNAMES.contains(aUsername)) {
                 // Safe-guard for legacy instances where user name validity has not been checked.
                 var filename = aUsername + "." + getExtension(annFile.getName());
-                FileUtils.copyFile(annFile, new File(annDocDir, filename));
+                ZipUtils.writeEntry(aStage, annDocDir + filename, annFile);
             }
             else {
-                copyFileToDirectory(annFile, annDocDir);
+                ZipUtils.writeEntry(aStage, annDocDir + annFile.getName(), annFile);
             }
-        }
-        catch (UIMAException e) {
-            throw new ProjectExportException("Error exporting annotations of " + srcDoc.getName()
-                    + " for user [" + aUsername + "] as [" + format.getName() + "]: "
-                    + ExceptionUtils.getRootCauseMessage(e), e);
-        }
-        finally {
-            if (annFile != null) {
-                forceDelete(annFile);
-            }
-        }
+        });
     }
 
     @Override
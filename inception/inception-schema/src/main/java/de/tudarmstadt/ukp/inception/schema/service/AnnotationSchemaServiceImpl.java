@@ -28,8 +28,10 @@ import static de.tudarmstadt.ukp.inception.project.api.ProjectService.withProjec
 import static de.tudarmstadt.ukp.inception.schema.api.AttachedAnnotation.Direction.INCOMING;
 import static de.tudarmstadt.ukp.inception.schema.api.AttachedAnnotation.Direction.LOOP;
 import static de.tudarmstadt.ukp.inception.schema.api.AttachedAnnotation.Direction.OUTGOING;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
+import static java.util.Comparator.comparing;
 import static java.util.Objects.isNull;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.stream.Collectors.toList;
@@ -43,6 +45,8 @@ import static org.hibernate.annotations.QueryHints.CACHEABLE;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -76,7 +80,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 
@@ -109,6 +117,7 @@ import de.tudarmstadt.ukp.inception.schema.api.AttachedAnnotation;
 import de.tudarmstadt.ukp.inception.schema.api.adapter.IllegalFeatureValueException;
 import de.tudarmstadt.ukp.inception.schema.api.adapter.TypeAdapter;
 import de.tudarmstadt.ukp.inception.schema.api.config.AnnotationSchemaProperties;
+import de.tudarmstadt.ukp.inception.schema.api.event.LayerConfigurationChangedEvent;
 import de.tudarmstadt.ukp.inception.schema.api.event.TagCreatedEvent;
 import de.tudarmstadt.ukp.inception.schema.api.event.TagDeletedEvent;
 import de.tudarmstadt.ukp.inception.schema.api.event.TagUpdatedEvent;
@@ -134,6 +143,8 @@ public class AnnotationSchemaServiceImpl
     private final LayerSupportRegistry layerSupportRegistry;
     private final FeatureSupportRegistry featureSupportRegistry;
     private final LoadingCache<TagSet, List<ImmutableTag>> immutableTagsCache;
+    private final Cache<Long, ProjectTypeSystem> projectTypeSystemCache;
+    private final Cache<TypeSystem, String> compatibleTypeSystems;
     private final TypeSystemDescription builtInTypes;
     private final AnnotationSchemaProperties annotationEditorProperties;
 
@@ -159,6 +170,21 @@ public class AnnotationSchemaServiceImpl
                 .maximumSize(10 * 1024) //
                 .build(this::loadImmutableTags);
 
+        // The layer configuration is cached per project so that checking whether a CAS is
+        // up-to-date does not require querying and merging the project type system. The cache is
+        // invalidated when the layer configuration changes, the expiry is only a safety net.
+        projectTypeSystemCache = Caffeine.newBuilder() //
+                .expireAfterWrite(1, MINUTES) //
+                .maximumSize(1024) //
+                .build();
+
+        // Remembers the fingerprint of the project type system a CAS type system has last been
+        // found to be compatible with. UIMA shares committed type systems between CASes, so all
+        // CASes with the same type system benefit from a single check.
+        compatibleTypeSystems = Caffeine.newBuilder() //
+                .weakKeys() //
+                .build();
+
         try {
             builtInTypes = createTypeSystemDescription();
         }
@@ -312,6 +338,8 @@ public class AnnotationSchemaServiceImpl
                 log.info("Updated layer {} in project {}", aLayer, aLayer.getProject());
             }
         }
+
+        invalidateProjectTypeSystem(aLayer.getProject());
     }
 
     @Override
@@ -328,6 +356,8 @@ public class AnnotationSchemaServiceImpl
                 log.info("Updated feature {} in project {}", aFeature, aFeature.getProject());
             }
         }
+
+        invalidateProjectTypeSystem(aFeature.getProject());
     }
 
     @Override
@@ -967,6 +997,8 @@ public class AnnotationSchemaServiceImpl
 
             log.info("Removed feature {} from project {}", aFeature, aFeature.getProject());
         }
+
+        invalidateProjectTypeSystem(aFeature.getProject());
     }
 
     @Override
@@ -994,6 +1026,8 @@ public class AnnotationSchemaServiceImpl
 
             log.info("Removed layer {} from project {}", aLayer, aLayer.getProject());
         }
+
+        invalidateProjectTypeSystem(aLayer.getProject());
     }
 
     @Override
@@ -1222,6 +1256,7 @@ public class AnnotationSchemaServiceImpl
     {
         TypeSystemDescription ts = getFullProjectTypeSystem(aProject);
         upgradeCas(aCas, ts);
+        compatibleTypeSystems.put(aCas.getTypeSystem(), fingerprint(ts));
     }
 
     @Override
@@ -1242,7 +1277,7 @@ public class AnnotationSchemaServiceImpl
     public boolean upgradeCasIfRequired(Iterable<CAS> aCasIter, Project aProject)
         throws UIMAException, IOException
     {
-        TypeSystemDescription ts = getFullProjectTypeSystem(aProject);
+        var projectTypeSystem = getProjectTypeSystem(aProject);
 
         // Check if the current CAS already contains the required type system
         boolean upgradePerformed = false;
@@ -1255,15 +1290,113 @@ public class AnnotationSchemaServiceImpl
             // eventually figure out that no upgrade is required.
             CasStorageSession.get().assertWritingPermitted(cas);
 
-            if (isUpgradeRequired(cas, ts)) {
-                upgradeCas(cas, ts);
+            // If the type system of the CAS has already been checked against the current project
+            // type system, we can skip the check
+            if (projectTypeSystem.fingerprint()
+                    .equals(compatibleTypeSystems.getIfPresent(cas.getTypeSystem()))) {
+                continue nextCas;
+            }
+
+            if (isUpgradeRequired(cas, projectTypeSystem.typeSystem())) {
+                // The cached type system is shared, so we upgrade using a fresh copy
+                upgradeCas(cas, getFullProjectTypeSystem(aProject));
                 upgradePerformed = true;
             }
+
+            compatibleTypeSystems.put(cas.getTypeSystem(), projectTypeSystem.fingerprint());
         }
 
         return upgradePerformed;
     }
 
+    private ProjectTypeSystem getProjectTypeSystem(Project aProject)
+        throws ResourceInitializationException
+    {
+        var cached = projectTypeSystemCache.getIfPresent(aProject.getId());
+        if (cached != null) {
+            return cached;
+        }
+
+        var tsd = getFullProjectTypeSystem(aProject);
+        var projectTypeSystem = new ProjectTypeSystem(tsd, fingerprint(tsd));
+        projectTypeSystemCache.put(aProject.getId(), projectTypeSystem);
+        return projectTypeSystem;
+    }
+
+    private void invalidateProjectTypeSystem(Project aProject)
+    {
+        if (aProject == null || aProject.getId() == null) {
+            return;
+        }
+
+        var projectId = aProject.getId();
+        projectTypeSystemCache.invalidate(projectId);
+
+        // Until the transaction is complete, other threads may still load the old layer
+        // configuration into the cache, so we invalidate again once the transaction is done
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(
+                    new TransactionSynchronization()
+                    {
+                        @Override
+                        public void afterCompletion(int aStatus)
+                        {
+                            projectTypeSystemCache.invalidate(projectId);
+                        }
+                    });
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        projectTypeSystemCache.invalidate(aEvent.getProject().getId());
+    }
+
+    /**
+     * Calculates a fingerprint over the aspects of the given type system which are considered by
+     * {@link #isUpgradeRequired}, i.e. the types, their super-types and their features including
+     * the feature ranges. Two type system descriptions with the same fingerprint lead to the same
+     * upgrade decision for any CAS.
+     */
+    static String fingerprint(TypeSystemDescription aTypeSystem)
+    {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        var types = new ArrayList<>(asList(aTypeSystem.getTypes()));
+        types.sort(comparing(TypeDescription::getName));
+        for (var type : types) {
+            update(digest, "T", type.getName(), type.getSupertypeName());
+
+            var features = new ArrayList<>(asList(type.getFeatures()));
+            features.sort(comparing(FeatureDescription::getName));
+            for (var feature : features) {
+                update(digest, "F", feature.getName(), feature.getRangeTypeName(),
+                        feature.getElementType());
+            }
+        }
+
+        var sb = new StringBuilder();
+        for (var b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+
+    private static void update(MessageDigest aDigest, String... aValues)
+    {
+        for (var value : aValues) {
+            aDigest.update(String.valueOf(value).getBytes(UTF_8));
+            aDigest.update((byte) 0);
+        }
+    }
+
     @Override
     public void upgradeCas(CAS aCas, TypeSystemDescription aTargetTypeSystem)
         throws UIMAException, IOException
@@ -1285,11 +1418,32 @@ public class AnnotationSchemaServiceImpl
         _upgradeCas(aSourceCas, aTargetCas, aTargetTypeSystem);
     }
 
+    @Override
+    public void upgradeCas(CAS aSourceCas, CAS aTargetCas, TypeSystem aTargetTypeSystem)
+        throws UIMAException, IOException
+    {
+        CasStorageSession.get().assertWritingPermitted(aTargetCas);
+
+        _upgradeCas(aSourceCas, aTargetCas,
+                CasCreationUtils.createCas(aTargetTypeSystem, null, null, null));
+    }
+
     // TODO: This method should be come private again ASAP. It is only public to work around
     // the fact that the JSON CAS deserializer does not support lenient deserialization yet!
     public static void _upgradeCas(CAS aSourceCas, CAS aTargetCas,
             TypeSystemDescription aTargetTypeSystem)
         throws IOException, ResourceInitializationException
+    {
+        _upgradeCas(aSourceCas, aTargetCas, CasFactory.createCas(aTargetTypeSystem));
+    }
+
+    /**
+     * @param aEmptyTargetCas
+     *            an empty CAS using the target type system. It is used as a template to
+     *            re-initialize the target CAS.
+     */
+    private static void _upgradeCas(CAS aSourceCas, CAS aTargetCas, CAS aEmptyTargetCas)
+        throws IOException, ResourceInitializationException
     {
         // Save source CAS type system (do this early since we might do an in-place upgrade)
         var sourceTypeSystem = aSourceCas.getTypeSystem();
@@ -1309,8 +1463,7 @@ public class AnnotationSchemaServiceImpl
         CAS realTargetCas = getRealCas(aTargetCas);
         // UIMA-6162 Workaround: synchronize CAS during de/serialization
         synchronized (((CASImpl) realTargetCas).getBaseCAS()) {
-            var tempCas = CasFactory.createCas(aTargetTypeSystem);
-            var serializer = serializeCASComplete((CASImpl) tempCas);
+            var serializer = serializeCASComplete((CASImpl) aEmptyTargetCas);
             deserializeCASComplete(serializer, (CASImpl) realTargetCas);
 
             // Leniently load the source CAS contents into the target CAS
@@ -1641,4 +1794,6 @@ public class AnnotationSchemaServiceImpl
         selectedTag.setTagSet(aFeature.getTagset());
         createTag(selectedTag);
     }
+
+    private record ProjectTypeSystem(TypeSystemDescription typeSystem, String fingerprint) {}
 }
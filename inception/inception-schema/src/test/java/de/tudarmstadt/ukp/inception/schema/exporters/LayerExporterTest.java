@@ -31,14 +31,13 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-import java.io.File;
 import java.util.List;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -55,12 +54,9 @@ import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
 @ExtendWith(MockitoExtension.class)
 public class LayerExporterTest
 {
-    public @TempDir File tempFolder;
-
     private @Mock AnnotationSchemaService annotationService;
 
     private Project project;
-    private File workFolder;
 
     private LayerExporter sut;
 
@@ -71,8 +67,6 @@ public class LayerExporterTest
         project.setId(1l);
         project.setName("Test Project");
 
-        workFolder = tempFolder;
-
         when(annotationService.listAnnotationLayer(any())).thenReturn(layers());
 
         sut = new LayerExporter(annotationService);
@@ -113,7 +107,7 @@ public class LayerExporterTest
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(project, null, "test");
         ExportedProject exportedProject = new ExportedProject();
 
-        sut.exportData(exportRequest, monitor, exportedProject, workFolder);
+        sut.exportData(exportRequest, monitor, exportedProject, mock(ZipOutputStream.class));
 
         // Import the project again
         ArgumentCaptor<AnnotationLayer> captor = ArgumentCaptor.forClass(AnnotationLayer.class);
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.schema.service;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXCLUSIVE_WRITE_ACCESS;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasUpgradeMode.NO_CAS_UPGRADE;
+import static de.tudarmstadt.ukp.inception.annotation.storage.CasMetadataUtils.getInternalTypeSystem;
+import static de.tudarmstadt.ukp.inception.schema.service.AnnotationSchemaServiceImpl.fingerprint;
+import static java.util.Arrays.asList;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.resource.metadata.impl.TypeSystemDescription_impl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.MDC;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.support.logging.Logging;
+import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageServiceImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageBackupProperties;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStorageCachePropertiesImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.config.CasStoragePropertiesImpl;
+import de.tudarmstadt.ukp.inception.annotation.storage.driver.filesystem.FileSystemCasStorageDriver;
+import de.tudarmstadt.ukp.inception.documents.api.RepositoryProperties;
+import de.tudarmstadt.ukp.inception.schema.api.event.LayerConfigurationChangedEvent;
+
+class AnnotationSchemaServiceImplCasUpgradeTest
+{
+    private static final String CUSTOM_TYPE = "custom.Span";
+
+    private TypeSystemDescription projectTypes;
+    private AtomicInteger typeSystemLoads;
+    private AnnotationSchemaServiceImpl sut;
+    private Project project;
+
+    @BeforeEach
+    void setup()
+    {
+        projectTypes = new TypeSystemDescription_impl();
+        typeSystemLoads = new AtomicInteger();
+
+        // Stands in for the layer configuration stored in the database
+        sut = new AnnotationSchemaServiceImpl()
+        {
+            @Override
+            public TypeSystemDescription getFullProjectTypeSystem(Project aProject,
+                    boolean aIncludeInternalTypes)
+                throws ResourceInitializationException
+            {
+                typeSystemLoads.incrementAndGet();
+                return mergeTypeSystems(asList(createTypeSystemDescription(),
+                        getInternalTypeSystem(), projectTypes));
+            }
+        };
+
+        project = new Project("test");
+        project.setId(1l);
+    }
+
+    @Test
+    void thatUnchangedLayerConfigurationSkipsUpgrade() throws Exception
+    {
+        try (var session = CasStorageSession.open()) {
+            var cas = WebAnnoCasUtil.createCas(sut.getFullProjectTypeSystem(project));
+            session.add("cas", EXCLUSIVE_WRITE_ACCESS, cas);
+            var typeSystem = cas.getTypeSystem();
+            typeSystemLoads.set(0);
+
+            assertThat(sut.upgradeCasIfRequired(asList(cas), project)).isFalse();
+            assertThat(sut.upgradeCasIfRequired(asList(cas), project)).isFalse();
+            assertThat(typeSystemLoads).as("Project type system is loaded only once").hasValue(1);
+            assertThat(cas.getTypeSystem()).isSameAs(typeSystem);
+
+            // A configuration change which does not affect the types keeps the fingerprint
+            sut.onLayerConfigurationChanged(new LayerConfigurationChangedEvent(this, project));
+
+            assertThat(sut.upgradeCasIfRequired(asList(cas), project)).isFalse();
+            assertThat(typeSystemLoads).hasValue(2);
+            assertThat(cas.getTypeSystem()).isSameAs(typeSystem);
+        }
+    }
+
+    @Test
+    void thatChangedLayerTriggersUpgrade() throws Exception
+    {
+        try (var session = CasStorageSession.open()) {
+            var cas = WebAnnoCasUtil.createCas(sut.getFullProjectTypeSystem(project));
+            session.add("cas", EXCLUSIVE_WRITE_ACCESS, cas);
+
+            assertThat(sut.upgradeCasIfRequired(asList(cas), project)).isFalse();
+
+            projectTypes.addType(CUSTOM_TYPE, "", CAS.TYPE_NAME_ANNOTATION);
+            sut.onLayerConfigurationChanged(new LayerConfigurationChangedEvent(this, project));
+
+            assertThat(sut.upgradeCasIfRequired(asList(cas), project)).isTrue();
+            assertThat(cas.getTypeSystem().getType(CUSTOM_TYPE)).isNotNull();
+
+            assertThat(sut.upgradeCasIfRequired(asList(cas), project)).isFalse();
+        }
+    }
+
+    @Test
+    void thatStorageUpgradesStoredCasOnlyIfRequired(@TempDir File aRepositoryDir) throws Exception
+    {
+        var repositoryProperties = new RepositoryProperties();
+        repositoryProperties.setPath(aRepositoryDir);
+        MDC.put(Logging.KEY_REPOSITORY_PATH, repositoryProperties.getPath().toString());
+
+        var driver = new FileSystemCasStorageDriver(repositoryProperties,
+                new CasStorageBackupProperties(), new CasStoragePropertiesImpl());
+        var storage = new CasStorageServiceImpl(driver, new CasStorageCachePropertiesImpl(), null,
+                sut);
+
+        var doc = new SourceDocument();
+        doc.setProject(project);
+        doc.setId(1l);
+        doc.setName("doc");
+        var user = "user";
+
+        try {
+            try (var session = CasStorageSession.open()) {
+                storage.readOrCreateCas(doc, user, NO_CAS_UPGRADE,
+                        () -> WebAnnoCasUtil.createCas(sut.getFullProjectTypeSystem(project)),
+                        EXCLUSIVE_WRITE_ACCESS);
+            }
+
+            assertThat(storage.upgradeCasIfRequired(doc, user)).isFalse();
+
+            projectTypes.addType(CUSTOM_TYPE, "", CAS.TYPE_NAME_ANNOTATION);
+            sut.onLayerConfigurationChanged(new LayerConfigurationChangedEvent(this, project));
+
+            assertThat(storage.upgradeCasIfRequired(doc, user)).isTrue();
+            assertThat(storage.upgradeCasIfRequired(doc, user)).isFalse();
+
+            try (var session = CasStorageSession.open()) {
+                var cas = storage.readCas(doc, user);
+                assertThat(cas.getTypeSystem().getType(CUSTOM_TYPE)).isNotNull();
+            }
+        }
+        finally {
+            MDC.remove(Logging.KEY_REPOSITORY_PATH);
+        }
+    }
+
+    @Test
+    void thatFingerprintIgnoresOrderButNotFeatureRanges()
+    {
+        var tsd1 = new TypeSystemDescription_impl();
+        tsd1.addType("a.A", "", CAS.TYPE_NAME_ANNOTATION) //
+                .addFeature("f", "", CAS.TYPE_NAME_STRING);
+        tsd1.addType("a.B", "", CAS.TYPE_NAME_ANNOTATION);
+
+        var tsd2 = new TypeSystemDescription_impl();
+        tsd2.addType("a.B", "", CAS.TYPE_NAME_ANNOTATION);
+        tsd2.addType("a.A", "", CAS.TYPE_NAME_ANNOTATION) //
+                .addFeature("f", "", CAS.TYPE_NAME_STRING);
+
+        var tsd3 = new TypeSystemDescription_impl();
+        tsd3.addType("a.A", "", CAS.TYPE_NAME_ANNOTATION) //
+                .addFeature("f", "", CAS.TYPE_NAME_INTEGER);
+        tsd3.addType("a.B", "", CAS.TYPE_NAME_ANNOTATION);
+
+        assertThat(fingerprint(tsd1)).isEqualTo(fingerprint(tsd2));
+        assertThat(fingerprint(tsd1)).isNotEqualTo(fingerprint(tsd3));
+    }
+}
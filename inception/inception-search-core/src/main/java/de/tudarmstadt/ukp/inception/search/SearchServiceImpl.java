@@ -22,6 +22,7 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.UNM
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.UNMANAGED_NON_INITIALIZING_ACCESS;
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasUpgradeMode.NO_CAS_UPGRADE;
 import static de.tudarmstadt.ukp.inception.search.model.AnnotationSearchState.KEY_SEARCH_STATE;
+import static java.lang.Math.max;
 import static java.lang.System.currentTimeMillis;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
@@ -35,6 +36,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -46,6 +49,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
@@ -431,11 +435,10 @@ public class SearchServiceImpl
 
         Project project = aEvent.getProject();
 
+        // The index is not invalidated here - the current index continues to serve queries until
+        // the rebuilt index replaces it
         try (PooledIndex pooledIndex = acquireIndex(project.getId())) {
             pooledIndex.forceRecycle();
-            Index index = pooledIndex.get();
-            index.setInvalid(true);
-            entityManager.merge(index);
         }
 
         // Schedule re-indexing of the physical index
@@ -627,7 +630,9 @@ public class SearchServiceImpl
     }
 
     /**
-     * Re-index the project. If there is no physical index, create a new one.
+     * Re-index the project. If there is no physical index, create a new one. The documents are
+     * read and indexed concurrently into a new index which replaces the current index once it is
+     * complete. Until then, the current index continues serving queries.
      */
     @Override
     @Transactional
@@ -643,15 +648,6 @@ public class SearchServiceImpl
             }
 
             Index index = pooledIndex.get();
-            index.setInvalid(true);
-
-            // Clear the index
-            try {
-                index.getPhysicalIndex().clear();
-            }
-            catch (IndexRebuildRequiredException e) {
-                // We can ignore this since we are rebuilding the index already anyway
-            }
 
             Set<String> usersWithPermissions = projectService
                     .listProjectUsersWithPermissions(aProject).stream() //
@@ -678,41 +674,75 @@ public class SearchServiceImpl
             final var casUpgradeMode = NO_CAS_UPGRADE;
 
             var prefs = preferencesService.loadDefaultTraitsForProject(KEY_SEARCH_STATE, aProject);
-            try (var indexContext = BulkIndexingContext.init(aProject, schemaService, true,
-                    prefs)) {
+            var executor = Executors.newFixedThreadPool(
+                    max(1, properties.getIndexingParallelism()), new BasicThreadFactory.Builder() //
+                            .daemon(true) //
+                            .namingPattern("inception-reindex-%d") //
+                            .priority(Thread.MIN_PRIORITY) //
+                            .build());
+            try (var indexContext = BulkIndexingContext.init(aProject, schemaService, true, prefs);
+                    var rebuild = index.getPhysicalIndex().startRebuild()) {
+                var tasks = new ArrayList<Future<?>>();
+
                 // Index all the source documents
                 for (var doc : sourceDocuments) {
-                    if (isPerformNoMoreActions(pooledIndex)) {
-                        return;
-                    }
-
-                    try (var session = CasStorageSession.openNested()) {
-                        var casAsByteArray = casToByteArray(documentService
-                                .createOrReadInitialCas(doc, casUpgradeMode, accessModeInitialCas));
-                        indexDocument(pooledIndex, doc, casAsByteArray);
-                    }
-
-                    monitor.incDone();
+                    tasks.add(executor.submit(() -> runReindexStep(pooledIndex, indexContext,
+                            monitor, () -> {
+                                try {
+                                    rebuild.indexDocument(doc,
+                                            casToByteArray(documentService.createOrReadInitialCas(
+                                                    doc, casUpgradeMode, accessModeInitialCas)));
+                                }
+                                catch (IOException e) {
+                                    log.error("Error indexing source document {} in project {}",
+                                            doc, aProject, e);
+                                }
+                            })));
                 }
 
                 // Index all the annotation documents
                 for (var doc : annotationDocuments) {
-                    if (isPerformNoMoreActions(pooledIndex)) {
-                        return;
-                    }
+                    tasks.add(executor.submit(() -> runReindexStep(pooledIndex, indexContext,
+                            monitor, () -> {
+                                try {
+                                    rebuild.indexDocument(doc,
+                                            casToByteArray(documentService.readAnnotationCas(
+                                                    doc.getDocument(), doc.getUser(),
+                                                    casUpgradeMode, accessModeAnnotationCas)));
+                                }
+                                catch (FileNotFoundException e) {
+                                    // Ignore it if a annotation CAS does not exist yet
+                                }
+                                catch (IOException e) {
+                                    log.error("Error indexing annotation document {} in project {}",
+                                            doc, aProject, e);
+                                }
+                            })));
+                }
 
-                    try (var session = CasStorageSession.openNested()) {
-                        var casAsByteArray = casToByteArray(
-                                documentService.readAnnotationCas(doc.getDocument(), doc.getUser(),
-                                        casUpgradeMode, accessModeAnnotationCas));
-                        indexDocument(pooledIndex, doc, "reindex", casAsByteArray);
+                for (var task : tasks) {
+                    try {
+                        task.get();
                     }
-                    catch (FileNotFoundException e) {
-                        // Ignore it if a annotation CAS does not exist yet
+                    catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    catch (java.util.concurrent.ExecutionException e) {
+                        throw new IOException("Unable to re-index project " + aProject,
+                                e.getCause());
                     }
+                }
 
-                    monitor.incDone();
+                // Closing the rebuild without committing it discards it
+                if (isPerformNoMoreActions(pooledIndex)) {
+                    return;
                 }
+
+                rebuild.commit();
+            }
+            finally {
+                executor.shutdownNow();
             }
 
             // After re-indexing, reset the invalid flag
@@ -723,6 +753,25 @@ public class SearchServiceImpl
         log.info("Re-indexing project {} complete!", aProject);
     }
 
+    private void runReindexStep(PooledIndex aPooledIndex, BulkIndexingContext aIndexingContext,
+            Monitor aMonitor, Runnable aStep)
+    {
+        if (isPerformNoMoreActions(aPooledIndex)) {
+            return;
+        }
+
+        // The indexing context is thread-bound, so we need to pass it on to the worker thread
+        BulkIndexingContext.set(aIndexingContext);
+        try (var session = CasStorageSession.openNested()) {
+            aStep.run();
+        }
+        finally {
+            BulkIndexingContext.clear();
+        }
+
+        aMonitor.incDone();
+    }
+
     /**
      * For testing only...
      */
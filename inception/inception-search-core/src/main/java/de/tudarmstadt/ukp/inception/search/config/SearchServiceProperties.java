@@ -27,4 +27,10 @@ public interface SearchServiceProperties
      * @return time to keep an index open after it has last been used.
      */
     Duration getIndexKeepOpenTime();
+
+    /**
+     * @return number of documents which are read and indexed concurrently when rebuilding an
+     *         index.
+     */
+    int getIndexingParallelism();
 }
@@ -29,6 +29,8 @@ public class SearchServicePropertiesImpl
 
     private Duration indexKeepOpenTime = Duration.ofMinutes(10);
 
+    private int indexingParallelism = Runtime.getRuntime().availableProcessors();
+
     @Override
     public boolean isEnabled()
     {
@@ -50,4 +52,15 @@ public class SearchServicePropertiesImpl
     {
         indexKeepOpenTime = aIndexKeepOpenTime;
     }
+
+    @Override
+    public int getIndexingParallelism()
+    {
+        return indexingParallelism;
+    }
+
+    public void setIndexingParallelism(int aIndexingParallelism)
+    {
+        indexingParallelism = aIndexingParallelism;
+    }
 }
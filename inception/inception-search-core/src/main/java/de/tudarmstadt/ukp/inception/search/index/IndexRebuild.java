@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index;
+
+import java.io.IOException;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+/**
+ * A rebuild of a {@link PhysicalIndex} in progress. Documents added to the rebuild only become
+ * visible to queries once the rebuild has been {@link #commit() committed}. The methods for adding
+ * documents may be called concurrently from multiple threads.
+ */
+public interface IndexRebuild
+    extends AutoCloseable
+{
+    void indexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas) throws IOException;
+
+    void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas) throws IOException;
+
+    /**
+     * Replaces the contents of the index with the rebuilt data. Must only be called once all
+     * documents have been added.
+     * 
+     * @throws IOException
+     *             if there was an I/O-level problem
+     */
+    void commit() throws IOException;
+
+    /**
+     * Discards the rebuilt data unless the rebuild has been committed.
+     */
+    @Override
+    void close() throws IOException;
+}
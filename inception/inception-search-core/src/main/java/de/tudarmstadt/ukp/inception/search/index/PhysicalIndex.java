@@ -94,4 +94,47 @@ public interface PhysicalIndex
     public Optional<String> getTimestamp(long aSrcDocId, long aAnnoDocId) throws IOException;
 
     void indexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas) throws IOException;
+
+    /**
+     * Starts rebuilding the index from scratch. Implementations which support it should keep
+     * serving queries from the current data until the rebuild is committed. The default
+     * implementation clears the index and adds the documents to it directly.
+     * 
+     * @return the rebuild to which the documents need to be added.
+     * @throws IOException
+     *             if there was an I/O-level problem
+     */
+    default IndexRebuild startRebuild() throws IOException
+    {
+        clear();
+
+        return new IndexRebuild()
+        {
+            @Override
+            public void indexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas)
+                throws IOException
+            {
+                PhysicalIndex.this.indexDocument(aSourceDocument, aBinaryCas);
+            }
+
+            @Override
+            public void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas)
+                throws IOException
+            {
+                PhysicalIndex.this.indexDocument(aDocument, aBinaryCas);
+            }
+
+            @Override
+            public void commit()
+            {
+                // Nothing to do
+            }
+
+            @Override
+            public void close()
+            {
+                // Nothing to do
+            }
+        };
+    }
 }
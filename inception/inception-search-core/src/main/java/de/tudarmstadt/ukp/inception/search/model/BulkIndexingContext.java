@@ -92,6 +92,15 @@ public class BulkIndexingContext
         return indexingContext;
     }
 
+    /**
+     * Makes the given context available to the current thread, e.g. to a worker thread which
+     * participates in the bulk indexing operation of another thread.
+     */
+    public static void set(BulkIndexingContext aContext)
+    {
+        INSTANCE.set(aContext);
+    }
+
     public static Optional<BulkIndexingContext> get()
     {
         return Optional.ofNullable(INSTANCE.get());
@@ -26,8 +26,10 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasUpgradeMode.AU
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.DISCARD_OR_QUEUE_THIS;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.NO_MATCH;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.UNQUEUE_EXISTING_AND_QUEUE_THIS;
+import static java.util.Arrays.asList;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Objects;
 
 import org.slf4j.Logger;
@@ -109,4 +111,18 @@ public class IndexSourceDocumentTask
 
         return NO_MATCH;
     }
+
+    @Override
+    public Collection<Object> getMatchKeys()
+    {
+        return asList(matchKey(IndexSourceDocumentTask.class, getSourceDocument().getId()),
+                projectMatchKey());
+    }
+
+    @Override
+    public Collection<Object> getMatchCandidateKeys()
+    {
+        return asList(matchKey(ReindexTask.class, getProject().getId()),
+                matchKey(IndexSourceDocumentTask.class, getSourceDocument().getId()));
+    }
 }
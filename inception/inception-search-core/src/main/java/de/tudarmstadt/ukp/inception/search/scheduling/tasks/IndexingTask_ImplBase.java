@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
+import java.util.Arrays;
 import java.util.Objects;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
@@ -73,6 +74,23 @@ public abstract class IndexingTask_ImplBase
 
     public abstract Progress getProgress();
 
+    /**
+     * @return a key under which the scheduler can look up the task of the given kind for the object
+     *         with the given ID.
+     */
+    protected static Object matchKey(Class<? extends IndexingTask_ImplBase> aKind, Long aId)
+    {
+        return Arrays.<Object> asList(aKind, aId);
+    }
+
+    /**
+     * @return a key under which the scheduler can look up all indexing tasks of the project.
+     */
+    protected Object projectMatchKey()
+    {
+        return matchKey(IndexingTask_ImplBase.class, getProject().getId());
+    }
+
     @Override
     public String toString()
     {
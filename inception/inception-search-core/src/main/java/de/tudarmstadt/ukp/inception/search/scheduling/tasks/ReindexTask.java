@@ -23,8 +23,10 @@ package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.NO_MATCH;
 import static de.tudarmstadt.ukp.inception.scheduling.MatchResult.UNQUEUE_EXISTING_AND_QUEUE_THIS;
+import static java.util.Arrays.asList;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Objects;
 
 import org.slf4j.Logger;
@@ -34,6 +36,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.inception.scheduling.MatchResult;
 import de.tudarmstadt.ukp.inception.scheduling.Task;
+import de.tudarmstadt.ukp.inception.scheduling.TaskPriority;
 import de.tudarmstadt.ukp.inception.search.SearchService;
 import de.tudarmstadt.ukp.inception.search.model.Monitor;
 import de.tudarmstadt.ukp.inception.search.model.Progress;
@@ -61,6 +64,12 @@ public class ReindexTask
         return "Rebuilding index...";
     }
 
+    @Override
+    public TaskPriority getPriority()
+    {
+        return TaskPriority.BULK;
+    }
+
     @Override
     public void execute()
     {
@@ -93,4 +102,16 @@ public class ReindexTask
 
         return NO_MATCH;
     }
+
+    @Override
+    public Collection<Object> getMatchKeys()
+    {
+        return asList(matchKey(ReindexTask.class, getProject().getId()), projectMatchKey());
+    }
+
+    @Override
+    public Collection<Object> getMatchCandidateKeys()
+    {
+        return asList(projectMatchKey());
+    }
 }
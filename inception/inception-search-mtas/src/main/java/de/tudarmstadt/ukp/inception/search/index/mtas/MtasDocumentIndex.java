@@ -22,14 +22,16 @@
 package de.tudarmstadt.ukp.inception.search.index.mtas;
 
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.FINISHED;
-import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IGNORE;
 import static de.tudarmstadt.ukp.inception.project.api.ProjectService.PROJECT_FOLDER;
 import static de.tudarmstadt.ukp.inception.search.Metrics.VIRTUAL_FEATURE_SENTENCE;
 import static de.tudarmstadt.ukp.inception.search.Metrics.VIRTUAL_FEATURE_TOKEN;
 import static de.tudarmstadt.ukp.inception.search.Metrics.VIRTUAL_LAYER_SEGMENTATION;
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.MTAS_SENTENCE_LABEL;
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.MTAS_TOKEN_LABEL;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.PARAM_PROJECT_ID;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.getIndexedName;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.decodeFSAddress;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.util.Comparator.comparingLong;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static java.util.stream.Collectors.toList;
@@ -38,15 +40,20 @@ import static mtas.analysis.util.MtasTokenizerFactory.ARGUMENT_PARSER_ARGS;
 import static mtas.codec.MtasCodec.MTAS_CODEC_NAME;
 import static org.apache.commons.io.FileUtils.deleteDirectory;
 import static org.apache.commons.lang3.StringUtils.toRootLowerCase;
+import static org.apache.lucene.search.DocIdSetIterator.NO_MORE_DOCS;
 import static org.apache.lucene.search.ScoreMode.COMPLETE_NO_SCORES;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
+import java.nio.file.Files;
 import java.text.BreakIterator;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
@@ -57,43 +64,65 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.custom.CustomAnalyzer;
 import org.apache.lucene.analysis.miscellaneous.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.SegmentReader;
 import org.apache.lucene.index.Term;
-import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ReferenceManager;
+import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.Weight;
 import org.apache.lucene.search.spans.SpanWeight;
 import org.apache.lucene.search.spans.Spans;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -116,15 +145,14 @@ import de.tudarmstadt.ukp.inception.search.SearchQueryRequest;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
 import de.tudarmstadt.ukp.inception.search.StatisticRequest;
 import de.tudarmstadt.ukp.inception.search.StatisticsResult;
+import de.tudarmstadt.ukp.inception.search.index.IndexRebuild;
 import de.tudarmstadt.ukp.inception.search.index.IndexRebuildRequiredException;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndex;
 import de.tudarmstadt.ukp.inception.search.model.AnnotationSearchState;
 import de.tudarmstadt.ukp.inception.search.model.BulkIndexingContext;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
-import it.unimi.dsi.fastutil.longs.LongArrayList;
-import it.unimi.dsi.fastutil.longs.LongComparators;
-import it.unimi.dsi.fastutil.longs.LongList;
 import mtas.analysis.token.MtasTokenString;
 import mtas.analysis.util.MtasTokenizerFactory;
 import mtas.codec.util.CodecComponent;
@@ -143,6 +171,15 @@ public class MtasDocumentIndex
     implements PhysicalIndex
 {
     private static final String INDEX = "indexMtas";
+    private static final String INDEX_REBUILD = INDEX + "-rebuild";
+    private static final String INDEX_OLD = INDEX + "-old";
+
+    /**
+     * When rebuilding the index, more documents are buffered in memory and segments are merged less
+     * eagerly, resulting in fewer and larger segments being written.
+     */
+    private static final double REBUILD_RAM_BUFFER_SIZE_MB = 256.0;
+    private static final int REBUILD_SEGMENTS_PER_TIER = 20;
 
     /**
      * Constant for the field which carries the unique identifier for the index document consisting:
@@ -174,6 +211,13 @@ public class MtasDocumentIndex
     /** The Constant FIELD_TIMESTAMP. */
     private static final String FIELD_TIMESTAMP = "timestamp";
 
+    /**
+     * Constant for the field which carries the number of indexed items per prefix (e.g. tokens,
+     * sentences, feature values) in the document. Used to answer statistics requests without having
+     * to run queries.
+     */
+    private static final String FIELD_STATISTICS = "statistics";
+
     // Default prefix for CQL queries
     private static final String DEFAULT_PREFIX = "Token";
 
@@ -181,6 +225,16 @@ public class MtasDocumentIndex
 
     private static final String EMPTY_FEATURE_VALUE_KEY = "<Empty>";
 
+    // The leaves of the index are searched in parallel. Searching reads from disk, so this is not
+    // done on the common fork/join pool. The pool is shared by the indexes of all projects which
+    // bounds the number of threads used for searching.
+    private static final ExecutorService QUERY_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())),
+            new BasicThreadFactory.Builder() //
+                    .namingPattern("mtas-query-%d") //
+                    .daemon(true) //
+                    .build());
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final FeatureIndexingSupportRegistry featureIndexingSupportRegistry;
@@ -190,9 +244,19 @@ public class MtasDocumentIndex
     private final File repositoryDir;
     private final ScheduledExecutorService schedulerService;
 
+    /**
+     * Updates hold the read lock while they write to the current index and mirror the change to a
+     * running rebuild. Operations which close the index writer, e.g. swapping in a rebuilt index,
+     * hold the write lock so that no update is lost or runs into a closed writer. The lock must be
+     * acquired before the monitor of the index.
+     */
+    private final ReadWriteLock updateLock = new ReentrantReadWriteLock();
+
     private IndexWriter _indexWriter;
     private ReferenceManager<IndexSearcher> _searcherManager;
     private ScheduledFuture<?> _commitFuture;
+    private volatile ShadowIndexRebuild activeRebuild;
+    private volatile StatisticsCache statisticsCache;
 
     public MtasDocumentIndex(Project aProject, DocumentService aDocumentService, String aDir,
             FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry,
@@ -216,7 +280,7 @@ public class MtasDocumentIndex
         try {
             // After the index has been initialized, assign the _indexWriter - this is also used
             // by isOpen() to check if the index writer is available.
-            _indexWriter = createIndexWriter();
+            _indexWriter = createIndexWriter(getIndexDir(), false);
             return _indexWriter;
         }
         catch (IOException e) {
@@ -237,7 +301,7 @@ public class MtasDocumentIndex
         }
     }
 
-    private IndexWriter createIndexWriter() throws IOException
+    private IndexWriter createIndexWriter(File aIndexDir, boolean aRebuild) throws IOException
     {
         // Add the project id to the configuration
         JSONObject jsonParserConfiguration = new JSONObject();
@@ -259,12 +323,21 @@ public class MtasDocumentIndex
                 analyzerPerField);
 
         // Build IndexWriter
-        FileUtils.forceMkdir(getIndexDir());
+        FileUtils.forceMkdir(aIndexDir);
         IndexWriterConfig config = new IndexWriterConfig(analyzer);
         config.setCodec(Codec.forName(MTAS_CODEC_NAME));
 
+        if (aRebuild) {
+            TieredMergePolicy mergePolicy = new TieredMergePolicy();
+            mergePolicy.setSegmentsPerTier(REBUILD_SEGMENTS_PER_TIER);
+            mergePolicy.setMaxMergeAtOnce(REBUILD_SEGMENTS_PER_TIER);
+            config.setOpenMode(OpenMode.CREATE);
+            config.setRAMBufferSizeMB(REBUILD_RAM_BUFFER_SIZE_MB);
+            config.setMergePolicy(mergePolicy);
+        }
+
         @SuppressWarnings("resource")
-        IndexWriter indexWriter = new IndexWriter(FSDirectory.open(getIndexDir().toPath()), config);
+        IndexWriter indexWriter = new IndexWriter(FSDirectory.open(aIndexDir.toPath()), config);
 
         // Initialize the index
         try {
@@ -312,13 +385,23 @@ public class MtasDocumentIndex
     }
 
     @Override
-    public synchronized void close()
+    public void close()
     {
-        if (schedulerService != null) {
-            schedulerService.shutdown();
-        }
+        updateLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (schedulerService != null) {
+                    schedulerService.shutdown();
+                }
+
+                abortRebuild();
 
-        closeIndex();
+                closeIndex();
+            }
+        }
+        finally {
+            updateLock.writeLock().unlock();
+        }
     }
 
     private synchronized void closeIndex()
@@ -349,6 +432,7 @@ public class MtasDocumentIndex
         finally {
             _indexWriter = null;
             _searcherManager = null;
+            statisticsCache = null;
             log.debug("Closed index for project {}", project);
         }
     }
@@ -390,6 +474,9 @@ public class MtasDocumentIndex
                 if (_searcherManager != null) {
                     _searcherManager.maybeRefresh();
                 }
+
+                // Cached statistics are only valid until the next commit
+                statisticsCache = null;
             }
         }
         catch (IOException e) {
@@ -433,17 +520,18 @@ public class MtasDocumentIndex
         throws IOException, ExecutionException
     {
         List<Integer> fullDocSet = getUniqueDocuments(aStatisticRequest);
+        List<DocumentStatistics> documentStatistics = getDocumentStatistics(fullDocSet);
         Map<String, LayerStatistics> allStats = new HashMap<String, LayerStatistics>();
         Map<String, LayerStatistics> nonNullStats = new HashMap<String, LayerStatistics>();
         Set<AnnotationFeature> features = aStatisticRequest.getFeatures();
 
         for (AnnotationFeature feature : features) {
             AnnotationLayer layer = feature.getLayer();
-            String searchString = "<" + MtasUimaParser.getIndexedName(layer.getUiName()) + "."
-                    + MtasUimaParser.getIndexedName(feature.getUiName()) + "=\"\"/>";
+            String prefix = MtasUimaParser.getIndexedName(layer.getUiName()) + "."
+                    + MtasUimaParser.getIndexedName(feature.getUiName());
 
-            LayerStatistics results = getLayerStatistics(aStatisticRequest, searchString,
-                    fullDocSet);
+            LayerStatistics results = getPrefixStatistics(aStatisticRequest, prefix, fullDocSet,
+                    documentStatistics);
             results.setFeature(feature);
             if (results.getMaximum() > 0) {
                 nonNullStats.put(layer.getUiName() + "." + feature.getUiName(), results);
@@ -461,14 +549,15 @@ public class MtasDocumentIndex
         sentence.setUiName(VIRTUAL_FEATURE_SENTENCE);
         sentence.setLayer(rawText);
 
-        LayerStatistics results = getLayerStatistics(aStatisticRequest, "<Token=\"\"/>",
-                fullDocSet);
+        LayerStatistics results = getPrefixStatistics(aStatisticRequest, MTAS_TOKEN_LABEL,
+                fullDocSet, documentStatistics);
 
         results.setFeature(token);
         allStats.put(VIRTUAL_LAYER_SEGMENTATION + "." + VIRTUAL_FEATURE_TOKEN, results);
         nonNullStats.put(VIRTUAL_LAYER_SEGMENTATION + "." + VIRTUAL_FEATURE_TOKEN, results);
 
-        results = getLayerStatistics(aStatisticRequest, "<s=\"\"/>", fullDocSet);
+        results = getPrefixStatistics(aStatisticRequest, MTAS_SENTENCE_LABEL, fullDocSet,
+                documentStatistics);
         results.setFeature(sentence);
         allStats.put(VIRTUAL_LAYER_SEGMENTATION + "." + VIRTUAL_FEATURE_SENTENCE, results);
         nonNullStats.put(VIRTUAL_LAYER_SEGMENTATION + "." + VIRTUAL_FEATURE_SENTENCE, results);
@@ -477,34 +566,158 @@ public class MtasDocumentIndex
                 aStatisticRequest.getFeatures());
     }
 
+    /**
+     * @return the statistics for the items indexed under the given prefix. If possible, these are
+     *         aggregated from the per-document counts recorded during indexing. Otherwise, a query
+     *         is run.
+     */
+    private LayerStatistics getPrefixStatistics(StatisticRequest aStatisticRequest,
+            String aPrefix, List<Integer> aFullDocSet, List<DocumentStatistics> aDocuments)
+        throws IOException, ExecutionException
+    {
+        if (aDocuments == null) {
+            return getLayerStatistics(aStatisticRequest, "<" + aPrefix + "=\"\"/>", aFullDocSet);
+        }
+
+        var perDocument = new DoubleArrayList();
+        var perSentence = new DoubleArrayList();
+        for (var document : aDocuments) {
+            long tokens = document.count(MTAS_TOKEN_LABEL);
+            if (tokens < aStatisticRequest.getMinTokenPerDoc()
+                    || tokens > aStatisticRequest.getMaxTokenPerDoc()) {
+                continue;
+            }
+
+            long count = document.count(aPrefix);
+            perDocument.add(count);
+
+            // Documents without sentences do not contribute to the per-sentence statistics
+            long sentences = document.count(MTAS_SENTENCE_LABEL);
+            if (sentences > 0) {
+                perSentence.add((double) count / sentences);
+            }
+        }
+
+        var docStats = Summary.of(perDocument.toDoubleArray());
+        var sentStats = Summary.of(perSentence.toDoubleArray());
+        return new LayerStatistics(docStats.sum(), docStats.max(), docStats.min(),
+                docStats.mean(), docStats.median(), docStats.standardDeviation(), sentStats.sum(),
+                sentStats.max(), sentStats.min(), sentStats.mean(), sentStats.median(),
+                sentStats.standardDeviation(), perSentence.size());
+    }
+
+    /**
+     * @return the per-document statistics of the given documents or {@code null} if they are not
+     *         available for all of them, e.g. because some have been indexed by an older version.
+     */
+    private List<DocumentStatistics> getDocumentStatistics(List<Integer> aDocIds)
+        throws IOException
+    {
+        IndexSearcher searcher = null;
+        try {
+            searcher = getSearcherManager().acquire();
+            IndexReader reader = searcher.getIndexReader();
+
+            StatisticsCache cache = getStatisticsCache(reader);
+            Map<Integer, DocumentStatistics> allDocuments;
+            synchronized (cache) {
+                if (cache.documents == null) {
+                    cache.documents = loadDocumentStatistics(reader);
+                }
+                allDocuments = cache.documents;
+            }
+
+            var documents = new ArrayList<DocumentStatistics>(aDocIds.size());
+            for (var docId : aDocIds) {
+                var document = allDocuments.get(docId);
+                if (document == null) {
+                    return null;
+                }
+                documents.add(document);
+            }
+            return documents;
+        }
+        finally {
+            if (searcher != null) {
+                getSearcherManager().release(searcher);
+                searcher = null;
+            }
+        }
+    }
+
+    /**
+     * Reads the per-document statistics of all live documents in the index. The leaves of the
+     * index are processed in parallel.
+     */
+    private Map<Integer, DocumentStatistics> loadDocumentStatistics(IndexReader aReader)
+        throws IOException
+    {
+        var futures = submitForEachLeaf(aReader.leaves(), leaf -> {
+            var leafDocuments = new HashMap<Integer, DocumentStatistics>();
+            var reader = leaf.reader();
+            Bits liveDocs = reader.getLiveDocs();
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if (liveDocs != null && !liveDocs.get(doc)) {
+                    continue;
+                }
+
+                String value = reader.document(doc, Set.of(FIELD_STATISTICS))
+                        .get(FIELD_STATISTICS);
+                if (value != null) {
+                    leafDocuments.put(leaf.docBase + doc, DocumentStatistics.parse(value));
+                }
+            }
+            return leafDocuments;
+        });
+
+        var documents = new HashMap<Integer, DocumentStatistics>();
+        try {
+            for (var future : futures) {
+                var leafDocuments = join(future);
+                if (leafDocuments != null) {
+                    documents.putAll(leafDocuments);
+                }
+            }
+        }
+        finally {
+            // The caller releases the searcher afterwards
+            drain(futures);
+        }
+        return documents;
+    }
+
+    private synchronized StatisticsCache getStatisticsCache(IndexReader aReader)
+    {
+        // The cache is tied to the reader because the document IDs are only valid for it
+        if (statisticsCache == null || statisticsCache.reader != aReader) {
+            statisticsCache = new StatisticsCache(aReader);
+        }
+
+        return statisticsCache;
+    }
+
     @Override
     public List<Integer> getUniqueDocuments(StatisticRequest aStatisticRequest) throws IOException
     {
         IndexSearcher searcher = null;
         Map<Long, Long> annotatableDocuments = listAnnotatableDocuments(
                 aStatisticRequest.getProject(), aStatisticRequest.getUser());
-
-        List<Integer> fullDocSet = new ArrayList<Integer>();
+        String user = aStatisticRequest.getUser().getUsername();
 
         try {
             searcher = getSearcherManager().acquire();
             IndexReader reader = searcher.getIndexReader();
 
-            for (int i = 0; i < reader.maxDoc(); i++) {
-                String sourceID = reader.document(i).get(FIELD_SOURCE_DOCUMENT_ID);
-                String annotationID = reader.document(i).get(FIELD_ANNOTATION_DOCUMENT_ID);
-                // a -1 indicates source document
-                if (Long.valueOf(annotationID) != -1L) {
-                    if (reader.document(i).get(FIELD_USER)
-                            .equals(aStatisticRequest.getUser().getUsername())) {
-                        fullDocSet.add(i);
-                    }
-                }
-                // source document without annotation layer? then user is not relevant
-                else if (!annotatableDocuments.containsKey(Long.valueOf(sourceID))) {
-                    fullDocSet.add(i);
-                }
-            }
+            StatisticsCache cache = getStatisticsCache(reader);
+            var cacheKey = new UniqueDocumentsKey(user, Set.copyOf(annotatableDocuments.keySet()));
+            List<Integer> fullDocSet = cache.uniqueDocuments.computeIfAbsent(cacheKey,
+                    key -> loadUniqueDocuments(reader, key));
+
+            // Callers may pass the list on to MTAS which requires an ArrayList
+            return new ArrayList<>(fullDocSet);
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
         }
         finally {
             if (searcher != null) {
@@ -514,7 +727,45 @@ public class MtasDocumentIndex
                 searcher = null;
             }
         }
-        return fullDocSet;
+    }
+
+    /**
+     * @return the IDs of the live documents in the index from which the given user may see
+     *         statistics: the annotation documents of the user and the source documents for which
+     *         the user does not have an annotation document yet.
+     */
+    private static List<Integer> loadUniqueDocuments(IndexReader aReader, UniqueDocumentsKey aKey)
+    {
+        var fields = Set.of(FIELD_SOURCE_DOCUMENT_ID, FIELD_ANNOTATION_DOCUMENT_ID, FIELD_USER);
+        var fullDocSet = new ArrayList<Integer>();
+        try {
+            for (var leaf : aReader.leaves()) {
+                var reader = leaf.reader();
+                Bits liveDocs = reader.getLiveDocs();
+                for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+
+                    Document document = reader.document(doc, fields);
+                    // a -1 indicates source document
+                    if (Long.parseLong(document.get(FIELD_ANNOTATION_DOCUMENT_ID)) != -1L) {
+                        if (aKey.user().equals(document.get(FIELD_USER))) {
+                            fullDocSet.add(leaf.docBase + doc);
+                        }
+                    }
+                    // source document without annotation layer? then user is not relevant
+                    else if (!aKey.annotatedSourceDocuments()
+                            .contains(Long.parseLong(document.get(FIELD_SOURCE_DOCUMENT_ID)))) {
+                        fullDocSet.add(leaf.docBase + doc);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return List.copyOf(fullDocSet);
     }
 
     private MtasSpanQuery parseQuery(String aQuery, AnnotationSearchState aPrefs)
@@ -557,6 +808,15 @@ public class MtasDocumentIndex
             searcher = getSearcherManager().acquire();
             IndexReader reader = searcher.getIndexReader();
 
+            StatisticsCache cache = getStatisticsCache(reader);
+            var cacheKey = new LayerStatisticsKey(aFeatureQuery, minToken, maxToken,
+                    aStatisticRequest.getSearchSettings().isCaseSensitive(),
+                    List.copyOf(aFullDocSet));
+            LayerStatistics cachedStats = cache.layers.get(cacheKey);
+            if (cachedStats != null) {
+                return cachedStats;
+            }
+
             // what does this parameter do?
             List<Integer> fullDocList = new ArrayList<Integer>();
 
@@ -655,6 +915,8 @@ public class MtasDocumentIndex
                     (double) resultsMapSentence.get("standarddeviation"),
                     noOfDocsLong.doubleValue());
 
+            cache.layers.put(cacheKey, layerStats);
+
             return layerStats;
         }
         catch (mtas.parser.function.ParseException e) {
@@ -868,67 +1130,63 @@ public class MtasDocumentIndex
         return annotateableDocuments;
     }
 
-    private List<LeafReaderContext> sortLeaves(List<LeafReaderContext> aLeaves,
-            IndexSearcher aSearcher, MtasSpanQuery aQuery)
-        throws IOException
-    { // This method sorts the LeafReaderContexts according to the document ids
-      // they contain. If one does not contain a document for this search, then
-      // it is discarded. If one contains multiple document ids the smallest
-      // is used for comparison.
-
-        List<Pair<LeafReaderContext, List<Long>>> mapToDocIds = new ArrayList<>();
-
-        // Here, the query comes into play
-        SpanWeight spanweight = aQuery.rewrite(aSearcher.getIndexReader()).createWeight(aSearcher,
-                COMPLETE_NO_SCORES, 0);
-
-        // cycle through all the leaves
-        for (LeafReaderContext leafReaderContext : aLeaves) {
-            Spans spans = spanweight.getSpans(leafReaderContext, SpanWeight.Postings.POSITIONS);
-            SegmentReader segmentReader = (SegmentReader) leafReaderContext.reader();
-            LongList idList = new LongArrayList();
-            // no spans -> no docs
-            if (spans != null) {
-                // go through the docs in iterator span
-                while (spans.nextDoc() != Spans.NO_MORE_DOCS) {
-                    // don't know why this if is needed, just copy/pasted it from method doQuery
-                    // below
-                    if (segmentReader.numDocs() == segmentReader.maxDoc()
-                            || segmentReader.getLiveDocs().get(spans.docID())) {
-                        // get a document
-                        Document document = segmentReader.document(spans.docID());
-
-                        String rawSourceDocumentId = document.get(FIELD_SOURCE_DOCUMENT_ID);
-                        // go to the next document if the docId is not set
-                        if (rawSourceDocumentId == null) {
-                            continue;
-                        }
-                        // add id to the list of ids for this leafReaderContext
-                        idList.add(Long.parseLong(rawSourceDocumentId));
-                    }
-                }
+    /**
+     * Builds a filter matching the index documents from which the querying user may see results:
+     * the annotation documents of the user and the source documents for which the user does not
+     * have an annotation document yet. Only documents which are annotatable by the user are
+     * included.
+     */
+    private Query buildDocumentFilter(SearchQueryRequest aRequest,
+            Map<SourceDocument, AnnotationDocument> aAnnotatableDocuments)
+    {
+        Optional<SourceDocument> limitedToDocument = aRequest.getLimitedToDocument();
+
+        var annotatableDocumentIds = new ArrayList<BytesRef>();
+        var sourceOnlyDocumentIds = new ArrayList<BytesRef>();
+        for (var entry : aAnnotatableDocuments.entrySet()) {
+            var sourceDocumentId = entry.getKey().getId();
+
+            // If the query is limited to a given document, skip any other documents
+            if (limitedToDocument.isPresent()
+                    && !Objects.equals(limitedToDocument.get().getId(), sourceDocumentId)) {
+                continue;
             }
-            idList.sort(LongComparators.NATURAL_COMPARATOR);
-            if (!idList.isEmpty()) {
-                mapToDocIds.add(Pair.of(leafReaderContext, idList));
+
+            var term = new BytesRef(String.valueOf(sourceDocumentId));
+            annotatableDocumentIds.add(term);
+            if (entry.getValue() == null) {
+                sourceOnlyDocumentIds.add(term);
             }
         }
-        // Sort according to docId; take the smallest value in the list
-        mapToDocIds.sort(comparingLong(s -> s.getValue().get(0)));
 
-        // Only return the leaves
-        return mapToDocIds.stream().map(Pair::getKey).collect(Collectors.toList());
+        var userAnnotationDocuments = new BooleanQuery.Builder() //
+                .add(new TermQuery(new Term(FIELD_USER, aRequest.getUser().getUsername())),
+                        BooleanClause.Occur.FILTER) //
+                .add(new TermInSetQuery(FIELD_SOURCE_DOCUMENT_ID, annotatableDocumentIds),
+                        BooleanClause.Occur.FILTER) //
+                .add(new TermQuery(new Term(FIELD_ANNOTATION_DOCUMENT_ID, "-1")),
+                        BooleanClause.Occur.MUST_NOT) //
+                .build();
+
+        // Results from a source document are only used if there is no corresponding annotation
+        // document for the user
+        var sourceDocuments = new BooleanQuery.Builder() //
+                .add(new TermQuery(new Term(FIELD_ANNOTATION_DOCUMENT_ID, "-1")),
+                        BooleanClause.Occur.FILTER) //
+                .add(new TermInSetQuery(FIELD_SOURCE_DOCUMENT_ID, sourceOnlyDocumentIds),
+                        BooleanClause.Occur.FILTER) //
+                .build();
+
+        return new BooleanQuery.Builder() //
+                .add(userAnnotationDocuments, BooleanClause.Occur.SHOULD) //
+                .add(sourceDocuments, BooleanClause.Occur.SHOULD) //
+                .build();
     }
 
     private Map<String, List<SearchResult>> doQuery(IndexSearcher searcher,
             SearchQueryRequest aRequest, MtasSpanQuery q)
         throws IOException
     {
-        Map<String, List<SearchResult>> results = new LinkedHashMap<>();
-
-        ListIterator<LeafReaderContext> leafReaderContextIterator = sortLeaves(
-                searcher.getIndexReader().leaves(), searcher, q).listIterator();
-
         Map<SourceDocument, AnnotationDocument> sourceAnnotationDocPairs = documentService
                 .listAnnotatableDocuments(aRequest.getProject(), aRequest.getUser());
         Map<Long, SourceDocument> sourceDocumentIndex = new HashMap<>();
@@ -938,207 +1196,118 @@ public class MtasDocumentIndex
         final float boost = 0;
         SpanWeight spanweight = q.rewrite(searcher.getIndexReader()).createWeight(searcher,
                 COMPLETE_NO_SCORES, boost);
+        Weight filterWeight = searcher.createWeight(
+                searcher.rewrite(buildDocumentFilter(aRequest, sourceAnnotationDocPairs)),
+                COMPLETE_NO_SCORES, boost);
 
         long offset = aRequest.getOffset();
         long count = aRequest.getCount();
-        long current = 0;
-
-        resultIteration: while (leafReaderContextIterator.hasNext()) {
-            LeafReaderContext leafReaderContext = leafReaderContextIterator.next();
-
-            try {
-                Spans spans = spanweight.getSpans(leafReaderContext, SpanWeight.Postings.POSITIONS);
-                SegmentReader segmentReader = (SegmentReader) leafReaderContext.reader();
-                Terms terms = segmentReader.terms(FIELD_CONTENT);
-                CodecInfo mtasCodecInfo = CodecInfo.getCodecInfoFromTerms(terms);
-                if (spans != null) {
-                    while (spans.nextDoc() != Spans.NO_MORE_DOCS) {
-                        if (segmentReader.numDocs() == segmentReader.maxDoc()
-                                || segmentReader.getLiveDocs().get(spans.docID())) {
-                            Document document = segmentReader.document(spans.docID());
-
-                            // Retrieve user
-                            String user = document.get(FIELD_USER);
-
-                            // Retrieve source and annotation document ids
-                            String rawSourceDocumentId = document.get(FIELD_SOURCE_DOCUMENT_ID);
-                            String rawAnnotationDocumentId = document
-                                    .get(FIELD_ANNOTATION_DOCUMENT_ID);
-                            if (rawSourceDocumentId == null || rawAnnotationDocumentId == null) {
-                                log.trace(
-                                        "Indexed document lacks source/annotation document IDs"
-                                                + " - source: {}, annotation: {}",
-                                        rawSourceDocumentId, rawAnnotationDocumentId);
-                                continue;
-
-                            }
-
-                            long sourceDocumentId = Long.valueOf(rawSourceDocumentId);
-                            long annotationDocumentId = Long.valueOf(rawAnnotationDocumentId);
-                            boolean matchInSourceDocument = annotationDocumentId == -1;
+        // No leaf needs to contribute more than the hits up to the end of the requested page
+        long limit = count > Long.MAX_VALUE - offset ? Long.MAX_VALUE : offset + count;
+
+        // The leaf tasks use the searcher, so they must all have finished before the caller
+        // releases it - even the ones whose results are not needed
+        var done = new AtomicBoolean(false);
+        var leafTasks = new ArrayList<Future<?>>();
+        var leafHits = new ArrayList<LeafHits>();
+        try {
+            // Process the leaves in the order of the smallest source document ID they contain so
+            // that the results are roughly ordered by document. Leaves without any documents
+            // visible to the user are dropped.
+            var leafOrderFutures = submitForEachLeaf(searcher.getIndexReader().leaves(),
+                    leaf -> Pair.of(leaf, minSourceDocumentId(leaf, filterWeight)));
+            leafTasks.addAll(leafOrderFutures);
+            var leafOrder = new ArrayList<Pair<LeafReaderContext, Long>>();
+            for (var future : leafOrderFutures) {
+                var leafAndMinId = join(future);
+                if (leafAndMinId != null && leafAndMinId.getValue() != null) {
+                    leafOrder.add(leafAndMinId);
+                }
+            }
+            leafOrder.sort(comparingLong(Pair::getValue));
+
+            // Search the leaves in parallel and stop once we have collected enough hits from the
+            // leaves at the start of the order
+            var leafHitFutures = submitForEachLeaf(leafOrder.stream().map(Pair::getKey).toList(),
+                    leaf -> collectHits(leaf, spanweight, filterWeight, limit, done));
+            leafTasks.addAll(leafHitFutures);
+            long collected = 0;
+            for (var future : leafHitFutures) {
+                if (collected >= limit) {
+                    break;
+                }
 
-                            SourceDocument sourceDocument = sourceDocumentIndex
-                                    .get(sourceDocumentId);
+                var hits = join(future);
+                if (hits != null) {
+                    leafHits.add(hits);
+                    collected += hits.hits().size();
+                }
+            }
+        }
+        finally {
+            // Tell the remaining leaf tasks to stop and wait for them
+            done.set(true);
+            drain(leafTasks);
+        }
 
-                            if (sourceDocument == null) {
-                                // Document is not annotatable by this user, so we skip this result
-                                continue;
-                            }
+        Map<String, List<SearchResult>> results = new LinkedHashMap<>();
 
-                            AnnotationDocument annotationDocument = sourceAnnotationDocPairs
-                                    .get(sourceDocument);
+        long current = 0;
+        resultIteration: for (var hits : leafHits) {
+            try {
+                Map<Integer, String> documentTitles = new HashMap<>();
+                for (var hit : hits.hits()) {
+                    if (current < offset) {
+                        current++;
+                        continue;
+                    }
+                    if (current - offset + 1 > count) {
+                        break resultIteration;
+                    }
+                    current++;
+
+                    SourceDocument sourceDocument = sourceDocumentIndex
+                            .get(hit.sourceDocumentId());
+                    AnnotationDocument annotationDocument = sourceAnnotationDocPairs
+                            .get(sourceDocument);
+
+                    // Retrieve document title
+                    String documentTitle = documentTitles.get(hit.docId());
+                    if (documentTitle == null) {
+                        documentTitle = hits.leaf().reader()
+                                .document(hit.docId(), Set.of(FIELD_TITLE)).get(FIELD_TITLE);
+                        documentTitles.put(hit.docId(), documentTitle);
+                    }
 
-                            if (annotationDocument != null
-                                    && IGNORE != annotationDocument.getState()) {
-                                // Skip if the document is ignored for this user
-                                log.trace("Skipping results from ignored document {}",
-                                        sourceDocumentId);
-                            }
+                    // Retrieve all indexed objects within the matching range
+                    int windowStart = Math.max(hit.start() - RESULT_WINDOW_SIZE, 0);
+                    int windowEnd = hit.end() + RESULT_WINDOW_SIZE - 1;
+                    List<MtasTokenString> tokens = hits.codecInfo().getObjectsByPositions(
+                            FIELD_CONTENT, hit.docId(), windowStart, windowEnd);
 
-                            // If the query is limited to a given document, skip any results
-                            // which are not in the given document
-                            Optional<SourceDocument> limitedToDocument = aRequest
-                                    .getLimitedToDocument();
-                            if (limitedToDocument.isPresent() && !Objects
-                                    .equals(limitedToDocument.get().getId(), sourceDocumentId)) {
-                                log.trace(
-                                        "Query limited to document {}, skipping results for "
-                                                + "document {}",
-                                        limitedToDocument.get().getId(), sourceDocumentId);
-                                continue;
-                            }
+                    tokens.sort(Comparator.comparing(MtasTokenString::getOffsetStart));
 
-                            if (matchInSourceDocument && annotationDocument != null) {
-                                // Exclude result if the retrieved document is a sourcedocument
-                                // AND it has a corresponding annotation document for this user
-                                // AND the document is not ignored for this user
-                                log.trace("Skipping results from indexed source document {} in"
-                                        + "favor of results from the corresponding annotation "
-                                        + "document", sourceDocumentId);
-                                continue;
-                            }
-                            else if (annotationDocumentId != -1
-                                    && !aRequest.getUser().getUsername().equals(user)) {
-                                // Exclude result if the retrieved document is an annotation
-                                // document (that is, annotationDocument != -1 and its username
-                                // is different from the querying user
-                                log.trace(
-                                        "Skipping results from annotation document for user {} "
-                                                + "which does not match the requested user {}",
-                                        user, aRequest.getUser().getUsername());
-                                continue;
-                            }
+                    if (tokens.isEmpty()) {
+                        continue;
+                    }
 
-                            // Retrieve document title
-                            String documentTitle = document.get(FIELD_TITLE);
+                    SearchResult result = makeResult(tokens, hit, documentTitle,
+                            annotationDocument);
 
-                            // String idValue = segmentReader.document(spans.docID())
-                            // .getField(FIELD_ID).stringValue();
-                            // log.debug("******** New doc {}-{}", + spans.docID(), idValue);
+                    AnnotationLayer groupingLayer = aRequest.getAnnoationLayer();
+                    AnnotationFeature groupingFeature = aRequest.getAnnotationFeature();
 
-                            while (spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
-                                if (current < offset) {
-                                    current++;
-                                    continue;
-                                }
-                                if (current - offset + 1 > count) {
-                                    break resultIteration;
-                                }
-                                current++;
-                                int matchStart = spans.startPosition();
-                                int matchEnd = spans.endPosition();
-
-                                int windowStart = Math.max(matchStart - RESULT_WINDOW_SIZE, 0);
-                                int windowEnd = matchEnd + RESULT_WINDOW_SIZE - 1;
-
-                                // Retrieve all indexed objects within the matching range
-                                List<MtasTokenString> tokens = mtasCodecInfo.getObjectsByPositions(
-                                        FIELD_CONTENT, spans.docID(), windowStart, windowEnd);
-
-                                tokens.sort(Comparator.comparing(MtasTokenString::getOffsetStart));
-
-                                if (tokens.isEmpty()) {
-                                    continue;
-                                }
-
-                                SearchResult result = new SearchResult();
-                                StringBuilder resultText = new StringBuilder();
-                                StringBuilder leftContext = new StringBuilder();
-                                StringBuilder rightContext = new StringBuilder();
-                                result.setDocumentId(sourceDocumentId);
-                                result.setDocumentTitle(documentTitle);
-                                result.setOffsetStart(tokens.stream()
-                                        .filter(t -> t.getPositionStart() >= matchStart
-                                                && t.getPositionEnd() < matchEnd)
-                                        .mapToInt(MtasTokenString::getOffsetStart).min()
-                                        .orElse(matchStart));
-                                result.setOffsetEnd(tokens.stream()
-                                        .filter(t -> t.getPositionStart() >= matchStart
-                                                && t.getPositionEnd() < matchEnd)
-                                        .mapToInt(MtasTokenString::getOffsetEnd).max()
-                                        .orElse(matchEnd));
-                                result.setTokenStart(matchStart);
-                                result.setTokenLength(matchEnd - matchStart);
-                                result.setReadOnly(annotationDocument != null
-                                        && FINISHED.equals(annotationDocument.getState()));
-                                result.setSelectedForAnnotation(!result.isReadOnly());
-
-                                MtasTokenString prevToken = null;
-                                for (MtasTokenString token : tokens) {
-                                    if (!token.getPrefix().equals(DEFAULT_PREFIX)) {
-                                        continue;
-                                    }
-
-                                    // When searching for an annotation, we don't get the matching
-                                    // text back... not sure why...
-                                    String tokenText = CodecUtil.termValue(token.getValue());
-                                    if (tokenText == null) {
-                                        continue;
-                                    }
-
-                                    if (token.getPositionStart() < matchStart) {
-                                        fill(leftContext, prevToken, token);
-                                        leftContext.append(tokenText);
-                                    }
-                                    else if (token.getPositionStart() >= matchEnd) {
-                                        fill(rightContext, prevToken, token);
-                                        rightContext.append(tokenText);
-                                    }
-                                    else {
-                                        // Only add the whitespace to the match if we already have
-                                        // added any text to the match - otherwise consider the
-                                        // whitespace to be part of the left context
-                                        if (resultText.length() > 0) {
-                                            fill(resultText, prevToken, token);
-                                        }
-                                        else {
-                                            fill(leftContext, prevToken, token);
-                                        }
-                                        resultText.append(tokenText);
-                                    }
-                                    prevToken = token;
-                                }
-                                result.setText(resultText.toString());
-                                result.setLeftContext(leftContext.toString());
-                                result.setRightContext(rightContext.toString());
-
-                                AnnotationLayer groupingLayer = aRequest.getAnnoationLayer();
-                                AnnotationFeature groupingFeature = aRequest.getAnnotationFeature();
-
-                                if (groupingLayer != null && groupingFeature != null) {
-                                    List<String> featureValues = featureValuesAtMatch(tokens,
-                                            matchStart, matchEnd, groupingLayer, groupingFeature);
-                                    for (String featureValue : featureValues) {
-                                        addToResults(results, featureValue, result);
-                                    }
-                                }
-                                else {
-                                    // if no annotation feature is specified group by document title
-                                    addToResults(results, result.getDocumentTitle(), result);
-                                }
-                            }
+                    if (groupingLayer != null && groupingFeature != null) {
+                        List<String> featureValues = featureValuesAtMatch(tokens, hit.start(),
+                                hit.end(), groupingLayer, groupingFeature);
+                        for (String featureValue : featureValues) {
+                            addToResults(results, featureValue, result);
                         }
                     }
+                    else {
+                        // if no annotation feature is specified group by document title
+                        addToResults(results, result.getDocumentTitle(), result);
+                    }
                 }
             }
             catch (Exception e) {
@@ -1155,6 +1324,335 @@ public class MtasDocumentIndex
         return sortedResults;
     }
 
+    private SearchResult makeResult(List<MtasTokenString> aTokens, Hit aHit,
+            String aDocumentTitle, AnnotationDocument aAnnotationDocument)
+    {
+        int matchStart = aHit.start();
+        int matchEnd = aHit.end();
+
+        SearchResult result = new SearchResult();
+        StringBuilder resultText = new StringBuilder();
+        StringBuilder leftContext = new StringBuilder();
+        StringBuilder rightContext = new StringBuilder();
+        result.setDocumentId(aHit.sourceDocumentId());
+        result.setDocumentTitle(aDocumentTitle);
+        result.setOffsetStart(aTokens.stream()
+                .filter(t -> t.getPositionStart() >= matchStart && t.getPositionEnd() < matchEnd)
+                .mapToInt(MtasTokenString::getOffsetStart).min().orElse(matchStart));
+        result.setOffsetEnd(aTokens.stream()
+                .filter(t -> t.getPositionStart() >= matchStart && t.getPositionEnd() < matchEnd)
+                .mapToInt(MtasTokenString::getOffsetEnd).max().orElse(matchEnd));
+        result.setTokenStart(matchStart);
+        result.setTokenLength(matchEnd - matchStart);
+        result.setReadOnly(aAnnotationDocument != null
+                && FINISHED.equals(aAnnotationDocument.getState()));
+        result.setSelectedForAnnotation(!result.isReadOnly());
+
+        MtasTokenString prevToken = null;
+        for (MtasTokenString token : aTokens) {
+            if (!token.getPrefix().equals(DEFAULT_PREFIX)) {
+                continue;
+            }
+
+            // When searching for an annotation, we don't get the matching
+            // text back... not sure why...
+            String tokenText = CodecUtil.termValue(token.getValue());
+            if (tokenText == null) {
+                continue;
+            }
+
+            if (token.getPositionStart() < matchStart) {
+                fill(leftContext, prevToken, token);
+                leftContext.append(tokenText);
+            }
+            else if (token.getPositionStart() >= matchEnd) {
+                fill(rightContext, prevToken, token);
+                rightContext.append(tokenText);
+            }
+            else {
+                // Only add the whitespace to the match if we already have
+                // added any text to the match - otherwise consider the
+                // whitespace to be part of the left context
+                if (resultText.length() > 0) {
+                    fill(resultText, prevToken, token);
+                }
+                else {
+                    fill(leftContext, prevToken, token);
+                }
+                resultText.append(tokenText);
+            }
+            prevToken = token;
+        }
+        result.setText(resultText.toString());
+        result.setLeftContext(leftContext.toString());
+        result.setRightContext(rightContext.toString());
+
+        return result;
+    }
+
+    /**
+     * @return the smallest source document ID of the documents in the given leaf which pass the
+     *         filter or {@code null} if there are no such documents.
+     */
+    private static Long minSourceDocumentId(LeafReaderContext aLeaf, Weight aFilterWeight)
+        throws IOException
+    {
+        Scorer filterScorer = aFilterWeight.scorer(aLeaf);
+        if (filterScorer == null) {
+            return null;
+        }
+
+        Bits liveDocs = aLeaf.reader().getLiveDocs();
+        var sourceDocumentIds = new SourceDocumentIdReader(aLeaf.reader());
+        DocIdSetIterator filter = filterScorer.iterator();
+
+        Long minId = null;
+        for (int doc = filter.nextDoc(); doc != NO_MORE_DOCS; doc = filter.nextDoc()) {
+            if (liveDocs != null && !liveDocs.get(doc)) {
+                continue;
+            }
+
+            long id = sourceDocumentIds.get(doc);
+            if (minId == null || id < minId) {
+                minId = id;
+            }
+        }
+
+        return minId;
+    }
+
+    /**
+     * Collects the hits of the query in the given leaf in document and position order. Only
+     * documents passing the filter are considered.
+     * 
+     * @param aLimit
+     *            the maximum number of hits to collect.
+     * @param aDone
+     *            flag indicating that enough hits have been collected from other leaves and that
+     *            the collection can stop.
+     */
+    private static LeafHits collectHits(LeafReaderContext aLeaf, SpanWeight aSpanWeight,
+            Weight aFilterWeight, long aLimit, AtomicBoolean aDone)
+        throws IOException
+    {
+        var hits = new ArrayList<Hit>();
+        if (aDone.get()) {
+            return new LeafHits(aLeaf, null, hits);
+        }
+
+        CodecInfo codecInfo = CodecInfo.getCodecInfoFromTerms(aLeaf.reader().terms(FIELD_CONTENT));
+
+        Spans spans = aSpanWeight.getSpans(aLeaf, SpanWeight.Postings.POSITIONS);
+        Scorer filterScorer = aFilterWeight.scorer(aLeaf);
+        if (spans == null || filterScorer == null) {
+            return new LeafHits(aLeaf, codecInfo, hits);
+        }
+
+        Bits liveDocs = aLeaf.reader().getLiveDocs();
+        var sourceDocumentIds = new SourceDocumentIdReader(aLeaf.reader());
+        DocIdSetIterator filter = filterScorer.iterator();
+
+        int doc = spans.nextDoc();
+        while (doc != NO_MORE_DOCS && hits.size() < aLimit && !aDone.get()) {
+            // Leap-frog between the matches and the filter until both are on the same document
+            int filterDoc = filter.docID() < doc ? filter.advance(doc) : filter.docID();
+            if (filterDoc == NO_MORE_DOCS) {
+                break;
+            }
+
+            if (filterDoc > doc) {
+                doc = spans.advance(filterDoc);
+                continue;
+            }
+
+            if (liveDocs == null || liveDocs.get(doc)) {
+                long sourceDocumentId = sourceDocumentIds.get(doc);
+                while (hits.size() < aLimit
+                        && spans.nextStartPosition() != Spans.NO_MORE_POSITIONS) {
+                    hits.add(new Hit(doc, sourceDocumentId, spans.startPosition(),
+                            spans.endPosition()));
+                }
+            }
+
+            doc = spans.nextDoc();
+        }
+
+        return new LeafHits(aLeaf, codecInfo, hits);
+    }
+
+    private <T> List<Future<T>> submitForEachLeaf(List<LeafReaderContext> aLeaves,
+            LeafTask<T> aTask)
+    {
+        var futures = new ArrayList<Future<T>>();
+        for (var leaf : aLeaves) {
+            futures.add(QUERY_EXECUTOR.submit(() -> aTask.run(leaf)));
+        }
+        return futures;
+    }
+
+    /**
+     * @return the result of the given leaf task or {@code null} if the task failed. Failing leaves
+     *         are logged and skipped.
+     */
+    private <T> T join(Future<T> aFuture) throws IOException
+    {
+        try {
+            return aFuture.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for query results");
+        }
+        catch (java.util.concurrent.ExecutionException e) {
+            log.error("Unable to process query results", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Waits until the given leaf tasks have finished, e.g. before the searcher they are using is
+     * released. Tasks whose results are no longer needed should have been told to stop before.
+     * Failures of the tasks are ignored since they have been handled by {@link #join} already.
+     */
+    private static void drain(List<? extends Future<?>> aFutures)
+    {
+        boolean interrupted = false;
+        for (var future : aFutures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                }
+                catch (InterruptedException e) {
+                    // Cannot stop waiting here because the searcher may not be released yet
+                    interrupted = true;
+                }
+                catch (java.util.concurrent.ExecutionException e) {
+                    break;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    private interface LeafTask<T>
+    {
+        T run(LeafReaderContext aLeaf) throws IOException;
+    }
+
+    private record Hit(int docId, long sourceDocumentId, int start, int end) {}
+
+    private record LeafHits(LeafReaderContext leaf, CodecInfo codecInfo, List<Hit> hits) {}
+
+    /**
+     * The number of items per prefix in an index document as recorded at indexing time.
+     */
+    private record DocumentStatistics(Map<String, Long> counts)
+    {
+        public long count(String aPrefix)
+        {
+            return counts.getOrDefault(aPrefix, 0L);
+        }
+
+        public static DocumentStatistics parse(String aValue)
+        {
+            var json = new JSONObject(aValue);
+            var counts = new HashMap<String, Long>();
+            for (var key : json.keySet()) {
+                counts.put(key, json.getLong(key));
+            }
+            return new DocumentStatistics(counts);
+        }
+    }
+
+    private record Summary(double sum, double max, double min, double mean, double median,
+            double standardDeviation)
+    {
+        public static Summary of(double[] aValues)
+        {
+            if (aValues.length == 0) {
+                return new Summary(0, 0, 0, 0, 0, 0);
+            }
+
+            var values = aValues.clone();
+            Arrays.sort(values);
+
+            int n = values.length;
+            double sum = 0;
+            double sumOfSquares = 0;
+            for (var value : values) {
+                sum += value;
+                sumOfSquares += value * value;
+            }
+
+            double mean = sum / n;
+            double median = n % 2 == 1 ? values[n / 2]
+                    : (values[n / 2 - 1] + values[n / 2]) / 2;
+            double variance = n > 1 ? (sumOfSquares - sum * mean) / (n - 1) : 0;
+
+            return new Summary(sum, values[n - 1], values[0], mean, median,
+                    Math.sqrt(Math.max(variance, 0)));
+        }
+    }
+
+    private record LayerStatisticsKey(String query, Double minToken, Double maxToken,
+            boolean caseSensitive, List<Integer> documents) {}
+
+    private record UniqueDocumentsKey(String user, Set<Long> annotatedSourceDocuments) {}
+
+    /**
+     * Statistics which remain valid as long as the index does not change.
+     */
+    private static class StatisticsCache
+    {
+        private final IndexReader reader;
+        private final Map<LayerStatisticsKey, LayerStatistics> layers = new ConcurrentHashMap<>();
+        private final Map<UniqueDocumentsKey, List<Integer>> uniqueDocuments = //
+                new ConcurrentHashMap<>();
+        private Map<Integer, DocumentStatistics> documents;
+
+        public StatisticsCache(IndexReader aReader)
+        {
+            reader = aReader;
+        }
+    }
+
+    /**
+     * Reads the source document IDs of the documents in a leaf. The IDs are taken from the doc
+     * values. Documents indexed by older versions do not have these, so for them we fall back to
+     * the stored field.
+     */
+    private static class SourceDocumentIdReader
+    {
+        private final LeafReader reader;
+        private final NumericDocValues values;
+
+        public SourceDocumentIdReader(LeafReader aReader) throws IOException
+        {
+            reader = aReader;
+            values = aReader.getNumericDocValues(FIELD_SOURCE_DOCUMENT_ID);
+        }
+
+        /**
+         * @param aDoc
+         *            a document ID. Must not be smaller than the ID of the previous call.
+         * @return the source document ID.
+         */
+        public long get(int aDoc) throws IOException
+        {
+            if (values != null && values.advanceExact(aDoc)) {
+                return values.longValue();
+            }
+
+            return Long.parseLong(reader.document(aDoc, Set.of(FIELD_SOURCE_DOCUMENT_ID))
+                    .get(FIELD_SOURCE_DOCUMENT_ID));
+        }
+    }
+
     private void addToResults(Map<String, List<SearchResult>> aResultsMap, String aKey,
             SearchResult aSearchResult)
     {
@@ -1226,8 +1724,8 @@ public class MtasDocumentIndex
         }
     }
 
-    private String indexDocument(String aDocumentTitle, long aSourceDocumentId,
-            long aAnnotationDocumentId, String aUser, byte[] aBinaryCas)
+    private String indexDocument(IndexWriter aIndexWriter, String aDocumentTitle,
+            long aSourceDocumentId, long aAnnotationDocumentId, String aUser, byte[] aBinaryCas)
         throws IOException
     {
         // Calculate timestamp that will be indexed
@@ -1239,8 +1737,6 @@ public class MtasDocumentIndex
                 project.getName(), project.getId(), aSourceDocumentId, aAnnotationDocumentId, aUser,
                 timestamp);
 
-        IndexWriter indexWriter = getIndexWriter();
-
         // Prepare bytearray with document content to be indexed
         String encodedCAS = new String(MtasUtils.bytesToChars(aBinaryCas));
 
@@ -1253,19 +1749,75 @@ public class MtasDocumentIndex
                 Field.Store.YES));
         doc.add(new StringField(FIELD_SOURCE_DOCUMENT_ID, String.valueOf(aSourceDocumentId),
                 Field.Store.YES));
+        // Doc values allow accessing the ID when processing query results without having to load
+        // the stored fields
+        doc.add(new NumericDocValuesField(FIELD_SOURCE_DOCUMENT_ID, aSourceDocumentId));
         doc.add(new StringField(FIELD_ANNOTATION_DOCUMENT_ID, String.valueOf(aAnnotationDocumentId),
                 Field.Store.YES));
         doc.add(new StringField(FIELD_TITLE, aDocumentTitle, Field.Store.YES));
         doc.add(new StringField(FIELD_USER, aUser, Field.Store.YES));
         doc.add(new StringField(FIELD_TIMESTAMP, timestamp, Field.Store.YES));
-        doc.add(new TextField(FIELD_CONTENT, encodedCAS, Field.Store.NO));
+        // Count the indexed items while the content is analyzed. The index writer processes the
+        // fields in order, so the statistics field is only read once the content is indexed.
+        var content = new PrefixCountingFilter(
+                aIndexWriter.getAnalyzer().tokenStream(FIELD_CONTENT, encodedCAS));
+        doc.add(new TextField(FIELD_CONTENT, content));
+        doc.add(new StoredField(FIELD_STATISTICS, "")
+        {
+            @Override
+            public String stringValue()
+            {
+                return content.getCounts();
+            }
+        });
 
         // Add document to the Lucene index
-        indexWriter.addDocument(doc);
+        aIndexWriter.addDocument(doc);
 
         return timestamp;
     };
 
+    /**
+     * Passes the tokens on unchanged while counting the tokens per prefix.
+     */
+    private static final class PrefixCountingFilter
+        extends TokenFilter
+    {
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+        private final Map<String, Long> counts = new HashMap<>();
+
+        public PrefixCountingFilter(TokenStream aInput)
+        {
+            super(aInput);
+        }
+
+        @Override
+        public boolean incrementToken() throws IOException
+        {
+            if (!input.incrementToken()) {
+                return false;
+            }
+
+            counts.merge(CodecUtil.termPrefix(termAttribute.toString()), 1L, Long::sum);
+            return true;
+        }
+
+        @Override
+        public void reset() throws IOException
+        {
+            super.reset();
+            counts.clear();
+        }
+
+        /**
+         * @return the number of tokens per prefix encoded as JSON.
+         */
+        public String getCounts()
+        {
+            return new JSONObject(counts).toString();
+        }
+    }
+
     /**
      * Remove document from the index
      * 
@@ -1276,20 +1828,16 @@ public class MtasDocumentIndex
      * @param aUser
      *            The owner of the document to be removed
      */
-    private void deindexDocument(long aSourceDocumentId, long aAnnotationDocumentId, String aUser)
+    private void deindexDocument(IndexWriter aIndexWriter, long aSourceDocumentId,
+            long aAnnotationDocumentId, String aUser)
         throws IOException
     {
-        if (!isCreated()) {
-            return;
-        }
-
         log.debug(
                 "Removing from index in project [{}]({}). sourceId: {}, annotationId: {}, user: {}",
                 project.getName(), project.getId(), aSourceDocumentId, aAnnotationDocumentId,
                 aUser);
 
-        IndexWriter indexWriter = getIndexWriter();
-        indexWriter.deleteDocuments(new Term(FIELD_ID,
+        aIndexWriter.deleteDocuments(new Term(FIELD_ID,
                 String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId)));
     }
 
@@ -1305,8 +1853,8 @@ public class MtasDocumentIndex
      * @param aTimestamp
      *            The timestamp of the document to be removed
      */
-    private void deindexDocument(long aSourceDocumentId, long aAnnotationDocumentId, String aUser,
-            String aTimestamp)
+    private void deindexDocument(IndexWriter aIndexWriter, long aSourceDocumentId,
+            long aAnnotationDocumentId, String aUser, String aTimestamp)
         throws IOException
     {
         log.debug(
@@ -1315,8 +1863,6 @@ public class MtasDocumentIndex
                 project.getName(), project.getId(), aSourceDocumentId, aAnnotationDocumentId, aUser,
                 aTimestamp);
 
-        IndexWriter indexWriter = getIndexWriter();
-
         // Prepare boolean query with the two obligatory terms (id and timestamp)
         BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder() //
                 .add(new TermQuery(new Term(FIELD_ID,
@@ -1326,7 +1872,7 @@ public class MtasDocumentIndex
                         BooleanClause.Occur.MUST);
 
         // Delete document based on the previous query
-        indexWriter.deleteDocuments(booleanQuery.build());
+        aIndexWriter.deleteDocuments(booleanQuery.build());
     }
 
     /**
@@ -1341,8 +1887,8 @@ public class MtasDocumentIndex
      * @param aCurrentVersion
      *            The timestamp of the document to be kept
      */
-    private void deindexOldVersionsOfDocument(long aSourceDocumentId, long aAnnotationDocumentId,
-            String aUser, String aCurrentVersion)
+    private void deindexOldVersionsOfDocument(IndexWriter aIndexWriter, long aSourceDocumentId,
+            long aAnnotationDocumentId, String aUser, String aCurrentVersion)
         throws IOException
     {
         log.debug(
@@ -1351,8 +1897,6 @@ public class MtasDocumentIndex
                 project.getName(), project.getId(), aSourceDocumentId, aAnnotationDocumentId, aUser,
                 aCurrentVersion);
 
-        IndexWriter indexWriter = getIndexWriter();
-
         // Prepare boolean query with the two obligatory terms (id and timestamp)
         BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder() //
                 .add(new TermQuery(new Term(FIELD_ID,
@@ -1362,7 +1906,7 @@ public class MtasDocumentIndex
                         BooleanClause.Occur.MUST_NOT);
 
         // Delete document based on the previous query
-        indexWriter.deleteDocuments(booleanQuery.build());
+        aIndexWriter.deleteDocuments(booleanQuery.build());
     }
 
     /**
@@ -1374,17 +1918,27 @@ public class MtasDocumentIndex
     @Override
     public void deindexDocument(SourceDocument aDocument) throws IOException
     {
-        deindexDocument(aDocument.getId(), -1, "");
+        update(() -> {
+            if (isCreated()) {
+                deindexDocument(getIndexWriter(), aDocument.getId(), -1, "");
+            }
+            mirrorToRebuild(documentKey(aDocument.getId(), -1),
+                    writer -> deindexDocument(writer, aDocument.getId(), -1, ""));
+        });
         scheduleCommit();
     }
 
     @Override
-    public synchronized void clear() throws IOException
+    public void clear() throws IOException
     {
-        // Remove all data from the index
-        IndexWriter indexWriter = getIndexWriter();
-        indexWriter.deleteAll();
-        ensureAllIsCommitted();
+        update(() -> {
+            synchronized (this) {
+                // Remove all data from the index
+                IndexWriter indexWriter = getIndexWriter();
+                indexWriter.deleteAll();
+                ensureAllIsCommitted();
+            }
+        });
     }
 
     /**
@@ -1396,7 +1950,15 @@ public class MtasDocumentIndex
     @Override
     public void deindexDocument(AnnotationDocument aDocument) throws IOException
     {
-        deindexDocument(aDocument.getDocument().getId(), aDocument.getId(), aDocument.getUser());
+        update(() -> {
+            if (isCreated()) {
+                deindexDocument(getIndexWriter(), aDocument.getDocument().getId(),
+                        aDocument.getId(), aDocument.getUser());
+            }
+            mirrorToRebuild(documentKey(aDocument),
+                    writer -> deindexDocument(writer, aDocument.getDocument().getId(),
+                            aDocument.getId(), aDocument.getUser()));
+        });
         scheduleCommit();
     }
 
@@ -1410,8 +1972,13 @@ public class MtasDocumentIndex
     @Override
     public void deindexDocument(AnnotationDocument aDocument, String aTimestamp) throws IOException
     {
-        deindexDocument(aDocument.getDocument().getId(), aDocument.getId(), aDocument.getUser(),
-                aTimestamp);
+        update(() -> {
+            deindexDocument(getIndexWriter(), aDocument.getDocument().getId(), aDocument.getId(),
+                    aDocument.getUser(), aTimestamp);
+            mirrorToRebuild(documentKey(aDocument),
+                    writer -> deindexDocument(writer, aDocument.getDocument().getId(),
+                            aDocument.getId(), aDocument.getUser(), aTimestamp));
+        });
         scheduleCommit();
     }
 
@@ -1422,18 +1989,33 @@ public class MtasDocumentIndex
      */
     private File getIndexDir()
     {
-        return new File(repositoryDir, "/" + PROJECT_FOLDER + "/" + project.getId() + "/" + INDEX);
+        return getIndexDir(INDEX);
+    }
+
+    private File getIndexDir(String aName)
+    {
+        return new File(repositoryDir, "/" + PROJECT_FOLDER + "/" + project.getId() + "/" + aName);
     }
 
     @Override
-    public synchronized void delete() throws IOException
+    public void delete() throws IOException
     {
-        if (isOpen()) {
-            close();
-        }
+        updateLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                abortRebuild();
+
+                if (isOpen()) {
+                    close();
+                }
 
-        // Delete the index directory
-        deleteDirectory(getIndexDir());
+                // Delete the index directory
+                deleteDirectory(getIndexDir());
+            }
+        }
+        finally {
+            updateLock.writeLock().unlock();
+        }
 
         log.debug("Index for project [{}]({}) has been deleted", project.getName(),
                 project.getId());
@@ -1510,10 +2092,6 @@ public class MtasDocumentIndex
     @Override
     public void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas) throws IOException
     {
-        long srcDocId = aDocument.getDocument().getId();
-        long annoDocId = aDocument.getId();
-        String user = aDocument.getUser();
-
         // NOTE: Deleting and then re-indexing the annotation document could lead to
         // no results for this annotation document being returned while the
         // re-indexing is still in process. Therefore, we check if there is already
@@ -1528,14 +2106,16 @@ public class MtasDocumentIndex
         // oldTimestamp = getTimestamp(srcDocId, annoDocId);
         // }
 
-        var currentTimestamp = indexDocument(aDocument.getName(), srcDocId, annoDocId, user,
-                aBinaryCas);
+        update(() -> {
+            writeAnnotationDocument(getIndexWriter(), aDocument, aBinaryCas);
 
-        deindexOldVersionsOfDocument(srcDocId, annoDocId, user, currentTimestamp);
+            // if (oldTimestamp.isPresent()) {
+            // deindexDocument(srcDocId, annoDocId, user, oldTimestamp.get());
+            // }
 
-        // if (oldTimestamp.isPresent()) {
-        // deindexDocument(srcDocId, annoDocId, user, oldTimestamp.get());
-        // }
+            mirrorToRebuild(documentKey(aDocument),
+                    writer -> writeAnnotationDocument(writer, aDocument, aBinaryCas));
+        });
 
         scheduleCommit();
     }
@@ -1546,11 +2126,291 @@ public class MtasDocumentIndex
         // NOTE: deleting all index versions related to the sourcedoc is ok in comparison to
         // re-indexing annotation documents, because we do this before the search
         // is accessed and therefore do not care about indices not being available for a short time
-        if (!BulkIndexingContext.isFullReindexInProgress()) {
-            deindexDocument(aSourceDocument.getId(), -1, "");
-        }
+        update(() -> {
+            writeSourceDocument(getIndexWriter(), aSourceDocument, aBinaryCas,
+                    !BulkIndexingContext.isFullReindexInProgress());
+
+            mirrorToRebuild(documentKey(aSourceDocument.getId(), -1),
+                    writer -> writeSourceDocument(writer, aSourceDocument, aBinaryCas, true));
+        });
 
-        indexDocument(aSourceDocument.getName(), aSourceDocument.getId(), -1, "", aBinaryCas);
         scheduleCommit();
     }
+
+    private void writeAnnotationDocument(IndexWriter aIndexWriter, AnnotationDocument aDocument,
+            byte[] aBinaryCas)
+        throws IOException
+    {
+        long srcDocId = aDocument.getDocument().getId();
+        long annoDocId = aDocument.getId();
+        String user = aDocument.getUser();
+
+        var currentTimestamp = indexDocument(aIndexWriter, aDocument.getName(), srcDocId,
+                annoDocId, user, aBinaryCas);
+
+        deindexOldVersionsOfDocument(aIndexWriter, srcDocId, annoDocId, user, currentTimestamp);
+    }
+
+    private void writeSourceDocument(IndexWriter aIndexWriter, SourceDocument aSourceDocument,
+            byte[] aBinaryCas, boolean aReplaceExisting)
+        throws IOException
+    {
+        if (aReplaceExisting) {
+            deindexDocument(aIndexWriter, aSourceDocument.getId(), -1, "");
+        }
+
+        indexDocument(aIndexWriter, aSourceDocument.getName(), aSourceDocument.getId(), -1, "",
+                aBinaryCas);
+    }
+
+    /**
+     * Builds a new index in a shadow directory while the current index continues to serve queries.
+     * Changes to the current index which happen during the rebuild are also applied to the shadow
+     * index so they are not lost when the rebuilt index is swapped in.
+     */
+    @Override
+    public IndexRebuild startRebuild() throws IOException
+    {
+        updateLock.writeLock().lock();
+        try {
+            synchronized (this) {
+                // A new rebuild supersedes any rebuild which may still be running
+                abortRebuild();
+
+                activeRebuild = new ShadowIndexRebuild(getIndexDir(INDEX_REBUILD));
+                return activeRebuild;
+            }
+        }
+        finally {
+            updateLock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void abortRebuild()
+    {
+        var rebuild = activeRebuild;
+        if (rebuild == null) {
+            return;
+        }
+
+        try {
+            rebuild.close();
+        }
+        catch (IOException e) {
+            log.error("Error aborting index rebuild for project {}", project, e);
+        }
+    }
+
+    /**
+     * Runs an update of the current index. See {@link #updateLock}.
+     */
+    private void update(IndexUpdate aUpdate) throws IOException
+    {
+        updateLock.readLock().lock();
+        try {
+            aUpdate.run();
+        }
+        finally {
+            updateLock.readLock().unlock();
+        }
+    }
+
+    private void mirrorToRebuild(String aDocumentKey, IndexWriterAction aAction)
+        throws IOException
+    {
+        var rebuild = activeRebuild;
+        if (rebuild != null) {
+            rebuild.mirror(aDocumentKey, aAction);
+        }
+    }
+
+    private static String documentKey(AnnotationDocument aDocument)
+    {
+        return documentKey(aDocument.getDocument().getId(), aDocument.getId());
+    }
+
+    private static String documentKey(long aSourceDocumentId, long aAnnotationDocumentId)
+    {
+        return String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId);
+    }
+
+    /**
+     * Replaces the current index directory with the rebuilt one. The current index must be closed
+     * at this point.
+     */
+    private void swapInRebuiltIndex(File aRebuildDir) throws IOException
+    {
+        var indexDir = getIndexDir();
+        var oldIndexDir = getIndexDir(INDEX_OLD);
+
+        if (oldIndexDir.exists()) {
+            deleteDirectory(oldIndexDir);
+        }
+
+        if (indexDir.exists()) {
+            Files.move(indexDir.toPath(), oldIndexDir.toPath(), ATOMIC_MOVE);
+        }
+
+        Files.move(aRebuildDir.toPath(), indexDir.toPath(), ATOMIC_MOVE);
+
+        deleteDirectory(oldIndexDir);
+    }
+
+    @FunctionalInterface
+    private interface IndexWriterAction
+    {
+        void run(IndexWriter aIndexWriter) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface IndexUpdate
+    {
+        void run() throws IOException;
+    }
+
+    /**
+     * Documents which were changed while the rebuild is running are mirrored into the shadow index.
+     * The version written by the mirror is the most recent one, so a rebuild worker which has read
+     * an older version of the same document before the change must not overwrite it. The
+     * {@link #documentLocks} make sure that the check and the write of a worker do not interleave
+     * with a mirrored change to the same document.
+     */
+    private class ShadowIndexRebuild
+        implements IndexRebuild
+    {
+        private final File indexDir;
+        private final IndexWriter indexWriter;
+        private final Map<String, Object> documentLocks = new ConcurrentHashMap<>();
+        private final Set<String> mirroredDocuments = ConcurrentHashMap.newKeySet();
+
+        private volatile boolean closed;
+
+        public ShadowIndexRebuild(File aIndexDir) throws IOException
+        {
+            indexDir = aIndexDir;
+
+            // Remove any leftovers of a rebuild which did not complete
+            if (indexDir.exists()) {
+                deleteDirectory(indexDir);
+            }
+
+            indexWriter = createIndexWriter(indexDir, true);
+        }
+
+        @Override
+        public void indexDocument(SourceDocument aSourceDocument, byte[] aBinaryCas)
+            throws IOException
+        {
+            ensureNotClosed();
+            writeUnlessMirrored(documentKey(aSourceDocument.getId(), -1),
+                    writer -> writeSourceDocument(writer, aSourceDocument, aBinaryCas, false));
+        }
+
+        @Override
+        public void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas)
+            throws IOException
+        {
+            ensureNotClosed();
+            writeUnlessMirrored(documentKey(aDocument),
+                    writer -> writeAnnotationDocument(writer, aDocument, aBinaryCas));
+        }
+
+        private void writeUnlessMirrored(String aDocumentKey, IndexWriterAction aAction)
+            throws IOException
+        {
+            synchronized (documentLock(aDocumentKey)) {
+                if (mirroredDocuments.contains(aDocumentKey)) {
+                    log.trace("Skipping outdated version of document [{}] in index rebuild",
+                            aDocumentKey);
+                    return;
+                }
+
+                aAction.run(indexWriter);
+            }
+        }
+
+        synchronized void mirror(String aDocumentKey, IndexWriterAction aAction)
+            throws IOException
+        {
+            if (closed) {
+                return;
+            }
+
+            synchronized (documentLock(aDocumentKey)) {
+                mirroredDocuments.add(aDocumentKey);
+                aAction.run(indexWriter);
+            }
+        }
+
+        private Object documentLock(String aDocumentKey)
+        {
+            return documentLocks.computeIfAbsent(aDocumentKey, k -> new Object());
+        }
+
+        @Override
+        public void commit() throws IOException
+        {
+            updateLock.writeLock().lock();
+            try {
+                synchronized (MtasDocumentIndex.this) {
+                    synchronized (this) {
+                        ensureNotClosed();
+                        closed = true;
+                        activeRebuild = null;
+
+                        indexWriter.commit();
+                        indexWriter.close();
+
+                        // The current index is re-opened on the next access
+                        closeIndex();
+                        swapInRebuiltIndex(indexDir);
+                    }
+                }
+            }
+            finally {
+                updateLock.writeLock().unlock();
+            }
+
+            log.info("Swapped in rebuilt index for project {}", project);
+        }
+
+        @Override
+        public void close() throws IOException
+        {
+            updateLock.writeLock().lock();
+            try {
+                synchronized (MtasDocumentIndex.this) {
+                    synchronized (this) {
+                        if (closed) {
+                            return;
+                        }
+
+                        closed = true;
+                        if (activeRebuild == this) {
+                            activeRebuild = null;
+                        }
+
+                        try {
+                            indexWriter.rollback();
+                        }
+                        finally {
+                            deleteDirectory(indexDir);
+                        }
+                    }
+                }
+            }
+            finally {
+                updateLock.writeLock().unlock();
+            }
+
+            log.debug("Discarded index rebuild for project {}", project);
+        }
+
+        private void ensureNotClosed() throws IOException
+        {
+            if (closed) {
+                throw new IOException("Index rebuild for project " + project + " was closed");
+            }
+        }
+    }
 }
@@ -17,25 +17,33 @@
  */
 package de.tudarmstadt.ukp.inception.search.index.mtas;
 
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.casToByteArray;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.awaitility.Awaitility.await;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.uima.fit.factory.JCasBuilder;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
+import org.assertj.core.util.DoubleComparator;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
@@ -87,13 +95,18 @@ import de.tudarmstadt.ukp.inception.kb.config.KnowledgeBaseServiceAutoConfigurat
 import de.tudarmstadt.ukp.inception.preferences.config.PreferencesServiceAutoConfig;
 import de.tudarmstadt.ukp.inception.project.api.ProjectService;
 import de.tudarmstadt.ukp.inception.scheduling.config.SchedulingServiceAutoConfiguration;
+import de.tudarmstadt.ukp.inception.schema.api.feature.FeatureSupportRegistry;
 import de.tudarmstadt.ukp.inception.schema.config.AnnotationSchemaServiceAutoConfiguration;
+import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistry;
 import de.tudarmstadt.ukp.inception.search.LayerStatistics;
+import de.tudarmstadt.ukp.inception.search.SearchQueryRequest;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
 import de.tudarmstadt.ukp.inception.search.SearchService;
+import de.tudarmstadt.ukp.inception.search.StatisticRequest;
 import de.tudarmstadt.ukp.inception.search.StatisticsResult;
 import de.tudarmstadt.ukp.inception.search.config.SearchServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexAutoConfiguration;
+import de.tudarmstadt.ukp.inception.search.model.AnnotationSearchState;
 
 @EnableAutoConfiguration
 @EntityScan({ //
@@ -141,6 +154,8 @@ public class MtasDocumentIndexTest
     private @Autowired ProjectService projectService;
     private @Autowired DocumentService documentService;
     private @Autowired SearchService searchService;
+    private @Autowired FeatureIndexingSupportRegistry featureIndexingSupportRegistry;
+    private @Autowired FeatureSupportRegistry featureSupportRegistry;
 
     private User user;
 
@@ -355,6 +370,146 @@ public class MtasDocumentIndexTest
         assertThat(results).containsExactly(expectedResult);
     }
 
+    @Test
+    public void thatQueryResultsAreRetainedAfterReindexing() throws Exception
+    {
+        Project project = new Project("query-results-retained-after-reindexing");
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument("Raw text document", project, "text");
+
+        String fileContent = "The capital of Galicia is Santiago de Compostela.";
+
+        uploadDocument(Pair.of(sourceDocument, fileContent));
+
+        List<SearchResult> resultsBefore = searchService.query(user, project, "Galicia");
+
+        searchService.reindex(project, null);
+
+        List<SearchResult> resultsAfter = searchService.query(user, project, "Galicia");
+
+        assertThat(resultsBefore).hasSize(1);
+        assertThat(resultsAfter).containsExactlyElementsOf(resultsBefore);
+    }
+
+    @Test
+    public void thatChangeDuringRebuildIsNotOverwrittenByRebuild() throws Exception
+    {
+        Project project = new Project("change-during-rebuild-not-overwritten");
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument("Raw text document", project, "text");
+
+        uploadDocument(Pair.of(sourceDocument, "The capital of Galicia is Santiago."));
+
+        // Use a separate index so the rebuild steps can be interleaved deterministically
+        var index = new MtasDocumentIndex(project, documentService,
+                TEST_OUTPUT_FOLDER + "/change-during-rebuild", featureIndexingSupportRegistry,
+                featureSupportRegistry);
+        try {
+            byte[] oldCas = tokenizedCas("The capital of Galicia is Santiago .");
+            byte[] newCas = tokenizedCas("The capital of Asturias is Oviedo .");
+
+            index.indexDocument(sourceDocument, oldCas);
+
+            try (var rebuild = index.startRebuild()) {
+                // The document is changed while the rebuild is running...
+                index.indexDocument(sourceDocument, newCas);
+
+                // ... but the rebuild has read the document before the change
+                rebuild.indexDocument(sourceDocument, oldCas);
+
+                rebuild.commit();
+            }
+
+            assertThat(index.executeQuery(queryRequest(project, "Asturias")).values().stream()
+                    .flatMap(List::stream)) //
+                    .extracting(SearchResult::getDocumentId) //
+                    .containsExactly(sourceDocument.getId());
+            assertThat(index.executeQuery(queryRequest(project, "Galicia"))).isEmpty();
+        }
+        finally {
+            index.delete();
+        }
+    }
+
+    @Test
+    public void thatUpdatesDuringCommitOfRebuildAreNotLost() throws Exception
+    {
+        Project project = new Project("updates-during-commit-of-rebuild-not-lost");
+
+        createProject(project);
+
+        var index = new MtasDocumentIndex(project, documentService,
+                TEST_OUTPUT_FOLDER + "/updates-during-commit", featureIndexingSupportRegistry,
+                featureSupportRegistry);
+        try {
+            byte[] cas = tokenizedCas("The capital of Galicia is Santiago .");
+
+            var documents = new ArrayList<AnnotationDocument>();
+            for (int i = 0; i < 100; i++) {
+                var sourceDocument = new SourceDocument("Document " + i, project, "text");
+                sourceDocument.setId(1000l + i);
+                var annotationDocument = new AnnotationDocument(user.getUsername(),
+                        sourceDocument);
+                annotationDocument.setId(2000l + i);
+                documents.add(annotationDocument);
+            }
+
+            var updated = new AtomicInteger();
+            var rebuild = index.startRebuild();
+            var updater = CompletableFuture.runAsync(() -> {
+                try {
+                    for (var document : documents) {
+                        index.indexDocument(document, cas);
+                        updated.incrementAndGet();
+                    }
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            // Swap in the rebuilt index while the documents are being updated
+            await().atMost(60, SECONDS).until(() -> updated.get() >= 10);
+            rebuild.commit();
+            rebuild.close();
+            updater.get(60, SECONDS);
+
+            // Every update went either to the index which was replaced and was mirrored to the
+            // rebuilt one, or to the rebuilt one directly
+            for (var document : documents) {
+                assertThat(index.getTimestamp(document.getDocument().getId(), document.getId()))
+                        .as("Document %d", document.getDocument().getId()) //
+                        .isPresent();
+            }
+        }
+        finally {
+            index.delete();
+        }
+    }
+
+    private SearchQueryRequest queryRequest(Project aProject, String aQuery)
+    {
+        return new SearchQueryRequest(aProject, user, aQuery, new AnnotationSearchState());
+    }
+
+    private byte[] tokenizedCas(String aText) throws Exception
+    {
+        JCas jCas = JCasFactory.createJCas();
+
+        JCasBuilder builder = new JCasBuilder(jCas);
+        for (String token : aText.split(" ")) {
+            builder.add(token, Token.class);
+            builder.add(" ");
+        }
+        builder.close();
+
+        return casToByteArray(jCas.getCas());
+    }
+
     @Test
     public void thatLastTokenInDocumentCanBeFound() throws Exception
     {
@@ -627,6 +782,115 @@ public class MtasDocumentIndexTest
                 .containsExactlyElementsOf(resultsAfter.keySet());
     }
 
+    @Test
+    public void thatQueryOnlyReturnsDocumentsVisibleToUser() throws Exception
+    {
+        Project project = new Project("query-only-visible-documents");
+
+        createProject(project);
+
+        if (!userRepository.exists("other")) {
+            userRepository.create(new User("other", Role.ROLE_USER));
+        }
+        User other = userRepository.get("other");
+
+        SourceDocument sourceDocument1 = new SourceDocument("Annotation document 1", project,
+                "text");
+        SourceDocument sourceDocument2 = new SourceDocument("Annotation document 2", project,
+                "text");
+
+        String fileContent = "The capital of Galicia is Santiago de Compostela.";
+
+        uploadDocument(Pair.of(sourceDocument1, fileContent));
+        uploadDocument(Pair.of(sourceDocument2, fileContent));
+        annotateDocument(project, user, sourceDocument1);
+        annotateDocument(project, other, sourceDocument2);
+
+        String query = "<Named_entity.value=\"LOC\"/>";
+
+        // Each user only sees their own annotations and the source documents they have not
+        // started annotating yet
+        assertThat(searchService.query(user, project, query)) //
+                .extracting(SearchResult::getDocumentId) //
+                .containsExactly(sourceDocument1.getId());
+        assertThat(searchService.query(other, project, query)) //
+                .extracting(SearchResult::getDocumentId) //
+                .containsExactly(sourceDocument2.getId());
+
+        // Plain text matches in documents annotated by others are found in the source document
+        assertThat(searchService.query(user, project, "Galicia")) //
+                .extracting(SearchResult::getDocumentId) //
+                .containsExactlyInAnyOrder(sourceDocument1.getId(), sourceDocument2.getId());
+    }
+
+    @Test
+    public void thatPagingReturnsConsecutiveSlices() throws Exception
+    {
+        Project project = new Project("paging-consecutive-slices");
+
+        createProject(project);
+
+        SourceDocument sourceDocument1 = new SourceDocument("Document 1", project, "text");
+        SourceDocument sourceDocument2 = new SourceDocument("Document 2", project, "text");
+
+        uploadDocument(Pair.of(sourceDocument1, "a a a a a a a a a a"));
+        uploadDocument(Pair.of(sourceDocument2, "a a a a a"));
+
+        var all = page(project, "a", 0, 100);
+
+        assertThat(all).hasSize(15);
+        assertThat(searchService.determineNumOfQueryResults(user, project, "a", null, null, null))
+                .isEqualTo(15);
+
+        // Pages within a document, across documents and past the end
+        for (var page : List.of(Pair.of(0, 4), Pair.of(3, 5), Pair.of(8, 4), Pair.of(12, 10),
+                Pair.of(15, 5))) {
+            int offset = page.getKey();
+            int count = page.getValue();
+            assertThat(page(project, "a", offset, count)) //
+                    .as("Page at offset %d with count %d", offset, count) //
+                    .containsExactlyElementsOf(
+                            all.subList(offset, Math.min(offset + count, all.size())));
+        }
+    }
+
+    @Test
+    public void thatQueryStopsAtRequestedCount() throws Exception
+    {
+        Project project = new Project("query-stops-at-requested-count");
+
+        createProject(project);
+
+        SourceDocument sourceDocument1 = new SourceDocument("Document 1", project, "text");
+        SourceDocument sourceDocument2 = new SourceDocument("Document 2", project, "text");
+
+        uploadDocument(Pair.of(sourceDocument1, "a a a"));
+        uploadDocument(Pair.of(sourceDocument2, "a a a"));
+
+        // Enough hits are found in the first document
+        assertThat(page(project, "a", 0, 2)) //
+                .extracting(SearchResult::getDocumentId, SearchResult::getTokenStart) //
+                .containsExactly( //
+                        tuple(sourceDocument1.getId(), 0), //
+                        tuple(sourceDocument1.getId(), 1));
+
+        // Stopping in the second document
+        assertThat(page(project, "a", 2, 2)) //
+                .extracting(SearchResult::getDocumentId, SearchResult::getTokenStart) //
+                .containsExactly( //
+                        tuple(sourceDocument1.getId(), 2), //
+                        tuple(sourceDocument2.getId(), 0));
+    }
+
+    private List<SearchResult> page(Project aProject, String aQuery, long aOffset, long aCount)
+        throws Exception
+    {
+        return searchService.query(user, aProject, aQuery, null, null, null, aOffset, aCount)
+                .values().stream() //
+                .flatMap(List::stream) //
+                .toList();
+    }
+
     @Disabled("This test is flaky, but I do not know why - maybe some race condition in the indexing")
     @Test
     public void testStatistics() throws Exception
@@ -715,6 +979,93 @@ public class MtasDocumentIndexTest
         assertThat(queryStatsResults.getResults()).isEqualTo(expected);
     }
 
+    @Test
+    public void thatDocumentStatisticsMatchLayerStatistics() throws Exception
+    {
+        Project project = new Project("document-statistics-match-layer-statistics");
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument("Annotation document", project, "text");
+        SourceDocument otherDocument = new SourceDocument("Other document", project, "text");
+
+        uploadDocument(Pair.of(sourceDocument, "The capital of Galicia is Santiago."),
+                Pair.of(otherDocument, "Goodbye moon. Hello World."));
+
+        // Use a separate index so the documents can be indexed directly
+        var index = new MtasDocumentIndex(project, documentService,
+                TEST_OUTPUT_FOLDER + "/document-statistics", featureIndexingSupportRegistry,
+                featureSupportRegistry);
+        try {
+            index.indexDocument(sourceDocument, sentencesCas("The capital of Galicia is ."));
+            index.indexDocument(otherDocument, sentencesCas("Goodbye moon .", "Hello World ."));
+            // Replacing a document leaves a deleted document in the index
+            index.indexDocument(sourceDocument,
+                    sentencesCas("The capital of @Galicia is @Santiago .", "It is nice ."));
+
+            AnnotationLayer ne = new AnnotationLayer();
+            ne.setUiName("Named entity");
+            AnnotationFeature value = new AnnotationFeature();
+            value.setUiName("value");
+            value.setLayer(ne);
+
+            var request = new StatisticRequest(project, user, Integer.MIN_VALUE,
+                    Integer.MAX_VALUE, Set.of(value), null, new AnnotationSearchState());
+
+            List<Integer> fullDocSet = index.getUniqueDocuments(request);
+            assertThat(fullDocSet).hasSize(2);
+
+            var results = index.getAnnotationStatistics(request).getResults();
+
+            var queries = Map.of( //
+                    "Named entity.value", "<Named_entity.value=\"\"/>", //
+                    "Segmentation.token", "<Token=\"\"/>", //
+                    "Segmentation.sentence", "<s=\"\"/>");
+            for (var query : queries.entrySet()) {
+                LayerStatistics expected = index.getLayerStatistics(request, query.getValue(),
+                        fullDocSet);
+                expected.setFeature(results.get(query.getKey()).getFeature());
+
+                assertThat(results.get(query.getKey())) //
+                        .as(query.getKey()) //
+                        .usingRecursiveComparison() //
+                        .withComparatorForType(new DoubleComparator(1e-9), Double.class) //
+                        .isEqualTo(expected);
+            }
+        }
+        finally {
+            index.delete();
+        }
+    }
+
+    /**
+     * Builds a CAS with one sentence per argument. Tokens are separated by spaces. Tokens starting
+     * with {@code @} are marked as location.
+     */
+    private byte[] sentencesCas(String... aSentences) throws Exception
+    {
+        JCas jCas = JCasFactory.createJCas();
+
+        JCasBuilder builder = new JCasBuilder(jCas);
+        for (String sentence : aSentences) {
+            int sentenceBegin = builder.getPosition();
+            for (String token : sentence.split(" ")) {
+                int begin = builder.getPosition();
+                builder.add(token.replaceFirst("^@", ""), Token.class);
+                if (token.startsWith("@")) {
+                    NamedEntity ne = new NamedEntity(jCas, begin, builder.getPosition());
+                    ne.setValue("LOC");
+                    ne.addToIndexes();
+                }
+                builder.add(" ");
+            }
+            new Sentence(jCas, sentenceBegin, builder.getPosition()).addToIndexes();
+        }
+        builder.close();
+
+        return casToByteArray(jCas.getCas());
+    }
+
     @SpringBootConfiguration
     public static class TestContext
     {
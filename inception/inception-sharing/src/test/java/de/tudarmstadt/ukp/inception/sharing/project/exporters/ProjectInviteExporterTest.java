@@ -22,13 +22,12 @@ import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-import java.io.File;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -45,8 +44,6 @@ import de.tudarmstadt.ukp.inception.sharing.model.ProjectInvite;
 @ExtendWith(MockitoExtension.class)
 public class ProjectInviteExporterTest
 {
-    public @TempDir File workFolder;
-
     private @Mock InviteService inviteService;
 
     private Project project;
@@ -85,7 +82,7 @@ public class ProjectInviteExporterTest
         ProjectExportTaskMonitor monitor = new ProjectExportTaskMonitor(project, null, "test");
         ExportedProject exportedProject = new ExportedProject();
 
-        sut.exportData(exportRequest, monitor, exportedProject, workFolder);
+        sut.exportData(exportRequest, monitor, exportedProject, mock(ZipOutputStream.class));
 
         // Import the project again
         ArgumentCaptor<ProjectInvite> captor = ArgumentCaptor.forClass(ProjectInvite.class);
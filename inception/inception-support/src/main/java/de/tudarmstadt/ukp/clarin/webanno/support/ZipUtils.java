@@ -22,11 +22,16 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.lang3.function.FailableConsumer;
 
 /**
  * A utility class.
@@ -107,6 +112,73 @@ public class ZipUtils
         }
     }
 
+    /**
+     * Adds an entry to the given ZIP stream. The data is written by the given writer. The writer
+     * may close the stream it receives without closing the ZIP stream.
+     * 
+     * @param aZip
+     *            the ZIP stream.
+     * @param aEntryName
+     *            the name of the entry.
+     * @param aWriter
+     *            the writer producing the entry data.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public static void writeEntry(ZipOutputStream aZip, String aEntryName,
+            FailableConsumer<OutputStream, IOException> aWriter)
+        throws IOException
+    {
+        aZip.putNextEntry(new ZipEntry(aEntryName));
+        aWriter.accept(CloseShieldOutputStream.wrap(aZip));
+        aZip.closeEntry();
+    }
+
+    /**
+     * Adds the given file as an entry to the given ZIP stream.
+     * 
+     * @param aZip
+     *            the ZIP stream.
+     * @param aEntryName
+     *            the name of the entry.
+     * @param aFile
+     *            the file to add.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public static void writeEntry(ZipOutputStream aZip, String aEntryName, File aFile)
+        throws IOException
+    {
+        writeEntry(aZip, aEntryName, os -> Files.copy(aFile.toPath(), os));
+    }
+
+    /**
+     * Adds an entry to the given ZIP stream without compressing it. This is meant for data which
+     * is already compressed and would only cost time to compress again. In contrast to a stored
+     * entry, the size and checksum of the data do not need to be known in advance.
+     * 
+     * @param aZip
+     *            the ZIP stream.
+     * @param aEntryName
+     *            the name of the entry.
+     * @param aWriter
+     *            the writer producing the entry data.
+     * @throws IOException
+     *             if an I/O error occurs.
+     */
+    public static void writeUncompressedEntry(ZipOutputStream aZip, String aEntryName,
+            FailableConsumer<OutputStream, IOException> aWriter)
+        throws IOException
+    {
+        aZip.setLevel(Deflater.NO_COMPRESSION);
+        try {
+            writeEntry(aZip, aEntryName, aWriter);
+        }
+        finally {
+            aZip.setLevel(Deflater.DEFAULT_COMPRESSION);
+        }
+    }
+
     public static String normalizeEntryName(ZipEntry aEntry)
     {
         // Strip leading "/" that we had in ZIP files prior to 2.0.8 (bug #985)
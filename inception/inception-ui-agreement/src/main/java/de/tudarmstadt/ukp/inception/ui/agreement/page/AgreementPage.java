@@ -30,9 +30,13 @@ import static de.tudarmstadt.ukp.clarin.webanno.ui.core.page.ProjectPageBase.PAG
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
@@ -59,9 +63,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.wicketstuff.annotation.mount.MountPath;
 
+import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementDocumentSource;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementMeasure;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementMeasureSupport;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementMeasureSupportRegistry;
+import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.AgreementPartialResultCache;
 import de.tudarmstadt.ukp.clarin.webanno.agreement.measures.DefaultAgreementTraits;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
@@ -76,6 +82,7 @@ import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaAjaxFormComponentU
 import de.tudarmstadt.ukp.clarin.webanno.support.lambda.LambdaChoiceRenderer;
 import de.tudarmstadt.ukp.clarin.webanno.ui.core.page.ProjectPageBase;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession;
 import de.tudarmstadt.ukp.inception.documents.api.DocumentService;
 import de.tudarmstadt.ukp.inception.project.api.ProjectService;
 import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
@@ -98,6 +105,7 @@ public class AgreementPage
     private @SpringBean AnnotationSchemaService annotationService;
     private @SpringBean UserDao userRepository;
     private @SpringBean AgreementMeasureSupportRegistry agreementRegistry;
+    private @SpringBean AgreementPartialResultCache partialResultCache;
 
     private AgreementForm agreementForm;
     private WebMarkupContainer resultsContainer;
@@ -230,19 +238,25 @@ public class AgreementPage
                     (DefaultAgreementTraits) traitsContainer.get(MID_TRAITS)
                             .getDefaultModelObject());
 
-            Map<String, List<CAS>> casMap = getCasMap();
+            ProjectDocumentSource source = new ProjectDocumentSource(getProject(),
+                    (DefaultAgreementTraits) traitsContainer.get(MID_TRAITS)
+                            .getDefaultModelObject());
 
-            if (casMap.values().stream().allMatch(list -> list == null || list.isEmpty())) {
+            if (source.getUsers().isEmpty() || source.getDocumentCount() == 0) {
                 error("No documents with annotations were found.");
                 aTarget.addChildren(getPage(), IFeedback.class);
             }
             else {
-                Serializable result = measure.getAgreement(casMap);
+                // The documents are loaded one at a time while the agreement is calculated - unless
+                // their partial results are still cached from a previous calculation. The full
+                // CAS map is only loaded if the user requests to export the results.
+                Serializable result = measure.getAgreement(source, partialResultCache);
+                source.getErrors().forEach(AgreementPage.this::error);
                 resultsContainer.addOrReplace(ams.createResultsPanel(MID_RESULTS, Model.of(result),
                         AgreementPage.this::getCasMap));
                 aTarget.add(resultsContainer);
+                aTarget.addChildren(getPage(), IFeedback.class);
             }
-
         }
 
         List<Pair<String, String>> listMeasures()
@@ -316,9 +330,9 @@ public class AgreementPage
 
             // Bulk-fetch all source documents for which there is already an annotation document for
             // the user which is faster then checking for their existence individually
-            List<SourceDocument> docsForUser = documentService
+            Set<SourceDocument> docsForUser = documentService
                     .listAnnotationDocuments(project, user).stream()
-                    .map(AnnotationDocument::getDocument).distinct().collect(Collectors.toList());
+                    .map(AnnotationDocument::getDocument).collect(Collectors.toSet());
 
             nextDocument: for (SourceDocument document : sourceDocuments) {
                 CAS cas = null;
@@ -349,12 +363,7 @@ public class AgreementPage
                 }
 
                 if (cas != null) {
-                    // Set the CAS name in the DocumentMetaData so that we can pick it
-                    // up in the Diff position for the purpose of debugging / transparency.
-                    FeatureStructure dmd = WebAnnoCasUtil.getDocumentMetadata(cas);
-                    FSUtil.setFeature(dmd, "documentId", document.getName());
-                    FSUtil.setFeature(dmd, "collectionId", document.getProject().getName());
-
+                    setDocumentMetadata(cas, document);
                 }
 
                 // The next line can enter null values into the list if a user didn't work on this
@@ -370,4 +379,101 @@ public class AgreementPage
 
         return cachedCASes;
     }
+
+    private static void setDocumentMetadata(CAS aCas, SourceDocument aDocument)
+    {
+        // Set the CAS name in the DocumentMetaData so that we can pick it
+        // up in the Diff position for the purpose of debugging / transparency.
+        FeatureStructure dmd = WebAnnoCasUtil.getDocumentMetadata(aCas);
+        FSUtil.setFeature(dmd, "documentId", aDocument.getName());
+        FSUtil.setFeature(dmd, "collectionId", aDocument.getProject().getName());
+    }
+
+    /**
+     * Loads the CASes of the annotators one document at a time. The database is only accessed when
+     * the source is created. The CASes are loaded in a nested CAS storage session, so the source
+     * can be used from multiple threads. Load errors cannot be reported to the page from these
+     * threads, so they are collected and need to be reported after the agreement calculation.
+     */
+    private class ProjectDocumentSource
+        implements AgreementDocumentSource
+    {
+        private final List<String> users;
+        private final List<SourceDocument> documents;
+        private final Set<Pair<String, SourceDocument>> skipped = new HashSet<>();
+        private final List<String> errors = new CopyOnWriteArrayList<>();
+
+        ProjectDocumentSource(Project aProject, DefaultAgreementTraits aTraits)
+        {
+            users = projectService.listProjectUsersWithPermissions(aProject, ANNOTATOR).stream() //
+                    .map(User::getUsername) //
+                    .collect(Collectors.toList());
+
+            documents = documentService.listSourceDocuments(aProject);
+
+            if (aTraits.isLimitToFinishedDocuments()) {
+                documentService.listAnnotationDocuments(aProject).stream() //
+                        .filter(annDoc -> users.contains(annDoc.getUser())) //
+                        .filter(annDoc -> !FINISHED.equals(annDoc.getState())) //
+                        .forEach(annDoc -> skipped.add(Pair.of(annDoc.getUser(), //
+                                annDoc.getDocument())));
+            }
+        }
+
+        @Override
+        public List<String> getUsers()
+        {
+            return users;
+        }
+
+        @Override
+        public int getDocumentCount()
+        {
+            return documents.size();
+        }
+
+        @Override
+        public Long getDocumentId(int aDocumentIndex)
+        {
+            return documents.get(aDocumentIndex).getId();
+        }
+
+        @Override
+        public void forDocument(int aDocumentIndex, Consumer<Map<String, CAS>> aConsumer)
+        {
+            SourceDocument document = documents.get(aDocumentIndex);
+
+            try (CasStorageSession session = CasStorageSession.openNested()) {
+                Map<String, CAS> casByUser = new LinkedHashMap<>();
+                for (String user : users) {
+                    CAS cas = null;
+
+                    if (!skipped.contains(Pair.of(user, document))) {
+                        try {
+                            // Reads the user's annotation document or the initial source
+                            // document - depending on what is available
+                            cas = documentService.readAnnotationCas(document, user,
+                                    AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+                            setDocumentMetadata(cas, document);
+                        }
+                        catch (Exception e) {
+                            errors.add("Unable to load data: "
+                                    + ExceptionUtils.getRootCauseMessage(e));
+                            LOG.error("Unable to load data", e);
+                        }
+                    }
+
+                    // Users whose CAS should be skipped are mapped to null
+                    casByUser.put(user, cas);
+                }
+
+                aConsumer.accept(casByUser);
+            }
+        }
+
+        List<String> getErrors()
+        {
+            return errors;
+        }
+    }
 }
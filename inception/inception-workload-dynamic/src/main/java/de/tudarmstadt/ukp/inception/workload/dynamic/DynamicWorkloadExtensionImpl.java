@@ -39,6 +39,8 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.persistence.NoResultException;
+
 import org.apache.uima.UIMAException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -58,7 +60,9 @@ import de.tudarmstadt.ukp.inception.annotation.storage.CasStorageSession;
 import de.tudarmstadt.ukp.inception.documents.api.DocumentService;
 import de.tudarmstadt.ukp.inception.documents.api.SourceDocumentStateStats;
 import de.tudarmstadt.ukp.inception.project.api.ProjectService;
+import de.tudarmstadt.ukp.inception.workload.dynamic.assignment.DocumentAssignmentQueue;
 import de.tudarmstadt.ukp.inception.workload.dynamic.config.DynamicWorkloadManagerAutoConfiguration;
+import de.tudarmstadt.ukp.inception.workload.dynamic.event.InProgressDocumentIndex;
 import de.tudarmstadt.ukp.inception.workload.dynamic.trait.DynamicWorkloadTraits;
 import de.tudarmstadt.ukp.inception.workload.dynamic.workflow.WorkflowExtension;
 import de.tudarmstadt.ukp.inception.workload.dynamic.workflow.WorkflowExtensionPoint;
@@ -83,11 +87,14 @@ public class DynamicWorkloadExtensionImpl
     private final ProjectService projectService;
     private final UserDao userRepository;
     private final SessionRegistry sessionRegistry;
+    private final DocumentAssignmentQueue documentAssignmentQueue;
+    private final InProgressDocumentIndex inProgressDocumentIndex;
 
     public DynamicWorkloadExtensionImpl(WorkloadManagementService aWorkloadManagementService,
             WorkflowExtensionPoint aWorkflowExtensionPoint, DocumentService aDocumentService,
             ProjectService aProjectService, UserDao aUserRepository,
-            SessionRegistry aSessionRegistry)
+            SessionRegistry aSessionRegistry, DocumentAssignmentQueue aDocumentAssignmentQueue,
+            InProgressDocumentIndex aInProgressDocumentIndex)
     {
         workloadManagementService = aWorkloadManagementService;
         workflowExtensionPoint = aWorkflowExtensionPoint;
@@ -95,6 +102,8 @@ public class DynamicWorkloadExtensionImpl
         projectService = aProjectService;
         userRepository = aUserRepository;
         sessionRegistry = aSessionRegistry;
+        documentAssignmentQueue = aDocumentAssignmentQueue;
+        inProgressDocumentIndex = aInProgressDocumentIndex;
     }
 
     @Override
@@ -141,6 +150,10 @@ public class DynamicWorkloadExtensionImpl
     {
         try {
             aWorkloadManager.setTraits(JSONUtil.toJsonString(aTraits));
+
+            // The background sweep decides by the timeout in the index whether a project is due
+            inProgressDocumentIndex.setAbandonationTimeout(aWorkloadManager.getProject(),
+                    aTraits.getAbandonationTimeout());
         }
         catch (Exception e) {
             this.log.error("Unable to write traits", e);
@@ -173,16 +186,17 @@ public class DynamicWorkloadExtensionImpl
             return Optional.of(inProgressDocuments.get(0).getDocument());
         }
 
-        // Make sure that any documents that could be eligible for annotation due to having been
-        // abandoned by another user are available
-        freshenStatus(aProject);
-
         WorkloadManager currentWorkload = workloadManagementService
                 .loadOrCreateWorkloadManagerConfiguration(aProject);
 
         // If there are no traits set yet, use the DefaultWorkflowExtension
         // otherwise select the current one
         DynamicWorkloadTraits traits = readTraits(currentWorkload);
+
+        // Documents abandoned by other users are made available again by a background sweep. Here
+        // we only make sure that the project is watched by the sweep with the current timeout.
+        inProgressDocumentIndex.track(aProject);
+        inProgressDocumentIndex.setAbandonationTimeout(aProject, traits.getAbandonationTimeout());
         WorkflowExtension currentWorkflowExtension = workflowExtensionPoint
                 .getExtension(traits.getWorkflowType()) //
                 .orElseGet(DefaultWorkflowExtension::new);
@@ -197,19 +211,10 @@ public class DynamicWorkloadExtensionImpl
         // Rearrange list of documents according to current workflow
         sourceDocuments = currentWorkflowExtension.rankDocuments(sourceDocuments);
 
-        for (SourceDocument doc : sourceDocuments) {
-            // FIXME: repeated query to DB should be optimized into a single query returning
-            // a map of documents / annotator counts
-
-            // Check if there are less annotators working on the selected document than
-            // the target number of annotation set by the project manager
-            if ((workloadManagementService.getNumberOfUsersWorkingOnADocument(doc)) < (traits
-                    .getDefaultNumberOfAnnotations())) {
-                return Optional.of(doc);
-            }
-        }
-
-        return Optional.empty();
+        // Pick the first document on which less annotators are working than the target number of
+        // annotation set by the project manager and reserve it for the user
+        return documentAssignmentQueue.assign(aProject, aUser, sourceDocuments,
+                traits.getDefaultNumberOfAnnotations());
     }
 
     @Override
@@ -224,6 +229,8 @@ public class DynamicWorkloadExtensionImpl
             updateDocumentState(doc, traits.getDefaultNumberOfAnnotations());
         }
 
+        documentAssignmentQueue.invalidate(aProject);
+
         // Refresh the project stats and recalculate them
         Project project = projectService.getProject(aProject.getId());
         SourceDocumentStateStats stats = documentService.getSourceDocumentStats(project);
@@ -240,28 +247,54 @@ public class DynamicWorkloadExtensionImpl
                 .loadOrCreateWorkloadManagerConfiguration(aProject);
         DynamicWorkloadTraits traits = readTraits(currentWorkload);
 
+        inProgressDocumentIndex.track(aProject);
+        inProgressDocumentIndex.setAbandonationTimeout(aProject, traits.getAbandonationTimeout());
+
         // If the duration is not positive, then we can already stop here
         if (traits.getAbandonationTimeout().isZero()
                 || traits.getAbandonationTimeout().isNegative()) {
             return projectService.getProject(aProject.getId()).getState();
         }
 
-        List<AnnotationDocument> inProgressDocuments = documentService
-                .listAnnotationDocumentsInState(aProject, IN_PROGRESS);
+        if (!inProgressDocumentIndex.isLoaded(aProject)) {
+            inProgressDocumentIndex.load(aProject,
+                    documentService.listAnnotationDocumentsInState(aProject, IN_PROGRESS));
+        }
 
-        // Find abandoned annotation documents
+        // Find abandoned annotation documents - only those on which there has been no activity
+        // within the timeout need to be checked
         Map<SourceDocument, Set<AnnotationDocument>> abandonedDocuments = new LinkedHashMap<>();
         Instant now = Instant.now();
         Duration abandonationTimeout = traits.getAbandonationTimeout();
-        for (AnnotationDocument doc : inProgressDocuments) {
-            // If the SOURCE document is already in curation, we do not touch the state anymore
-            if (doc.getDocument().getState() == CURATION_FINISHED
-                    || doc.getDocument().getState() == CURATION_IN_PROGRESS) {
+        for (AnnotationDocument candidate : inProgressDocumentIndex.listIdleSince(aProject,
+                now.minus(abandonationTimeout))) {
+            if (!sessionRegistry.getAllSessions(candidate.getUser(), false).isEmpty()) {
+                log.debug("Deferring abandonation check on {} for user with active session",
+                        candidate);
+                inProgressDocumentIndex.touch(candidate, now);
                 continue;
             }
 
-            if (!sessionRegistry.getAllSessions(doc.getUser(), false).isEmpty()) {
-                log.debug("Deferring abandonation check on {} for user with active session", doc);
+            // The index may be slightly out of date, so we check the current state
+            AnnotationDocument doc;
+            try {
+                doc = documentService.getAnnotationDocument(candidate.getDocument(),
+                        candidate.getUser());
+            }
+            catch (NoResultException e) {
+                inProgressDocumentIndex.remove(candidate);
+                continue;
+            }
+
+            if (doc.getState() != IN_PROGRESS) {
+                inProgressDocumentIndex.remove(doc);
+                continue;
+            }
+
+            // If the SOURCE document is already in curation, we do not touch the state anymore
+            if (doc.getDocument().getState() == CURATION_FINISHED
+                    || doc.getDocument().getState() == CURATION_IN_PROGRESS) {
+                inProgressDocumentIndex.remove(doc);
                 continue;
             }
 
@@ -278,6 +311,9 @@ public class DynamicWorkloadExtensionImpl
                 abandonedDocuments.computeIfAbsent(doc.getDocument(), _doc -> new LinkedHashSet<>())
                         .add(doc);
             }
+            else {
+                inProgressDocumentIndex.update(doc);
+            }
         }
 
         if (abandonedDocuments.isEmpty()) {
@@ -305,9 +341,15 @@ public class DynamicWorkloadExtensionImpl
                         traits.getAbandonationState());
             }
 
+            // The bulk state change does not send any events, so we update the index ourselves
+            docSet.getValue().forEach(inProgressDocumentIndex::remove);
+
             updateDocumentState(docSet.getKey(), traits.getDefaultNumberOfAnnotations());
         }
 
+        // The bulk state change does not send any events, so the assignments need to be re-loaded
+        documentAssignmentQueue.invalidate(aProject);
+
         // Refresh the project stats and recalculate them
         Project project = projectService.getProject(aProject.getId());
         SourceDocumentStateStats stats = documentService.getSourceDocumentStats(project);
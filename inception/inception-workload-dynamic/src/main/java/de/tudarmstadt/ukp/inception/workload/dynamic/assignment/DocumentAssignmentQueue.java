@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.workload.dynamic.assignment;
+
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.FINISHED;
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IN_PROGRESS;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.workload.dynamic.config.DynamicWorkloadManagerAutoConfiguration;
+import de.tudarmstadt.ukp.inception.workload.model.WorkloadManagementService;
+
+/**
+ * Keeps track of which users are working on which documents in dynamic workload projects so that
+ * the next document for an annotator can be picked without querying the database for every
+ * candidate document.
+ * <p>
+ * For every project, the set of users working on each document is loaded once with a single query
+ * and then updated incrementally from annotation state changes. When a document is handed out to
+ * an annotator, the annotator is added to a set of reservations for the document until the
+ * annotation state change arrives. The number of annotators of a document is the size of the union
+ * of both sets. Handing out documents is atomic per project, so concurrent requests cannot assign a
+ * document to more annotators than required.
+ * <p>
+ * Not every change to the annotation documents is announced by an event (e.g. bulk state changes).
+ * Therefore, the users working on the documents are re-loaded periodically and whenever a project
+ * is {@link #invalidate(Project) invalidated}.
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link DynamicWorkloadManagerAutoConfiguration#documentAssignmentQueue}
+ * </p>
+ */
+public class DocumentAssignmentQueue
+{
+    /**
+     * How long a document remains reserved for an annotator to which it was handed out without the
+     * annotator starting to work on it.
+     */
+    static final Duration RESERVATION_TIMEOUT = Duration.ofMinutes(5);
+
+    /**
+     * How long the users working on the documents of a project are used before they are re-loaded
+     * from the database.
+     */
+    static final Duration REFRESH_INTERVAL = Duration.ofMinutes(1);
+
+    private final WorkloadManagementService workloadManagementService;
+
+    private final Map<Long, ProjectAssignments> projects = new ConcurrentHashMap<>();
+
+    public DocumentAssignmentQueue(WorkloadManagementService aWorkloadManagementService)
+    {
+        workloadManagementService = aWorkloadManagementService;
+    }
+
+    /**
+     * Picks the first of the given candidate documents which has less than the required number of
+     * annotators and reserves it for the given user.
+     *
+     * @param aProject
+     *            the project.
+     * @param aUser
+     *            the user to assign a document to.
+     * @param aCandidates
+     *            the candidate documents in the order of preference.
+     * @param aRequiredAnnotatorCount
+     *            the number of annotators each document should have.
+     * @return the assigned document, if any.
+     */
+    public Optional<SourceDocument> assign(Project aProject, User aUser,
+            List<SourceDocument> aCandidates, int aRequiredAnnotatorCount)
+    {
+        var assignments = projects.computeIfAbsent(aProject.getId(),
+                _id -> new ProjectAssignments());
+
+        synchronized (assignments) {
+            var now = Instant.now();
+            if (assignments.isStale(now)) {
+                assignments.load(workloadManagementService.listUsersWorkingOnDocuments(aProject),
+                        now);
+            }
+            assignments.expireReservations(now);
+
+            for (var doc : aCandidates) {
+                if (assignments.isReservedFor(doc.getId(), aUser.getUsername())) {
+                    return Optional.of(doc);
+                }
+            }
+
+            for (var doc : aCandidates) {
+                if (assignments.countAnnotators(doc.getId()) < aRequiredAnnotatorCount) {
+                    assignments.reserve(doc.getId(), aUser.getUsername(), now);
+                    return Optional.of(doc);
+                }
+            }
+
+            return Optional.empty();
+        }
+    }
+
+    public void annotationStateChanged(AnnotationDocument aDocument,
+            AnnotationDocumentState aPreviousState, AnnotationDocumentState aNewState)
+    {
+        var assignments = projects.get(aDocument.getProject().getId());
+        if (assignments == null) {
+            return;
+        }
+
+        synchronized (assignments) {
+            if (isWorking(aNewState)) {
+                assignments.addUser(aDocument.getDocument().getId(), aDocument.getUser());
+            }
+            else if (isWorking(aPreviousState)) {
+                assignments.removeUser(aDocument.getDocument().getId(), aDocument.getUser());
+            }
+        }
+    }
+
+    public void documentRemoved(SourceDocument aDocument)
+    {
+        var assignments = projects.get(aDocument.getProject().getId());
+        if (assignments == null) {
+            return;
+        }
+
+        synchronized (assignments) {
+            assignments.removeDocument(aDocument.getId());
+        }
+    }
+
+    /**
+     * Forces the users working on the documents of the given project to be re-loaded the next time
+     * a document is assigned. Reservations are retained.
+     */
+    public void invalidate(Project aProject)
+    {
+        var assignments = projects.get(aProject.getId());
+        if (assignments == null) {
+            return;
+        }
+
+        synchronized (assignments) {
+            assignments.invalidate();
+        }
+    }
+
+    public void projectRemoved(Project aProject)
+    {
+        projects.remove(aProject.getId());
+    }
+
+    private static boolean isWorking(AnnotationDocumentState aState)
+    {
+        return aState == IN_PROGRESS || aState == FINISHED;
+    }
+
+    /**
+     * The assignment state of a single project. Not thread-safe - callers synchronize on the
+     * instance.
+     */
+    private static class ProjectAssignments
+    {
+        private final Map<Long, Set<String>> workingUsers = new HashMap<>();
+        private final Map<Long, Map<String, Instant>> reservations = new HashMap<>();
+        private Instant loaded;
+
+        boolean isStale(Instant aNow)
+        {
+            return loaded == null || loaded.plus(REFRESH_INTERVAL).isBefore(aNow);
+        }
+
+        void load(Map<Long, Set<String>> aWorkingUsers, Instant aNow)
+        {
+            workingUsers.clear();
+            workingUsers.putAll(aWorkingUsers);
+            loaded = aNow;
+        }
+
+        void invalidate()
+        {
+            loaded = null;
+        }
+
+        void expireReservations(Instant aNow)
+        {
+            var cutoff = aNow.minus(RESERVATION_TIMEOUT);
+            var i = reservations.values().iterator();
+            while (i.hasNext()) {
+                var reservedUsers = i.next();
+                reservedUsers.values().removeIf(reserved -> reserved.isBefore(cutoff));
+                if (reservedUsers.isEmpty()) {
+                    i.remove();
+                }
+            }
+        }
+
+        boolean isReservedFor(long aDocumentId, String aUser)
+        {
+            var reservedUsers = reservations.get(aDocumentId);
+            return reservedUsers != null && reservedUsers.containsKey(aUser);
+        }
+
+        int countAnnotators(long aDocumentId)
+        {
+            var users = workingUsers.get(aDocumentId);
+            var reservedUsers = reservations.get(aDocumentId);
+
+            if (reservedUsers == null) {
+                return users != null ? users.size() : 0;
+            }
+
+            if (users == null) {
+                return reservedUsers.size();
+            }
+
+            var annotators = new HashSet<>(users);
+            annotators.addAll(reservedUsers.keySet());
+            return annotators.size();
+        }
+
+        void reserve(long aDocumentId, String aUser, Instant aNow)
+        {
+            // A user only ever works on one document at a time, so any document previously handed
+            // out to the user is no longer reserved
+            var i = reservations.values().iterator();
+            while (i.hasNext()) {
+                var reservedUsers = i.next();
+                if (reservedUsers.remove(aUser) != null && reservedUsers.isEmpty()) {
+                    i.remove();
+                }
+            }
+
+            reservations.computeIfAbsent(aDocumentId, _id -> new HashMap<>()).put(aUser, aNow);
+        }
+
+        void addUser(long aDocumentId, String aUser)
+        {
+            workingUsers.computeIfAbsent(aDocumentId, _id -> new HashSet<>()).add(aUser);
+        }
+
+        void removeUser(long aDocumentId, String aUser)
+        {
+            var users = workingUsers.get(aDocumentId);
+            if (users != null) {
+                users.remove(aUser);
+                if (users.isEmpty()) {
+                    workingUsers.remove(aDocumentId);
+                }
+            }
+
+            // If the user stopped working on the document (e.g. because it was reset), it must
+            // not remain reserved for the user either
+            var reservedUsers = reservations.get(aDocumentId);
+            if (reservedUsers != null) {
+                reservedUsers.remove(aUser);
+                if (reservedUsers.isEmpty()) {
+                    reservations.remove(aDocumentId);
+                }
+            }
+        }
+
+        void removeDocument(long aDocumentId)
+        {
+            workingUsers.remove(aDocumentId);
+            reservations.remove(aDocumentId);
+        }
+    }
+}
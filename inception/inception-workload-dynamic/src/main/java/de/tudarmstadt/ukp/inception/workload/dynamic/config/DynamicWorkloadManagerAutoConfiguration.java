@@ -34,7 +34,10 @@ import de.tudarmstadt.ukp.inception.workload.dynamic.DynamicWorkloadExtension;
 import de.tudarmstadt.ukp.inception.workload.dynamic.DynamicWorkloadExtensionImpl;
 import de.tudarmstadt.ukp.inception.workload.dynamic.annotation.DynamicWorkflowActionBarExtension;
 import de.tudarmstadt.ukp.inception.workload.dynamic.annotation.DynamicWorkflowDocumentNavigationActionBarExtension;
+import de.tudarmstadt.ukp.inception.workload.dynamic.assignment.DocumentAssignmentQueue;
+import de.tudarmstadt.ukp.inception.workload.dynamic.event.DynamicWorkloadAbandonmentSweeper;
 import de.tudarmstadt.ukp.inception.workload.dynamic.event.DynamicWorkloadStateWatcher;
+import de.tudarmstadt.ukp.inception.workload.dynamic.event.InProgressDocumentIndex;
 import de.tudarmstadt.ukp.inception.workload.dynamic.workflow.WorkflowExtension;
 import de.tudarmstadt.ukp.inception.workload.dynamic.workflow.WorkflowExtensionPoint;
 import de.tudarmstadt.ukp.inception.workload.dynamic.workflow.WorkflowExtensionPointImpl;
@@ -50,10 +53,20 @@ public class DynamicWorkloadManagerAutoConfiguration
     public DynamicWorkloadExtension dynamicWorkloadExtension(DocumentService documentService,
             WorkloadManagementService aWorkloadManagementService,
             WorkflowExtensionPoint aWorkflowExtensionPoint, ProjectService aProjectService,
-            UserDao aUserRepository, SessionRegistry aSessionRegistry)
+            UserDao aUserRepository, SessionRegistry aSessionRegistry,
+            DocumentAssignmentQueue aDocumentAssignmentQueue,
+            InProgressDocumentIndex aInProgressDocumentIndex)
     {
         return new DynamicWorkloadExtensionImpl(aWorkloadManagementService, aWorkflowExtensionPoint,
-                documentService, aProjectService, aUserRepository, aSessionRegistry);
+                documentService, aProjectService, aUserRepository, aSessionRegistry,
+                aDocumentAssignmentQueue, aInProgressDocumentIndex);
+    }
+
+    @Bean
+    public DocumentAssignmentQueue documentAssignmentQueue(
+            WorkloadManagementService aWorkloadManagementService)
+    {
+        return new DocumentAssignmentQueue(aWorkloadManagementService);
     }
 
     @Bean
@@ -77,9 +90,22 @@ public class DynamicWorkloadManagerAutoConfiguration
 
     @Bean
     public DynamicWorkloadStateWatcher dynamicWorkloadStateWatcher(
-            SchedulingService aSchedulingService)
+            SchedulingService aSchedulingService, DocumentAssignmentQueue aDocumentAssignmentQueue)
+    {
+        return new DynamicWorkloadStateWatcher(aSchedulingService, aDocumentAssignmentQueue);
+    }
+
+    @Bean
+    public InProgressDocumentIndex inProgressDocumentIndex()
+    {
+        return new InProgressDocumentIndex();
+    }
+
+    @Bean
+    public DynamicWorkloadAbandonmentSweeper dynamicWorkloadAbandonmentSweeper(
+            SchedulingService aSchedulingService, InProgressDocumentIndex aInProgressDocumentIndex)
     {
-        return new DynamicWorkloadStateWatcher(aSchedulingService);
+        return new DynamicWorkloadAbandonmentSweeper(aSchedulingService, aInProgressDocumentIndex);
     }
 
     @Bean
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.workload.dynamic.event;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.event.EventListener;
+
+import de.tudarmstadt.ukp.inception.documents.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.inception.documents.event.AnnotationStateChangeEvent;
+import de.tudarmstadt.ukp.inception.documents.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.inception.project.api.event.BeforeProjectRemovedEvent;
+import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
+import de.tudarmstadt.ukp.inception.workload.dynamic.config.DynamicWorkloadManagerAutoConfiguration;
+
+/**
+ * Periodically checks the {@link InProgressDocumentIndex} for annotation documents whose
+ * abandonation timeout has expired and schedules a {@link DynamicWorkloadAbandonmentSweepTask} for
+ * the affected projects. Also keeps the index up-to-date.
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link DynamicWorkloadManagerAutoConfiguration#dynamicWorkloadAbandonmentSweeper}
+ * </p>
+ */
+public class DynamicWorkloadAbandonmentSweeper
+    implements DisposableBean
+{
+    private static final Logger LOG = LoggerFactory
+            .getLogger(DynamicWorkloadAbandonmentSweeper.class);
+
+    static final Duration SWEEP_INTERVAL = Duration.ofSeconds(30);
+
+    private final SchedulingService schedulingService;
+    private final InProgressDocumentIndex inProgressDocumentIndex;
+    private final ScheduledExecutorService sweepScheduler;
+
+    public DynamicWorkloadAbandonmentSweeper(SchedulingService aSchedulingService,
+            InProgressDocumentIndex aInProgressDocumentIndex)
+    {
+        schedulingService = aSchedulingService;
+        inProgressDocumentIndex = aInProgressDocumentIndex;
+
+        sweepScheduler = Executors.newScheduledThreadPool(1, new BasicThreadFactory.Builder() //
+                .daemon(true) //
+                .namingPattern("dynamic-workload-sweeper-%d") //
+                .build());
+        sweepScheduler.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL.toMillis(),
+                SWEEP_INTERVAL.toMillis(), MILLISECONDS);
+    }
+
+    @Override
+    public void destroy()
+    {
+        sweepScheduler.shutdownNow();
+    }
+
+    void sweep()
+    {
+        try {
+            for (var project : inProgressDocumentIndex.listProjectsDueForSweep(Instant.now())) {
+                schedulingService.enqueue(new DynamicWorkloadAbandonmentSweepTask(project,
+                        getClass().getSimpleName()));
+            }
+        }
+        catch (Exception e) {
+            // Must not propagate, otherwise no further sweeps would be scheduled
+            LOG.error("Unable to schedule abandonment sweep", e);
+        }
+    }
+
+    @EventListener
+    public void onAnnotationStateChangeEvent(AnnotationStateChangeEvent aEvent)
+    {
+        inProgressDocumentIndex.update(aEvent.getAnnotationDocument());
+    }
+
+    @EventListener
+    public void onAfterCasWrittenEvent(AfterCasWrittenEvent aEvent)
+    {
+        inProgressDocumentIndex.update(aEvent.getDocument());
+    }
+
+    @EventListener
+    public void onBeforeDocumentRemovedEvent(BeforeDocumentRemovedEvent aEvent)
+    {
+        inProgressDocumentIndex.removeDocument(aEvent.getDocument());
+    }
+
+    @EventListener
+    public void onBeforeProjectRemovedEvent(BeforeProjectRemovedEvent aEvent)
+    {
+        inProgressDocumentIndex.removeProject(aEvent.getProject());
+    }
+}
@@ -21,7 +21,10 @@ import org.springframework.context.event.EventListener;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.inception.documents.event.AnnotationStateChangeEvent;
+import de.tudarmstadt.ukp.inception.documents.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.inception.project.api.event.BeforeProjectRemovedEvent;
 import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
+import de.tudarmstadt.ukp.inception.workload.dynamic.assignment.DocumentAssignmentQueue;
 import de.tudarmstadt.ukp.inception.workload.dynamic.config.DynamicWorkloadManagerAutoConfiguration;
 
 /**
@@ -34,18 +37,36 @@ import de.tudarmstadt.ukp.inception.workload.dynamic.config.DynamicWorkloadManag
 public class DynamicWorkloadStateWatcher
 {
     private final SchedulingService schedulingService;
+    private final DocumentAssignmentQueue documentAssignmentQueue;
 
-    public DynamicWorkloadStateWatcher(SchedulingService aSchedulingService)
+    public DynamicWorkloadStateWatcher(SchedulingService aSchedulingService,
+            DocumentAssignmentQueue aDocumentAssignmentQueue)
     {
         schedulingService = aSchedulingService;
+        documentAssignmentQueue = aDocumentAssignmentQueue;
     }
 
     @EventListener
     public void onAnnotationStateChangeEvent(AnnotationStateChangeEvent aEvent)
     {
+        documentAssignmentQueue.annotationStateChanged(aEvent.getAnnotationDocument(),
+                aEvent.getPreviousState(), aEvent.getNewState());
+
         recalculateDocumentState(aEvent.getAnnotationDocument());
     }
 
+    @EventListener
+    public void onBeforeDocumentRemovedEvent(BeforeDocumentRemovedEvent aEvent)
+    {
+        documentAssignmentQueue.documentRemoved(aEvent.getDocument());
+    }
+
+    @EventListener
+    public void onBeforeProjectRemovedEvent(BeforeProjectRemovedEvent aEvent)
+    {
+        documentAssignmentQueue.projectRemoved(aEvent.getProject());
+    }
+
     private void recalculateDocumentState(AnnotationDocument aAnnotationDocument)
     {
         schedulingService.enqueue(new DynamicWorkloadUpdateDocumentStateTask(
@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.workload.dynamic.event;
+
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IN_PROGRESS;
+import static java.util.Comparator.comparing;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.workload.dynamic.config.DynamicWorkloadManagerAutoConfiguration;
+
+/**
+ * Index of the annotation documents which are in progress in dynamic workload projects, ordered by
+ * the time of the last activity on them. This allows finding the annotation documents which may
+ * have been abandoned without scanning all annotation documents of a project.
+ * <p>
+ * A project is only indexed once it has been {@link #load loaded}. From then on, the index is
+ * updated incrementally from annotation state changes and CAS writes. Annotation documents that
+ * are in progress but have never been edited are considered to have their last activity at the
+ * beginning of time, i.e. they are always checked for abandonment.
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link DynamicWorkloadManagerAutoConfiguration#inProgressDocumentIndex}
+ * </p>
+ */
+public class InProgressDocumentIndex
+{
+    private static final Comparator<Entry> BY_ACTIVITY = comparing(Entry::lastActivity)
+            .thenComparing(e -> e.document().getId());
+
+    private final Map<Long, ProjectIndex> projects = new ConcurrentHashMap<>();
+
+    /**
+     * Registers the given project for indexing. If the project has not been registered before, it
+     * is considered {@link #listProjectsDueForSweep due for sweeping} so that it gets loaded.
+     */
+    public void track(Project aProject)
+    {
+        projects.computeIfAbsent(aProject.getId(), _id -> new ProjectIndex(aProject));
+    }
+
+    public boolean isLoaded(Project aProject)
+    {
+        var index = projects.get(aProject.getId());
+        if (index == null) {
+            return false;
+        }
+
+        synchronized (index) {
+            return index.loaded;
+        }
+    }
+
+    /**
+     * Replaces the indexed annotation documents of the given project.
+     */
+    public void load(Project aProject, List<AnnotationDocument> aInProgressDocuments)
+    {
+        var index = projects.computeIfAbsent(aProject.getId(), _id -> new ProjectIndex(aProject));
+
+        synchronized (index) {
+            index.byActivity.clear();
+            index.byId.clear();
+            for (var doc : aInProgressDocuments) {
+                index.put(doc, lastActivity(doc));
+            }
+            index.loaded = true;
+        }
+    }
+
+    /**
+     * Sets the time after which an annotation document in the given project is considered to have
+     * been abandoned. If the timeout is not positive, the project is never due for sweeping.
+     */
+    public void setAbandonationTimeout(Project aProject, Duration aTimeout)
+    {
+        var index = projects.get(aProject.getId());
+        if (index == null) {
+            return;
+        }
+
+        synchronized (index) {
+            index.timeout = aTimeout;
+        }
+    }
+
+    /**
+     * Updates the given annotation document in the index. If it is not in progress anymore, it is
+     * removed from the index.
+     */
+    public void update(AnnotationDocument aDocument)
+    {
+        var index = projects.get(aDocument.getProject().getId());
+        if (index == null) {
+            return;
+        }
+
+        synchronized (index) {
+            if (!index.loaded) {
+                return;
+            }
+
+            if (aDocument.getState() == IN_PROGRESS) {
+                index.put(aDocument, lastActivity(aDocument));
+            }
+            else {
+                index.remove(aDocument.getId());
+            }
+        }
+    }
+
+    /**
+     * Marks the given annotation document as active at the given time, e.g. because the annotator
+     * still has an active session.
+     */
+    public void touch(AnnotationDocument aDocument, Instant aTime)
+    {
+        var index = projects.get(aDocument.getProject().getId());
+        if (index == null) {
+            return;
+        }
+
+        synchronized (index) {
+            if (index.byId.containsKey(aDocument.getId())) {
+                index.put(aDocument, aTime);
+            }
+        }
+    }
+
+    public void remove(AnnotationDocument aDocument)
+    {
+        var index = projects.get(aDocument.getProject().getId());
+        if (index == null) {
+            return;
+        }
+
+        synchronized (index) {
+            index.remove(aDocument.getId());
+        }
+    }
+
+    public void removeDocument(SourceDocument aDocument)
+    {
+        var index = projects.get(aDocument.getProject().getId());
+        if (index == null) {
+            return;
+        }
+
+        synchronized (index) {
+            var docs = index.byId.values().stream() //
+                    .filter(e -> e.document().getDocument().getId().equals(aDocument.getId())) //
+                    .map(e -> e.document().getId()) //
+                    .toList();
+            docs.forEach(index::remove);
+        }
+    }
+
+    public void removeProject(Project aProject)
+    {
+        projects.remove(aProject.getId());
+    }
+
+    /**
+     * @return the annotation documents in the given project on which there has been no activity
+     *         since the given time, starting with the ones which have been idle the longest.
+     */
+    public List<AnnotationDocument> listIdleSince(Project aProject, Instant aCutoff)
+    {
+        var index = projects.get(aProject.getId());
+        if (index == null) {
+            return List.of();
+        }
+
+        synchronized (index) {
+            var result = new ArrayList<AnnotationDocument>();
+            for (var entry : index.byActivity) {
+                if (!entry.lastActivity().isBefore(aCutoff)) {
+                    break;
+                }
+                result.add(entry.document());
+            }
+            return result;
+        }
+    }
+
+    /**
+     * @return the projects which have not been loaded yet or which contain annotation documents
+     *         whose abandonation timeout has expired at the given time. Projects in which
+     *         abandonation is disabled are never due.
+     */
+    public List<Project> listProjectsDueForSweep(Instant aNow)
+    {
+        var result = new ArrayList<Project>();
+        for (var index : projects.values()) {
+            synchronized (index) {
+                if (index.timeout != null
+                        && (index.timeout.isZero() || index.timeout.isNegative())) {
+                    continue;
+                }
+
+                if (!index.loaded) {
+                    result.add(index.project);
+                    continue;
+                }
+
+                if (index.timeout == null || index.byActivity.isEmpty()) {
+                    continue;
+                }
+
+                var oldest = index.byActivity.first().lastActivity();
+                if (oldest.plus(index.timeout).isBefore(aNow)) {
+                    result.add(index.project);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static Instant lastActivity(AnnotationDocument aDocument)
+    {
+        return aDocument.getTimestamp() != null ? aDocument.getTimestamp().toInstant()
+                : Instant.EPOCH;
+    }
+
+    private record Entry(AnnotationDocument document, Instant lastActivity) {}
+
+    /**
+     * The index of a single project. Not thread-safe - callers synchronize on the instance.
+     */
+    private static class ProjectIndex
+    {
+        private final Project project;
+        private final TreeSet<Entry> byActivity = new TreeSet<>(BY_ACTIVITY);
+        private final Map<Long, Entry> byId = new HashMap<>();
+        private boolean loaded;
+        private Duration timeout;
+
+        ProjectIndex(Project aProject)
+        {
+            project = aProject;
+        }
+
+        void put(AnnotationDocument aDocument, Instant aLastActivity)
+        {
+            remove(aDocument.getId());
+            var entry = new Entry(aDocument, aLastActivity);
+            byActivity.add(entry);
+            byId.put(aDocument.getId(), entry);
+        }
+
+        void remove(long aId)
+        {
+            var entry = byId.remove(aId);
+            if (entry != null) {
+                byActivity.remove(entry);
+            }
+        }
+    }
+}
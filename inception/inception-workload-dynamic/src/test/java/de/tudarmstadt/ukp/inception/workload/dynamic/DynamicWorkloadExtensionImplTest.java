@@ -68,6 +68,7 @@ import de.tudarmstadt.ukp.inception.schema.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.inception.schema.config.AnnotationSchemaServiceAutoConfiguration;
 import de.tudarmstadt.ukp.inception.workload.config.WorkloadManagementAutoConfiguration;
 import de.tudarmstadt.ukp.inception.workload.dynamic.config.DynamicWorkloadManagerAutoConfiguration;
+import de.tudarmstadt.ukp.inception.workload.dynamic.event.InProgressDocumentIndex;
 import de.tudarmstadt.ukp.inception.workload.dynamic.trait.DynamicWorkloadTraits;
 import de.tudarmstadt.ukp.inception.workload.dynamic.workflow.types.DefaultWorkflowExtension;
 import de.tudarmstadt.ukp.inception.workload.model.WorkloadManagementService;
@@ -102,6 +103,7 @@ public class DynamicWorkloadExtensionImplTest
     private @Autowired UserDao userService;
     private @Autowired WorkloadManagementService workloadManagementService;
     private @Autowired DynamicWorkloadExtension dynamicWorkloadExtension;
+    private @Autowired InProgressDocumentIndex inProgressDocumentIndex;
 
     private User annotator;
     private User otherAnnotator;
@@ -206,6 +208,9 @@ public class DynamicWorkloadExtensionImplTest
 
         sleep(traits.getAbandonationTimeout().multipliedBy(2).toMillis());
 
+        // Abandoned documents are released by a background sweep which we trigger directly here
+        dynamicWorkloadExtension.freshenStatus(project);
+
         Optional<SourceDocument> nextDoc = dynamicWorkloadExtension.nextDocumentToAnnotate(project,
                 annotator);
 
@@ -215,6 +220,48 @@ public class DynamicWorkloadExtensionImplTest
                 .isPresent().get().isEqualTo("1.txt");
     }
 
+    @Test
+    public void thatEnablingAbandonationReleasesAbandonedDocuments() throws Exception
+    {
+        traits.setAbandonationTimeout(Duration.ZERO);
+        dynamicWorkloadExtension.writeTraits(traits, project);
+
+        AnnotationDocument ann = new AnnotationDocument(otherAnnotator.getUsername(),
+                createSourceDocument("1.txt"));
+        Fixtures.importTestSourceDocumentAndAddNamedEntity(documentService, ann);
+
+        assertThat(dynamicWorkloadExtension.nextDocumentToAnnotate(project, annotator)) //
+                .as("Abandonation is disabled, so the document remains with the other user")
+                .isNotPresent();
+
+        sweep();
+
+        // The manager enables abandonation
+        traits.setAbandonationTimeout(Duration.of(1, SECONDS));
+        dynamicWorkloadExtension.writeTraits(traits, project);
+
+        sleep(traits.getAbandonationTimeout().multipliedBy(2).toMillis());
+
+        sweep();
+
+        assertThat(dynamicWorkloadExtension.nextDocumentToAnnotate(project, annotator)) //
+                .as("Document was abandoned by other user, so it can be worked on now")
+                .map(SourceDocument::getName) //
+                .isPresent().get().isEqualTo("1.txt");
+    }
+
+    /**
+     * Sweeps the test project if the background sweeper would pick it.
+     */
+    private void sweep()
+    {
+        var due = inProgressDocumentIndex.listProjectsDueForSweep(Instant.now()).stream() //
+                .anyMatch(p -> p.getId().equals(project.getId()));
+        if (due) {
+            dynamicWorkloadExtension.freshenStatus(project);
+        }
+    }
+
     private SourceDocument createSourceDocument(String aName)
     {
         return documentService
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.workload.dynamic.assignment;
+
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IN_PROGRESS;
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.NEW;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.workload.model.WorkloadManagementService;
+
+@ExtendWith(MockitoExtension.class)
+public class DocumentAssignmentQueueTest
+{
+    private @Mock WorkloadManagementService workloadManagementService;
+
+    private DocumentAssignmentQueue sut;
+    private Project project;
+    private SourceDocument doc1;
+    private SourceDocument doc2;
+
+    @BeforeEach
+    public void setup()
+    {
+        sut = new DocumentAssignmentQueue(workloadManagementService);
+
+        project = new Project("test");
+        project.setId(1l);
+
+        doc1 = new SourceDocument("1.txt", project, "text");
+        doc1.setId(1l);
+        doc2 = new SourceDocument("2.txt", project, "text");
+        doc2.setId(2l);
+    }
+
+    @Test
+    public void thatDocumentsAreNotAssignedToMoreThanTheRequiredAnnotators() throws Exception
+    {
+        when(workloadManagementService.listUsersWorkingOnDocuments(project)).thenReturn(Map.of());
+
+        var pool = Executors.newFixedThreadPool(8);
+        try {
+            var tasks = new ArrayList<Callable<Optional<SourceDocument>>>();
+            for (int i = 0; i < 50; i++) {
+                var user = new User("anno" + i);
+                tasks.add(() -> sut.assign(project, user, asList(doc1, doc2), 2));
+            }
+
+            var assigned = new ArrayList<SourceDocument>();
+            for (var result : pool.invokeAll(tasks)) {
+                result.get().ifPresent(assigned::add);
+            }
+
+            assertThat(assigned).containsExactlyInAnyOrder(doc1, doc1, doc2, doc2);
+        }
+        finally {
+            pool.shutdownNow();
+        }
+
+        verify(workloadManagementService, times(1)).listUsersWorkingOnDocuments(project);
+    }
+
+    @Test
+    public void thatUsersWorkingOnDocumentsAreCounted()
+    {
+        when(workloadManagementService.listUsersWorkingOnDocuments(project))
+                .thenReturn(Map.of(doc1.getId(), Set.of("anno1")));
+
+        assertThat(sut.assign(project, new User("anno2"), asList(doc1, doc2), 1)) //
+                .contains(doc2);
+    }
+
+    @Test
+    public void thatReservedDocumentIsAssignedAgainToSameUser()
+    {
+        when(workloadManagementService.listUsersWorkingOnDocuments(project)).thenReturn(Map.of());
+
+        var anno1 = new User("anno1");
+        assertThat(sut.assign(project, anno1, asList(doc1, doc2), 1)).contains(doc1);
+        assertThat(sut.assign(project, anno1, asList(doc1, doc2), 1)).contains(doc1);
+        assertThat(sut.assign(project, new User("anno2"), asList(doc1, doc2), 1)).contains(doc2);
+    }
+
+    @Test
+    public void thatAnnotationStateChangesAreTracked()
+    {
+        when(workloadManagementService.listUsersWorkingOnDocuments(project)).thenReturn(Map.of());
+
+        var anno1 = new User("anno1");
+        assertThat(sut.assign(project, anno1, asList(doc1), 1)).contains(doc1);
+
+        var adoc = new AnnotationDocument(anno1.getUsername(), doc1);
+        adoc.setState(IN_PROGRESS);
+        sut.annotationStateChanged(adoc, NEW, IN_PROGRESS);
+
+        // Even when the reservation is given up, the user is still working on the document
+        assertThat(sut.assign(project, anno1, asList(doc2), 1)).contains(doc2);
+        assertThat(sut.assign(project, new User("anno2"), asList(doc1), 1)).isEmpty();
+
+        // Once the document is reset, it becomes available again
+        adoc.setState(NEW);
+        sut.annotationStateChanged(adoc, IN_PROGRESS, NEW);
+        assertThat(sut.assign(project, new User("anno2"), asList(doc1), 1)).contains(doc1);
+    }
+}
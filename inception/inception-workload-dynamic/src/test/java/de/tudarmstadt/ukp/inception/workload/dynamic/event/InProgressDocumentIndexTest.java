@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Technische Universität Darmstadt under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The Technische Universität Darmstadt 
+ * licenses this file to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.
+ *  
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.workload.dynamic.event;
+
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.FINISHED;
+import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IN_PROGRESS;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+public class InProgressDocumentIndexTest
+{
+    private InProgressDocumentIndex sut;
+    private Project project;
+    private Instant now;
+
+    @BeforeEach
+    public void setup()
+    {
+        sut = new InProgressDocumentIndex();
+        project = new Project("test");
+        project.setId(1l);
+        now = Instant.now();
+    }
+
+    @Test
+    public void thatOnlyIdleDocumentsAreListed()
+    {
+        var idle = annotationDocument(1, now.minus(Duration.ofHours(2)));
+        var untouched = annotationDocument(2, null);
+        var active = annotationDocument(3, now);
+
+        sut.load(project, asList(active, idle, untouched));
+
+        assertThat(sut.listIdleSince(project, now.minus(Duration.ofHours(1)))) //
+                .containsExactly(untouched, idle);
+    }
+
+    @Test
+    public void thatProjectIsDueOnlyOnceTimeoutHasExpired()
+    {
+        sut.track(project);
+        sut.setAbandonationTimeout(project, Duration.ofHours(1));
+
+        assertThat(sut.listProjectsDueForSweep(now)) //
+                .as("Project which has not been loaded yet is due") //
+                .containsExactly(project);
+
+        var doc = annotationDocument(1, now);
+        sut.load(project, asList(doc));
+        assertThat(sut.listProjectsDueForSweep(now)).isEmpty();
+        assertThat(sut.listProjectsDueForSweep(now.plus(Duration.ofHours(2)))) //
+                .containsExactly(project);
+
+        doc.setState(FINISHED);
+        sut.update(doc);
+        assertThat(sut.listProjectsDueForSweep(now.plus(Duration.ofHours(2)))).isEmpty();
+    }
+
+    @Test
+    public void thatTouchedDocumentIsNoLongerIdle()
+    {
+        var doc = annotationDocument(1, now.minus(Duration.ofHours(2)));
+        sut.load(project, asList(doc));
+
+        sut.touch(doc, now);
+
+        assertThat(sut.listIdleSince(project, now.minus(Duration.ofHours(1)))).isEmpty();
+    }
+
+    private AnnotationDocument annotationDocument(long aId, Instant aTimestamp)
+    {
+        var sourceDocument = new SourceDocument("doc" + aId + ".txt", project, "text");
+        sourceDocument.setId(aId);
+        var doc = new AnnotationDocument("anno1", sourceDocument);
+        doc.setId(aId);
+        doc.setState(IN_PROGRESS);
+        doc.setTimestamp(aTimestamp != null ? Date.from(aTimestamp) : null);
+        return doc;
+    }
+}
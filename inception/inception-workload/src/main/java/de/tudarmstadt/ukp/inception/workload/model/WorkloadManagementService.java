@@ -18,6 +18,8 @@
 package de.tudarmstadt.ukp.inception.workload.model;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState;
@@ -48,4 +50,12 @@ public interface WorkloadManagementService
             SourceDocument aSourceDocument, AnnotationDocumentState aState);
 
     Long getNumberOfUsersWorkingOnADocument(SourceDocument aDocument);
+
+    /**
+     * @return the users working on the documents of the given project, indexed by the ID of the
+     *         source document. Documents nobody is working on are not included.
+     * @param aProject
+     *            a project
+     */
+    Map<Long, Set<String>> listUsersWorkingOnDocuments(Project aProject);
 }
@@ -23,7 +23,11 @@ import static java.lang.String.join;
 import static java.util.Arrays.asList;
 
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -173,4 +177,30 @@ public class WorkloadManagementServiceImpl
                 .setParameter("states", asList(IN_PROGRESS, FINISHED)) //
                 .getSingleResult();
     }
+
+    /**
+     * This method is a fast DB search to get all USERS working on any SourceDocument in a specific
+     * Project using a single query.
+     */
+    @Override
+    @Transactional
+    public Map<Long, Set<String>> listUsersWorkingOnDocuments(Project aProject)
+    {
+        String query = String.join("\n", //
+                "SELECT document.id, user", //
+                "FROM AnnotationDocument", //
+                "WHERE project = :project", //
+                "AND state IN (:states)");
+
+        List<Object[]> rows = entityManager.createQuery(query, Object[].class) //
+                .setParameter("project", aProject) //
+                .setParameter("states", asList(IN_PROGRESS, FINISHED)) //
+                .getResultList();
+
+        Map<Long, Set<String>> result = new HashMap<>();
+        for (Object[] row : rows) {
+            result.computeIfAbsent((Long) row[0], _id -> new HashSet<>()).add((String) row[1]);
+        }
+        return result;
+    }
 }